@@ -0,0 +1,20 @@
+package com.brendanddev.threadpool.benchmarks;
+
+/**
+ * The common surface of the executors being compared, so every benchmark drives them the same way.
+ */
+interface BenchmarkExecutor {
+
+    /**
+     * Submits a task for execution, blocking the caller if the executor's queue is full.
+     *
+     * @param task The task to run.
+     */
+    void execute(Runnable task);
+
+    /**
+     * Shuts the executor down and waits for its workers to exit.
+     */
+    void shutdown() throws InterruptedException;
+
+}
@@ -0,0 +1,41 @@
+package com.brendanddev.threadpool.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per producer count and writes each run's results as JSON to target/jmh/,
+ * so they can be archived and compared between versions.
+ *
+ * Accepts the usual JMH command line options (e.g. a benchmark regex, -f, -wi, -i or -p executor=...).
+ * Passing -t runs only that producer count.
+ */
+public class BenchmarkRunner {
+
+    private static final int[] PRODUCER_COUNTS = {1, 4};
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        Path resultDir = Paths.get("target", "jmh");
+        Files.createDirectories(resultDir);
+
+        int[] producerCounts = cli.getThreads().hasValue() ? new int[] {cli.getThreads().get()} : PRODUCER_COUNTS;
+        for (int producers : producerCounts) {
+            Options options = new OptionsBuilder()
+                    .parent(cli)
+                    .threads(producers)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir.resolve("results-producers-" + producers + ".json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.brendanddev.threadpool.benchmarks;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+import com.brendanddev.threadpool.queues.WorkStealingTaskQueue;
+
+/**
+ * The executors compared by the benchmarks: CustomThreadPool with each of its queues, and the JDK's
+ * ThreadPoolExecutor and ForkJoinPool as baselines.
+ *
+ * Bounded executors block the submitter while their queue is full, the way CustomThreadPool's bounded
+ * queues do, so that no run measures rejections. The work-stealing queue and ForkJoinPool are unbounded
+ * and ignore the capacity.
+ */
+public enum ExecutorType {
+
+    CUSTOM_LINKED {
+        @Override
+        BenchmarkExecutor create(int threads, int capacity) {
+            return custom(threads, new LinkedTaskQueue(capacity));
+        }
+    },
+
+    CUSTOM_RING {
+        @Override
+        BenchmarkExecutor create(int threads, int capacity) {
+            return custom(threads, new RingBufferTaskQueue(capacity));
+        }
+    },
+
+    CUSTOM_WORK_STEALING {
+        @Override
+        BenchmarkExecutor create(int threads, int capacity) {
+            return custom(threads, new WorkStealingTaskQueue());
+        }
+    },
+
+    THREAD_POOL_EXECUTOR {
+        @Override
+        BenchmarkExecutor create(int threads, int capacity) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                    (task, pool) -> {
+                        // Block like CustomThreadPool's bounded queues instead of rejecting
+                        try {
+                            pool.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException(e);
+                        }
+                    });
+            executor.prestartAllCoreThreads();
+            return new BenchmarkExecutor() {
+                @Override
+                public void execute(Runnable task) {
+                    executor.execute(task);
+                }
+
+                @Override
+                public void shutdown() throws InterruptedException {
+                    executor.shutdown();
+                    executor.awaitTermination(10, TimeUnit.SECONDS);
+                }
+            };
+        }
+    },
+
+    FORK_JOIN_POOL {
+        @Override
+        BenchmarkExecutor create(int threads, int capacity) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            return new BenchmarkExecutor() {
+                @Override
+                public void execute(Runnable task) {
+                    pool.execute(task);
+                }
+
+                @Override
+                public void shutdown() throws InterruptedException {
+                    pool.shutdown();
+                    pool.awaitTermination(10, TimeUnit.SECONDS);
+                }
+            };
+        }
+    };
+
+    /**
+     * Creates and starts an executor of this type.
+     *
+     * @param threads The number of worker threads.
+     * @param capacity The queue capacity, for executors with a bounded queue.
+     */
+    abstract BenchmarkExecutor create(int threads, int capacity);
+
+    private static BenchmarkExecutor custom(int threads, TaskQueue queue) {
+        CustomThreadPool pool = new CustomThreadPool(threads,
+                new CustomThreadFactory("bench-worker", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.ABORT_POLICY, queue);
+        pool.prestartAllCoreThreads();
+        return new BenchmarkExecutor() {
+            @Override
+            public void execute(Runnable task) {
+                pool.execute(task);
+            }
+
+            @Override
+            public void shutdown() throws InterruptedException {
+                pool.shutdown();
+                pool.awaitTermination(10_000);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.brendanddev.threadpool.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures submit-to-start latency: the time from calling execute() until a worker begins running the task.
+ *
+ * Each invocation submits one task and spins until it has started, so the sampled times include waking an
+ * idle worker. JMH's sample mode reports the p50, p90, p99, p99.9 and p99.99 of these times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatencyBenchmark {
+
+    @Param({"CUSTOM_LINKED", "CUSTOM_RING", "CUSTOM_WORK_STEALING", "THREAD_POOL_EXECUTOR", "FORK_JOIN_POOL"})
+    public ExecutorType executor;
+
+    @Param({"1", "4", "8"})
+    public int poolThreads;
+
+    @Param({"1024"})
+    public int queueCapacity;
+
+    private BenchmarkExecutor pool;
+
+    /**
+     * A reusable task owned by one benchmark thread, which records when it started.
+     */
+    @State(Scope.Thread)
+    public static class Probe implements Runnable {
+
+        volatile long startedAt;
+
+        @Override
+        public void run() {
+            startedAt = System.nanoTime();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startPool() {
+        pool = executor.create(poolThreads, queueCapacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPool() throws InterruptedException {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long submitToStart(Probe probe) {
+        probe.startedAt = 0;
+        long submittedAt = System.nanoTime();
+        pool.execute(probe);
+
+        long startedAt;
+        while ((startedAt = probe.startedAt) == 0) {
+            Thread.onSpinWait();
+        }
+        return startedAt - submittedAt;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.brendanddev.threadpool.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many tasks per second each executor completes.
+ *
+ * Every benchmark thread is a producer: one invocation submits a batch of tasks and waits until all of
+ * them have run, so the score counts completed tasks rather than queued ones. The number of producers is
+ * the JMH thread count (-t), which BenchmarkRunner varies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThroughputBenchmark {
+
+    static final int BATCH_SIZE = 1_000;
+
+    @Param({"CUSTOM_LINKED", "CUSTOM_RING", "CUSTOM_WORK_STEALING", "THREAD_POOL_EXECUTOR", "FORK_JOIN_POOL"})
+    public ExecutorType executor;
+
+    @Param({"1", "4", "8"})
+    public int poolThreads;
+
+    @Param({"EMPTY", "CPU", "BLOCKING"})
+    public Workload workload;
+
+    @Param({"1024", "65536"})
+    public int queueCapacity;
+
+    private BenchmarkExecutor pool;
+
+    @Setup(Level.Trial)
+    public void startPool() {
+        pool = executor.create(poolThreads, queueCapacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPool() throws InterruptedException {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void executeBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        Workload body = workload;
+        Runnable task = () -> {
+            body.run();
+            done.countDown();
+        };
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            pool.execute(task);
+        }
+        done.await();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.brendanddev.threadpool.benchmarks;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The task bodies the benchmarks submit.
+ */
+public enum Workload {
+
+    /** Does nothing, so the measurement is pure pool overhead. */
+    EMPTY {
+        @Override
+        void run() {
+        }
+    },
+
+    /** Burns a few microseconds of CPU. */
+    CPU {
+        @Override
+        void run() {
+            Blackhole.consumeCPU(1_000);
+        }
+    },
+
+    /** Blocks for about 50 microseconds, like a fast I/O call. */
+    BLOCKING {
+        @Override
+        void run() {
+            LockSupport.parkNanos(50_000);
+        }
+    };
+
+    abstract void run();
+
+}
@@ -0,0 +1,421 @@
+package com.brendanddev.threadpool;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.TrackedTask;
+import com.brendanddev.threadpool.WorkerThread;
+
+/**
+ * A front-end to a CustomThreadPool for producers that submit many tiny tasks, such as counter updates or cache
+ * invalidations, whose work is far smaller than the cost of queueing each of them on its own.
+ *
+ * Executors are created with CustomThreadPool.createBatchingExecutor(). Each producer thread gathers its tasks in
+ * a buffer of its own, which costs an uncontended lock per task. The buffer is handed to the pool as a single
+ * task once it holds maxBatchSize tasks, when the producer calls flush(), or at the latest maxDelayMillis after
+ * the first task was buffered, so the queue's lock, the worker wake-up and the pool's bookkeeping are paid once
+ * per batch. A worker runs the tasks of a batch one after another, in the order they were submitted.
+ *
+ * Every task is still tracked on its own:
+ * - submit() returns a TaskFuture per task, which completes with that task's result or exception.
+ * - A Runnable that throws is reported to the worker's UncaughtExceptionHandler and does not stop the rest of
+ *   its batch.
+ * - Tasks are admitted, rejected and capture their context one by one, when they are submitted.
+ * - The executor counts the tasks it completed and the tasks that failed. The pool's metrics, interceptors and
+ *   StallWatchdog also see each task of a batch on its own when a worker runs it.
+ *
+ * Buffered tasks are flushed when the pool is shut down, without waiting for space in the TaskQueue: a batch
+ * that does not fit is run by the workers once the queue is empty. On shutdownNow() the tasks of buffers and
+ * queued batches are returned with the pool's other tasks, while a batch that is already running completes, and
+ * the tasks of a batch a producer hands over after the pool was stopped are passed to the RejectionHandler.
+ */
+public final class BatchingExecutor {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1;
+
+    private final CustomThreadPool pool;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+
+    // The calling thread's buffer, and all buffers so that they can be flushed by the timer and on shutdown
+    private final ThreadLocal<Buffer> localBuffer = new ThreadLocal<>();
+    private final Set<Buffer> buffers = ConcurrentHashMap.newKeySet();
+
+    // Whether a flush of all buffers is scheduled on the pool's timing wheel
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable scheduledFlush = this::runScheduledFlush;
+    private volatile boolean closed;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder taskCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    BatchingExecutor(CustomThreadPool pool, int maxBatchSize, long maxDelayMillis) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        if (maxDelayMillis < 1) throw new IllegalArgumentException("maxDelayMillis must be at least 1");
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Adds a Runnable task to the calling thread's buffer, handing the buffer to the pool if it is full.
+     * Tasks submitted after close() or after the pool was shut down are passed to the pool's RejectionHandler.
+     *
+     * @param task The Runnable task to be executed.
+     */
+    public void execute(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        if (closed || !pool.admit(task)) {
+            pool.reject(task);
+            return;
+        }
+        Runnable queued = pool.captureContext(task);
+
+        Buffer buffer = localBuffer.get();
+        if (buffer == null) buffer = register();
+        Batch full;
+        boolean first;
+        synchronized (buffer) {
+            first = buffer.size == 0;
+            full = buffer.add(queued);
+        }
+
+        if (full != null) {
+            dispatch(full);
+        } else if (closed || pool.isShutdown()) {
+            // Closed since the check above, and the final flush may have missed this task
+            flush();
+        } else if (first) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Adds a Callable task to the calling thread's buffer and returns a TaskFuture for its result.
+     *
+     * @param task The Callable task to be executed.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public <V> TaskFuture<V> submit(Callable<V> task) {
+        TaskFuture<V> future = new TaskFuture<>(task, pool);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * Adds a Runnable task to the calling thread's buffer and returns a TaskFuture that completes with null
+     * once it has run.
+     *
+     * @param task The Runnable task to be executed.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public TaskFuture<?> submit(Runnable task) {
+        return submit(TaskFuture.callable(task));
+    }
+
+    /**
+     * Hands the tasks in the calling thread's buffer to the pool now, e.g. at the end of a burst or before
+     * waiting for one of their futures.
+     */
+    public void flush() {
+        Buffer buffer = localBuffer.get();
+        if (buffer == null) return;
+        Batch batch;
+        synchronized (buffer) {
+            batch = buffer.take();
+        }
+        if (batch != null) dispatch(batch);
+    }
+
+    /**
+     * Hands the tasks in every producer's buffer to the pool now.
+     */
+    public void flushAll() {
+        for (Buffer buffer : buffers) {
+            Batch batch;
+            synchronized (buffer) {
+                batch = buffer.take();
+            }
+            if (batch != null) {
+                dispatch(batch);
+            } else if (!buffer.owner.isAlive()) {
+                // The producer has exited and can no longer add to its buffer
+                buffers.remove(buffer);
+            }
+        }
+    }
+
+    /**
+     * Flushes all buffers and stops accepting tasks. The pool itself keeps running.
+     */
+    public void close() {
+        closed = true;
+        flushAll();
+        pool.batchingExecutorClosed(this);
+    }
+
+    /**
+     * Returns whether close() has been called.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of tasks after which a buffer is handed to the pool.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the longest time a task waits in a buffer before it is handed to the pool, in milliseconds.
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Returns the number of batches handed to the pool.
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * Returns the number of tasks handed to the pool in batches.
+     */
+    public long getTaskCount() {
+        return taskCount.sum();
+    }
+
+    /**
+     * Returns the number of tasks that have finished running, successfully or not.
+     */
+    public long getCompletedTaskCount() {
+        return completedCount.sum();
+    }
+
+    /**
+     * Returns the number of tasks that threw an exception or whose future completed exceptionally.
+     */
+    public long getFailedTaskCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Returns the number of tasks waiting in the producers' buffers.
+     */
+    public int getBufferedTaskCount() {
+        int buffered = 0;
+        for (Buffer buffer : buffers) {
+            synchronized (buffer) {
+                buffered += buffer.size;
+            }
+        }
+        return buffered;
+    }
+
+    /**
+     * Hands the tasks in every producer's buffer to the pool without waiting for space. Used by shutdown()
+     * once the pool has stopped taking tasks.
+     */
+    void flushOnShutdown() {
+        for (Buffer buffer : buffers) {
+            Batch batch;
+            synchronized (buffer) {
+                batch = buffer.take();
+            }
+            if (batch == null) continue;
+            countHandedOver(batch);
+            pool.executeOnShutdown(batch);
+        }
+    }
+
+    /**
+     * Moves the tasks of every buffer into the given list. Used by shutdownNow().
+     */
+    void drainTo(Collection<Runnable> remaining) {
+        for (Buffer buffer : buffers) {
+            Batch batch;
+            synchronized (buffer) {
+                batch = buffer.take();
+            }
+            if (batch != null) batch.drainTo(remaining);
+        }
+    }
+
+    private Buffer register() {
+        Buffer buffer = new Buffer(Thread.currentThread());
+        localBuffer.set(buffer);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Hands a batch to the pool. Producers wait for space if the TaskQueue is full, which applies the queue's
+     * backpressure to them; a worker of the pool runs the batch itself instead, as waiting could leave every
+     * worker blocked. The batch also runs in the calling thread if the pool has been shut down in the meantime,
+     * as its tasks were accepted and the workers still run the queued tasks, but once the pool has been stopped
+     * its tasks are passed to the RejectionHandler instead.
+     */
+    private void dispatch(Batch batch) {
+        WorkerThread worker = WorkerThread.current();
+        boolean block = worker == null || worker.getPool() != pool;
+        boolean queued = pool.executeInternal(batch, block);
+        if (!queued && pool.isStopped()) {
+            batch.reject();
+            return;
+        }
+        countHandedOver(batch);
+        if (!queued) batch.run();
+    }
+
+    /**
+     * Counts a batch, and its tasks, as handed to the pool.
+     */
+    private void countHandedOver(Batch batch) {
+        batchCount.increment();
+        taskCount.add(batch.size);
+    }
+
+    /**
+     * Makes sure a flush of all buffers is scheduled, called when a buffer receives its first task. One timer
+     * serves all producers, and none is scheduled while the buffers are empty.
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled.get() && flushScheduled.compareAndSet(false, true)) {
+            if (!pool.scheduleInternal(scheduledFlush, maxDelayMillis)) {
+                // Shut down, which flushes the buffers itself
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void runScheduledFlush() {
+        // Cleared first: a producer whose buffer is flushed before its task arrives schedules the next flush
+        flushScheduled.set(false);
+        flushAll();
+    }
+
+    /**
+     * The tasks of one producer thread that have not been handed to the pool yet. Guarded by its own monitor,
+     * which only the timer and shutdown contend for.
+     */
+    private final class Buffer {
+
+        private final Thread owner;
+        private Runnable[] tasks;
+        private int size;
+
+        Buffer(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Adds a task.
+         *
+         * @return The full buffer as a batch, or null if there is still room.
+         */
+        Batch add(Runnable task) {
+            if (tasks == null) tasks = new Runnable[maxBatchSize];
+            tasks[size++] = task;
+            return size == maxBatchSize ? take() : null;
+        }
+
+        /**
+         * Takes the buffered tasks as a batch and leaves the buffer empty.
+         *
+         * @return The batch, or null if the buffer was empty.
+         */
+        Batch take() {
+            if (size == 0) return null;
+            Batch batch = new Batch(tasks, size);
+            tasks = null;
+            size = 0;
+            return batch;
+        }
+    }
+
+    /**
+     * Tasks handed to the pool as a single task.
+     */
+    final class Batch extends TrackedTask {
+
+        private final Runnable[] tasks;
+        private final int size;
+
+        Batch(Runnable[] tasks, int size) {
+            this.tasks = tasks;
+            this.size = size;
+        }
+
+        @Override
+        public void run() {
+            int failed = 0;
+            for (int i = 0; i < size; i++) {
+                Runnable task = tasks[i];
+                tasks[i] = null;
+                try {
+                    if (WorkerThread.runHeldTask(pool, task)) failed++;
+                } catch (Throwable t) {
+                    // Errors: the rest of the batch must still run. Report it like a worker does
+                    failed++;
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, t);
+                }
+            }
+            completedCount.add(size);
+            if (failed > 0) failedCount.add(failed);
+        }
+
+        /**
+         * Returns the number of tasks in the batch.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Passes every task of a batch that will not run to the pool's RejectionHandler. A handler that throws
+         * does not stop the other tasks from being rejected; the first exception is rethrown at the end.
+         */
+        void reject() {
+            RuntimeException failure = null;
+            for (int i = 0; i < size; i++) {
+                Runnable task = tasks[i];
+                tasks[i] = null;
+                try {
+                    pool.reject(task);
+                } catch (RuntimeException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            if (failure != null) throw failure;
+        }
+
+        /**
+         * Adds the tasks of a batch that never ran to the given list.
+         */
+        void drainTo(Collection<Runnable> remaining) {
+            for (int i = 0; i < size; i++) {
+                remaining.add(CustomThreadPool.unwrap(tasks[i]));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "BatchingExecutor.Batch[" + size + "]";
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.brendanddev.threadpool;
+
+/**
+ * Carries one kind of thread-bound context, such as a trace id or a logging MDC, from the thread that submits
+ * a task to the worker that runs it.
+ *
+ * Carriers are registered with CustomThreadPool.addContextCarrier(). When a task is submitted, the pool calls
+ * capture() in the submitting thread; the worker calls restore() with that value just before the task runs,
+ * and restore() again with the value it returned once the task has finished, so that whatever the worker had
+ * before is put back. Both are called on every task, so they should be cheap: ideally a ThreadLocal read and
+ * write, as in the carrier returned by of().
+ *
+ * @param <C> The type of the captured context.
+ */
+public interface ContextCarrier<C> {
+
+    /**
+     * Captures the context of the calling thread. Called in the thread that submits a task.
+     *
+     * @return The context to run the task with, may be null.
+     */
+    C capture();
+
+    /**
+     * Installs a context in the calling thread. Called in the worker around each task.
+     *
+     * @param context A value returned by capture(), or by an earlier call to restore().
+     * @return The context that was installed before, so that it can be restored afterwards.
+     */
+    C restore(C context);
+
+    /**
+     * Returns a carrier that propagates the value of a ThreadLocal.
+     *
+     * @param threadLocal The ThreadLocal whose value follows tasks to the workers.
+     * @return A carrier that copies the value without allocating.
+     */
+    static <T> ContextCarrier<T> of(ThreadLocal<T> threadLocal) {
+        return new ContextCarrier<T>() {
+            @Override
+            public T capture() {
+                return threadLocal.get();
+            }
+
+            @Override
+            public T restore(T context) {
+                T previous = threadLocal.get();
+                if (context == null) {
+                    threadLocal.remove();
+                } else {
+                    threadLocal.set(context);
+                }
+                return previous;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.brendanddev.threadpool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.brendanddev.threadpool.ContextCarrier;
+import com.brendanddev.threadpool.ContextSnapshot;
+import com.brendanddev.threadpool.TrackedTask;
+
+/**
+ * Captures the registered ContextCarriers of a pool when tasks are submitted, and recycles the snapshots.
+ *
+ * The carriers are kept in a copy-on-write array, so with none registered capturing is a single field read.
+ * Free snapshots are kept in an array of slots: a submitter takes one from a short run of adjacent slots starting
+ * at a random index, which usually spans a single cache line, and the worker that ran its task puts it back in a
+ * free slot the same way. A slot array is used rather than a lock-free stack, whose nodes could not be reused
+ * without running into the ABA problem. When all probed slots are empty a new snapshot is allocated, and when
+ * all are full a released one is left to the garbage collector. Only snapshots attached to a TrackedTask come
+ * back; those wrapping a plain Runnable are queued under their own identity and so are not reused.
+ */
+final class ContextPropagation {
+
+    private static final int SLOTS = 256;
+    private static final int PROBES = 16;
+
+    private static final ContextCarrier<Object>[] NO_CARRIERS = newCarriers(0);
+
+    private volatile ContextCarrier<Object>[] carriers = NO_CARRIERS;
+    private final AtomicReferenceArray<ContextSnapshot> free = new AtomicReferenceArray<>(SLOTS);
+
+    /**
+     * Registers a carrier; tasks submitted from now on capture it.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void add(ContextCarrier<?> carrier) {
+        ContextCarrier<Object>[] current = carriers;
+        ContextCarrier<Object>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = (ContextCarrier<Object>) carrier;
+        carriers = updated;
+    }
+
+    /**
+     * Unregisters a carrier. Tasks that were submitted before still restore it.
+     *
+     * @return true if the carrier was registered.
+     */
+    synchronized boolean remove(ContextCarrier<?> carrier) {
+        ContextCarrier<Object>[] current = carriers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == carrier) {
+                ContextCarrier<Object>[] updated = newCarriers(current.length - 1);
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                carriers = updated.length == 0 ? NO_CARRIERS : updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates an empty carrier array. Carriers are only ever called with the value they captured themselves,
+     * so they can be held as carriers of Object.
+     */
+    @SuppressWarnings("unchecked")
+    private static ContextCarrier<Object>[] newCarriers(int length) {
+        return (ContextCarrier<Object>[]) new ContextCarrier<?>[length];
+    }
+
+    /**
+     * Returns whether any carriers are registered.
+     */
+    boolean isActive() {
+        return carriers.length != 0;
+    }
+
+    /**
+     * Returns the registered carriers, in the order they are restored.
+     */
+    List<ContextCarrier<?>> getCarriers() {
+        return List.of(carriers);
+    }
+
+    /**
+     * Captures the calling thread's context for a task that is being submitted.
+     *
+     * @return The task with the snapshot attached, a snapshot wrapping it if it is a plain Runnable, or the task
+     *         itself if no carriers are registered.
+     */
+    Runnable capture(Runnable task) {
+        ContextCarrier<Object>[] current = carriers;
+        if (current.length == 0 || task == null) return task;
+
+        ContextSnapshot snapshot = acquire();
+        snapshot.capture(current);
+        if (task instanceof TrackedTask) {
+            ((TrackedTask) task).context = snapshot;
+            return task;
+        }
+        snapshot.wrap(task);
+        return snapshot;
+    }
+
+    /**
+     * Clears a snapshot whose task has run and keeps it for reuse if a slot is free.
+     */
+    void release(ContextSnapshot snapshot) {
+        snapshot.clear();
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            if (free.get(slot) == null && free.compareAndSet(slot, null, snapshot)) return;
+        }
+    }
+
+    /**
+     * Takes a free snapshot, or allocates one if none is found in a few probes.
+     */
+    private ContextSnapshot acquire() {
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            if (free.get(slot) != null) {
+                ContextSnapshot snapshot = free.getAndSet(slot, null);
+                if (snapshot != null) return snapshot;
+            }
+        }
+        return new ContextSnapshot(this);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.brendanddev.threadpool;
+
+import com.brendanddev.threadpool.ContextCarrier;
+import com.brendanddev.threadpool.ContextPropagation;
+import com.brendanddev.threadpool.TrackedTask;
+
+/**
+ * The contexts captured for one task, one value per registered ContextCarrier.
+ *
+ * A snapshot is attached to the task through TrackedTask.context. Tasks that are not TrackedTasks, i.e. plain
+ * Runnables, are wrapped in the snapshot itself, which then is its own context. Snapshots attached to a TrackedTask
+ * are recycled through ContextPropagation once their task has run, so that propagating context does not allocate
+ * in steady state. A snapshot wrapping a Runnable is never recycled: it is the task the submitter queued and may
+ * still take back, and the one a worker reports as its current task, so reusing it for another task could make
+ * either of them see the wrong task.
+ */
+final class ContextSnapshot extends TrackedTask {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final ContextPropagation owner;
+    private ContextCarrier<Object>[] carriers;
+    private Object[] values = EMPTY;
+    private Object[] previous = EMPTY;
+
+    // The wrapped task, or null if the snapshot is attached to a TrackedTask
+    private Runnable task;
+
+    ContextSnapshot(ContextPropagation owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the snapshot attached to a task, or null if it carries none.
+     */
+    static ContextSnapshot of(Runnable task) {
+        return task instanceof TrackedTask ? ((TrackedTask) task).context : null;
+    }
+
+    /**
+     * Runs a task with the context attached to it, if any. Used where tasks are run outside of
+     * WorkerThread.runTask(), such as by a producer that runs a batch itself.
+     */
+    static void run(Runnable task) {
+        ContextSnapshot context = of(task);
+        if (context == null) {
+            task.run();
+            return;
+        }
+        context.enter();
+        try {
+            task.run();
+        } finally {
+            context.exit(task);
+        }
+    }
+
+    /**
+     * Captures the calling thread's context from the given carriers.
+     */
+    void capture(ContextCarrier<Object>[] carriers) {
+        this.carriers = carriers;
+        if (values.length < carriers.length) {
+            values = new Object[carriers.length];
+            previous = new Object[carriers.length];
+        }
+        for (int i = 0; i < carriers.length; i++) {
+            values[i] = carriers[i].capture();
+        }
+    }
+
+    /**
+     * Installs the captured context in the calling thread, remembering what it replaces.
+     */
+    void enter() {
+        for (int i = 0; i < carriers.length; i++) {
+            previous[i] = carriers[i].restore(values[i]);
+        }
+    }
+
+    /**
+     * Puts back the context that enter() replaced and, unless the task runs again with the same context,
+     * detaches the snapshot and recycles it. A snapshot wrapping a Runnable is left to the garbage collector.
+     *
+     * @param task The task the snapshot is attached to, which is the snapshot itself for a wrapped Runnable.
+     */
+    void exit(Runnable task) {
+        for (int i = carriers.length - 1; i >= 0; i--) {
+            carriers[i].restore(previous[i]);
+            previous[i] = null;
+        }
+        TrackedTask tracked = (TrackedTask) task;
+        if (tracked == this || tracked.keepsContext()) return;
+        tracked.context = null;
+        owner.release(this);
+    }
+
+    /**
+     * Wraps a plain Runnable, making the snapshot its own context.
+     */
+    void wrap(Runnable task) {
+        this.task = task;
+        this.context = this;
+    }
+
+    /**
+     * Drops the captured values and the wrapped task before the snapshot is reused.
+     */
+    void clear() {
+        for (int i = 0; i < carriers.length; i++) {
+            values[i] = null;
+        }
+        carriers = null;
+        task = null;
+        context = null;
+        enqueueNanos = 0;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    @Override
+    Runnable unwrap() {
+        return task != null ? task : this;
+    }
+
+}
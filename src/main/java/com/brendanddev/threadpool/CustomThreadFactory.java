@@ -1,19 +1,37 @@
 package com.brendanddev.threadpool;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.brendanddev.threadpool.affinity.CpuAffinity;
+import com.brendanddev.threadpool.affinity.CpuSet;
+
 /**
  * A custom implementation of a thread factory that creates threads with specific properties.
  * This allows for better control over thread naming, daemon status, and priority.
  * 
  * The daemon status of threads determines whether the JVM can exit while the threads are running, and
  * the priority influences the thread scheduling by the JVM.
+ * 
+ * A factory can also be given one or more CPU sets. Each core worker of a pool is assigned the next set in
+ * round-robin order and pinned to it shortly after it starts, so workers stop migrating between cores and
+ * sockets. The taskset process that pins a thread runs in the background, so a starting worker never waits
+ * for it. Workers started beyond the core size for a burst of load, and the pool's own helper threads, are
+ * short-lived or mostly idle and are not pinned; if such a thread is created by a pinned one, it is given all
+ * of the process's CPUs back. Pinning is best effort: where CpuAffinity is not supported the threads run
+ * unpinned.
  */
 public class CustomThreadFactory {
 
     private final String basename;
-    private int counter = 0;
+    private final AtomicInteger counter = new AtomicInteger(0);
     private final boolean daemon;
     private final int priority;
 
+    // CPU sets assigned to new threads in round-robin order, empty for unpinned threads
+    private final CpuSet[] cpuSets;
+    private final AtomicInteger assignedCpuSetCount = new AtomicInteger(0);
+    private final AtomicInteger pinnedThreadCount = new AtomicInteger(0);
+
     /**
      * Constructs a CustomThreadFactory with the specified base name, daemon status, and priority.
      * 
@@ -22,9 +40,23 @@ public class CustomThreadFactory {
      * @param priority The priority for threads created by this factory (between Thread.MIN_PRIORITY and Thread.MAX_PRIORITY).
      */
     public CustomThreadFactory(String basename, boolean daemon, int priority) {
+        this(basename, daemon, priority, new CpuSet[0]);
+    }
+
+    /**
+     * Constructs a CustomThreadFactory whose core workers are pinned to the given CPU sets.
+     * The n-th core worker created is pinned to cpuSets[n % cpuSets.length].
+     * 
+     * @param basename The prefix for thread names created by this factory.
+     * @param daemon Whether threads should be daemon threads.
+     * @param priority The priority for threads created by this factory (between Thread.MIN_PRIORITY and Thread.MAX_PRIORITY).
+     * @param cpuSets The CPU sets to pin threads to, or none to leave threads unpinned.
+     */
+    public CustomThreadFactory(String basename, boolean daemon, int priority, CpuSet... cpuSets) {
         this.basename = basename;
         this.daemon = daemon;
         this.priority = priority;
+        this.cpuSets = cpuSets.clone();
     }
 
     /**
@@ -33,10 +65,65 @@ public class CustomThreadFactory {
      * @param r The Runnable task for the new thread to execute.
      */
     public Thread newThread(Runnable r) {
-        Thread t = new Thread(r, basename + "-" + counter++);
+        return newThread(r, isCoreWorker(r));
+    }
+
+    /**
+     * Creates a new thread with the specified Runnable task, pinned to the next CPU set if asked to.
+     *
+     * @param r The Runnable task for the new thread to execute.
+     * @param pin Whether to pin the thread, if the factory has CPU sets.
+     */
+    Thread newThread(Runnable r, boolean pin) {
+        int index = counter.getAndIncrement();
+        Runnable body = r;
+        if (cpuSets.length > 0 && pin) {
+            CpuSet cpus = cpuSets[Math.floorMod(assignedCpuSetCount.getAndIncrement(), cpuSets.length)];
+            // The kernel thread id is only known from the thread itself once it runs
+            body = () -> {
+                CpuAffinity.pinInBackground(cpus, pinnedThreadCount::incrementAndGet);
+                r.run();
+            };
+        } else if (CpuAffinity.isCurrentThreadPinned()) {
+            // The new thread inherits the CPUs of this one
+            body = () -> {
+                CpuAffinity.releaseInBackground();
+                r.run();
+            };
+        }
+        Thread t = new Thread(body, basename + "-" + index);
         t.setDaemon(daemon);
         t.setPriority(priority);
         return t;
     }
+
+    /**
+     * Returns whether a task is a worker started to fill a pool's core size, the only threads that are pinned.
+     */
+    static boolean isCoreWorker(Runnable r) {
+        return r instanceof WorkerThread && ((WorkerThread) r).isCore();
+    }
+
+    /**
+     * Returns the name for the next thread, made of the base name and a running counter.
+     */
+    protected String nextThreadName() {
+        return basename + "-" + counter.getAndIncrement();
+    }
+
+    /**
+     * Returns the CPU sets that threads are pinned to, empty if threads are not pinned.
+     */
+    public CpuSet[] getCpuSets() {
+        return cpuSets.clone();
+    }
+
+    /**
+     * Returns how many threads created by this factory have been pinned successfully. Threads are pinned in the
+     * background, so a worker that has just started may not be counted yet.
+     */
+    public int getPinnedThreadCount() {
+        return pinnedThreadCount.get();
+    }
     
 }
@@ -1,163 +1,913 @@
 package com.brendanddev.threadpool;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import com.brendanddev.threadpool.CustomThreadFactory;
 import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.metrics.PoolMetrics;
+import com.brendanddev.threadpool.metrics.PoolStats;
+import com.brendanddev.threadpool.metrics.SizingDecision;
+import com.brendanddev.threadpool.policies.AdmissionPolicy;
+import com.brendanddev.threadpool.policies.HillClimbingController;
+import com.brendanddev.threadpool.policies.IdleStrategies;
+import com.brendanddev.threadpool.policies.IdleStrategy;
 import com.brendanddev.threadpool.policies.RejectionHandlers;
 import com.brendanddev.threadpool.policies.RejectionHandler;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.PriorityTaskQueue;
 
 /**
- * A custom implementation of a fixed-size thread pool that manages a group of worker threads to execute
+ * A custom implementation of a thread pool that manages a group of worker threads to execute
  * submitted tasks concurrently.
- * 
- * This class coordinates task execution using a shared TaskQueue and a fixed number of WorkerThreads. 
+ *
+ * This class coordinates task execution using a shared TaskQueue and a set of WorkerThreads.
  * Tasks submitted through the `execute(Runnable)` method are enqueued and processed by available worker threads.
+ *
+ * The number of workers is elastic and bounded by a core and a maximum pool size:
+ * - Core workers are started lazily, one per submitted task, until the core size is reached. They can also
+ *   be started ahead of time with prestartCoreThread() or prestartAllCoreThreads().
+ * - When every worker is busy and tasks keep arriving, extra workers are started up to the maximum size.
+ * - Workers above the core size retire once they have been idle for the keep-alive time.
  */
 public class CustomThreadPool {
 
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 60_000;
+
     private final TaskQueue taskQueue;
-    private final WorkerThread[] workers;
-    private final Thread[] workerThreads;
-    private volatile boolean isShutdown = false;
-    private volatile boolean isTerminated = false;
+
+    // Lifecycle, which only ever moves forward: RUNNING -> SHUTDOWN -> STOP -> TERMINATED, where SHUTDOWN or
+    // STOP may be skipped. Transitions happen under the workers monitor, reads need no lock.
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final int TERMINATED = 3;
+    private final AtomicInteger runState = new AtomicInteger(RUNNING);
+    private final CountDownLatch termination = new CountDownLatch(1);
 
     private final CustomThreadFactory threadFactory;
     private final RejectionHandler rejectionHandler;
 
-    // Special task to signal workers to terminate
-    public static final Runnable POISON_PILL = () -> {};
+    // Written under the workers monitor, may change at runtime
+    private volatile int corePoolSize;
+    private volatile int maximumPoolSize;
+    private final long keepAliveMillis;
+
+    // Guarded by the workers set monitor
+    private final Set<WorkerThread> workers = new HashSet<>();
+    private int largestPoolSize = 0;
+    private long startedWorkerCount = 0;
+    private long retiredWorkerCount = 0;
+
+    // Written under the workers monitor, read without it on the submit path
+    private volatile int poolSize = 0;
+    private final AtomicInteger idleWorkerCount = new AtomicInteger(0);
+
+    // Maximum number of tasks a worker takes from the queue per visit
+    private volatile int workerBatchSize = 1;
+
+    // What idle workers do before blocking on the queue, and how many of them may do it at once
+    private volatile IdleStrategy idleStrategy = IdleStrategies.BLOCKING;
+    private volatile int hotSpinners = Integer.MAX_VALUE;
+    private final AtomicInteger spinningWorkerCount = new AtomicInteger(0);
+
+    // How long execute() waits for space in a full queue before rejecting, negative to wait indefinitely
+    private volatile long submitTimeoutMillis = -1;
+    private volatile AdmissionPolicy admissionPolicy;
+
+    // Per-key mailboxes for execute(key, task)
+    private final KeyedLanes keyedLanes = new KeyedLanes(this);
+
+    // Deficit round robin between the pool's TaskGroups
+    private final FairShareScheduler fairShare = new FairShareScheduler(this);
+
+    // Coalescing front-ends whose buffers are flushed on shutdown
+    private final List<BatchingExecutor> batchingExecutors = new CopyOnWriteArrayList<>();
+
+    // Batches flushed by shutdown() that did not fit in the full TaskQueue, run by the workers once it is empty
+    private final ConcurrentLinkedQueue<Runnable> shutdownOverflow = new ConcurrentLinkedQueue<>();
+
+    // Holds delayed and periodic tasks until they are due, created on first use
+    private volatile TimingWheel timingWheel;
+
+    // Resizes the pool from throughput feedback, with the thread that drives it; guarded by the workers monitor
+    private HillClimbingController sizeController;
+    private Thread sizeControllerThread;
+
+    // Reports hanging tasks, with the thread that drives it; guarded by the workers monitor
+    private StallWatchdog stallWatchdog;
+    private Thread stallWatchdogThread;
+
+    // Workers the watchdog lets the pool run above its maximum size while tasks are stalled
+    private volatile int compensatingWorkerCount = 0;
+
+    private final PoolMetrics metrics = new PoolMetrics();
+
+    // Copy-on-write, read by workers once per task
+    private static final TaskInterceptor[] NO_INTERCEPTORS = new TaskInterceptor[0];
+    private volatile TaskInterceptor[] interceptors = NO_INTERCEPTORS;
+    private final Object interceptorLock = new Object();
+
+    // Thread-bound context captured at submission and restored around each task
+    private final ContextPropagation contextPropagation = new ContextPropagation();
+    private volatile boolean queueWaitTracking = false;
+
+    // Queue depth is sampled once per this many submissions, as size() may take the queue's lock
+    private static final int QUEUE_DEPTH_SAMPLE_MASK = 63;
+
+    // DISCARD_OLDEST_POLICY gives up and rejects the task after discarding this many queued tasks for it, or
+    // after skipping this many of the pool's internal tasks while looking for one to discard
+    private static final int DISCARD_OLDEST_ATTEMPTS = 8;
+    private static final int DISCARD_OLDEST_SCAN = 16;
 
     /**
-     * Constructs a CustomThreadPool with a given number of worker threads and a custom thread factory.
-     * 
-     * @param numThreads The number of worker threads in the pool.
+     * Constructs an elastic CustomThreadPool.
+     *
+     * @param corePoolSize The number of workers kept alive even when idle.
+     * @param maximumPoolSize The maximum number of workers the pool may grow to under load.
+     * @param keepAliveMillis How long a worker above the core size may stay idle before it retires.
      * @param factory The CustomThreadFactory to create worker threads.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     * @param queue The TaskQueue shared by all worker threads.
      */
-    public CustomThreadPool(int numThreads, CustomThreadFactory factory, RejectionHandler handler) {
+    public CustomThreadPool(int corePoolSize, int maximumPoolSize, long keepAliveMillis,
+                            CustomThreadFactory factory, RejectionHandler handler, TaskQueue queue) {
+        if (corePoolSize < 0 || maximumPoolSize <= 0 || maximumPoolSize < corePoolSize || keepAliveMillis < 0) {
+            throw new IllegalArgumentException("Invalid pool sizing: core=" + corePoolSize
+                    + ", max=" + maximumPoolSize + ", keepAlive=" + keepAliveMillis);
+        }
+        this.corePoolSize = corePoolSize;
+        this.maximumPoolSize = maximumPoolSize;
+        this.keepAliveMillis = keepAliveMillis;
         this.threadFactory = factory;
         this.rejectionHandler = handler;
-        taskQueue = new TaskQueue();
-        workers = new WorkerThread[numThreads];
-        workerThreads = new Thread[numThreads];
+        this.taskQueue = queue;
+    }
 
-        for (int i = 0; i < numThreads; i++) {
-            WorkerThread worker = new WorkerThread(taskQueue);
-            workers[i] = worker;
-            Thread t = threadFactory.newThread(worker);
-            workerThreads[i] = t;
-            t.start();
-        }
+    /**
+     * Constructs a fixed-size CustomThreadPool with a given number of worker threads, a custom thread factory and
+     * the TaskQueue implementation that hands tasks to the workers.
+     *
+     * @param numThreads The number of worker threads in the pool.
+     * @param factory The CustomThreadFactory to create worker threads.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     * @param queue The TaskQueue shared by all worker threads.
+     */
+    public CustomThreadPool(int numThreads, CustomThreadFactory factory, RejectionHandler handler, TaskQueue queue) {
+        this(numThreads, numThreads, DEFAULT_KEEP_ALIVE_MILLIS, factory, handler, queue);
+    }
+
+    /**
+     * Constructs a fixed-size CustomThreadPool with a given number of worker threads and a custom thread factory.
+     * Uses an unbounded LinkedTaskQueue.
+     *
+     * @param numThreads The number of worker threads in the pool.
+     * @param factory The CustomThreadFactory to create worker threads.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     */
+    public CustomThreadPool(int numThreads, CustomThreadFactory factory, RejectionHandler handler) {
+        this(numThreads, factory, handler, new LinkedTaskQueue());
     }
 
     /**
-     * Constructs a CustomThreadPool with a given number of worker threads and a default thread factory.
-     * 
+     * Constructs a fixed-size CustomThreadPool with a given number of worker threads and a default thread factory.
+     *
      * @param numThreads The number of worker threads in the pool.
      */
     public CustomThreadPool(int numThreads) {
         this(numThreads, new CustomThreadFactory("Worker", false, Thread.NORM_PRIORITY), RejectionHandlers.ABORT_POLICY);
     }
 
+    /**
+     * Constructs a fixed-size CustomThreadPool with a default thread factory and a bounded queue.
+     * Once the queue holds queueCapacity tasks, execute() waits for space for up to the submit timeout
+     * (indefinitely unless setSubmitTimeoutMillis() was called) and then rejects the task.
+     *
+     * @param numThreads The number of worker threads in the pool.
+     * @param queueCapacity The maximum number of queued tasks.
+     */
+    public CustomThreadPool(int numThreads, int queueCapacity) {
+        this(numThreads, new CustomThreadFactory("Worker", false, Thread.NORM_PRIORITY), RejectionHandlers.ABORT_POLICY,
+                new LinkedTaskQueue(queueCapacity));
+    }
+
+    /**
+     * Creates a CustomThreadPool that runs tasks on virtual threads, for workloads that mostly block on I/O.
+     *
+     * The pool has no core workers and a keep-alive of zero: a virtual worker is started whenever a task
+     * arrives and every running worker is busy, it runs queued tasks until the queue is empty, and then exits.
+     * The maximum pool size acts as the concurrency limit, a pool of permits that caps how many tasks run at
+     * once, instead of a fixed number of long-lived threads. Submission, shutdown and rejection behave exactly
+     * as in a platform thread pool.
+     *
+     * @param maxConcurrency The maximum number of tasks running at the same time.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     * @return A new virtual thread pool.
+     * @throws UnsupportedOperationException If the running JVM does not support virtual threads.
+     */
+    public static CustomThreadPool newVirtualThreadPool(int maxConcurrency, RejectionHandler handler) {
+        return new CustomThreadPool(0, maxConcurrency, 0, new VirtualThreadFactory("VirtualWorker"),
+                handler, new LinkedTaskQueue());
+    }
+
+    /**
+     * Creates a fixed-size CustomThreadPool that runs higher priority tasks first.
+     *
+     * Tasks are submitted with execute(task, priority) or submit(task, priority), where priorities range from
+     * 0 (lowest) to priorityLevels - 1; tasks submitted without a priority get the middle level. Queued tasks
+     * gain one level for every agingMillis they wait, so low priority work is delayed but never starved.
+     *
+     * @param numThreads The number of worker threads in the pool.
+     * @param priorityLevels The number of priority levels.
+     * @param agingMillis How long a task must wait to gain one level of priority, or 0 to disable aging.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     * @return A new priority thread pool backed by a PriorityTaskQueue.
+     */
+    public static CustomThreadPool newPriorityThreadPool(int numThreads, int priorityLevels, long agingMillis,
+                                                         RejectionHandler handler) {
+        return new CustomThreadPool(numThreads, new CustomThreadFactory("Worker", false, Thread.NORM_PRIORITY),
+                handler, new PriorityTaskQueue(priorityLevels, agingMillis));
+    }
+
 
     /**
      * Submits a Runnable task for execution.
-     * Adds the task to the shared TaskQueue if the pool is active.
-     * 
+     * Adds the task to the shared TaskQueue if the pool is active, then starts a new worker if the
+     * pool is below its core size or every worker is busy.
+     *
      * @param task The Runnable task to be executed.
      */
     public void execute(Runnable task) {
-        if (isShutdown) {
-            rejectionHandler.reject(task, this);
+        if (enqueueTask(task, submitTimeoutMillis, true)) return;
+        if (rejectionHandler == RejectionHandlers.DISCARD_OLDEST_POLICY && discardOldestAndEnqueue(task)) return;
+        reject(task);
+    }
+
+    /**
+     * Submits a Runnable task for execution, waiting up to the given time for space if the queue is full.
+     * Unlike execute(), a task that is not accepted is not passed to the RejectionHandler; the caller is
+     * told through the return value instead and can apply its own backpressure.
+     *
+     * @param task The Runnable task to be executed.
+     * @param timeoutMillis The maximum time to wait for space in milliseconds, or 0 to not wait at all.
+     * @return true if the task was queued, false if the pool is shut down, the AdmissionPolicy refused the
+     *         task or the queue was still full when the timeout elapsed.
+     */
+    public boolean offer(Runnable task, long timeoutMillis) {
+        if (enqueueTask(task, Math.max(0, timeoutMillis), true)) return true;
+        metrics.recordRejected();
+        return false;
+    }
+
+    /**
+     * Submits a Runnable task with a priority.
+     * The priority is used by priority-aware queues such as PriorityTaskQueue, where higher values run first;
+     * other queues run the task in their usual order.
+     *
+     * @param task The Runnable task to be executed.
+     * @param priority The task's priority.
+     */
+    public void execute(Runnable task, int priority) {
+        execute(new PrioritizedRunnable(task, priority));
+    }
+
+    /**
+     * Submits a Runnable task that must run after, and never at the same time as, the tasks previously
+     * submitted with the same key. Tasks with different keys run in parallel on the pool's workers.
+     *
+     * Keys are compared with equals() and hashCode(), like map keys. A key only takes up memory while it has
+     * tasks waiting or running, so any number of distinct keys can be used.
+     *
+     * @param key The key that orders the task, e.g. an account or partition id.
+     * @param task The Runnable task to be executed.
+     */
+    public void execute(Object key, Runnable task) {
+        if (key == null || task == null) throw new NullPointerException();
+        if (!admit(task)) {
+            reject(task);
+            return;
+        }
+        if (!keyedLanes.execute(key, contextPropagation.capture(task))) {
+            reject(task);
+            return;
+        }
+        metrics.recordSubmitted(1);
+    }
+
+    /**
+     * Submits a Callable task that runs in order with the other tasks of the same key, and returns a
+     * TaskFuture for its result. See execute(Object, Runnable).
+     *
+     * @param key The key that orders the task.
+     * @param task The Callable task to be executed.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public <V> TaskFuture<V> submit(Object key, Callable<V> task) {
+        TaskFuture<V> future = new TaskFuture<>(task, this);
+        execute(key, future);
+        return future;
+    }
+
+    /**
+     * Returns the number of keys that currently have tasks waiting or running.
+     */
+    public int getActiveKeyCount() {
+        return keyedLanes.size();
+    }
+
+    /**
+     * Creates a TaskGroup that shares the pool with the other groups in proportion to its weight, without a
+     * concurrency limit and with an unbounded queue. Rejected tasks go to the pool's RejectionHandler.
+     *
+     * @param name The name of the group, e.g. a tenant id.
+     * @param weight The group's share of processing time relative to the other groups, at least 1.
+     * @return The new TaskGroup.
+     */
+    public TaskGroup createTaskGroup(String name, int weight) {
+        return createTaskGroup(name, weight, Integer.MAX_VALUE, Integer.MAX_VALUE, rejectionHandler);
+    }
+
+    /**
+     * Creates a TaskGroup that shares the pool with the other groups in proportion to its weight.
+     * See TaskGroup for how groups are scheduled.
+     *
+     * @param name The name of the group, e.g. a tenant id.
+     * @param weight The group's share of processing time relative to the other groups, at least 1.
+     * @param maxConcurrency The maximum number of the group's tasks that may run at once.
+     * @param queueCapacity The maximum number of the group's tasks that may wait to run.
+     * @param handler The RejectionHandler invoked for the group's tasks that cannot be accepted.
+     * @return The new TaskGroup.
+     */
+    public TaskGroup createTaskGroup(String name, int weight, int maxConcurrency, int queueCapacity,
+                                     RejectionHandler handler) {
+        if (name == null || handler == null) throw new NullPointerException();
+        return fairShare.createGroup(name, weight, maxConcurrency, queueCapacity, handler);
+    }
+
+    /**
+     * Returns the TaskGroups created on this pool, in creation order.
+     */
+    public List<TaskGroup> getTaskGroups() {
+        return Collections.unmodifiableList(fairShare.getGroups());
+    }
+
+    /**
+     * Creates a BatchingExecutor with the default batch size and delay.
+     *
+     * @return The new BatchingExecutor.
+     */
+    public BatchingExecutor createBatchingExecutor() {
+        return createBatchingExecutor(BatchingExecutor.DEFAULT_MAX_BATCH_SIZE,
+                BatchingExecutor.DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Creates a BatchingExecutor, which gathers the tasks of each producer thread and hands them to this pool in
+     * batches. See BatchingExecutor for when a batch is handed over.
+     *
+     * @param maxBatchSize The number of tasks after which a producer's buffer is handed to the pool.
+     * @param maxDelayMillis The longest time a task may wait in a buffer, in milliseconds.
+     * @return The new BatchingExecutor.
+     */
+    public BatchingExecutor createBatchingExecutor(int maxBatchSize, long maxDelayMillis) {
+        BatchingExecutor executor = new BatchingExecutor(this, maxBatchSize, maxDelayMillis);
+        batchingExecutors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Submits a batch of Runnable tasks for execution.
+     * The whole batch is published to an unbounded TaskQueue in one call, which lets the queue use a single
+     * synchronization point and wake only as many workers as there are new tasks. Tasks for a bounded queue
+     * are submitted one by one, as with execute().
+     *
+     * @param tasks The Runnable tasks to be executed, in order.
+     */
+    public void executeAll(Collection<? extends Runnable> tasks) {
+        if (tasks.isEmpty()) return;
+        if (admissionPolicy != null || submitTimeoutMillis >= 0 || taskQueue.capacity() != Integer.MAX_VALUE) {
+            // Admission and submit timeouts are decided per task, so the batch cannot be published at once.
+            // A bounded queue may not fit the batch, and a caller waiting for space in the middle of it
+            // could not take back the tasks already queued if the pool were shut down
+            for (Runnable task : tasks) {
+                execute(task);
+            }
             return;
         }
+        if (isShutdown()) {
+            for (Runnable task : tasks) {
+                reject(task);
+            }
+            return;
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            if (!addWorker(true)) break;
+        }
+
+        long now = System.nanoTime();
+        Collection<? extends Runnable> batch = tasks;
+        if (queueWaitTracking || contextPropagation.isActive()) {
+            // Plain Runnables may be wrapped
+            List<Runnable> tracked = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks) {
+                tracked.add(track(task, now, true));
+            }
+            batch = tracked;
+        } else {
+            for (Runnable task : tasks) {
+                track(task, now, true);
+            }
+        }
+
+        boolean interrupted = false;
         try {
-            taskQueue.enqueue(task);
+            taskQueue.enqueueAll(batch);
         } catch (InterruptedException e) {
+            // Which tasks made it into the queue is unknown, so none are rejected or counted
             Thread.currentThread().interrupt();
-            rejectionHandler.reject(task, this);
+            interrupted = true;
+        }
+
+        List<Runnable> takenBack = Collections.emptyList();
+        if (isShutdown()) {
+            // Shut down while the batch was being queued: take back the tasks no worker has started
+            takenBack = new ArrayList<>();
+            Iterator<? extends Runnable> original = tasks.iterator();
+            for (Runnable queued : batch) {
+                Runnable task = original.next();
+                if (taskQueue.remove(queued)) takenBack.add(task);
+            }
+        }
+        if (!interrupted) metrics.recordSubmitted(tasks.size() - takenBack.size());
+        sampleQueueDepth();
+        for (Runnable task : takenBack) {
+            reject(task);
+        }
+
+        // Start as many workers as the batch can keep busy
+        for (int i = 0; i < tasks.size(); i++) {
+            if (!ensureWorkers()) break;
+        }
+    }
+
+    /**
+     * Submits a Callable task for execution and returns a TaskFuture for its result.
+     * The task's result or exception is captured by the future instead of being lost in the worker.
+     *
+     * @param task The Callable task to be executed.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public <V> TaskFuture<V> submit(Callable<V> task) {
+        TaskFuture<V> future = new TaskFuture<>(task, this);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * Submits a Runnable task for execution and returns a TaskFuture that completes with null once it has run.
+     *
+     * @param task The Runnable task to be executed.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public TaskFuture<?> submit(Runnable task) {
+        return submit(TaskFuture.callable(task));
+    }
+
+    /**
+     * Submits a Callable task with a priority and returns a TaskFuture for its result.
+     * See execute(Runnable, int) for how the priority is used.
+     *
+     * @param task The Callable task to be executed.
+     * @param priority The task's priority.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public <V> TaskFuture<V> submit(Callable<V> task, int priority) {
+        TaskFuture<V> future = new PrioritizedTaskFuture<>(task, this, priority);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * Submits a Runnable task with a priority and returns a TaskFuture that completes with null once it has run.
+     *
+     * @param task The Runnable task to be executed.
+     * @param priority The task's priority.
+     * @return A TaskFuture that completes with the task's outcome.
+     */
+    public TaskFuture<?> submit(Runnable task, int priority) {
+        return submit(TaskFuture.callable(task), priority);
+    }
+
+    /**
+     * Submits all tasks and waits until every one of them has completed, normally or exceptionally.
+     * If the calling thread is interrupted while waiting, or submitting a task throws, e.g. because the
+     * RejectionHandler rejected it, the tasks already submitted are cancelled.
+     *
+     * @param tasks The tasks to execute.
+     * @return The futures of the tasks, in the iteration order of the collection, all of them done.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public <V> List<TaskFuture<V>> invokeAll(Collection<? extends Callable<V>> tasks) throws InterruptedException {
+        List<TaskFuture<V>> futures = new ArrayList<>(tasks.size());
+        boolean done = false;
+        try {
+            for (Callable<V> task : tasks) {
+                futures.add(submit(task));
+            }
+            for (TaskFuture<V> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException | CancellationException e) {
+                    // The outcome stays available through the future
+                }
+            }
+            done = true;
+            return futures;
+        } finally {
+            if (!done) {
+                for (TaskFuture<V> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits all tasks and returns the result of the first one to complete successfully.
+     * The remaining tasks are cancelled once a result is available.
+     *
+     * @param tasks The tasks to execute.
+     * @return The result of the first task to complete successfully.
+     * @throws ExecutionException If every task failed, with the last failure as the cause.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public <V> V invokeAny(Collection<? extends Callable<V>> tasks) throws InterruptedException, ExecutionException {
+        if (tasks.isEmpty()) throw new IllegalArgumentException("No tasks to invoke");
+
+        TaskFuture<V> first = new TaskFuture<>();
+        AtomicInteger remaining = new AtomicInteger(tasks.size());
+        List<TaskFuture<V>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<V> task : tasks) {
+                TaskFuture<V> future = submit(task);
+                futures.add(future);
+                future.whenComplete((result, failure) -> {
+                    if (failure == null) {
+                        first.complete(result);
+                    } else if (remaining.decrementAndGet() == 0) {
+                        first.completeExceptionally(failure);
+                    }
+                });
+            }
+            return first.get();
+        } finally {
+            for (TaskFuture<V> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Runs a RecursiveTask on this pool and returns its result.
+     *
+     * Called from one of this pool's workers, the task runs directly in the caller, which helps with its
+     * subtasks while joining them. Called from any other thread, the task is submitted like any other task
+     * and the caller waits for it.
+     *
+     * @param task The task to run.
+     * @return The result of the task.
+     * @throws java.util.concurrent.CancellationException If the task was cancelled.
+     */
+    public <V> V invoke(RecursiveTask<V> task) {
+        WorkerThread worker = WorkerThread.current();
+        if (worker != null && worker.getPool() == this) {
+            return task.invoke();
+        }
+        task.submitTo(this);
+        return task.join();
+    }
+
+    /**
+     * Runs body once for every index from 'from' (inclusive) to 'to' (exclusive), in parallel, and returns
+     * once every index has been processed. The chunk size is chosen from the range and the pool size.
+     *
+     * @param from The first index.
+     * @param to The index after the last one.
+     * @param body The loop body, called concurrently from several threads.
+     * @throws RuntimeException The first exception thrown by the body, after which remaining chunks are skipped.
+     */
+    public void parallelFor(int from, int to, IntConsumer body) {
+        parallelFor(from, to, 0, body);
+    }
+
+    /**
+     * Runs body once for every index from 'from' (inclusive) to 'to' (exclusive), in parallel.
+     *
+     * The range is split lazily: each task runs its range minChunk indices at a time and forks off half of
+     * what remains only while the pool has idle workers, so the loop adapts to how busy the pool is and to
+     * uneven iterations without the caller picking a split depth.
+     *
+     * @param from The first index.
+     * @param to The index after the last one.
+     * @param minChunk The number of indices run between checks for idle workers, or 0 to choose one.
+     * @param body The loop body, called concurrently from several threads.
+     * @throws RuntimeException The first exception thrown by the body, after which remaining chunks are skipped.
+     */
+    public void parallelFor(int from, int to, int minChunk, IntConsumer body) {
+        if (minChunk < 0) throw new IllegalArgumentException("Chunk size must not be negative: " + minChunk);
+        if (from >= to) return;
+        int chunk = ParallelLoops.chunkSize(this, to - from, minChunk);
+        invoke(new ParallelLoops.ForTask(this, from, to, chunk, body));
+    }
+
+    /**
+     * Reduces a list in parallel, like Stream.reduce(identity, accumulator, combiner).
+     *
+     * The list is split lazily into ranges as in parallelFor(). Each range is folded with the accumulator,
+     * starting from the identity, and the results of neighbouring ranges are merged with the combiner in list
+     * order, so the combiner must be associative but need not be commutative. Lists without fast random access
+     * are copied first.
+     *
+     * @param list The elements to reduce.
+     * @param identity The identity value for the combiner.
+     * @param accumulator Folds an element into a partial result.
+     * @param combiner Merges two partial results.
+     * @return The reduced value.
+     */
+    public <T, R> R parallelReduce(List<? extends T> list, R identity, BiFunction<R, ? super T, R> accumulator,
+                                   BinaryOperator<R> combiner) {
+        List<? extends T> elements = list instanceof RandomAccess ? list : new ArrayList<>(list);
+        if (elements.isEmpty()) return identity;
+        int chunk = ParallelLoops.chunkSize(this, elements.size(), 0);
+        return invoke(new ParallelLoops.ReduceTask<>(this, elements, 0, elements.size(), chunk, identity,
+                accumulator, combiner));
+    }
+
+    /**
+     * Reduces an array in parallel, like Stream.reduce(identity, accumulator, combiner).
+     *
+     * @param array The elements to reduce.
+     * @param identity The identity value for the combiner.
+     * @param accumulator Folds an element into a partial result.
+     * @param combiner Merges two partial results.
+     * @return The reduced value.
+     * @see #parallelReduce(List, Object, BiFunction, BinaryOperator)
+     */
+    public <T, R> R parallelReduce(T[] array, R identity, BiFunction<R, ? super T, R> accumulator,
+                                   BinaryOperator<R> combiner) {
+        return parallelReduce(Arrays.asList(array), identity, accumulator, combiner);
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     * The task waits in the pool's timing wheel and is handed to the TaskQueue when it is due, so it runs
+     * on the pool's worker threads like any other task.
+     *
+     * @param task The Runnable task to be executed.
+     * @param delayMillis The delay in milliseconds.
+     * @return A ScheduledTaskFuture that completes with null once the task has run.
+     */
+    public ScheduledTaskFuture<?> schedule(Runnable task, long delayMillis) {
+        return schedule(TaskFuture.callable(task), delayMillis);
+    }
+
+    /**
+     * Schedules a Callable task to run once after the given delay.
+     *
+     * @param task The Callable task to be executed.
+     * @param delayMillis The delay in milliseconds.
+     * @return A ScheduledTaskFuture that completes with the task's outcome.
+     */
+    public <V> ScheduledTaskFuture<V> schedule(Callable<V> task, long delayMillis) {
+        return scheduleTimer(task, delayMillis, 0);
+    }
+
+    /**
+     * Schedules a task to run repeatedly, first after the initial delay and then once per period measured
+     * from the previous scheduled start. If a run takes longer than the period, the next run starts late
+     * rather than overlapping it.
+     *
+     * @param task The Runnable task to be executed.
+     * @param initialDelayMillis The delay before the first run in milliseconds.
+     * @param periodMillis The period between the starts of consecutive runs in milliseconds.
+     * @return A ScheduledTaskFuture that only completes if the task is cancelled or throws an exception.
+     */
+    public ScheduledTaskFuture<?> scheduleAtFixedRate(Runnable task, long initialDelayMillis, long periodMillis) {
+        if (periodMillis <= 0) throw new IllegalArgumentException("Period must be positive: " + periodMillis);
+        return scheduleTimer(TaskFuture.callable(task), initialDelayMillis, TimeUnit.MILLISECONDS.toNanos(periodMillis));
+    }
+
+    /**
+     * Schedules a task to run repeatedly, first after the initial delay and then with the given delay between
+     * the end of one run and the start of the next.
+     *
+     * @param task The Runnable task to be executed.
+     * @param initialDelayMillis The delay before the first run in milliseconds.
+     * @param delayMillis The delay between the end of a run and the start of the next in milliseconds.
+     * @return A ScheduledTaskFuture that only completes if the task is cancelled or throws an exception.
+     */
+    public ScheduledTaskFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelayMillis, long delayMillis) {
+        if (delayMillis <= 0) throw new IllegalArgumentException("Delay must be positive: " + delayMillis);
+        return scheduleTimer(TaskFuture.callable(task), initialDelayMillis, -TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    /**
+     * Returns the number of scheduled tasks waiting for their delay to expire.
+     */
+    public int getScheduledTaskCount() {
+        TimingWheel wheel = timingWheel;
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    /**
+     * Removes a task from the queue if it has not started yet.
+     *
+     * @param task The task to remove.
+     * @return true if the task was removed.
+     */
+    public boolean remove(Runnable task) {
+        // The pool's own tasks hold other tasks, which would be stranded
+        if (isInternalTask(task)) return false;
+        return taskQueue.remove(task);
+    }
+
+    /**
+     * Starts a core worker if the pool has not reached its core size yet.
+     *
+     * @return true if a worker was started.
+     */
+    public boolean prestartCoreThread() {
+        return addWorker(true);
+    }
+
+    /**
+     * Starts all core workers that are not running yet.
+     *
+     * @return The number of workers started.
+     */
+    public int prestartAllCoreThreads() {
+        int started = 0;
+        while (addWorker(true)) {
+            started++;
         }
+        return started;
     }
 
     /**
      * Initiates a graceful shutdown of the thread pool.
-     * New tasks are rejected, but existing and queued tasks will finish.
+     * New tasks are rejected, but existing and queued tasks will finish. Scheduled tasks that are not due
+     * yet are cancelled, and periodic tasks stop repeating.
+     *
+     * Never waits: workers waiting for a task are woken directly and exit once the queue is empty, and
+     * busy workers exit when they next find the queue empty. Tasks buffered in a BatchingExecutor are queued
+     * without waiting for space; a batch that does not fit in a full queue is kept aside and run by the
+     * workers once the queue is empty, before they exit.
      */
-    public void shutdown() { 
-        isShutdown = true;
-        for (int i = 0; i < workers.length; i++) {
-            try {
-                // Enqueue a poison pill for each worker to signal termination
-                taskQueue.enqueue(POISON_PILL);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    public void shutdown() {
+        synchronized (workers) {
+            advanceRunState(SHUTDOWN);
+            stopTimingWheel();
+            stopSizeController();
+            stopStallWatchdog();
+            // Buffered tasks were accepted. Flushed after the state change, as producers flush the tasks
+            // they buffer from then on themselves, and the timer that would have flushed them is stopped
+            for (BatchingExecutor executor : batchingExecutors) {
+                executor.flushOnShutdown();
             }
+            if (poolSize == 0 && hasQueuedTasks()) {
+                // A task raced with shutdown before any worker was started for it
+                addWorker(false);
+            }
+            for (WorkerThread worker : workers) {
+                worker.wakeIfIdle();
+            }
+            tryTerminate();
         }
     }
 
     /**
      * Attempts to stop all actively executing tasks and returns tasks that were not executed.
-     * This interrupts all worker threads immediately.
-     * 
+     * This interrupts all worker threads immediately. The pool terminates once every worker has returned
+     * from its current task.
+     *
      * @return A list of tasks that were submitted but not yet executed.
      */
     public List<Runnable> shutdownNow() {
-        isShutdown = true;
         List<Runnable> remainingTasks = new ArrayList<>();
+        List<Thread> toInterrupt = new ArrayList<>();
+        synchronized (workers) {
+            advanceRunState(STOP);
+            stopTimingWheel();
+            stopSizeController();
+            stopStallWatchdog();
+            for (WorkerThread worker : workers) {
+                toInterrupt.add(worker.getThread());
+            }
+        }
 
-        // Synchronize on the TaskQueue to safely access its internal state
-        // Ensures no worker thread is dequeuing tasks while we are iterating or removing tasks
-        synchronized (taskQueue) {
-            while (taskQueue.size() > 0) {
-                try {
-                    remainingTasks.add(taskQueue.dequeue());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+        // Drain with non-blocking polls so this works for any TaskQueue implementation
+        // and never blocks if a worker takes the last task first
+        Runnable task;
+        while ((task = taskQueue.poll()) != null || (task = shutdownOverflow.poll()) != null) {
+            // Mailboxes and dispatch tokens are skipped here, their tasks are collected from the lanes and groups below
+            Runnable original = unwrap(task);
+            if (original instanceof BatchingExecutor.Batch) {
+                ((BatchingExecutor.Batch) original).drainTo(remainingTasks);
+            } else if (!(original instanceof KeyedLanes.Mailbox)
+                    && !(original instanceof FairShareScheduler.Dispatch)) {
+                remainingTasks.add(original);
             }
         }
+        keyedLanes.drainTo(remainingTasks);
+        fairShare.drainTo(remainingTasks);
+        for (BatchingExecutor executor : batchingExecutors) {
+            executor.drainTo(remainingTasks);
+        }
 
-        for (Thread t : workerThreads) {
+        for (Thread t : toInterrupt) {
             t.interrupt();
         }
 
-        // Mark pool as terminated
-        isTerminated = true;
+        synchronized (workers) {
+            tryTerminate();
+        }
         return remainingTasks;
     }
 
     /**
-     * Blocks until all worker threads terminate or the timeout expires.
-     * 
+     * Shuts the pool down gracefully and gives queued and running tasks until the timeout to finish. If the
+     * pool has not terminated by then, it is stopped as with shutdownNow(): running tasks are interrupted and
+     * the tasks still queued are returned instead of run. This bounds how long a shutdown can take even when
+     * the queue is full.
+     *
+     * @param timeoutMillis How long to let the pool drain, in milliseconds.
+     * @return The tasks that were not run, empty if the pool drained in time.
+     */
+    public List<Runnable> shutdownAndDrain(long timeoutMillis) {
+        shutdown();
+        if (awaitTermination(timeoutMillis)) return new ArrayList<>();
+        return shutdownNow();
+    }
+
+    /**
+     * Blocks until the pool has been shut down and all worker threads terminate, or the timeout expires.
+     *
      * @param timeoutMillis The maximum time to wait in milliseconds.
      * @return true if all workers terminated, false if the timeout elapsed first.
      */
     public boolean awaitTermination(long timeoutMillis) {
-        long endTime = System.currentTimeMillis() + timeoutMillis;
-
-        for (Thread t : workerThreads) {
-            long remaining = endTime - System.currentTimeMillis();
-            if (remaining <= 0) return false;   // Timed out before all threads
-
-            try {
-                t.join(remaining);
-            } catch (InterruptedException e) {
-                // Preserve interrupt status and exit early if interrupted
-                Thread.currentThread().interrupt();
-                return false;
-            }
+        try {
+            return termination.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // Preserve interrupt status and exit early if interrupted
+            Thread.currentThread().interrupt();
+            return false;
         }
-
-        isTerminated = true;
-        return true;
     }
 
     /**
      * Checks if the thread pool has been shut down.
      */
+    public boolean isShutdown() {
+        return runState.get() >= SHUTDOWN;
+    }
+
+    /**
+     * Checks if the thread pool has been stopped with shutdownNow().
+     */
+    boolean isStopped() {
+        return runState.get() >= STOP;
+    }
+
+    /**
+     * Checks if the thread pool has terminated.
+     */
     public boolean isTerminated() {
-        return isTerminated;
+        return runState.get() == TERMINATED;
     }
 
     /**
@@ -171,22 +921,1058 @@ public class CustomThreadPool {
      * Returns the number of active worker threads currently executing tasks.
      */
     public int getActiveWorkerCount() {
-        return WorkerThread.workerCount.get();
+        return metrics.getActiveWorkerCount();
     }
 
     /**
      * Returns the total number of tasks that have been completed by the pool.
      */
-    public int getCompletedTaskCount() {
-        return WorkerThread.completedTaskCount.get();
+    public long getCompletedTaskCount() {
+        return metrics.getCompletedCount();
     }
 
     /**
-     * Returns the TaskQueue used by the thread pool.
+     * Returns the live metrics of this pool. Counters are cheap to read individually; use getStats()
+     * for a consistent-looking snapshot of everything at once.
      */
-    public TaskQueue getTaskQueue() {
-        return taskQueue;
+    public PoolMetrics getMetrics() {
+        return metrics;
     }
 
-    
+    /**
+     * Takes a snapshot of this pool's counters, sizing and latency histograms.
+     */
+    public PoolStats getStats() {
+        int largest;
+        long started;
+        long retired;
+        HillClimbingController controller;
+        synchronized (workers) {
+            largest = largestPoolSize;
+            started = startedWorkerCount;
+            retired = retiredWorkerCount;
+            controller = sizeController;
+        }
+        List<SizingDecision> decisions = controller != null ? controller.getDecisions() : List.of();
+        return PoolStats.of(metrics, taskQueue.size(), poolSize, largest, started, retired, decisions);
+    }
+
+    /**
+     * Sets how long execute() waits for space when the queue is full before the task is rejected.
+     * The default of -1 waits indefinitely, which blocks the caller for as long as the pool is saturated.
+     *
+     * @param timeoutMillis The maximum wait in milliseconds, 0 to reject immediately, or -1 to wait indefinitely.
+     */
+    public void setSubmitTimeoutMillis(long timeoutMillis) {
+        this.submitTimeoutMillis = timeoutMillis < 0 ? -1 : timeoutMillis;
+    }
+
+    /**
+     * Returns how long execute() waits for space in a full queue, or -1 if it waits indefinitely.
+     */
+    public long getSubmitTimeoutMillis() {
+        return submitTimeoutMillis;
+    }
+
+    /**
+     * Installs an AdmissionPolicy that can reject tasks while the pool is running, for example when it is
+     * overloaded. Rejected tasks go to the RejectionHandler. Pass null to accept every task again.
+     *
+     * @param policy The policy, or null for none.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy policy) {
+        if (policy != null && policy.usesQueueWait()) {
+            setQueueWaitTracking(true);
+        }
+        this.admissionPolicy = policy;
+    }
+
+    /**
+     * Returns the installed AdmissionPolicy, or null if every task is accepted.
+     */
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    /**
+     * Enables or disables queue-wait tracking for plain Runnables.
+     *
+     * Futures returned by submit() always record how long they waited in the queue. A plain Runnable has
+     * nowhere to keep its enqueue time, so with tracking enabled it is wrapped in a small holder object
+     * when it is submitted. Tracking is off by default so that execute() does not allocate. While it is
+     * enabled, remove() cannot find plain Runnables that were wrapped.
+     *
+     * @param enabled Whether plain Runnables should be wrapped to record their queue wait.
+     */
+    public void setQueueWaitTracking(boolean enabled) {
+        this.queueWaitTracking = enabled;
+    }
+
+    /**
+     * Adds an interceptor that is called around every task the pool runs from now on.
+     * Interceptors are called in the order they were added.
+     *
+     * @param interceptor The interceptor to add.
+     */
+    public void addInterceptor(TaskInterceptor interceptor) {
+        if (interceptor == null) throw new NullPointerException("interceptor");
+        synchronized (interceptorLock) {
+            TaskInterceptor[] current = interceptors;
+            TaskInterceptor[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = interceptor;
+            interceptors = updated;
+        }
+    }
+
+    /**
+     * Removes an interceptor. Tasks that are already running may still be reported to it.
+     *
+     * @param interceptor The interceptor to remove.
+     * @return true if the interceptor was registered.
+     */
+    public boolean removeInterceptor(TaskInterceptor interceptor) {
+        synchronized (interceptorLock) {
+            TaskInterceptor[] current = interceptors;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == interceptor) {
+                    TaskInterceptor[] updated = new TaskInterceptor[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    interceptors = updated.length == 0 ? NO_INTERCEPTORS : updated;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the registered interceptors, in the order they are called.
+     */
+    public List<TaskInterceptor> getInterceptors() {
+        return List.of(interceptors);
+    }
+
+    /**
+     * Registers a ContextCarrier. Tasks submitted from now on capture its context in the submitting thread and
+     * run with it restored, including tasks submitted with a key, to a TaskGroup, scheduled, or forked.
+     * A periodic task keeps the context it was scheduled with. With no carriers registered, submitting and
+     * running a task costs nothing extra.
+     *
+     * @param carrier The carrier to register.
+     */
+    public void addContextCarrier(ContextCarrier<?> carrier) {
+        if (carrier == null) throw new NullPointerException("carrier");
+        contextPropagation.add(carrier);
+    }
+
+    /**
+     * Removes a ContextCarrier. Tasks that were submitted before still restore its context when they run.
+     *
+     * @param carrier The carrier to remove.
+     * @return true if the carrier was registered.
+     */
+    public boolean removeContextCarrier(ContextCarrier<?> carrier) {
+        return contextPropagation.remove(carrier);
+    }
+
+    /**
+     * Returns the registered context carriers, in the order they are restored.
+     */
+    public List<ContextCarrier<?>> getContextCarriers() {
+        return contextPropagation.getCarriers();
+    }
+
+    /**
+     * Attaches the calling thread's context to a task submitted through a path that does not queue it
+     * directly, such as a TaskGroup.
+     *
+     * @return The task, or a wrapper carrying the context if it is a plain Runnable.
+     */
+    Runnable captureContext(Runnable task) {
+        return contextPropagation.capture(task);
+    }
+
+    /**
+     * Returns the registered interceptors without copying, for the workers. Must not be modified.
+     */
+    TaskInterceptor[] interceptors() {
+        return interceptors;
+    }
+
+    /**
+     * Registers this pool's statistics with the platform MBean server.
+     *
+     * @param name The value of the name key in the MBean's ObjectName.
+     * @return The ObjectName the pool was registered under.
+     * @throws IllegalStateException If registration fails, for example because the name is taken.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.brendanddev.threadpool:type=CustomThreadPool,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ThreadPoolMXBeanAdapter(this), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register MBean for pool " + name, e);
+        }
+    }
+
+    /**
+     * Returns the current number of worker threads, busy or idle.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the largest number of worker threads that have ever been alive at the same time.
+     */
+    public int getLargestPoolSize() {
+        synchronized (workers) {
+            return largestPoolSize;
+        }
+    }
+
+    /**
+     * Returns the number of workers kept alive even when idle.
+     */
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    /**
+     * Returns the maximum number of workers the pool may grow to.
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * Sets the number of workers kept alive even when idle. If it grows and tasks are queued, workers are
+     * started for them right away; otherwise the pool grows as tasks are submitted. If it shrinks, the
+     * workers above the new core size retire once they have been idle for the keep-alive time.
+     *
+     * @param corePoolSize The new core size, at most the maximum size.
+     */
+    public void setCorePoolSize(int corePoolSize) {
+        synchronized (workers) {
+            if (corePoolSize < 0 || corePoolSize > maximumPoolSize) {
+                throw new IllegalArgumentException("Invalid core size: core=" + corePoolSize
+                        + ", max=" + maximumPoolSize);
+            }
+            int added = corePoolSize - this.corePoolSize;
+            this.corePoolSize = corePoolSize;
+            for (int i = Math.min(added, taskQueue.size()); i > 0; i--) {
+                if (!addWorker(true)) break;
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of workers. If the pool is larger than the new maximum, idle workers retire
+     * right away and busy workers once they finish their current task.
+     *
+     * @param maximumPoolSize The new maximum size, at least 1 and at least the core size.
+     */
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        synchronized (workers) {
+            if (maximumPoolSize <= 0 || maximumPoolSize < corePoolSize) {
+                throw new IllegalArgumentException("Invalid maximum size: core=" + corePoolSize
+                        + ", max=" + maximumPoolSize);
+            }
+            this.maximumPoolSize = maximumPoolSize;
+            if (poolSize > maximumPoolSize) {
+                for (WorkerThread worker : workers) {
+                    worker.wakeIfIdle();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets a HillClimbingController size the pool, replacing any controller set before.
+     *
+     * A thread from the pool's thread factory calls the controller once per sample interval and sets both
+     * the core and the maximum size to the size it chooses, so the controller takes over from the pool's own
+     * growth between the two. Its recent decisions are included in getStats(). The controller is stopped
+     * when the pool shuts down.
+     *
+     * @param controller The controller to use, or null to stop resizing and keep the current size.
+     */
+    public void setSizeController(HillClimbingController controller) {
+        synchronized (workers) {
+            if (sizeControllerThread != null) {
+                sizeControllerThread.interrupt();
+                sizeControllerThread = null;
+            }
+            sizeController = controller;
+            if (controller == null || isShutdown()) return;
+            Thread thread = threadFactory.newThread(() -> runSizeController(controller));
+            thread.setName(thread.getName() + "-sizer");
+            thread.setDaemon(true);
+            sizeControllerThread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the HillClimbingController sizing the pool, or null if there is none.
+     */
+    public HillClimbingController getSizeController() {
+        synchronized (workers) {
+            return sizeController;
+        }
+    }
+
+    /**
+     * Lets a StallWatchdog watch the pool's workers, replacing any watchdog set before.
+     *
+     * A thread from the pool's thread factory calls the watchdog once per check interval. If the watchdog
+     * compensates for stalled tasks, the pool may run that many workers above its maximum size until they
+     * finish. The watchdog is stopped when the pool shuts down.
+     *
+     * @param watchdog The watchdog to use, or null to stop watching.
+     */
+    public void setStallWatchdog(StallWatchdog watchdog) {
+        synchronized (workers) {
+            stopStallWatchdog();
+            setCompensatingWorkerCount(0);
+            stallWatchdog = watchdog;
+            if (watchdog == null || isShutdown()) return;
+            Thread thread = threadFactory.newThread(() -> runStallWatchdog(watchdog));
+            thread.setName(thread.getName() + "-watchdog");
+            thread.setDaemon(true);
+            stallWatchdogThread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the StallWatchdog watching the pool, or null if there is none.
+     */
+    public StallWatchdog getStallWatchdog() {
+        synchronized (workers) {
+            return stallWatchdog;
+        }
+    }
+
+    /**
+     * Returns the number of workers the pool may currently run above its maximum size to make up for stalled
+     * tasks, as decided by its StallWatchdog.
+     */
+    public int getCompensatingWorkerCount() {
+        return compensatingWorkerCount;
+    }
+
+    /**
+     * Sets how many workers the pool may run above its maximum size. Raising it starts the extra workers right
+     * away; lowering it retires idle workers above the new limit, and busy ones once they finish their task.
+     */
+    void setCompensatingWorkerCount(int count) {
+        synchronized (workers) {
+            int added = count - compensatingWorkerCount;
+            compensatingWorkerCount = count;
+            for (int i = 0; i < added; i++) {
+                if (!addWorker(false)) break;
+            }
+            if (poolSize > maximumPoolSize + count) {
+                for (WorkerThread worker : workers) {
+                    worker.wakeIfIdle();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the pool's current workers.
+     */
+    WorkerThread[] getWorkerSnapshot() {
+        synchronized (workers) {
+            return workers.toArray(new WorkerThread[0]);
+        }
+    }
+
+    /**
+     * Returns how long a worker above the core size may stay idle before it retires, in milliseconds.
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Returns the total number of worker threads the pool has started.
+     */
+    public long getStartedWorkerCount() {
+        synchronized (workers) {
+            return startedWorkerCount;
+        }
+    }
+
+    /**
+     * Returns the number of worker threads that retired after exceeding the keep-alive time, or because the
+     * maximum size was lowered.
+     */
+    public long getRetiredWorkerCount() {
+        synchronized (workers) {
+            return retiredWorkerCount;
+        }
+    }
+
+    /**
+     * Sets the maximum number of tasks a worker takes from the queue each time it visits it.
+     *
+     * With a batch size above 1, a worker that receives a task also drains up to batchSize - 1 more with
+     * TaskQueue.drainTo() and runs them before going back to the queue. This cuts the per-task queue overhead
+     * of very small tasks, at the cost of those tasks being held by one worker instead of being available
+     * to idle ones. Tasks held this way when the pool is stopped with shutdownNow() are not returned.
+     *
+     * @param batchSize The maximum number of tasks per queue visit, 1 to disable batching.
+     */
+    public void setWorkerBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        this.workerBatchSize = batchSize;
+    }
+
+    /**
+     * Returns the maximum number of tasks a worker takes from the queue each time it visits it.
+     */
+    public int getWorkerBatchSize() {
+        return workerBatchSize;
+    }
+
+    /**
+     * Sets what idle workers do while the queue is empty before they block on it, with no limit on the
+     * number of workers doing so.
+     *
+     * @param strategy The idle strategy, for example IdleStrategies.BUSY_SPIN or IdleStrategies.backoff(...).
+     */
+    public void setIdleStrategy(IdleStrategy strategy) {
+        setIdleStrategy(strategy, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sets what idle workers do while the queue is empty, and keeps at most hotSpinners of them doing it.
+     *
+     * The first hotSpinners workers to go idle follow the strategy, so they are ready to pick up the next task
+     * without being woken, and every other idle worker blocks on the queue straight away. This bounds the CPU
+     * spent on idle workers to about hotSpinners cores. Only the core workers spin: while the pool is above
+     * its core size, idle workers block so that they can retire after the keep-alive time.
+     *
+     * @param strategy The idle strategy, or IdleStrategies.BLOCKING to always block.
+     * @param hotSpinners The maximum number of workers following the strategy at the same time.
+     */
+    public void setIdleStrategy(IdleStrategy strategy, int hotSpinners) {
+        if (strategy == null) throw new NullPointerException("strategy");
+        if (hotSpinners < 0) throw new IllegalArgumentException("Hot spinners must not be negative: " + hotSpinners);
+        this.hotSpinners = hotSpinners;
+        this.idleStrategy = strategy;
+    }
+
+    /**
+     * Returns what idle workers do before they block on the queue.
+     */
+    public IdleStrategy getIdleStrategy() {
+        return idleStrategy;
+    }
+
+    /**
+     * Returns the maximum number of workers that follow the idle strategy at the same time.
+     */
+    public int getHotSpinners() {
+        return hotSpinners;
+    }
+
+    /**
+     * Returns the number of idle workers currently following the idle strategy instead of blocking.
+     */
+    public int getSpinningWorkerCount() {
+        return spinningWorkerCount.get();
+    }
+
+    /**
+     * Returns the TaskQueue used by the thread pool.
+     */
+    public TaskQueue getTaskQueue() {
+        return taskQueue;
+    }
+
+    /**
+     * Creates a timer for the task and adds it to the timing wheel, or rejects it if the pool is shut down.
+     *
+     * @param periodNanos Positive for a fixed rate, negative for a fixed delay, 0 for a one-shot task.
+     */
+    private <V> ScheduledTaskFuture<V> scheduleTimer(Callable<V> task, long delayMillis, long periodNanos) {
+        TimingWheel wheel = timingWheel();
+        long triggerNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        ScheduledTaskFuture<V> future = new ScheduledTaskFuture<>(task, this, wheel, triggerNanos, periodNanos);
+        contextPropagation.capture(future);
+        AdmissionPolicy policy = admissionPolicy;
+        if (isShutdown() || (policy != null && !policy.admit(future, this)) || !wheel.schedule(future)) {
+            reject(future);
+        }
+        return future;
+    }
+
+    /**
+     * Schedules a one-shot task created by the pool itself, such as a BatchingExecutor's flush. Unlike schedule(),
+     * the task does not capture the caller's context and is not subject to the AdmissionPolicy.
+     *
+     * @return false if the pool has been shut down and the task was not scheduled.
+     */
+    boolean scheduleInternal(Runnable task, long delayMillis) {
+        TimingWheel wheel = timingWheel();
+        long triggerNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        ScheduledTaskFuture<?> future = new ScheduledTaskFuture<>(TaskFuture.callable(task), this, wheel,
+                triggerNanos, 0);
+        return !isShutdown() && wheel.schedule(future);
+    }
+
+    /**
+     * Hands a task the pool accepted before shutdown() to the workers without waiting for space. A task that
+     * does not fit in the full TaskQueue is kept aside, and the workers run it once the queue is empty.
+     * Called by shutdown() while holding the workers monitor, so the pool cannot be stopped meanwhile.
+     */
+    void executeOnShutdown(Runnable task) {
+        Runnable queued = track(task, System.nanoTime(), false);
+        boolean offered;
+        try {
+            offered = taskQueue.offer(queued, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) shutdownOverflow.add(queued);
+        metrics.recordSubmitted(submittedCount(queued));
+    }
+
+    /**
+     * Takes a task that shutdown() kept aside because the TaskQueue was full. Polled by workers once the
+     * queue is empty.
+     *
+     * @return The task, or null if there is none.
+     */
+    Runnable pollShutdownOverflow() {
+        return shutdownOverflow.poll();
+    }
+
+    /**
+     * Returns whether tasks are waiting in the TaskQueue, or kept aside for the workers by shutdown().
+     */
+    private boolean hasQueuedTasks() {
+        return taskQueue.size() > 0 || !shutdownOverflow.isEmpty();
+    }
+
+    /**
+     * Forgets a BatchingExecutor that has been closed.
+     */
+    void batchingExecutorClosed(BatchingExecutor executor) {
+        batchingExecutors.remove(executor);
+    }
+
+    /**
+     * Returns the timing wheel, creating it and starting its ticker thread on first use.
+     */
+    private TimingWheel timingWheel() {
+        TimingWheel wheel = timingWheel;
+        if (wheel != null) return wheel;
+        synchronized (workers) {
+            if (timingWheel == null) {
+                wheel = new TimingWheel(this, TimingWheel.DEFAULT_TICK_NANOS);
+                Thread ticker = threadFactory.newThread(wheel);
+                ticker.setName(ticker.getName() + "-timer");
+                if (isShutdown()) {
+                    // Nothing can be scheduled any more, the wheel is only returned so the caller can reject
+                    return wheel;
+                }
+                wheel.start(ticker);
+                timingWheel = wheel;
+            }
+            return timingWheel;
+        }
+    }
+
+    /**
+     * Stops the timing wheel, if one was started. Must be called while holding the workers monitor.
+     */
+    private void stopTimingWheel() {
+        if (timingWheel != null) timingWheel.stop();
+    }
+
+    /**
+     * Stops the size controller's thread, if one was started. Must be called while holding the workers monitor.
+     */
+    private void stopSizeController() {
+        if (sizeControllerThread != null) {
+            sizeControllerThread.interrupt();
+            sizeControllerThread = null;
+        }
+    }
+
+    /**
+     * Stops the stall watchdog's thread, if one was started. Must be called while holding the workers monitor.
+     */
+    private void stopStallWatchdog() {
+        if (stallWatchdogThread != null) {
+            stallWatchdogThread.interrupt();
+            stallWatchdogThread = null;
+        }
+    }
+
+    /**
+     * Body of the stall watchdog's thread: checks the workers once per check interval, until the watchdog is
+     * replaced or the pool shuts down.
+     */
+    private void runStallWatchdog(StallWatchdog watchdog) {
+        try {
+            while (true) {
+                synchronized (workers) {
+                    if (stallWatchdog != watchdog || isShutdown()) return;
+                }
+                watchdog.check(this, System.nanoTime());
+                Thread.sleep(watchdog.getCheckIntervalMillis());
+            }
+        } catch (InterruptedException e) {
+            // Replaced or shut down
+        }
+    }
+
+    /**
+     * Body of the size controller's thread: evaluates the controller once per sample interval and applies the
+     * size it chooses, until the controller is replaced or the pool shuts down.
+     */
+    private void runSizeController(HillClimbingController controller) {
+        try {
+            int size = maximumPoolSize;
+            while (true) {
+                int target = controller.evaluate(getStats(), size, System.nanoTime());
+                synchronized (workers) {
+                    if (sizeController != controller || isShutdown()) return;
+                    if (target != maximumPoolSize || target != corePoolSize) {
+                        // Keep core <= max at every step
+                        if (target > maximumPoolSize) {
+                            setMaximumPoolSize(target);
+                            setCorePoolSize(target);
+                        } else {
+                            setCorePoolSize(target);
+                            setMaximumPoolSize(target);
+                        }
+                    }
+                }
+                size = target;
+                Thread.sleep(controller.getSampleIntervalMillis());
+            }
+        } catch (InterruptedException e) {
+            // Replaced or shut down
+        }
+    }
+
+    /**
+     * Hands a scheduled task that is due to the TaskQueue. Called by the timing wheel's ticker thread, which
+     * must not wait for space: one full queue would otherwise hold up every other timer.
+     *
+     * @return false if the pool has been shut down or the queue is full, and the task was not queued.
+     */
+    boolean executeScheduled(ScheduledTaskFuture<?> task) {
+        // Timers were admitted when they were scheduled
+        return enqueueTask(task, 0, false);
+    }
+
+    /**
+     * Hands a task created by the pool itself, such as a keyed lane's mailbox, to the TaskQueue. The
+     * AdmissionPolicy and submit timeout do not apply, as the tasks inside were already accepted.
+     *
+     * @param block Whether to wait for space if the queue is full.
+     * @return false if the pool has been shut down, or the queue was full and block was false.
+     */
+    boolean executeInternal(Runnable task, boolean block) {
+        return enqueueTask(task, block ? -1 : 0, false);
+    }
+
+    /**
+     * Adds a task to the TaskQueue and makes sure a worker is available to run it.
+     *
+     * @param timeoutMillis How long to wait for space in a full queue, or a negative value to wait indefinitely.
+     * @param checkAdmission Whether the AdmissionPolicy, if any, must accept the task.
+     * @return false if the task was not queued, because the pool is shut down, the AdmissionPolicy refused it,
+     *         the queue stayed full or the caller was interrupted.
+     */
+    private boolean enqueueTask(Runnable task, long timeoutMillis, boolean checkAdmission) {
+        if (isShutdown()) return false;
+        AdmissionPolicy policy = admissionPolicy;
+        if (checkAdmission && policy != null && !policy.admit(task, this)) return false;
+
+        return enqueueTracked(track(task, System.nanoTime(), checkAdmission), timeoutMillis);
+    }
+
+    /**
+     * Adds a task that track() has already prepared to the TaskQueue and makes sure a worker is available to
+     * run it.
+     *
+     * @param timeoutMillis How long to wait for space in a full queue, or a negative value to wait indefinitely.
+     * @return false if the task was not queued, because the pool is shut down, the queue stayed full or the
+     *         caller was interrupted.
+     */
+    private boolean enqueueTracked(Runnable queued, long timeoutMillis) {
+        if (isShutdown()) return false;
+        try {
+            if (timeoutMillis < 0) {
+                taskQueue.enqueue(queued);
+            } else if (!taskQueue.offer(queued, timeoutMillis)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        // Shut down while the task was being queued: take it back unless a worker already has it
+        if (isShutdown() && taskQueue.remove(queued)) return false;
+        metrics.recordSubmitted(submittedCount(queued));
+        sampleQueueDepth();
+        ensureWorkers();
+        return true;
+    }
+
+    /**
+     * Applies DISCARD_OLDEST_POLICY to a task the queue refused: discards the oldest queued task, cancelling it
+     * if it is a future, and queues the task in its place with the wrappers it was given at submission. If
+     * another producer takes the freed space first, the next oldest task is discarded, up to
+     * DISCARD_OLDEST_ATTEMPTS times.
+     *
+     * Tasks are only discarded while the queue is full. A lock-free queue can refuse a task while it has room,
+     * when a slot is halfway through being taken or filled by another thread; the task is then offered again
+     * once that thread has had a chance to finish, rather than discarding a task for space that is already free.
+     *
+     * @return false if no room could be made, because the pool is shut down, only the pool's internal tasks are
+     *         queued or the attempts ran out. The task must then be rejected.
+     */
+    private boolean discardOldestAndEnqueue(Runnable task) {
+        Runnable queued = track(task, System.nanoTime(), true);
+        for (int attempt = 0; attempt < DISCARD_OLDEST_ATTEMPTS; attempt++) {
+            if (isShutdown()) return false;
+            Runnable oldest = isQueueFull() ? pollOldestUserTask() : null;
+            if (oldest != null) {
+                metrics.recordRejected();
+                Runnable original = unwrap(oldest);
+                if (original instanceof Future) {
+                    ((Future<?>) original).cancel(false);
+                }
+            }
+            if (enqueueTracked(queued, 0)) return true;
+            if (oldest == null) Thread.yield();
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the TaskQueue holds as many tasks as it can. Queues that do not report their capacity
+     * are taken to be full whenever they refuse a task.
+     */
+    private boolean isQueueFull() {
+        int capacity = taskQueue.capacity();
+        return capacity == Integer.MAX_VALUE || taskQueue.size() >= capacity;
+    }
+
+    /**
+     * Takes the oldest task off the queue that was submitted by a caller. Keyed lane mailboxes, task group
+     * dispatch tokens and batches are put back at the tail, as discarding them would strand the tasks they
+     * hold or leave their scheduler waiting for them.
+     *
+     * @return The task, or null if none was found among the first DISCARD_OLDEST_SCAN queued tasks.
+     */
+    private Runnable pollOldestUserTask() {
+        List<Runnable> skipped = null;
+        Runnable found = null;
+        for (int i = 0; i < DISCARD_OLDEST_SCAN; i++) {
+            Runnable task = taskQueue.poll();
+            if (task == null) break;
+            if (!isInternalTask(task)) {
+                found = task;
+                break;
+            }
+            if (skipped == null) skipped = new ArrayList<>();
+            skipped.add(task);
+        }
+        if (skipped != null) {
+            // Waits for space rather than dropping them, even after a shutdown or an interrupt
+            boolean interrupted = false;
+            for (Runnable task : skipped) {
+                while (true) {
+                    try {
+                        taskQueue.enqueue(task);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of submitted tasks a queued task stands for in the metrics. Keyed and task group tasks
+     * are counted when they are submitted, so their mailboxes and dispatch tokens count for none, and a batch
+     * counts for each of its tasks.
+     */
+    private static int submittedCount(Runnable queued) {
+        Runnable original = unwrap(queued);
+        if (original instanceof BatchingExecutor.Batch) return ((BatchingExecutor.Batch) original).size();
+        return isInternalTask(original) ? 0 : 1;
+    }
+
+    /**
+     * Returns whether a queued task was created by the pool to run other tasks.
+     */
+    static boolean isInternalTask(Runnable task) {
+        Runnable original = unwrap(task);
+        return original instanceof KeyedLanes.Mailbox
+                || original instanceof FairShareScheduler.Dispatch
+                || original instanceof BatchingExecutor.Batch;
+    }
+
+    /**
+     * Counts a rejected task and hands it to the RejectionHandler.
+     */
+    void reject(Runnable task) {
+        reject(task, rejectionHandler);
+    }
+
+    /**
+     * Records a rejected task and passes it to the given RejectionHandler, e.g. that of a TaskGroup.
+     */
+    void reject(Runnable task, RejectionHandler handler) {
+        metrics.recordRejected();
+        handler.reject(unwrap(task), this);
+    }
+
+    /**
+     * Checks whether the pool accepts a new task: it is not shut down and the AdmissionPolicy, if any, admits it.
+     */
+    boolean admit(Runnable task) {
+        AdmissionPolicy policy = admissionPolicy;
+        return !isShutdown() && (policy == null || policy.admit(task, this));
+    }
+
+    /**
+     * Stamps the enqueue time on tasks that can carry it, wrapping plain Runnables if queue-wait tracking
+     * is enabled. Tasks submitted by a caller also capture the caller's context.
+     *
+     * @param submitted Whether the task comes from a caller rather than from the pool itself.
+     * @return The task to put in the queue.
+     */
+    private Runnable track(Runnable task, long now, boolean submitted) {
+        if (submitted) task = contextPropagation.capture(task);
+        if (task instanceof TrackedTask) {
+            ((TrackedTask) task).enqueueNanos = now;
+            return task;
+        }
+        if (queueWaitTracking && task != null) {
+            TimedRunnable timed = new TimedRunnable(task);
+            timed.enqueueNanos = now;
+            return timed;
+        }
+        return task;
+    }
+
+    /**
+     * Returns the task as it was submitted, removing any wrapper added by the pool.
+     */
+    static Runnable unwrap(Runnable task) {
+        return task instanceof TrackedTask ? ((TrackedTask) task).unwrap() : task;
+    }
+
+    /**
+     * Records the current queue depth for a small fraction of submissions.
+     */
+    private void sampleQueueDepth() {
+        if ((ThreadLocalRandom.current().nextInt() & QUEUE_DEPTH_SAMPLE_MASK) == 0) {
+            metrics.recordQueueDepth(taskQueue.size());
+        }
+    }
+
+    /**
+     * Starts a worker if the pool is below its core size, or if every worker is busy and the pool is
+     * below its maximum size. Called after each task is enqueued.
+     *
+     * @return true if a worker was started.
+     */
+    private boolean ensureWorkers() {
+        int size = poolSize;
+        if (size < corePoolSize) {
+            return addWorker(true);
+        } else if (size < maximumPoolSize && idleWorkerCount.get() == 0) {
+            return addWorker(false);
+        }
+        return false;
+    }
+
+    /**
+     * Creates and starts a new worker thread through the thread factory.
+     *
+     * @param core Whether the worker counts against the core size (true) or the maximum size (false).
+     * @return true if a worker was started.
+     */
+    private boolean addWorker(boolean core) {
+        synchronized (workers) {
+            // After shutdown, workers are only started to finish tasks that are still queued
+            if (isStopped() || (isShutdown() && !hasQueuedTasks())) return false;
+            if (poolSize >= (core ? corePoolSize : maximumPoolSize + compensatingWorkerCount)) return false;
+
+            WorkerThread worker = new WorkerThread(this);
+            worker.setCore(core);
+            Thread t = threadFactory.newThread(worker);
+            worker.setThread(t);
+            worker.setId(startedWorkerCount);
+            workers.add(worker);
+            poolSize = workers.size();
+            largestPoolSize = Math.max(largestPoolSize, poolSize);
+            startedWorkerCount++;
+            t.start();
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether an idle worker should use a timed wait and retire when it expires.
+     */
+    boolean isIdleTimeoutAllowed() {
+        return poolSize > corePoolSize;
+    }
+
+    /**
+     * Removes an idle worker whose keep-alive time expired, unless doing so would take the pool below
+     * its core size. The worker still calls workerExited() on its way out.
+     *
+     * @param worker The idle worker asking to retire.
+     * @return true if the worker was removed and should exit.
+     */
+    boolean retireIdleWorker(WorkerThread worker) {
+        synchronized (workers) {
+            if (poolSize <= corePoolSize) return false;
+            workers.remove(worker);
+            poolSize = workers.size();
+            retiredWorkerCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Called by a worker between tasks and when woken from waiting. Removes the worker if the pool has more
+     * workers than its maximum size plus its compensating workers, e.g. after the maximum size was lowered.
+     *
+     * @return true if the worker was removed and must exit.
+     */
+    boolean retireExcessWorker(WorkerThread worker) {
+        if (poolSize <= maximumPoolSize + compensatingWorkerCount) return false;
+        synchronized (workers) {
+            if (poolSize <= maximumPoolSize + compensatingWorkerCount) return false;
+            workers.remove(worker);
+            poolSize = workers.size();
+            retiredWorkerCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Called by every worker when its run loop ends, for whatever reason.
+     * Starts a replacement if tasks were left behind with no worker to run them, and signals
+     * termination once the last worker of a shut down pool is gone.
+     *
+     * @param worker The worker that is exiting.
+     */
+    void workerExited(WorkerThread worker) {
+        synchronized (workers) {
+            workers.remove(worker);
+            poolSize = workers.size();
+            // Tasks may have been enqueued while the last worker was retiring
+            if (poolSize == 0 && !isStopped() && hasQueuedTasks()) {
+                addWorker(false);
+            }
+            tryTerminate();
+        }
+    }
+
+    /**
+     * Puts back tasks that an exiting worker had drained but not run, so they are not lost.
+     * Tasks are dropped if the pool has been stopped with shutdownNow().
+     *
+     * @param tasks The tasks to hand back to the queue.
+     */
+    void requeue(Collection<Runnable> tasks) {
+        if (isStopped() || tasks.isEmpty()) return;
+        try {
+            taskQueue.enqueueAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the pool as terminated and releases threads in awaitTermination() once it has been shut down,
+     * no workers remain and no queued tasks are left to run. Must be called while holding the workers monitor.
+     */
+    private void tryTerminate() {
+        int state = runState.get();
+        if (state == RUNNING || state == TERMINATED || poolSize > 0) return;
+        if (state == SHUTDOWN && hasQueuedTasks()) return;
+        runState.set(TERMINATED);
+        termination.countDown();
+    }
+
+    /**
+     * Moves the lifecycle forward to the target state, leaving it alone if it is already there or further.
+     * Must be called while holding the workers monitor.
+     */
+    private void advanceRunState(int target) {
+        int state;
+        while ((state = runState.get()) < target) {
+            if (runState.compareAndSet(state, target)) return;
+        }
+    }
+
+    /**
+     * Called by a worker just before it waits on the queue for its next task.
+     */
+    void workerIdle() {
+        idleWorkerCount.incrementAndGet();
+    }
+
+    /**
+     * Called by a worker once its wait on the queue has returned.
+     */
+    void workerBusy() {
+        idleWorkerCount.decrementAndGet();
+    }
+
+    /**
+     * Returns whether a forked subtask would be picked up soon: a worker is idle, or the pool is still below
+     * its core size and will start one. Read without locking by the parallel loops before every chunk.
+     */
+    boolean hasIdleCapacity() {
+        return idleWorkerCount.get() > 0 || poolSize < corePoolSize;
+    }
+
+    /**
+     * Called by an idle worker that wants to follow the idle strategy instead of blocking.
+     *
+     * @return true if the worker may spin, in which case it must call stopSpinning() when it is done.
+     */
+    boolean tryStartSpinning() {
+        int limit = hotSpinners;
+        for (int n = spinningWorkerCount.get(); n < limit; n = spinningWorkerCount.get()) {
+            if (spinningWorkerCount.compareAndSet(n, n + 1)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by a worker that stops following the idle strategy.
+     */
+    void stopSpinning() {
+        spinningWorkerCount.decrementAndGet();
+    }
+
+
 }
@@ -0,0 +1,329 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskGroup;
+import com.brendanddev.threadpool.WorkerThread;
+import com.brendanddev.threadpool.policies.RejectionHandler;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+
+/**
+ * Schedules the tasks of a pool's TaskGroups with deficit round robin.
+ *
+ * Groups that have queued tasks and are below their concurrency limit form a ring. The group at the head of the
+ * ring is served while its deficit is positive; once it is used up, the group is topped up by its quantum
+ * (QUANTUM_NANOS times its weight) and moves to the tail. A task's cost is its execution time: the group is
+ * charged an estimate when the task is dispatched, so that workers picking tasks at the same moment already see
+ * the charge, and the difference to the measured time when it completes. A group leaving the ring because its
+ * queue ran empty gives up any credit it had left but keeps its debt, so an idle group cannot save up time.
+ * Each dispatch is a few O(1) steps under the scheduler's monitor, whatever the number of groups and tasks.
+ *
+ * Group tasks do not sit in the TaskQueue themselves. Instead the scheduler keeps up to one dispatch token per
+ * worker in the queue, each of which runs the next task chosen by the ring when a worker gets to it. Group tasks
+ * therefore also share the workers fairly with tasks submitted to the pool directly, and a group's burst takes
+ * up room in its own queue only.
+ */
+final class FairShareScheduler {
+
+    // Processing time a group of weight 1 receives per round of the ring
+    static final long QUANTUM_NANOS = 1_000_000;
+
+    // Charged for the first task of a group, before its tasks have been timed
+    static final long INITIAL_COST_ESTIMATE_NANOS = 50_000;
+
+    // Debt beyond this many rounds is forgiven, bounding how often a pick can go around the ring
+    private static final int MAX_DEBT_ROUNDS = 16;
+
+    private final CustomThreadPool pool;
+    private final Dispatch dispatch = new Dispatch();
+    private final List<TaskGroup> groups = new CopyOnWriteArrayList<>();
+
+    // Guarded by this monitor
+    private final ArrayDeque<TaskGroup> ring = new ArrayDeque<>();
+    private int scheduledTokens;
+    private int runningTasks;
+
+    FairShareScheduler(CustomThreadPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a group that is scheduled by this scheduler.
+     */
+    TaskGroup createGroup(String name, int weight, int maxConcurrency, int queueCapacity,
+                          RejectionHandler rejectionHandler) {
+        TaskGroup group = new TaskGroup(this, name, weight, maxConcurrency, queueCapacity, rejectionHandler);
+        groups.add(group);
+        return group;
+    }
+
+    /**
+     * Queues a task in its group and makes sure a dispatch token is on its way to run it. A group whose
+     * RejectionHandler is DISCARD_OLDEST_POLICY makes room by discarding the oldest task in its own queue, as
+     * its tasks are not in the TaskQueue.
+     */
+    void execute(TaskGroup group, Runnable task) {
+        boolean accepted = false;
+        boolean token = false;
+        Runnable queued = null;
+        Runnable discarded = null;
+        if (pool.admit(task)) {
+            queued = pool.captureContext(task);
+            synchronized (this) {
+                if (group.tasks.size() >= group.getQueueCapacity()
+                        && group.getRejectionHandler() == RejectionHandlers.DISCARD_OLDEST_POLICY) {
+                    discarded = group.tasks.poll();
+                    group.rejectedCount++;
+                }
+                if (group.tasks.size() < group.getQueueCapacity()) {
+                    group.tasks.add(queued);
+                    enterRing(group);
+                    token = reserveToken();
+                    accepted = true;
+                }
+            }
+        }
+        if (discarded != null) {
+            // Counted like a task the pool discards from the TaskQueue
+            pool.getMetrics().recordRejected();
+            Runnable original = CustomThreadPool.unwrap(discarded);
+            if (original instanceof Future) {
+                ((Future<?>) original).cancel(false);
+            }
+        }
+        // A worker of this pool never waits for space, as that could leave every worker blocked
+        WorkerThread worker = WorkerThread.current();
+        boolean block = worker == null || worker.getPool() != pool;
+        if (accepted && token && !pool.executeInternal(dispatch, block)) {
+            // Shut down since the check above, or the queue is full and the caller is one of the pool's
+            // workers: run the queued group tasks here
+            synchronized (this) {
+                releaseToken();
+            }
+            runTurns();
+        }
+        // Dispatches stop once the pool is stopped, and shutdownNow() may have collected the group's tasks
+        // before this one was added: take it back unless somebody else already has it
+        if (accepted && pool.isStopped()) {
+            synchronized (this) {
+                accepted = !takeBack(group, queued);
+            }
+        }
+        if (!accepted) {
+            synchronized (this) {
+                group.rejectedCount++;
+            }
+            pool.reject(task, group.getRejectionHandler());
+            return;
+        }
+        pool.getMetrics().recordSubmitted(1);
+    }
+
+    /**
+     * Moves the queued tasks of every group into the given list. Used by shutdownNow().
+     */
+    void drainTo(Collection<Runnable> remaining) {
+        synchronized (this) {
+            for (TaskGroup group : groups) {
+                for (Runnable task : group.tasks) {
+                    remaining.add(CustomThreadPool.unwrap(task));
+                }
+                group.tasks.clear();
+            }
+            ring.clear();
+        }
+    }
+
+    /**
+     * Returns the groups created on this scheduler.
+     */
+    List<TaskGroup> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the pool the groups run on.
+     */
+    CustomThreadPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Runs the tasks chosen by the ring one at a time, for as long as no dispatch token can be queued to run
+     * the next one. Normally that is a single task; during shutdown, or if the TaskQueue is full, the calling
+     * thread keeps going until the ring is empty.
+     */
+    private void runTurns() {
+        while (!pool.isStopped()) {
+            TaskGroup group;
+            Runnable task;
+            long charged;
+            boolean token;
+            synchronized (this) {
+                group = nextGroup();
+                if (group == null) return;
+                charged = group.costEstimateNanos;
+                task = take(group, charged);
+                token = reserveToken();
+            }
+            // Let another worker start on the next task while this one runs
+            if (token) queueToken();
+
+            long start = System.nanoTime();
+            try {
+                WorkerThread.runHeldTask(pool, task);
+            } catch (Throwable t) {
+                // Errors: the group's accounting must be completed. Report it like a worker does
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, t);
+            }
+            long cost = System.nanoTime() - start;
+
+            synchronized (this) {
+                complete(group, charged, cost);
+                token = reserveToken();
+            }
+            if (!token || queueToken()) return;
+        }
+    }
+
+    /**
+     * Queues a reserved dispatch token without blocking.
+     *
+     * @return false if the token could not be queued and its reservation was released.
+     */
+    private boolean queueToken() {
+        if (pool.executeInternal(dispatch, false)) return true;
+        synchronized (this) {
+            releaseToken();
+        }
+        return false;
+    }
+
+    /**
+     * Reserves a dispatch token if the ring has work and fewer tokens are queued than the pool has workers.
+     * Must be called while holding this monitor.
+     *
+     * A token that leaves the TaskQueue without running, e.g. because user code polled the queue, is never
+     * released. Once no group task is running and the TaskQueue is empty, no counted token can still be on
+     * its way to run, so the count is reconciled to zero instead of leaving the ring starved. Tokens taken by
+     * a worker but not yet started may then be counted too few, which only lets a few extra tokens through.
+     */
+    private boolean reserveToken() {
+        if (ring.isEmpty()) return false;
+        if (scheduledTokens >= pool.getMaximumPoolSize()) {
+            if (runningTasks > 0 || pool.getQueueSize() > 0) return false;
+            scheduledTokens = 0;
+        }
+        scheduledTokens++;
+        return true;
+    }
+
+    /**
+     * Releases the reservation of a token that has run or could not be queued. Must be called while holding
+     * this monitor.
+     */
+    private void releaseToken() {
+        // May already be zero after reserveToken() reconciled the count
+        if (scheduledTokens > 0) scheduledTokens--;
+    }
+
+    /**
+     * Returns the group to serve next, topping up and rotating groups that have used up their deficit.
+     * Must be called while holding this monitor.
+     */
+    private TaskGroup nextGroup() {
+        TaskGroup group;
+        while ((group = ring.peekFirst()) != null) {
+            if (group.deficitNanos > 0) return group;
+            group.deficitNanos += quantum(group);
+            ring.addLast(ring.pollFirst());
+        }
+        return null;
+    }
+
+    /**
+     * Takes the next task of the group at the head of the ring and charges it, removing the group from the ring
+     * if it has no more tasks or has reached its concurrency limit. Must be called while holding this monitor.
+     */
+    private Runnable take(TaskGroup group, long charged) {
+        Runnable task = group.tasks.poll();
+        group.running++;
+        runningTasks++;
+        group.deficitNanos -= charged;
+        if (group.tasks.isEmpty() || group.running >= group.getMaxConcurrency()) {
+            ring.pollFirst();
+            group.inRing = false;
+            if (group.tasks.isEmpty() && group.deficitNanos > 0) group.deficitNanos = 0;
+        }
+        return task;
+    }
+
+    /**
+     * Settles the cost of a finished task and puts its group back in the ring if it can run more tasks.
+     * Must be called while holding this monitor.
+     */
+    private void complete(TaskGroup group, long charged, long cost) {
+        group.running--;
+        runningTasks--;
+        group.completedCount++;
+        group.deficitNanos = Math.max(group.deficitNanos - (cost - charged), -MAX_DEBT_ROUNDS * quantum(group));
+        group.costEstimateNanos += (cost - group.costEstimateNanos) >> 3;
+        enterRing(group);
+    }
+
+    /**
+     * Removes a queued task from its group, and the group from the ring if it has no tasks left.
+     * Must be called while holding this monitor.
+     *
+     * @return false if the task is no longer queued.
+     */
+    private boolean takeBack(TaskGroup group, Runnable queued) {
+        if (!group.tasks.remove(queued)) return false;
+        if (group.tasks.isEmpty() && group.inRing) {
+            ring.remove(group);
+            group.inRing = false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the group to the tail of the ring if it has queued tasks and is below its concurrency limit.
+     * Must be called while holding this monitor.
+     */
+    private void enterRing(TaskGroup group) {
+        if (!group.inRing && !group.tasks.isEmpty() && group.running < group.getMaxConcurrency()) {
+            ring.addLast(group);
+            group.inRing = true;
+        }
+    }
+
+    private static long quantum(TaskGroup group) {
+        return QUANTUM_NANOS * group.getWeight();
+    }
+
+    /**
+     * The task queued in the TaskQueue on behalf of the groups. All tokens are the same object.
+     */
+    final class Dispatch implements Runnable {
+
+        @Override
+        public void run() {
+            synchronized (FairShareScheduler.this) {
+                releaseToken();
+            }
+            runTurns();
+        }
+
+        @Override
+        public String toString() {
+            return "FairShareScheduler.Dispatch";
+        }
+    }
+
+}
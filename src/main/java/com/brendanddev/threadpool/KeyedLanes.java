@@ -0,0 +1,189 @@
+package com.brendanddev.threadpool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs tasks submitted with CustomThreadPool.execute(key, task) one at a time and in submission order per key,
+ * while tasks for different keys run in parallel on the pool's workers.
+ *
+ * Each active key has a mailbox: a lock-free queue of its pending tasks plus a count. The submitter that takes
+ * the count from 0 to 1 schedules the mailbox on the pool as an ordinary task; the worker that runs it then owns
+ * the key and runs its tasks one after another, so tasks of the same key never overlap. When the count drops
+ * back to 0 the mailbox retires itself and is removed from the map, so only keys with pending work take up
+ * memory, however many distinct keys are used over time. A submitter that finds a retired mailbox removes it
+ * and creates a fresh one.
+ *
+ * A mailbox runs at most BATCH_SIZE tasks per turn and is then queued again, so that one busy key cannot hold on
+ * to a worker while other work is waiting. With a FIFO TaskQueue it goes back to the end of the queue. A
+ * WorkStealingTaskQueue pushes it onto the running worker's own deque instead, which that worker takes from
+ * first, newest task first: the key usually keeps its worker, and only idle workers stealing from the deque
+ * let other work overtake it.
+ */
+final class KeyedLanes {
+
+    private static final int BATCH_SIZE = 64;
+
+    // Count value of a mailbox that has been removed, or is about to be removed, from the map
+    private static final int RETIRED = -1;
+
+    private final CustomThreadPool pool;
+    private final ConcurrentHashMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    KeyedLanes(CustomThreadPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Adds a task to the mailbox of its key, scheduling the mailbox if it was idle.
+     *
+     * @param key The key whose tasks must run in order.
+     * @param task The task to run.
+     * @return false if the pool was stopped before anyone took the task, which the caller must then reject.
+     */
+    boolean execute(Object key, Runnable task) {
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(key, Mailbox::new);
+            int previous = mailbox.reserve();
+            if (previous == RETIRED) {
+                // Lost the race with the mailbox retiring, replace it
+                mailboxes.remove(key, mailbox);
+                continue;
+            }
+            mailbox.tasks.offer(task);
+            // A worker of this pool never waits for space, as that could leave every worker blocked
+            WorkerThread worker = WorkerThread.current();
+            boolean block = worker == null || worker.getPool() != pool;
+            if (previous == 0 && !pool.executeInternal(mailbox, block)) {
+                // Shut down between the caller's check and now, or the queue is full and the caller is one of
+                // the pool's workers: finish the key's tasks here
+                mailbox.run();
+            }
+            // Mailboxes stop once the pool is stopped, and shutdownNow() may have collected the tasks before
+            // this one was added: take it back unless somebody else already has it
+            return !pool.isStopped() || !mailbox.tasks.remove(task);
+        }
+    }
+
+    /**
+     * Moves the tasks of every mailbox into the given list. Used by shutdownNow(); mailboxes that are running
+     * stop once they notice that the pool is stopped.
+     */
+    void drainTo(Collection<Runnable> remaining) {
+        for (Mailbox mailbox : mailboxes.values()) {
+            Runnable task;
+            while ((task = mailbox.tasks.poll()) != null) {
+                remaining.add(CustomThreadPool.unwrap(task));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys that currently have pending or running tasks.
+     */
+    int size() {
+        return mailboxes.size();
+    }
+
+    /**
+     * The pending tasks of one key. Scheduled on the pool as a task whenever it has work.
+     */
+    final class Mailbox implements Runnable {
+
+        private final Object key;
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        // Number of tasks reserved by submitters and not yet run, or RETIRED
+        private volatile int count;
+
+        Mailbox(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * Reserves a place for one task.
+         *
+         * @return The previous count, or RETIRED if the mailbox can no longer be used.
+         */
+        int reserve() {
+            int c;
+            do {
+                c = count;
+                if (c == RETIRED) return RETIRED;
+            } while (!COUNT.compareAndSet(this, c, c + 1));
+            return c;
+        }
+
+        /**
+         * Runs the key's tasks in order until the mailbox is empty or its turn is over.
+         */
+        @Override
+        public void run() {
+            if (!runBatch()) reschedule();
+        }
+
+        /**
+         * @return false if the mailbox still owns pending tasks and must be scheduled again.
+         */
+        private boolean runBatch() {
+            for (int ran = 0; ; ) {
+                if (pool.isStopped()) return true;
+
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    // A submitter has reserved a place but not published its task yet, come back later
+                    return false;
+                }
+
+                try {
+                    WorkerThread.runHeldTask(pool, task);
+                } catch (Throwable t) {
+                    // Errors: the key's remaining tasks must not be stranded. Report it like a worker does
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, t);
+                }
+
+                if ((int) COUNT.getAndAdd(this, -1) == 1) {
+                    // Empty: retire unless a submitter got in first, in which case it has scheduled a new turn
+                    if (COUNT.compareAndSet(this, 0, RETIRED)) {
+                        mailboxes.remove(key, this);
+                    }
+                    return true;
+                }
+
+                if (++ran >= BATCH_SIZE) return false;
+            }
+        }
+
+        /**
+         * Puts the mailbox back on the TaskQueue. If the queue is full, or the pool no longer accepts
+         * tasks during a graceful shutdown, the current worker keeps running it instead; a worker never blocks
+         * here, as that could leave every worker waiting for space in the queue.
+         */
+        private void reschedule() {
+            while (!pool.isStopped() && !pool.executeInternal(this, false)) {
+                if (runBatch()) return;
+                Thread.onSpinWait();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Mailbox[" + key + "]";
+        }
+    }
+
+    private static final VarHandle COUNT;
+
+    static {
+        try {
+            COUNT = MethodHandles.lookup().findVarHandle(Mailbox.class, "count", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+}
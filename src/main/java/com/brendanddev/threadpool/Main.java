@@ -24,7 +24,7 @@ public class Main {
 
     /**
      * Demonstrates a normal (graceful) shutdown where all tasks complete execution before the pool terminates.
-     * THe pool enqueues poison pills to signal workers to stop after finishing their current work.
+     * Idle workers are woken and exit once the queue is empty, busy workers after finishing their current work.
      */
     private static void demoGracefulShutdown() {
         CustomThreadPool threadPool = new CustomThreadPool(3);
@@ -47,7 +47,7 @@ public class Main {
             // Wait up to 5 seconds for all workers to finish
             boolean terminated = threadPool.awaitTermination(5000);
             System.out.println("Thread pool terminated: " + terminated);
-            System.out.println("Final completed tasks: " + threadPool.getCompletedTaskCount());
+            System.out.println("Final stats: " + threadPool.getStats());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -0,0 +1,247 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.affinity.CpuAffinity;
+import com.brendanddev.threadpool.affinity.CpuSet;
+import com.brendanddev.threadpool.affinity.NumaTopology;
+import com.brendanddev.threadpool.policies.RejectionHandler;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+
+/**
+ * A thread pool made of one CustomThreadPool per NUMA node, so tasks run on the node they were submitted from.
+ *
+ * Each node has its own TaskQueue and its own workers, and the core workers are pinned to the CPUs of that node.
+ * A task is routed to the submitting thread's home node:
+ * - For a worker of this pool, the home node is the node it belongs to, so work spawned by a task stays on the
+ *   same socket as the data it was produced from.
+ * - For any other thread, the home node is looked up from the CPU it is running on the first time it submits,
+ *   and then cached for that thread. A thread that is not pinned may later migrate to another node; its tasks
+ *   keep going to the cached node. If the CPU cannot be determined, threads are spread over the nodes in
+ *   round-robin order.
+ *
+ * Nodes do not take work from each other. execute(task, node) places a task on a specific node.
+ */
+public class NumaThreadPool {
+
+    private final NumaTopology topology;
+    private final CustomThreadPool[] nodePools;
+    private final CustomThreadFactory[] nodeFactories;
+
+    // Home node of the calling thread, set for workers when they start and for other threads on first use
+    private final ThreadLocal<Integer> homeNode = new ThreadLocal<>();
+    private final AtomicInteger nextNode = new AtomicInteger(0);
+
+    /**
+     * Constructs a NumaThreadPool with a sub-pool for each node of the detected topology, each using an
+     * unbounded LinkedTaskQueue.
+     *
+     * @param threadsPerNode The number of worker threads on each node.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     */
+    public NumaThreadPool(int threadsPerNode, RejectionHandler handler) {
+        this(NumaTopology.detect(), threadsPerNode, handler, LinkedTaskQueue::new);
+    }
+
+    /**
+     * Constructs a NumaThreadPool with a sub-pool for each node of the given topology.
+     *
+     * @param topology The nodes to create sub-pools for.
+     * @param threadsPerNode The number of worker threads on each node.
+     * @param handler The RejectionHandler invoked for tasks that cannot be accepted.
+     * @param queueFactory Creates the TaskQueue of each node.
+     */
+    public NumaThreadPool(NumaTopology topology, int threadsPerNode, RejectionHandler handler,
+                          Supplier<? extends TaskQueue> queueFactory) {
+        this.topology = topology;
+        int nodes = topology.getNodeCount();
+        this.nodePools = new CustomThreadPool[nodes];
+        this.nodeFactories = new CustomThreadFactory[nodes];
+        for (int node = 0; node < nodes; node++) {
+            CustomThreadFactory factory = new NodeThreadFactory(node, topology.getCpus(node));
+            nodeFactories[node] = factory;
+            nodePools[node] = new CustomThreadPool(threadsPerNode, factory, handler, queueFactory.get());
+        }
+    }
+
+    /**
+     * Submits a task to the calling thread's home node.
+     *
+     * @param task The Runnable task to be executed.
+     */
+    public void execute(Runnable task) {
+        nodePools[currentNode()].execute(task);
+    }
+
+    /**
+     * Submits a task to the given node.
+     *
+     * @param task The Runnable task to be executed.
+     * @param node The node index, from 0 to getNodeCount() - 1.
+     */
+    public void execute(Runnable task, int node) {
+        nodePools[node].execute(task);
+    }
+
+    /**
+     * Submits a Callable to the calling thread's home node.
+     *
+     * @param task The Callable task to be executed.
+     * @return A TaskFuture representing the pending result of the task.
+     */
+    public <V> TaskFuture<V> submit(Callable<V> task) {
+        return nodePools[currentNode()].submit(task);
+    }
+
+    /**
+     * Submits a Runnable to the calling thread's home node.
+     *
+     * @param task The Runnable task to be executed.
+     * @return A TaskFuture that completes with null once the task has run.
+     */
+    public TaskFuture<?> submit(Runnable task) {
+        return nodePools[currentNode()].submit(task);
+    }
+
+    /**
+     * Returns the home node of the calling thread, assigning one on first use.
+     */
+    public int currentNode() {
+        Integer node = homeNode.get();
+        if (node == null) {
+            int n = topology.nodeOf(CpuAffinity.currentCpu());
+            if (n < 0) {
+                n = Math.floorMod(nextNode.getAndIncrement(), nodePools.length);
+            }
+            node = n;
+            homeNode.set(node);
+        }
+        return node;
+    }
+
+    /**
+     * Registers a ContextCarrier on every node, see CustomThreadPool.addContextCarrier().
+     *
+     * @param carrier The carrier to register.
+     */
+    public void addContextCarrier(ContextCarrier<?> carrier) {
+        for (CustomThreadPool pool : nodePools) {
+            pool.addContextCarrier(carrier);
+        }
+    }
+
+    /**
+     * Initiates a graceful shutdown of every node.
+     */
+    public void shutdown() {
+        for (CustomThreadPool pool : nodePools) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Stops every node and returns the tasks that were not executed.
+     *
+     * @return The tasks that were submitted but not yet executed, across all nodes.
+     */
+    public List<Runnable> shutdownNow() {
+        List<Runnable> remainingTasks = new ArrayList<>();
+        for (CustomThreadPool pool : nodePools) {
+            remainingTasks.addAll(pool.shutdownNow());
+        }
+        return remainingTasks;
+    }
+
+    /**
+     * Blocks until every node has terminated, or the timeout expires.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return true if every node terminated, false if the timeout elapsed first.
+     */
+    public boolean awaitTermination(long timeoutMillis) {
+        long endTime = System.currentTimeMillis() + timeoutMillis;
+        for (CustomThreadPool pool : nodePools) {
+            if (!pool.awaitTermination(Math.max(0, endTime - System.currentTimeMillis()))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the pool has been shut down.
+     */
+    public boolean isShutdown() {
+        return nodePools[0].isShutdown();
+    }
+
+    /**
+     * Checks if every node has terminated.
+     */
+    public boolean isTerminated() {
+        for (CustomThreadPool pool : nodePools) {
+            if (!pool.isTerminated()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of nodes, and therefore of sub-pools.
+     */
+    public int getNodeCount() {
+        return nodePools.length;
+    }
+
+    /**
+     * Returns the sub-pool of the given node, for example to read its metrics.
+     *
+     * @param node The node index, from 0 to getNodeCount() - 1.
+     */
+    public CustomThreadPool getNodePool(int node) {
+        return nodePools[node];
+    }
+
+    /**
+     * Returns how many workers of the given node were pinned to its CPUs.
+     *
+     * @param node The node index, from 0 to getNodeCount() - 1.
+     */
+    public int getPinnedWorkerCount(int node) {
+        return nodeFactories[node].getPinnedThreadCount();
+    }
+
+    /**
+     * Returns the topology the pool was created for.
+     */
+    public NumaTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Creates the workers of one node: pins the core workers to the node's CPUs and makes the node the home node
+     * of every worker.
+     */
+    private class NodeThreadFactory extends CustomThreadFactory {
+
+        private final int node;
+
+        NodeThreadFactory(int node, CpuSet cpus) {
+            super("Node" + node + "-Worker", false, Thread.NORM_PRIORITY, cpus);
+            this.node = node;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return newThread(() -> {
+                homeNode.set(node);
+                r.run();
+            }, isCoreWorker(r));
+        }
+    }
+
+}
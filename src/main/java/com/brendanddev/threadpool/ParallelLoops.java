@@ -0,0 +1,164 @@
+package com.brendanddev.threadpool;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.RecursiveTask;
+
+/**
+ * The recursive tasks behind CustomThreadPool.parallelFor() and parallelReduce().
+ *
+ * Ranges are split lazily instead of up front. A task works through its range one chunk at a time, and before
+ * each chunk checks whether the pool has an idle worker. If it does, the task forks off the upper half of what
+ * is left for that worker to pick up; otherwise it runs the chunk itself. A busy pool therefore runs a loop
+ * with a handful of tasks, while an idle pool splits it as far as it has workers to feed, and an uneven loop
+ * keeps being split wherever the work turns out to be. Forked halves are joined most recent first, which
+ * is also the order in which they are most likely to still be queued.
+ */
+final class ParallelLoops {
+
+    // The default chunk size aims for this many chunks per worker
+    private static final int CHUNKS_PER_WORKER = 64;
+
+    private ParallelLoops() {}
+
+    /**
+     * Returns the chunk size for a range of the given size.
+     *
+     * @param minChunk The smallest chunk the caller allows, or 0 to choose one from the range and pool size.
+     */
+    static int chunkSize(CustomThreadPool pool, int size, int minChunk) {
+        if (minChunk > 0) return minChunk;
+        return Math.max(1, size / (CHUNKS_PER_WORKER * pool.getMaximumPoolSize()));
+    }
+
+    /**
+     * Runs body for every index of a range, splitting the range while the pool has idle workers.
+     */
+    static final class ForTask extends RecursiveTask<Void> {
+        private final CustomThreadPool pool;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final IntConsumer body;
+
+        // Next forked sibling in the forking task's list
+        private ForTask next;
+
+        ForTask(CustomThreadPool pool, int from, int to, int chunk, IntConsumer body) {
+            this.pool = pool;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.body = body;
+        }
+
+        @Override
+        protected Void compute() {
+            int lo = from;
+            int hi = to;
+            ForTask forked = null;
+            try {
+                while (hi - lo > chunk) {
+                    if (pool.hasIdleCapacity()) {
+                        int mid = (lo + hi) >>> 1;
+                        ForTask right = new ForTask(pool, mid, hi, chunk, body);
+                        right.next = forked;
+                        forked = right;
+                        right.fork(pool);
+                        hi = mid;
+                    } else {
+                        for (int end = lo + chunk; lo < end; lo++) {
+                            body.accept(lo);
+                        }
+                    }
+                }
+                for (; lo < hi; lo++) {
+                    body.accept(lo);
+                }
+                for (ForTask f = forked; f != null; f = f.next) {
+                    f.join();
+                }
+            } catch (Throwable t) {
+                // Skip the parts that have not started, the loop has failed anyway
+                for (ForTask f = forked; f != null; f = f.next) {
+                    f.cancel(false);
+                }
+                throw t;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Folds a range of a list into a result, splitting the range while the pool has idle workers and combining
+     * the results of the parts in list order.
+     */
+    static final class ReduceTask<T, R> extends RecursiveTask<R> {
+        private final CustomThreadPool pool;
+        private final List<? extends T> list;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final R identity;
+        private final BiFunction<R, ? super T, R> accumulator;
+        private final BinaryOperator<R> combiner;
+
+        // Next forked sibling in the forking task's list
+        private ReduceTask<T, R> next;
+
+        ReduceTask(CustomThreadPool pool, List<? extends T> list, int from, int to, int chunk, R identity,
+                   BiFunction<R, ? super T, R> accumulator, BinaryOperator<R> combiner) {
+            this.pool = pool;
+            this.list = list;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            int lo = from;
+            int hi = to;
+            R result = identity;
+            ReduceTask<T, R> forked = null;
+            try {
+                while (hi - lo > chunk) {
+                    if (pool.hasIdleCapacity()) {
+                        int mid = (lo + hi) >>> 1;
+                        ReduceTask<T, R> right = new ReduceTask<>(pool, list, mid, hi, chunk, identity,
+                                accumulator, combiner);
+                        right.next = forked;
+                        forked = right;
+                        right.fork(pool);
+                        hi = mid;
+                    } else {
+                        for (int end = lo + chunk; lo < end; lo++) {
+                            result = accumulator.apply(result, list.get(lo));
+                        }
+                    }
+                }
+                for (; lo < hi; lo++) {
+                    result = accumulator.apply(result, list.get(lo));
+                }
+                // This task covered the front of its range, and each fork lies just before the previous one
+                for (ReduceTask<T, R> f = forked; f != null; f = f.next) {
+                    result = combiner.apply(result, f.join());
+                }
+            } catch (Throwable t) {
+                for (ReduceTask<T, R> f = forked; f != null; f = f.next) {
+                    f.cancel(false);
+                }
+                throw t;
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.brendanddev.threadpool;
+
+/**
+ * Implemented by tasks that carry a scheduling priority.
+ *
+ * Priority-aware queues such as PriorityTaskQueue run tasks with a higher priority first; other queues
+ * ignore it. Tasks submitted with CustomThreadPool.execute(task, priority) or submit(task, priority)
+ * implement this interface, and tasks can also implement it themselves.
+ */
+public interface Prioritized {
+
+    /**
+     * Returns the task's priority. Higher values are more urgent.
+     */
+    int getPriority();
+
+    /**
+     * Returns the priority of a queued task, or the given default if it has none. Looks through the wrappers the
+     * pool may put around a submitted task, e.g. to record its enqueue time or carry its context, so a task that
+     * implements Prioritized keeps its priority however it was queued.
+     *
+     * @param task The queued task.
+     * @param defaultPriority The priority of tasks that carry none.
+     */
+    static int priorityOf(Runnable task, int defaultPriority) {
+        while (true) {
+            if (task instanceof Prioritized) return ((Prioritized) task).getPriority();
+            if (!(task instanceof TrackedTask)) return defaultPriority;
+            Runnable inner = ((TrackedTask) task).unwrap();
+            if (inner == task) return defaultPriority;
+            task = inner;
+        }
+    }
+
+}
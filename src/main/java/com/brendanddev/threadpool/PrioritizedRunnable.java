@@ -0,0 +1,31 @@
+package com.brendanddev.threadpool;
+
+/**
+ * Attaches a priority to a plain Runnable submitted with CustomThreadPool.execute(task, priority).
+ */
+final class PrioritizedRunnable extends TrackedTask implements Prioritized {
+
+    private final Runnable task;
+    private final int priority;
+
+    PrioritizedRunnable(Runnable task, int priority) {
+        this.task = task;
+        this.priority = priority;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    Runnable unwrap() {
+        return task;
+    }
+
+}
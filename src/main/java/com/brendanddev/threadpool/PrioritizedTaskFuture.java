@@ -0,0 +1,23 @@
+package com.brendanddev.threadpool;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A TaskFuture with a priority, created by CustomThreadPool.submit(task, priority).
+ * The future itself is the queued task, so cancellation still removes it from the queue.
+ */
+final class PrioritizedTaskFuture<V> extends TaskFuture<V> implements Prioritized {
+
+    private final int priority;
+
+    PrioritizedTaskFuture(Callable<V> callable, CustomThreadPool pool, int priority) {
+        super(callable, pool);
+        this.priority = priority;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.brendanddev.threadpool;
+
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+
+/**
+ * A task that splits itself into subtasks, runs them on a CustomThreadPool and combines their results.
+ *
+ * Subclasses implement compute(), typically by forking some subtasks, computing one part directly and then
+ * joining the forked subtasks:
+ * <pre>
+ *   protected Long compute() {
+ *       if (hi - lo &lt;= THRESHOLD) return sumDirectly();
+ *       SumTask right = new SumTask(mid, hi);
+ *       right.fork();
+ *       long left = new SumTask(lo, mid).compute();
+ *       return left + right.join();
+ *   }
+ * </pre>
+ *
+ * A worker that calls join() never just blocks while the subtask is pending. If the subtask is still queued
+ * it takes it back and runs it itself; otherwise it runs other queued tasks of the pool (its own batched tasks
+ * first) until the subtask completes, and only parks when there is nothing left to run. Recursive tasks can
+ * therefore nest to any depth on a pool of any size without every worker ending up waiting on the others.
+ * A thread outside the pool that joins a task simply waits for it, and a task that was never forked is run by
+ * the thread that joins it.
+ *
+ * Helping runs whatever the queue holds, including unrelated tasks, on the joining worker's stack. Tasks
+ * that block for a long time delay the join they are helping; such tasks are better kept on a separate pool.
+ *
+ * @param <V> The result type of the task.
+ */
+public abstract class RecursiveTask<V> extends TaskFuture<V> {
+
+    // Bounds for the timed parks of a joining worker that has nothing to help with
+    private static final long MIN_HELP_PARK_NANOS = 1_000;
+    private static final long MAX_HELP_PARK_NANOS = 1_000_000;
+
+    // The pool this task was forked to, or null if it has not been forked
+    private volatile CustomThreadPool forkPool;
+
+    /**
+     * Computes the result of this task, forking and joining subtasks as needed.
+     *
+     * @return The result of the task.
+     */
+    protected abstract V compute();
+
+    @Override
+    V call() {
+        return compute();
+    }
+
+    /**
+     * Queues this task on the pool of the calling worker, so that an idle worker can run it while the caller
+     * goes on with other work. If the queue is full or the pool is shut down, the task is run right away in
+     * the calling thread instead, so that forking never blocks or loses a subtask.
+     *
+     * @return This task, for chaining.
+     * @throws IllegalStateException If the caller is not a worker of a CustomThreadPool.
+     */
+    public final RecursiveTask<V> fork() {
+        WorkerThread worker = WorkerThread.current();
+        if (worker == null) {
+            throw new IllegalStateException("fork() must be called from a worker of a CustomThreadPool");
+        }
+        fork(worker.getPool());
+        return this;
+    }
+
+    /**
+     * Queues this task on the given pool, running it in the calling thread if the pool does not take it.
+     */
+    final void fork(CustomThreadPool pool) {
+        forkPool = pool;
+        pool.captureContext(this);
+        if (!pool.executeInternal(this, false)) {
+            run();
+        }
+    }
+
+    /**
+     * Submits this task to the given pool like any other task, subject to its admission and rejection policies.
+     */
+    final void submitTo(CustomThreadPool pool) {
+        forkPool = pool;
+        pool.execute(this);
+    }
+
+    /**
+     * Returns the result of the task once it is done, helping the pool run tasks in the meantime if the
+     * caller is one of its workers.
+     *
+     * Unlike get(), join() throws unchecked exceptions: the task's own RuntimeException or Error, or a
+     * CompletionException for anything else. Interrupts do not stop the join; the interrupt status is kept.
+     *
+     * @return The result of the task.
+     * @throws CancellationException If the task was cancelled.
+     */
+    public final V join() {
+        if (forkPool == null) {
+            // Never queued anywhere, so nobody else is going to run it
+            run();
+        }
+        if (!isDone()) {
+            WorkerThread worker = WorkerThread.current();
+            if (worker != null && worker.getPool() == forkPool) {
+                helpUntilDone(worker);
+            } else {
+                awaitUninterruptibly();
+            }
+        }
+        return reportJoin();
+    }
+
+    /**
+     * Runs this task in the calling thread and returns its result.
+     *
+     * @return The result of the task.
+     */
+    public final V invoke() {
+        run();
+        return join();
+    }
+
+    /**
+     * Forks every task but the first, runs the first in the calling thread and then joins the rest.
+     * Must be called from a worker of a CustomThreadPool.
+     *
+     * @param tasks The tasks to run.
+     */
+    public static void invokeAll(Collection<? extends RecursiveTask<?>> tasks) {
+        RecursiveTask<?> first = null;
+        for (RecursiveTask<?> task : tasks) {
+            if (first == null) {
+                first = task;
+            } else {
+                task.fork();
+            }
+        }
+        if (first == null) return;
+        first.invoke();
+        for (RecursiveTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Removes a cancelled task from the queue of the pool it was forked to.
+     */
+    @Override
+    void removeFromQueue() {
+        CustomThreadPool pool = forkPool;
+        if (pool != null) pool.remove(this);
+    }
+
+    /**
+     * Runs tasks of the worker's pool until this task is done: first this task itself if it is still
+     * queued, then anything the worker can take without blocking.
+     */
+    private void helpUntilDone(WorkerThread worker) {
+        if (worker.getPool().getTaskQueue().remove(this)) {
+            worker.runTask(this);
+            return;
+        }
+
+        boolean interrupted = false;
+        boolean waiting = false;
+        long parkNanos = MIN_HELP_PARK_NANOS;
+        while (!isDone()) {
+            Runnable task = worker.pollForHelp();
+            if (task != null) {
+                worker.runTask(task);
+                parkNanos = MIN_HELP_PARK_NANOS;
+                continue;
+            }
+
+            // Nothing to help with: wait to be unparked on completion, waking now and then to look for work
+            if (!waiting) {
+                addWaiter(Thread.currentThread());
+                waiting = true;
+                continue;
+            }
+            LockSupport.parkNanos(this, parkNanos);
+            parkNanos = Math.min(parkNanos * 2, MAX_HELP_PARK_NANOS);
+            if (Thread.interrupted()) interrupted = true;
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Waits for the task to complete without helping, keeping the interrupt status.
+     */
+    private void awaitUninterruptibly() {
+        boolean interrupted = false;
+        while (!isDone()) {
+            try {
+                get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | CancellationException e) {
+                // Done, reported by reportJoin()
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns the result of the completed task, rethrowing its failure unchecked.
+     */
+    private V reportJoin() {
+        try {
+            return get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new CompletionException(cause);
+        } catch (InterruptedException e) {
+            // Not reached, the task is done so get() does not wait
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+}
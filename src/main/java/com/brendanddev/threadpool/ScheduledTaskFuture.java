@@ -0,0 +1,114 @@
+package com.brendanddev.threadpool;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A TaskFuture for a delayed or periodic task, returned by CustomThreadPool.schedule(),
+ * scheduleAtFixedRate() and scheduleWithFixedDelay().
+ *
+ * The future is also the timer: it is linked directly into a bucket of the pool's TimingWheel while it waits,
+ * so a pending timer costs one object and cancelling it unlinks it in constant time. When it is due, the
+ * wheel hands it to the pool's TaskQueue like any other task.
+ *
+ * A periodic task runs until it is cancelled, throws an exception, or the pool is shut down. Its future only
+ * completes in those cases.
+ *
+ * @param <V> The result type of the task.
+ */
+public class ScheduledTaskFuture<V> extends TaskFuture<V> implements ScheduledFuture<V> {
+
+    private final TimingWheel wheel;
+
+    // Positive for fixed-rate, negative for fixed-delay, 0 for a one-shot task
+    private final long periodNanos;
+
+    // System.nanoTime() at which the task should next run
+    private volatile long triggerNanos;
+
+    // Whether the timer is waiting in the wheel rather than in the TaskQueue or running
+    volatile boolean inWheel;
+
+    // Wheel bookkeeping, only touched by the wheel's ticker thread
+    long deadlineTick;
+    TimingWheel.Bucket bucket;
+    ScheduledTaskFuture<?> prev;
+    ScheduledTaskFuture<?> next;
+
+    ScheduledTaskFuture(Callable<V> callable, CustomThreadPool pool, TimingWheel wheel,
+                        long triggerNanos, long periodNanos) {
+        super(callable, pool);
+        this.wheel = wheel;
+        this.triggerNanos = triggerNanos;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * Runs the task. A periodic task is then put back into the wheel for its next run.
+     */
+    @Override
+    public void run() {
+        if (periodNanos == 0) {
+            super.run();
+            return;
+        }
+        if (!runAndReset()) return;
+
+        triggerNanos = periodNanos > 0 ? triggerNanos + periodNanos : System.nanoTime() - periodNanos;
+        if (!wheel.schedule(this)) {
+            // The pool was shut down, there will be no next run
+            cancel(false);
+        }
+    }
+
+    /**
+     * Returns whether this task runs repeatedly.
+     */
+    public boolean isPeriodic() {
+        return periodNanos != 0;
+    }
+
+    /**
+     * A periodic task runs every period with the context captured when it was scheduled.
+     */
+    @Override
+    boolean keepsContext() {
+        return isPeriodic();
+    }
+
+    /**
+     * Returns the remaining delay until the task next runs, which is zero or negative once it is due.
+     */
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(triggerNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        if (other == this) return 0;
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the task should next run.
+     */
+    long getTriggerNanos() {
+        return triggerNanos;
+    }
+
+    /**
+     * Unlinks a cancelled timer from the wheel, or removes it from the TaskQueue if it was already handed over.
+     */
+    @Override
+    void removeFromQueue() {
+        if (inWheel) {
+            wheel.cancel(this);
+        } else {
+            super.removeFromQueue();
+        }
+    }
+
+}
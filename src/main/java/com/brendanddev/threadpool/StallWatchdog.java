@@ -0,0 +1,231 @@
+package com.brendanddev.threadpool;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.WorkerThread;
+import com.brendanddev.threadpool.metrics.StallReport;
+import com.brendanddev.threadpool.metrics.StalledTask;
+
+/**
+ * Watches a pool's workers for tasks that hang, so that a stuck task is noticed before throughput collapses.
+ *
+ * The watchdog is attached with CustomThreadPool.setStallWatchdog(), which runs check() on a thread of its own
+ * once per check interval. The workers only publish the start time of their current task with a release store,
+ * so the task path takes no lock and the watchdog reads the times without stopping anyone. On each check:
+ * - A task that has been running longer than the stall threshold is reported once, with its worker's stack
+ *   trace and thread state.
+ * - If every worker is busy, tasks are queued and no task has completed since the previous check, the pool is
+ *   reported as stalled, with the stacks of all workers.
+ * Whenever something is reported, the JVM is also asked for deadlocked threads, which marks workers waiting on
+ * each other's monitors or locks.
+ *
+ * Reports go to the optional listener, on the watchdog's thread, and the most recent are kept for getReports().
+ *
+ * With maxCompensatingWorkers above 0, the watchdog also keeps the pool's capacity up during a stall: while the
+ * pool is stalled it lets the pool start one more worker per check, through the pool's thread factory, up to the
+ * number of tasks past the threshold and to maxCompensatingWorkers. Once stalled tasks finish, the allowance
+ * shrinks to match and the extra workers retire as they finish their current task.
+ */
+public class StallWatchdog {
+
+    // Number of reports kept for getReports()
+    private static final int HISTORY = 32;
+
+    private final long stallThresholdNanos;
+    private final long checkIntervalMillis;
+    private final int maxCompensatingWorkers;
+    private final Consumer<StallReport> listener;
+
+    // Guarded by this monitor
+    private Map<WorkerThread, Long> reportedStarts = new HashMap<>();
+    private long lastCompletedCount = -1;
+    private boolean poolStalled;
+    private long stalledTaskCount;
+    private long poolStallCount;
+    private final ArrayDeque<StallReport> reports = new ArrayDeque<>();
+
+    /**
+     * Constructs a StallWatchdog that checks four times per threshold, only reports, and does not compensate.
+     *
+     * @param stallThresholdMillis How long a task may run before it is reported as stalled.
+     */
+    public StallWatchdog(long stallThresholdMillis) {
+        this(stallThresholdMillis, Math.max(10, stallThresholdMillis / 4), 0, null);
+    }
+
+    /**
+     * Constructs a StallWatchdog.
+     *
+     * @param stallThresholdMillis How long a task may run before it is reported as stalled.
+     * @param checkIntervalMillis How often the workers are checked.
+     * @param maxCompensatingWorkers How many workers the pool may start above its maximum size during a stall,
+     *                               0 to only report.
+     * @param listener Receives each report on the watchdog's thread, or null.
+     */
+    public StallWatchdog(long stallThresholdMillis, long checkIntervalMillis, int maxCompensatingWorkers,
+                         Consumer<StallReport> listener) {
+        if (stallThresholdMillis <= 0 || checkIntervalMillis <= 0 || maxCompensatingWorkers < 0) {
+            throw new IllegalArgumentException("Invalid watchdog settings: threshold=" + stallThresholdMillis
+                    + ", interval=" + checkIntervalMillis + ", maxCompensatingWorkers=" + maxCompensatingWorkers);
+        }
+        this.stallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(stallThresholdMillis);
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.maxCompensatingWorkers = maxCompensatingWorkers;
+        this.listener = listener;
+    }
+
+    /**
+     * Checks the pool's workers once. Called by the pool once per check interval.
+     *
+     * @param pool The pool being watched.
+     * @param nowNanos The current System.nanoTime().
+     */
+    void check(CustomThreadPool pool, long nowNanos) {
+        List<StallReport> found = new ArrayList<>(2);
+        synchronized (this) {
+            WorkerThread[] workers = pool.getWorkerSnapshot();
+            long completed = pool.getCompletedTaskCount();
+            int queueSize = pool.getQueueSize();
+
+            Map<WorkerThread, Long> stalledStarts = new HashMap<>();
+            List<WorkerThread> newlyStalled = new ArrayList<>();
+            int busy = 0;
+            for (WorkerThread worker : workers) {
+                long start = worker.getTaskStartNanos();
+                if (start == 0) continue;
+                busy++;
+                if (nowNanos - start < stallThresholdNanos) continue;
+                stalledStarts.put(worker, start);
+                // Each task is reported once, tasks are told apart by their start time
+                Long reported = reportedStarts.get(worker);
+                if (reported == null || reported != start) newlyStalled.add(worker);
+            }
+            reportedStarts = stalledStarts;
+
+            int compensating = pool.getCompensatingWorkerCount();
+            if (!newlyStalled.isEmpty()) {
+                stalledTaskCount += newlyStalled.size();
+                found.add(report(StallReport.Kind.TASK_STALLED, pool, newlyStalled, queueSize, compensating,
+                        nowNanos));
+            }
+
+            boolean stalled = workers.length > 0 && busy == workers.length && queueSize > 0
+                    && completed == lastCompletedCount;
+            lastCompletedCount = completed;
+            if (stalled && !poolStalled) {
+                poolStallCount++;
+                List<WorkerThread> running = new ArrayList<>(workers.length);
+                for (WorkerThread worker : workers) {
+                    running.add(worker);
+                }
+                found.add(report(StallReport.Kind.POOL_STALLED, pool, running, queueSize, compensating, nowNanos));
+            }
+            poolStalled = stalled;
+
+            if (maxCompensatingWorkers > 0) {
+                // Grow by one per stalled check, shrink as soon as stalled tasks finish
+                int target = stalled
+                        ? Math.min(maxCompensatingWorkers, Math.min(stalledStarts.size(), compensating + 1))
+                        : Math.min(compensating, stalledStarts.size());
+                if (target != compensating) pool.setCompensatingWorkerCount(target);
+            }
+
+            for (StallReport report : found) {
+                reports.addLast(report);
+                if (reports.size() > HISTORY) reports.removeFirst();
+            }
+        }
+
+        if (listener == null) return;
+        for (StallReport report : found) {
+            try {
+                listener.accept(report);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the most recent reports, oldest first.
+     */
+    public synchronized List<StallReport> getReports() {
+        return new ArrayList<>(reports);
+    }
+
+    /**
+     * Returns the number of tasks reported as stalled.
+     */
+    public synchronized long getStalledTaskCount() {
+        return stalledTaskCount;
+    }
+
+    /**
+     * Returns how often the whole pool was found stalled.
+     */
+    public synchronized long getPoolStallCount() {
+        return poolStallCount;
+    }
+
+    /**
+     * Returns how long a task may run before it is reported, in milliseconds.
+     */
+    public long getStallThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stallThresholdNanos);
+    }
+
+    /**
+     * Returns how often the pool should call check(), in milliseconds.
+     */
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    /**
+     * Returns how many workers the pool may start above its maximum size during a stall.
+     */
+    public int getMaxCompensatingWorkers() {
+        return maxCompensatingWorkers;
+    }
+
+    /**
+     * Captures the running tasks of the given workers, with their stacks, into a report.
+     */
+    private StallReport report(StallReport.Kind kind, CustomThreadPool pool, List<WorkerThread> workers,
+                               int queueSize, int compensating, long nowNanos) {
+        long[] deadlockedIds = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+        List<StalledTask> tasks = new ArrayList<>(workers.size());
+        for (WorkerThread worker : workers) {
+            long start = worker.getTaskStartNanos();
+            Runnable task = worker.getCurrentTask();
+            if (start == 0 || task == null) continue;
+            Thread thread = worker.getThread();
+            tasks.add(new StalledTask(thread.getName(), worker.getId(), taskType(task), nowNanos - start,
+                    thread.getState(), contains(deadlockedIds, thread.getId()), thread.getStackTrace()));
+        }
+        return new StallReport(System.currentTimeMillis(), kind, queueSize, pool.getPoolSize(), compensating,
+                tasks);
+    }
+
+    private static String taskType(Runnable task) {
+        return (task instanceof TrackedTask ? ((TrackedTask) task).taskType() : task.getClass()).getName();
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        if (ids == null) return false;
+        for (long candidate : ids) {
+            if (candidate == id) return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.brendanddev.threadpool;
+
+/**
+ * Describes a task being run by a worker, as seen by a TaskInterceptor.
+ *
+ * Each worker reuses one TaskExecution for all of its tasks so that tracing does not allocate per task;
+ * the values are only valid during the interceptor callback they are passed to. Times are System.nanoTime()
+ * readings.
+ */
+public final class TaskExecution {
+
+    private Runnable task;
+    private Class<?> taskType;
+    private long workerId;
+    private long sequence;
+    private long enqueueNanos;
+    private long startNanos;
+    private long endNanos;
+    private Throwable error;
+
+    /**
+     * Returns the task as it was submitted. For submit() this is the TaskFuture.
+     */
+    public Runnable getTask() {
+        return task;
+    }
+
+    /**
+     * Returns the class of the code the task runs: the Callable or Runnable given to submit(), the class of a
+     * RecursiveTask or ScheduledTaskFuture's task, or the class of a plain Runnable.
+     */
+    public Class<?> getTaskType() {
+        return taskType;
+    }
+
+    /**
+     * Returns the id of the worker running the task, unique within its pool.
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Returns how many tasks the worker ran before this one, which interceptors can use for sampling.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns when the task was enqueued, or 0 if the pool did not record it.
+     * Futures always record it; plain Runnables only with queue-wait tracking enabled.
+     */
+    public long getEnqueueNanos() {
+        return enqueueNanos;
+    }
+
+    /**
+     * Returns when the task started running.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Returns when the task finished, or 0 in beforeExecute().
+     */
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    /**
+     * Returns how long the task waited in the queue, or -1 if its enqueue time was not recorded.
+     */
+    public long getQueueWaitNanos() {
+        return enqueueNanos != 0 ? startNanos - enqueueNanos : -1;
+    }
+
+    /**
+     * Returns how long the task ran, or 0 in beforeExecute().
+     */
+    public long getExecutionNanos() {
+        return endNanos != 0 ? endNanos - startNanos : 0;
+    }
+
+    /**
+     * Returns the exception the task failed with, or null if it has not failed.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns whether the task failed.
+     */
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * Fills in a task that is about to run.
+     */
+    void begin(Runnable task, Class<?> taskType, long workerId, long sequence, long enqueueNanos, long startNanos) {
+        this.task = task;
+        this.taskType = taskType;
+        this.workerId = workerId;
+        this.sequence = sequence;
+        this.enqueueNanos = enqueueNanos;
+        this.startNanos = startNanos;
+        this.endNanos = 0;
+        this.error = null;
+    }
+
+    /**
+     * Records how the task ended.
+     */
+    void end(long endNanos, Throwable error) {
+        this.endNanos = endNanos;
+        this.error = error;
+    }
+
+    /**
+     * Drops the references to the task once the callbacks are done, so it can be collected.
+     */
+    void clear() {
+        this.task = null;
+        this.taskType = null;
+        this.error = null;
+    }
+
+}
@@ -0,0 +1,584 @@
+package com.brendanddev.threadpool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A lightweight, chainable Future returned by CustomThreadPool.submit().
+ *
+ * A TaskFuture is both the queued Runnable and the handle the caller keeps, so submitting a task costs a single
+ * wrapper object. The result or exception of the task is kept instead of being lost in the worker thread.
+ *
+ * Follow-on stages registered with thenApply(), thenAccept(), thenRun(), exceptionally() or whenComplete() are kept
+ * in a lock-free stack together with any threads blocked in get(). When the task completes, the completing
+ * thread (normally the worker that ran it) runs every stage directly, without another trip through the queue.
+ * Stages registered after completion run immediately in the registering thread.
+ *
+ * Cancelling a task that is still queued removes it from the pool's TaskQueue where the queue supports removal.
+ *
+ * @param <V> The result type of the task.
+ */
+public class TaskFuture<V> extends TrackedTask implements Future<V> {
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int COMPLETING = 2;
+    private static final int NORMAL = 3;
+    private static final int EXCEPTIONAL = 4;
+    private static final int CANCELLED = 5;
+    private static final int INTERRUPTING = 6;
+    private static final int INTERRUPTED = 7;
+
+    private static final VarHandle STATE;
+    private static final VarHandle STACK;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(TaskFuture.class, "state", int.class);
+            STACK = lookup.findVarHandle(TaskFuture.class, "stack", Completion.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile int state = NEW;
+    private Callable<V> callable;
+    private final CustomThreadPool pool;
+    private volatile Thread runner;
+
+    // Either the result or the Throwable, published by the write to state
+    private Object outcome;
+
+    // Treiber stack of dependent stages and blocked getters
+    private volatile Completion stack;
+
+    /**
+     * Constructs a TaskFuture that will run the given Callable when executed by the pool.
+     *
+     * @param callable The task to run.
+     * @param pool The pool the task is submitted to, used to remove the task from its queue on cancellation.
+     */
+    public TaskFuture(Callable<V> callable, CustomThreadPool pool) {
+        this.callable = callable;
+        this.pool = pool;
+    }
+
+    /**
+     * Constructs a TaskFuture without a task, to be completed with complete() or completeExceptionally().
+     */
+    public TaskFuture() {
+        this(null, null);
+    }
+
+    /**
+     * Runs the task and records its result or exception. Does nothing if the task was cancelled or already run.
+     */
+    @Override
+    public void run() {
+        if (!STATE.compareAndSet(this, NEW, RUNNING)) return;
+        runner = Thread.currentThread();
+        Object result;
+        int outcomeState;
+        try {
+            result = call();
+            outcomeState = NORMAL;
+        } catch (Throwable t) {
+            result = t;
+            outcomeState = EXCEPTIONAL;
+        } finally {
+            runner = null;
+        }
+        if (!finish(RUNNING, outcomeState, result)) awaitCancellationInterrupt();
+    }
+
+    /**
+     * Computes the result of the task. Runs the Callable given to the constructor unless a subclass computes
+     * the result itself.
+     */
+    V call() throws Exception {
+        return callable.call();
+    }
+
+    /**
+     * Runs the task without completing the future, so that it can be run again. Used for periodic tasks.
+     * If the task throws, the future completes exceptionally.
+     *
+     * @return true if the task ran normally and the future can be run again.
+     */
+    boolean runAndReset() {
+        if (!STATE.compareAndSet(this, NEW, RUNNING)) return false;
+        runner = Thread.currentThread();
+        try {
+            call();
+        } catch (Throwable t) {
+            runner = null;
+            if (!finish(RUNNING, EXCEPTIONAL, t)) awaitCancellationInterrupt();
+            return false;
+        }
+        runner = null;
+        // Fails if the task was cancelled while running
+        if (STATE.compareAndSet(this, RUNNING, NEW)) return true;
+        awaitCancellationInterrupt();
+        return false;
+    }
+
+    /**
+     * Waits until a cancel(true) that is interrupting this thread has done so, so that the interrupt lands
+     * while the thread is still running this task, where the worker clears it, and never in its next task.
+     */
+    private void awaitCancellationInterrupt() {
+        int s;
+        while ((s = state) == COMPLETING || s == INTERRUPTING) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Completes this future with a value if it is not already done.
+     *
+     * @param value The result value.
+     * @return true if this call completed the future.
+     */
+    public boolean complete(V value) {
+        return finish(NEW, NORMAL, value);
+    }
+
+    /**
+     * Completes this future with an exception if it is not already done.
+     *
+     * @param ex The exception the future fails with.
+     * @return true if this call completed the future.
+     */
+    public boolean completeExceptionally(Throwable ex) {
+        return finish(NEW, EXCEPTIONAL, ex);
+    }
+
+    /**
+     * Cancels the task. A task that is still queued is removed from the pool's TaskQueue; a running task is
+     * interrupted if mayInterruptIfRunning is true, and its result is discarded either way.
+     *
+     * @param mayInterruptIfRunning Whether the thread running the task should be interrupted.
+     * @return true if the task was cancelled, false if it had already completed.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        while (true) {
+            int s = state;
+            if (s >= COMPLETING) return false;
+            if (!STATE.compareAndSet(this, s, COMPLETING)) continue;
+
+            outcome = new CancellationException();
+            if (s == RUNNING && mayInterruptIfRunning) {
+                // The runner waits while INTERRUPTING, so the interrupt cannot reach its next task
+                state = INTERRUPTING;
+                try {
+                    Thread t = runner;
+                    if (t != null) t.interrupt();
+                } finally {
+                    state = INTERRUPTED;
+                }
+            } else {
+                state = CANCELLED;
+                // Task never started, take it out of the queue so it does not occupy a worker
+                if (s == NEW) removeFromQueue();
+            }
+            callable = null;
+            postComplete();
+            return true;
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state >= CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state >= NORMAL;
+    }
+
+    /**
+     * Returns whether the task completed by throwing an exception or by being cancelled.
+     */
+    public boolean isCompletedExceptionally() {
+        return state >= EXCEPTIONAL;
+    }
+
+    /**
+     * Waits if necessary for the task to complete, and then returns its result.
+     *
+     * @return The task's result.
+     * @throws CancellationException If the task was cancelled.
+     * @throws ExecutionException If the task threw an exception.
+     * @throws InterruptedException If the current thread was interrupted while waiting.
+     */
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        if (state < NORMAL) awaitDone(0);
+        return report();
+    }
+
+    /**
+     * Waits up to the given time for the task to complete, and then returns its result.
+     *
+     * @throws TimeoutException If the wait timed out.
+     */
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (state < NORMAL && !awaitDone(Math.max(1, unit.toNanos(timeout)))) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    /**
+     * Returns a new TaskFuture completed with the result of applying the function to this task's result.
+     * If this task fails, the returned future fails with the same exception.
+     *
+     * @param fn The function to apply.
+     */
+    public <U> TaskFuture<U> thenApply(Function<? super V, ? extends U> fn) {
+        TaskFuture<U> dest = new TaskFuture<>();
+        push(new Completion() {
+            @Override
+            void fire() {
+                if (propagateFailure(dest)) return;
+                try {
+                    dest.complete(fn.apply(resultNow()));
+                } catch (Throwable t) {
+                    dest.completeExceptionally(t);
+                }
+            }
+        });
+        return dest;
+    }
+
+    /**
+     * Returns a new TaskFuture completed after the action has consumed this task's result.
+     *
+     * @param action The action to run with the result.
+     */
+    public TaskFuture<Void> thenAccept(Consumer<? super V> action) {
+        return thenApply(v -> {
+            action.accept(v);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a new TaskFuture completed after the action has run, once this task completes normally.
+     *
+     * @param action The action to run.
+     */
+    public TaskFuture<Void> thenRun(Runnable action) {
+        return thenApply(v -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Returns a new TaskFuture that has this task's result, or the value computed by the function from the
+     * exception if this task fails.
+     *
+     * @param fn The function that maps the failure to a replacement value.
+     */
+    public TaskFuture<V> exceptionally(Function<Throwable, ? extends V> fn) {
+        TaskFuture<V> dest = new TaskFuture<>();
+        push(new Completion() {
+            @Override
+            void fire() {
+                if (state == NORMAL) {
+                    dest.complete(resultNow());
+                    return;
+                }
+                try {
+                    dest.complete(fn.apply((Throwable) outcome));
+                } catch (Throwable t) {
+                    dest.completeExceptionally(t);
+                }
+            }
+        });
+        return dest;
+    }
+
+    /**
+     * Returns a new TaskFuture with the same outcome as this one, after running the action with the result
+     * (or null) and the exception (or null).
+     *
+     * @param action The action to run on completion.
+     */
+    public TaskFuture<V> whenComplete(BiConsumer<? super V, ? super Throwable> action) {
+        TaskFuture<V> dest = new TaskFuture<>();
+        push(new Completion() {
+            @Override
+            void fire() {
+                boolean failed = state != NORMAL;
+                try {
+                    action.accept(failed ? null : resultNow(), failed ? (Throwable) outcome : null);
+                } catch (Throwable t) {
+                    if (!failed) {
+                        dest.completeExceptionally(t);
+                        return;
+                    }
+                }
+                if (!propagateFailure(dest)) {
+                    dest.complete(resultNow());
+                }
+            }
+        });
+        return dest;
+    }
+
+    /**
+     * Returns a CompletableFuture that completes with the same outcome as this task, for interoperability with
+     * code written against the JDK's CompletionStage API.
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        CompletableFuture<V> cf = new CompletableFuture<>();
+        whenComplete((v, t) -> {
+            if (t != null) cf.completeExceptionally(t);
+            else cf.complete(v);
+        });
+        return cf;
+    }
+
+    /**
+     * Removes a cancelled task that has not started from wherever it is waiting, normally the pool's TaskQueue.
+     */
+    void removeFromQueue() {
+        if (pool != null) pool.remove(this);
+    }
+
+    /**
+     * Returns the class of the Callable or Runnable this future runs, or of the future itself for subclasses
+     * that compute their own result. Must be called before the task completes.
+     */
+    @Override
+    Class<?> taskType() {
+        Callable<V> c = callable;
+        if (c instanceof RunnableAdapter) return ((RunnableAdapter) c).task.getClass();
+        return c != null ? c.getClass() : getClass();
+    }
+
+    /**
+     * Returns the exception the task failed with, or null if it completed normally, was cancelled or is not done.
+     */
+    Throwable getFailure() {
+        return state == EXCEPTIONAL ? (Throwable) outcome : null;
+    }
+
+    /**
+     * Returns a Callable that runs the given Runnable and returns null.
+     * Unlike Executors.callable(), the Runnable stays visible to taskType().
+     *
+     * @param task The Runnable to adapt.
+     */
+    static Callable<Object> callable(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        return new RunnableAdapter(task);
+    }
+
+    /**
+     * Registers a thread to be unparked when the future completes, for callers that wait in their own loop.
+     *
+     * @param thread The thread to unpark.
+     */
+    void addWaiter(Thread thread) {
+        push(new Signaller(thread));
+    }
+
+    /**
+     * Moves the future from the expected state to a terminal state and runs dependent stages.
+     */
+    private boolean finish(int expected, int terminalState, Object result) {
+        // Claim the transition first so cancel() cannot interleave, then publish the outcome
+        if (!STATE.compareAndSet(this, expected, COMPLETING)) return false;
+        outcome = result;
+        callable = null;
+        state = terminalState;
+        postComplete();
+        return true;
+    }
+
+    /**
+     * Pops and fires every completion on the stack. Safe to call from several threads, as each node is
+     * popped exactly once.
+     */
+    private void postComplete() {
+        Completion head;
+        while ((head = stack) != null) {
+            if (STACK.compareAndSet(this, head, head.next)) {
+                head.next = null;
+                head.fire();
+            }
+        }
+    }
+
+    /**
+     * Pushes a completion, firing it straight away if the future is already done.
+     */
+    private void push(Completion c) {
+        Completion head;
+        do {
+            head = stack;
+            c.next = head;
+        } while (!STACK.compareAndSet(this, head, c));
+
+        // Completed while pushing, make sure the node is not left behind
+        if (state >= NORMAL) postComplete();
+    }
+
+    /**
+     * Blocks until the future completes or the timeout elapses.
+     *
+     * @param nanos The maximum time to wait, or 0 to wait forever.
+     * @return true if the future completed.
+     */
+    private boolean awaitDone(long nanos) throws InterruptedException {
+        long deadline = nanos > 0 ? System.nanoTime() + nanos : 0;
+        Signaller signaller = new Signaller(Thread.currentThread());
+        push(signaller);
+
+        try {
+            while (state < NORMAL) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                if (nanos > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return false;
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            return true;
+        } finally {
+            // A getter that timed out or was interrupted must not stay on the stack, or polling get(timeout)
+            // would grow it without bound
+            if (state < NORMAL) unlink(signaller);
+        }
+    }
+
+    /**
+     * Removes a Signaller whose getter stopped waiting, together with any other abandoned ones found on the way.
+     * Completions are only pushed at the head, so interior nodes are unlinked with plain writes; a node that is
+     * popped concurrently by postComplete() is either skipped or fired as a no-op.
+     */
+    private void unlink(Signaller node) {
+        node.thread = null;
+        retry:
+        while (true) {
+            Completion pred = null;
+            Completion q = stack;
+            while (q != null) {
+                Completion next = q.next;
+                if (!q.isAbandoned()) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = next;
+                    // The predecessor was abandoned meanwhile, start over
+                    if (pred.isAbandoned()) continue retry;
+                } else if (!STACK.compareAndSet(this, q, next)) {
+                    continue retry;
+                }
+                q = next;
+            }
+            return;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V report() throws ExecutionException {
+        int s = state;
+        if (s == NORMAL) return (V) outcome;
+        if (s >= CANCELLED) throw new CancellationException();
+        throw new ExecutionException((Throwable) outcome);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V resultNow() {
+        return (V) outcome;
+    }
+
+    /**
+     * Completes the destination exceptionally if this future failed.
+     *
+     * @return true if the failure was propagated.
+     */
+    private boolean propagateFailure(TaskFuture<?> dest) {
+        if (state == NORMAL) return false;
+        dest.completeExceptionally((Throwable) outcome);
+        return true;
+    }
+
+    /**
+     * Runs a Runnable as a Callable, see callable(Runnable).
+     */
+    private static final class RunnableAdapter implements Callable<Object> {
+        final Runnable task;
+
+        RunnableAdapter(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public Object call() {
+            task.run();
+            return null;
+        }
+    }
+
+    /**
+     * A node in the completion stack, fired once when the future completes.
+     */
+    private abstract static class Completion {
+        // Volatile, as unlink() rewrites it while other threads walk or pop the stack
+        volatile Completion next;
+
+        abstract void fire();
+
+        /**
+         * Returns whether nobody needs the completion any more, so it can be unlinked before it fires.
+         */
+        boolean isAbandoned() {
+            return false;
+        }
+    }
+
+    /**
+     * A completion that wakes a thread blocked in get().
+     */
+    private static final class Signaller extends Completion {
+        // Cleared when the getter stops waiting
+        volatile Thread thread;
+
+        Signaller(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        void fire() {
+            Thread t = thread;
+            if (t != null) LockSupport.unpark(t);
+        }
+
+        @Override
+        boolean isAbandoned() {
+            return thread == null;
+        }
+    }
+
+}
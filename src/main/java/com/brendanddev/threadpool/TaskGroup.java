@@ -0,0 +1,151 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.FairShareScheduler;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.policies.RejectionHandler;
+
+/**
+ * A group of tasks, typically one tenant's, that shares a CustomThreadPool fairly with the other groups.
+ *
+ * Groups are created with CustomThreadPool.createTaskGroup(). Each group has its own queue, so a burst from one
+ * group fills that group's queue and not the pool's TaskQueue. Workers take turns between groups that have work,
+ * giving each group processing time in proportion to its weight: a group of weight 2 gets twice the time of a
+ * group of weight 1 while both are busy, and an idle group's share goes to the others.
+ *
+ * A group can also limit how many of its tasks run at once, and how many may wait in its queue. Tasks that do
+ * not fit, or that arrive after the pool has been shut down, are passed to the group's own RejectionHandler.
+ */
+public final class TaskGroup {
+
+    private final FairShareScheduler scheduler;
+    private final String name;
+    private final int weight;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final RejectionHandler rejectionHandler;
+
+    // Guarded by the scheduler monitor
+    final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    int running;
+    long deficitNanos;
+    long costEstimateNanos = FairShareScheduler.INITIAL_COST_ESTIMATE_NANOS;
+    boolean inRing;
+    long completedCount;
+    long rejectedCount;
+
+    TaskGroup(FairShareScheduler scheduler, String name, int weight, int maxConcurrency, int queueCapacity,
+              RejectionHandler rejectionHandler) {
+        if (weight < 1) throw new IllegalArgumentException("weight must be at least 1");
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+        this.scheduler = scheduler;
+        this.name = name;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    /**
+     * Submits a Runnable task to the group.
+     *
+     * @param task The Runnable task to be executed.
+     */
+    public void execute(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        scheduler.execute(this, task);
+    }
+
+    /**
+     * Submits a Callable task to the group and returns a TaskFuture for its result.
+     *
+     * @param task The Callable task to be executed.
+     * @return A TaskFuture representing the pending result of the task.
+     */
+    public <V> TaskFuture<V> submit(Callable<V> task) {
+        TaskFuture<V> future = new TaskFuture<>(task, scheduler.getPool());
+        execute(future);
+        return future;
+    }
+
+    /**
+     * Returns the name of the group.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the weight of the group, its share of processing time relative to the other groups.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the maximum number of the group's tasks that may run at the same time.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the maximum number of the group's tasks that may wait in its queue.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the RejectionHandler that receives the group's rejected tasks.
+     */
+    public RejectionHandler getRejectionHandler() {
+        return rejectionHandler;
+    }
+
+    /**
+     * Returns the number of the group's tasks waiting in its queue.
+     */
+    public int getQueuedCount() {
+        synchronized (scheduler) {
+            return tasks.size();
+        }
+    }
+
+    /**
+     * Returns the number of the group's tasks that are running.
+     */
+    public int getRunningCount() {
+        synchronized (scheduler) {
+            return running;
+        }
+    }
+
+    /**
+     * Returns the number of the group's tasks that have finished running, successfully or not.
+     */
+    public long getCompletedCount() {
+        synchronized (scheduler) {
+            return completedCount;
+        }
+    }
+
+    /**
+     * Returns the number of tasks the group has rejected.
+     */
+    public long getRejectedCount() {
+        synchronized (scheduler) {
+            return rejectedCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TaskGroup[" + name + ", weight=" + weight + "]";
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.brendanddev.threadpool;
+
+import com.brendanddev.threadpool.TaskExecution;
+
+/**
+ * Receives callbacks around every task a CustomThreadPool runs, for tracing and profiling.
+ *
+ * Interceptors are registered with CustomThreadPool.addInterceptor() and are called on the worker thread,
+ * in registration order:
+ * - beforeExecute() just before the task runs,
+ * - onError() if the task threw an exception or, for a future, completed exceptionally,
+ * - afterExecute() once the task has finished, whether it failed or not.
+ *
+ * The TaskExecution passed in carries the task and its timing. It is reused for the next task the worker
+ * runs, so interceptors must copy what they need instead of keeping a reference to it. Callbacks run on the
+ * hot path of every task and should be quick; an exception thrown by an interceptor is passed to the worker
+ * thread's UncaughtExceptionHandler and does not affect the task.
+ *
+ * A pool without interceptors skips all of this at the cost of reading one field per task.
+ */
+public interface TaskInterceptor {
+
+    /**
+     * Called on the worker thread just before the task runs.
+     *
+     * @param execution The task and its enqueue and start times.
+     */
+    default void beforeExecute(TaskExecution execution) {
+    }
+
+    /**
+     * Called on the worker thread after the task has finished.
+     *
+     * @param execution The task, its timing and the exception it failed with, if any.
+     */
+    default void afterExecute(TaskExecution execution) {
+    }
+
+    /**
+     * Called on the worker thread when the task failed, before afterExecute().
+     *
+     * @param execution The task, its timing and the exception it failed with.
+     */
+    default void onError(TaskExecution execution) {
+    }
+
+}
@@ -1,90 +1,117 @@
 package com.brendanddev.threadpool;
 
-import java.util.LinkedList;
+import java.util.Collection;
 
 /**
- * A thread-safe FIFO queue for storing Runnable tasks in a custom thread pool.
- * 
- * All methods are synchronized to ensure that multiple threads can safely enqueue and dequeue tasks 
- * without race conditions.
+ * Defines the queue abstraction that a CustomThreadPool uses to hand tasks from submitting threads
+ * to its worker threads.
+ *
+ * Implementations must be safe for concurrent use by any number of producers and consumers. The pool
+ * only depends on this interface, so different queueing strategies can be plugged in through the
+ * CustomThreadPool constructor.
  */
-public class TaskQueue {
-
-    private final LinkedList<Runnable> tasks;
-    private final int capacity;
+public interface TaskQueue {
 
     /**
-     * Constructs a TaskQueue with 'unlimited' capacity.
+     * Enqueue a task into the queue, blocking while the queue is full.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
      */
-    public TaskQueue() {
-        this(Integer.MAX_VALUE);
-    }
-    
+    void enqueue(Runnable task) throws InterruptedException;
+
     /**
-     * Constructs a TaskQueue with the specified capacity.
+     * Enqueue a task, waiting up to the given time for space if the queue is full.
+     * The default suits unbounded queues: it enqueues the task and returns true.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @param timeoutMillis The maximum time to wait for space in milliseconds, or 0 to not wait at all.
+     * @return true if the task was added, false if the queue was still full when the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
      */
-    public TaskQueue(int capacity) {
-        this.capacity = capacity;
-        this.tasks = new LinkedList<>();
+    default boolean offer(Runnable task, long timeoutMillis) throws InterruptedException {
+        enqueue(task);
+        return true;
     }
 
     /**
-     * Enqueue a task into the queue.
-     * This method is synchronized to allow only one thread to modify the internal queue at a time.
-     * 
-     * @param task The Runnable task to be added to the queue.
+     * Enqueue a batch of tasks, blocking while the queue is full.
+     * Implementations should publish the batch with as few synchronization points as possible and wake
+     * no more waiting workers than there are new tasks. The default enqueues the tasks one by one.
+     *
+     * @param batch The Runnable tasks to be added to the queue, in order.
      * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
      */
-    public synchronized void enqueue(Runnable task) throws InterruptedException {
-        // Wait if the queue is full
-        while (tasks.size() >= capacity) {
-            wait(); // Releases lock and waits to be notified
+    default void enqueueAll(Collection<? extends Runnable> batch) throws InterruptedException {
+        for (Runnable task : batch) {
+            enqueue(task);
         }
-        
-        // Add task at the end of the queue
-        tasks.addLast(task);
-
-        // Notify all waiting threads that a new task is available
-        // Wakes up any worker thread waiiting in dequeue()
-        notifyAll();
     }
 
     /**
      * Dequeue a task from the queue.
      * If the queue is empty, this method blocks until a task becomes available.
-     * 
+     *
      * @return The Runnable task removed from the front of the queue.
      * @throws InterruptedException If the thread is interrupted while waiting to dequeue.
      */
-    public synchronized Runnable dequeue() throws InterruptedException {
-        // Wait while the queue is empty
-        while (tasks.isEmpty()) {
-            wait();
-        }
-
-        // Remove the first task from the queue
-        Runnable task = tasks.removeFirst();
-
-        // Notify any threads waiting in enqueue() that space may be available
-        notifyAll();
-        return task;
-    }
+    Runnable dequeue() throws InterruptedException;
 
     /**
-     * Non-blocking poll to retrieve and remove the head of the queue, or returns 
+     * Non-blocking poll to retrieve and remove the head of the queue, or returns
      * null if the queue is empty.
-     * 
+     *
      * @return The Runnable task at the front of the queue, or null if empty.
      */
-    public synchronized Runnable poll() { 
-        return tasks.isEmpty() ? null : tasks.removeFirst();
+    Runnable poll();
+
+    /**
+     * Retrieves and removes the head of the queue, waiting up to the given time for a task to become
+     * available. Used by workers that are allowed to retire after being idle for a while.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return The Runnable task at the front of the queue, or null if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    Runnable poll(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Moves up to maxTasks available tasks into the buffer without blocking, so a worker can take several
+     * tasks per visit to the queue. The default polls the tasks one by one.
+     *
+     * @param buffer The collection to add the tasks to.
+     * @param maxTasks The maximum number of tasks to move.
+     * @return The number of tasks moved.
+     */
+    default int drainTo(Collection<? super Runnable> buffer, int maxTasks) {
+        int drained = 0;
+        Runnable task;
+        while (drained < maxTasks && (task = poll()) != null) {
+            buffer.add(task);
+            drained++;
+        }
+        return drained;
     }
 
+    /**
+     * Removes a specific task from the queue if it has not been taken by a worker yet.
+     * Used to discard cancelled tasks instead of leaving dead entries behind.
+     *
+     * @param task The task to remove.
+     * @return true if the task was removed, false if it was not found or the queue does not support removal.
+     */
+    boolean remove(Runnable task);
+
     /**
      * Returns the current number of tasks in the queue.
      */
-    public synchronized int size() { 
-        return tasks.size();
+    int size();
+
+    /**
+     * Returns the maximum number of tasks the queue can hold. The default suits unbounded queues.
+     */
+    default int capacity() {
+        return Integer.MAX_VALUE;
     }
-    
+
 }
@@ -0,0 +1,95 @@
+package com.brendanddev.threadpool;
+
+import com.brendanddev.threadpool.metrics.PoolMetrics;
+import com.brendanddev.threadpool.metrics.ThreadPoolMXBean;
+
+/**
+ * Exposes a CustomThreadPool through the ThreadPoolMXBean management interface.
+ * Each attribute is read from the pool when JMX asks for it, so an idle JMX connection costs nothing.
+ */
+class ThreadPoolMXBeanAdapter implements ThreadPoolMXBean {
+
+    private final CustomThreadPool pool;
+    private final PoolMetrics metrics;
+
+    ThreadPoolMXBeanAdapter(CustomThreadPool pool) {
+        this.pool = pool;
+        this.metrics = pool.getMetrics();
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return metrics.getSubmittedCount();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return metrics.getCompletedCount();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return metrics.getFailedCount();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return metrics.getRejectedCount();
+    }
+
+    @Override
+    public int getActiveWorkerCount() {
+        return metrics.getActiveWorkerCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return pool.getQueueSize();
+    }
+
+    @Override
+    public long getPeakQueueDepth() {
+        return metrics.getPeakQueueDepth();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        return pool.getLargestPoolSize();
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return pool.getCorePoolSize();
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        return pool.getMaximumPoolSize();
+    }
+
+    @Override
+    public long getQueueWaitP50Nanos() {
+        return metrics.getQueueWaitSnapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getQueueWaitP99Nanos() {
+        return metrics.getQueueWaitSnapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getExecutionTimeP50Nanos() {
+        return metrics.getExecutionTimeSnapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getExecutionTimeP99Nanos() {
+        return metrics.getExecutionTimeSnapshot().getValueAtPercentile(99);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.brendanddev.threadpool;
+
+/**
+ * Wraps a plain Runnable so that its enqueue time can be recorded. Only used when queue-wait tracking is
+ * enabled for plain Runnables, see CustomThreadPool.setQueueWaitTracking().
+ */
+final class TimedRunnable extends TrackedTask {
+
+    private final Runnable task;
+
+    TimedRunnable(Runnable task) {
+        this.task = task;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    @Override
+    Runnable unwrap() {
+        return task;
+    }
+
+}
@@ -0,0 +1,332 @@
+package com.brendanddev.threadpool;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hierarchical timing wheel that holds a pool's delayed and periodic tasks until they are due, then hands
+ * them to the pool's TaskQueue so that they run on the normal worker threads.
+ *
+ * The wheel has LEVELS levels of SLOTS buckets each. A bucket on level 0 covers one tick, a bucket on level n
+ * covers SLOTS^n ticks, so six levels of 64 slots with 1 ms ticks reach about two years ahead. A timer is
+ * placed on the lowest level whose range covers its deadline. Whenever the lower levels complete a rotation,
+ * the next bucket of the level above is emptied and its timers are placed again, moving them closer to
+ * level 0, where they expire. Timers are linked directly into their bucket, so inserting and cancelling are
+ * constant time and there is no per-bucket allocation.
+ *
+ * Only the ticker thread touches the buckets. Other threads hand it new and cancelled timers through two
+ * lock-free queues, which it empties on every tick. When the wheel holds no timers, the ticker parks until
+ * the next one is scheduled instead of waking up every tick.
+ */
+final class TimingWheel implements Runnable {
+
+    /**
+     * A doubly-linked list of timers.
+     */
+    static final class Bucket {
+        ScheduledTaskFuture<?> head;
+        ScheduledTaskFuture<?> tail;
+    }
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CustomThreadPool pool;
+    private final long tickNanos;
+    private final long startNanos;
+    private final Bucket[][] wheel = new Bucket[LEVELS][SLOTS];
+
+    private final ConcurrentLinkedQueue<ScheduledTaskFuture<?>> pendingTimers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ScheduledTaskFuture<?>> cancelledTimers = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread ticker;
+    private volatile boolean sleeping = false;
+    private volatile boolean stopped = false;
+
+    // Only touched by the ticker thread
+    private long currentTick = 0;
+    private int timerCount = 0;
+
+    /**
+     * Constructs a TimingWheel for the given pool. The ticker thread is started with start().
+     *
+     * @param pool The pool that runs due tasks.
+     * @param tickNanos The length of one tick, which is the wheel's resolution.
+     */
+    TimingWheel(CustomThreadPool pool, long tickNanos) {
+        this.pool = pool;
+        this.tickNanos = tickNanos;
+        this.startNanos = System.nanoTime();
+        for (Bucket[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Starts the ticker on the given thread, which must run this wheel.
+     */
+    void start(Thread thread) {
+        ticker = thread;
+        thread.start();
+    }
+
+    /**
+     * Adds a timer to the wheel. Safe to call from any thread.
+     *
+     * @param timer The timer to add.
+     * @return false if the wheel has been stopped and the timer was not added.
+     */
+    boolean schedule(ScheduledTaskFuture<?> timer) {
+        if (stopped) return false;
+        timer.inWheel = true;
+        pendingTimers.add(timer);
+        if (stopped && pendingTimers.remove(timer)) {
+            // Stopped concurrently and the ticker may already have cancelled what was pending
+            timer.inWheel = false;
+            return false;
+        }
+        if (sleeping) LockSupport.unpark(ticker);
+        return true;
+    }
+
+    /**
+     * Asks the ticker to unlink a cancelled timer. Safe to call from any thread.
+     */
+    void cancel(ScheduledTaskFuture<?> timer) {
+        if (!stopped) cancelledTimers.add(timer);
+    }
+
+    /**
+     * Stops the ticker. Timers that have not been handed to the pool yet are cancelled.
+     */
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(ticker);
+    }
+
+    /**
+     * The ticker loop: advances the wheel one tick at a time, catching up if the thread fell behind.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!stopped) {
+                long nowTick = tickOf(System.nanoTime());
+                if (timerCount == 0 && pendingTimers.isEmpty()) {
+                    // Nothing to time, skip the empty ticks and sleep until a timer arrives
+                    currentTick = nowTick;
+                    drainCancelled();
+                    sleep();
+                    continue;
+                }
+
+                drainCancelled();
+                drainPending();
+                while (currentTick < nowTick && !stopped) {
+                    advance();
+                }
+
+                long nextTickNanos = startNanos + (currentTick + 1) * tickNanos;
+                LockSupport.parkNanos(this, nextTickNanos - System.nanoTime());
+            }
+        } finally {
+            cancelAll();
+        }
+    }
+
+    /**
+     * Returns the number of timers waiting in the wheel, including ones not yet placed by the ticker.
+     * The value is a snapshot and may be stale by the time it is used.
+     */
+    int size() {
+        return timerCount + pendingTimers.size();
+    }
+
+    /**
+     * Parks the ticker until a timer is scheduled or the wheel is stopped.
+     */
+    private void sleep() {
+        sleeping = true;
+        // Re-check after publishing the flag, so a timer added concurrently is not missed
+        if (pendingTimers.isEmpty() && !stopped) {
+            LockSupport.park(this);
+        }
+        sleeping = false;
+    }
+
+    /**
+     * Moves the wheel forward by one tick: cascades the higher levels when the lower ones complete a
+     * rotation, then expires every timer in the level 0 bucket of the new tick.
+     */
+    private void advance() {
+        long tick = ++currentTick;
+
+        for (int level = 1; level < LEVELS; level++) {
+            // Level n cascades when the n lower levels have all wrapped around
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) break;
+            Bucket bucket = wheel[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK];
+            ScheduledTaskFuture<?> timer = detachAll(bucket);
+            while (timer != null) {
+                ScheduledTaskFuture<?> next = timer.next;
+                timer.next = null;
+                place(timer);
+                timer = next;
+            }
+        }
+
+        ScheduledTaskFuture<?> timer = detachAll(wheel[0][(int) tick & SLOT_MASK]);
+        while (timer != null) {
+            ScheduledTaskFuture<?> next = timer.next;
+            timer.next = null;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * Places newly scheduled timers into their buckets.
+     */
+    private void drainPending() {
+        ScheduledTaskFuture<?> timer;
+        while ((timer = pendingTimers.poll()) != null) {
+            timer.deadlineTick = Math.max(tickOf(timer.getTriggerNanos() + tickNanos - 1), 0);
+            place(timer);
+        }
+    }
+
+    /**
+     * Unlinks cancelled timers from their buckets so they do not hold on to memory until their deadline.
+     */
+    private void drainCancelled() {
+        ScheduledTaskFuture<?> timer;
+        while ((timer = cancelledTimers.poll()) != null) {
+            if (timer.bucket != null) {
+                unlink(timer);
+            }
+        }
+    }
+
+    /**
+     * Puts a timer into the bucket for its deadline, or hands it to the pool if it is due.
+     */
+    private void place(ScheduledTaskFuture<?> timer) {
+        if (timer.isDone()) {
+            // Cancelled before the ticker got to it
+            timer.inWheel = false;
+            return;
+        }
+
+        long delta = timer.deadlineTick - currentTick;
+        if (delta <= 0) {
+            expire(timer);
+            return;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (timer.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        link(wheel[level][slot], timer);
+    }
+
+    /**
+     * Hands a due timer to the pool's TaskQueue. If the queue is full the timer is put back for the next tick
+     * rather than waiting for space, which would hold up every other timer.
+     */
+    private void expire(ScheduledTaskFuture<?> timer) {
+        timer.inWheel = false;
+        if (pool.executeScheduled(timer)) return;
+        if (pool.isShutdown()) {
+            timer.cancel(false);
+            return;
+        }
+        // Cancelled in the meantime: placing it again drops it on the next tick
+        timer.inWheel = true;
+        timer.deadlineTick = currentTick + 1;
+        link(wheel[0][(int) timer.deadlineTick & SLOT_MASK], timer);
+    }
+
+    /**
+     * Cancels every timer still in the wheel. Called by the ticker as it exits.
+     */
+    private void cancelAll() {
+        for (Bucket[] level : wheel) {
+            for (Bucket bucket : level) {
+                ScheduledTaskFuture<?> timer = detachAll(bucket);
+                while (timer != null) {
+                    ScheduledTaskFuture<?> next = timer.next;
+                    timer.next = null;
+                    timer.inWheel = false;
+                    timer.cancel(false);
+                    timer = next;
+                }
+            }
+        }
+        ScheduledTaskFuture<?> timer;
+        while ((timer = pendingTimers.poll()) != null) {
+            timer.inWheel = false;
+            timer.cancel(false);
+        }
+        cancelledTimers.clear();
+    }
+
+    private void link(Bucket bucket, ScheduledTaskFuture<?> timer) {
+        timer.bucket = bucket;
+        timer.prev = bucket.tail;
+        timer.next = null;
+        if (bucket.tail == null) {
+            bucket.head = timer;
+        } else {
+            bucket.tail.next = timer;
+        }
+        bucket.tail = timer;
+        timerCount++;
+    }
+
+    private void unlink(ScheduledTaskFuture<?> timer) {
+        Bucket bucket = timer.bucket;
+        if (timer.prev == null) {
+            bucket.head = timer.next;
+        } else {
+            timer.prev.next = timer.next;
+        }
+        if (timer.next == null) {
+            bucket.tail = timer.prev;
+        } else {
+            timer.next.prev = timer.prev;
+        }
+        timer.bucket = null;
+        timer.prev = null;
+        timer.next = null;
+        timer.inWheel = false;
+        timerCount--;
+    }
+
+    /**
+     * Empties a bucket and returns its timers as a list linked through next.
+     */
+    private ScheduledTaskFuture<?> detachAll(Bucket bucket) {
+        ScheduledTaskFuture<?> head = bucket.head;
+        bucket.head = null;
+        bucket.tail = null;
+        for (ScheduledTaskFuture<?> t = head; t != null; t = t.next) {
+            t.bucket = null;
+            t.prev = null;
+            timerCount--;
+        }
+        return head;
+    }
+
+    private long tickOf(long nanos) {
+        return (nanos - startNanos) / tickNanos;
+    }
+
+}
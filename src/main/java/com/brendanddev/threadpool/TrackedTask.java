@@ -0,0 +1,36 @@
+package com.brendanddev.threadpool;
+
+/**
+ * Base class for tasks that carry bookkeeping from submission to execution, such as the time they
+ * were enqueued. TaskFuture extends it, so submitted futures are tracked without an extra wrapper.
+ */
+abstract class TrackedTask implements Runnable {
+
+    // System.nanoTime() when the task was enqueued, or 0 if not recorded
+    long enqueueNanos;
+
+    // Context captured when the task was submitted, or null if no ContextCarriers are registered
+    ContextSnapshot context;
+
+    /**
+     * Returns the task that was originally submitted, which is this task unless it is a wrapper.
+     */
+    Runnable unwrap() {
+        return this;
+    }
+
+    /**
+     * Returns the class of the code this task runs, as reported to TaskInterceptors.
+     */
+    Class<?> taskType() {
+        return unwrap().getClass();
+    }
+
+    /**
+     * Returns whether the task runs again after it has run, and must keep its context for the next run.
+     */
+    boolean keepsContext() {
+        return false;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.brendanddev.threadpool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * A CustomThreadFactory that creates virtual threads instead of platform threads.
+ *
+ * Virtual threads are cheap to create and release their carrier thread while blocked, which suits tasks that
+ * spend most of their time waiting on I/O. They are always daemon threads with normal priority, so those
+ * settings from CustomThreadFactory do not apply.
+ *
+ * Virtual threads were added in Java 21. The project is compiled for an older release, so the builder API is
+ * looked up reflectively; constructing this factory on an older runtime throws UnsupportedOperationException.
+ */
+public class VirtualThreadFactory extends CustomThreadFactory {
+
+    // Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), or null before Java 21
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle UNSTARTED;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle unstarted = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+            name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException e) {
+            // Running on a JVM without virtual threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    /**
+     * Constructs a VirtualThreadFactory with the specified base name.
+     *
+     * @param basename The prefix for thread names created by this factory.
+     * @throws UnsupportedOperationException If the running JVM does not support virtual threads.
+     */
+    public VirtualThreadFactory(String basename) {
+        super(basename, true, Thread.NORM_PRIORITY);
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+    }
+
+    /**
+     * Creates a new, unstarted virtual thread with the specified Runnable task.
+     *
+     * @param r The Runnable task for the new thread to execute.
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+        try {
+            Object builder = OF_VIRTUAL.invoke();
+            builder = NAME.invoke(builder, nextThreadName());
+            return (Thread) UNSTARTED.invoke(builder, r);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create virtual thread", e);
+        }
+    }
+
+    /**
+     * Returns whether the running JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+}
@@ -1,33 +1,86 @@
 package com.brendanddev.threadpool;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.brendanddev.threadpool.ContextSnapshot;
 import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskExecution;
+import com.brendanddev.threadpool.TaskInterceptor;
 import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.metrics.PoolMetrics;
+import com.brendanddev.threadpool.policies.AdmissionPolicy;
+import com.brendanddev.threadpool.policies.IdleStrategies;
+import com.brendanddev.threadpool.policies.IdleStrategy;
 
 /**
  * An implementation of a WorkerThread that repeatedly pulls tasks from the shared TaskQueue and executes them.
- * 
+ *
  * Forms the core of a custom thread pool implementation. Each worker runs in its own thread, continuously calling
  * the 'dequeue()' method of the TaskQueue to obtain the next available Runnable task. If no tasks are available,
- * it blocks until one is enqueued.
+ * it blocks until one is enqueued. Workers above the pool's core size use a timed poll instead and retire once
+ * they have been idle for the pool's keep-alive time.
+ *
+ * When the pool's worker batch size is above 1, a worker drains several tasks per queue visit into a local
+ * buffer and runs them before going back to the queue.
+ *
+ * If the pool has an IdleStrategy other than blocking, an idle worker first polls the queue as the strategy
+ * directs (spinning, yielding or parking briefly between polls) and only blocks once the strategy gives up.
+ *
+ * Nothing is put in the queue to stop a worker. When the pool shuts down, it interrupts the workers that are
+ * waiting for a task; a worker that is woken, or that comes back from a task, sees the new pool state and exits
+ * once the queue is empty. Each worker tracks whether it is idle, so that a wake-up interrupt never reaches a
+ * running task.
+ *
+ * While a task runs, the worker publishes when it started with a release store, so that a StallWatchdog can
+ * find tasks that run too long without taking a lock on the task path.
  */
 public class WorkerThread implements Runnable {
 
+    private final CustomThreadPool pool;
     private final TaskQueue taskQueue;
+    private final PoolMetrics metrics;
     private volatile boolean running = true;
+    private Thread thread;
+    private long id;
+    private boolean core;
 
-    private static final Runnable POISON_PILL = CustomThreadPool.POISON_PILL;
-    public static final AtomicInteger workerCount = new AtomicInteger(0);
-    public static final AtomicInteger completedTaskCount = new AtomicInteger(0);
+    // Reused for every task passed to interceptors; nested tasks run while helping a join get their own
+    private final TaskExecution execution = new TaskExecution();
+    private long taskSequence = 0;
+    private int interceptDepth = 0;
+
+    // Tasks drained from the queue in batch mode, only touched by this worker's thread
+    private final ArrayDeque<Runnable> batch = new ArrayDeque<>();
+
+    // Returned instead of a task when the worker should exit, never put in the queue
+    private static final Runnable NO_MORE_TASKS = () -> {};
+
+    // Whether the worker is waiting for a task, and whether the pool is interrupting it to wake it up
+    private static final int BUSY = 0;
+    private static final int IDLE = 1;
+    private static final int WAKING = 2;
+    private final AtomicInteger idleState = new AtomicInteger(BUSY);
+
+    // Start of the outermost task being run, or 0 while none is, and that task; read by a StallWatchdog
+    private long taskStartNanos;
+    private Runnable currentTask;
+    private int runDepth = 0;
+
+    // The worker running on each worker thread, so that tasks can find the pool they run in
+    private static final ThreadLocal<WorkerThread> CURRENT = new ThreadLocal<>();
 
     /**
-     * Constructs a WorkerThread with the specified TaskQueue.
-     * 
-     * @param taskQueue The shared TaskQueue from which this worker will pull tasks.
+     * Constructs a WorkerThread that serves the given pool.
+     *
+     * @param pool The CustomThreadPool this worker belongs to, which provides the shared TaskQueue.
      */
-    public WorkerThread(TaskQueue taskQueue) {
-        this.taskQueue = taskQueue;
+    public WorkerThread(CustomThreadPool pool) {
+        this.pool = pool;
+        this.taskQueue = pool.getTaskQueue();
+        this.metrics = pool.getMetrics();
     }
 
     /**
@@ -36,51 +89,409 @@ public class WorkerThread implements Runnable {
      * If the queue is empty, the thread will block until a task becomes available.
      */
     @Override
-    public void run() { 
+    public void run() {
+        CURRENT.set(this);
         try {
             while (running) {
-                // Blocks if the queue is empty
-                Runnable task = taskQueue.dequeue();
+                Runnable task;
+                try {
+                    task = nextTask();
+                } catch (InterruptedException e) {
+                    // Woken by a shutdown or a lower maximum size, the next pass sees the new pool state
+                    if (pool.isStopped() || pool.retireExcessWorker(this)) break;
+                    continue;
+                }
+                if (task == null) {
+                    // Idle for the whole keep-alive time, retire if the pool is above its core size
+                    if (pool.retireIdleWorker(this)) break;
+                    continue;
+                }
+                if (task == NO_MORE_TASKS) break;
+
+                runTask(task);
 
-                // If task is the poison pill, exit loop gracefully
-                if (task == POISON_PILL) break;
+                // Clear an interrupt aimed at the finished task (e.g. a cancelled TaskFuture)
+                // so it does not end the worker, unless the pool is being stopped
+                if (pool.isStopped() || pool.retireExcessWorker(this)) break;
+                Thread.interrupted();
+            }
+        } finally {
+            // Hand back drained tasks so that other workers run them
+            pool.requeue(batch);
+            batch.clear();
+            CURRENT.remove();
+            pool.workerExited(this);
+        }
+    }
 
-                workerCount.incrementAndGet();
+    /**
+     * Runs a single task, recording its queue wait, execution time and outcome in the pool's metrics.
+     * Exceptions thrown by the task are passed to the thread's UncaughtExceptionHandler.
+     * If the task carries a context captured at submission, it is restored for the task and its interceptors.
+     *
+     * @param task The task to run.
+     * @return Whether the task failed.
+     */
+    boolean runTask(Runnable task) {
+        ContextSnapshot context = ContextSnapshot.of(task);
+        if (context == null) {
+            return execute(task);
+        }
+        context.enter();
+        try {
+            return execute(task);
+        } finally {
+            context.exit(task);
+        }
+    }
 
-                // Execute the task safely
+    /**
+     * Runs a task held by one of the pool's internal tasks, such as a keyed lane's mailbox, a task group's
+     * dispatch token or a batch. On a worker of the pool it is run like a task taken from the queue, so that
+     * the metrics, interceptors and StallWatchdog see the task itself rather than the internal task. On any
+     * other thread, e.g. a producer running a batch itself, it only runs with its context.
+     *
+     * Exceptions are reported to the thread's UncaughtExceptionHandler; Errors are thrown to the caller.
+     *
+     * @param pool The pool the internal task belongs to.
+     * @param task The task to run.
+     * @return Whether the task failed.
+     */
+    static boolean runHeldTask(CustomThreadPool pool, Runnable task) {
+        WorkerThread worker = CURRENT.get();
+        if (worker != null && worker.pool == pool) {
+            return worker.runTask(task);
+        }
+        try {
+            ContextSnapshot.run(task);
+        } catch (Exception e) {
+            reportException(e);
+            return true;
+        }
+        return failedFuture(task);
+    }
+
+    /**
+     * Runs a task and reports it to the metrics and interceptors, see runTask(). The pool's internal tasks
+     * are not reported, as each task they hold is run through runHeldTask().
+     */
+    private boolean execute(Runnable task) {
+        if (CustomThreadPool.isInternalTask(task)) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                reportException(e);
+            }
+            return false;
+        }
+        long start = System.nanoTime();
+        long enqueued = task instanceof TrackedTask ? ((TrackedTask) task).enqueueNanos : 0;
+        long queueWait = enqueued != 0 ? start - enqueued : -1;
+        metrics.recordTaskStarted(queueWait);
+        AdmissionPolicy policy = pool.getAdmissionPolicy();
+        if (policy != null && queueWait >= 0) {
+            policy.onTaskStarted(queueWait);
+        }
+        long sequence = taskSequence++;
+
+        // Interceptors are read once per task; with none registered nothing else below touches them
+        TaskInterceptor[] interceptors = pool.interceptors();
+        TaskExecution traced = null;
+        if (interceptors.length != 0) {
+            traced = interceptDepth == 0 ? execution : new TaskExecution();
+            interceptDepth++;
+            traced.begin(CustomThreadPool.unwrap(task), taskType(task), id, sequence, enqueued, start);
+            for (TaskInterceptor interceptor : interceptors) {
                 try {
-                    task.run();
-                } catch (Exception e) {
-                    // Prevent worker from dying, log the exception
-                    System.err.println("Task threw an exception: " + e.getMessage());
-                    e.printStackTrace();
-                } finally {
-                    // Task finished (either normally or exceptionally)
-                    completedTaskCount.incrementAndGet();
-                    workerCount.decrementAndGet();
-                    printStats();
+                    interceptor.beforeExecute(traced);
+                } catch (RuntimeException e) {
+                    reportException(e);
+                }
+            }
+        }
+        boolean failed = false;
+        Throwable error = null;
+
+        if (runDepth++ == 0) {
+            currentTask = task;
+            TASK_START.setRelease(this, start);
+        }
+
+        // Execute the task safely
+        try {
+            task.run();
+            // A future captures its task's exception, so ask it how the task ended
+            failed = failedFuture(task);
+            if (failed && traced != null) error = ((TaskFuture<?>) task).getFailure();
+        } catch (Exception e) {
+            // Prevent worker from dying, report the exception to the thread's handler
+            // (by default it prints the stack trace) instead of logging here
+            failed = true;
+            error = e;
+            reportException(e);
+        } catch (Error e) {
+            // Reported to the interceptors too, then left to end the worker
+            failed = true;
+            error = e;
+            throw e;
+        } finally {
+            // Task finished (either normally or exceptionally)
+            long end = System.nanoTime();
+            if (--runDepth == 0) {
+                TASK_START.setRelease(this, 0L);
+                currentTask = null;
+            }
+            metrics.recordTaskFinished(end - start, failed);
+            if (traced != null) {
+                finishTrace(interceptors, traced, end, error);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Returns whether a task is a future that completed with its task's exception.
+     */
+    private static boolean failedFuture(Runnable task) {
+        if (!(task instanceof TaskFuture)) return false;
+        TaskFuture<?> future = (TaskFuture<?>) task;
+        return future.isCompletedExceptionally() && !future.isCancelled();
+    }
+
+    /**
+     * Reports the end of a task to the interceptors and releases the TaskExecution.
+     */
+    private void finishTrace(TaskInterceptor[] interceptors, TaskExecution traced, long end, Throwable error) {
+        traced.end(end, error);
+        if (error != null) {
+            for (TaskInterceptor interceptor : interceptors) {
+                try {
+                    interceptor.onError(traced);
+                } catch (RuntimeException e) {
+                    reportException(e);
+                }
+            }
+        }
+        for (TaskInterceptor interceptor : interceptors) {
+            try {
+                interceptor.afterExecute(traced);
+            } catch (RuntimeException e) {
+                reportException(e);
+            }
+        }
+        traced.clear();
+        interceptDepth--;
+    }
+
+    /**
+     * Returns the class of the code a task runs, looking through the pool's wrappers.
+     */
+    private static Class<?> taskType(Runnable task) {
+        return task instanceof TrackedTask ? ((TrackedTask) task).taskType() : task.getClass();
+    }
+
+    /**
+     * Passes an exception to the worker thread's UncaughtExceptionHandler.
+     */
+    private static void reportException(Throwable e) {
+        Thread current = Thread.currentThread();
+        current.getUncaughtExceptionHandler().uncaughtException(current, e);
+    }
+
+    /**
+     * Takes a task this worker can run while it waits for a RecursiveTask to complete: one from its local
+     * batch if it holds any, otherwise one from the queue. Never blocks.
+     *
+     * @return A task, or null if there is nothing to run.
+     */
+    Runnable pollForHelp() {
+        Runnable task = batch.poll();
+        return task != null ? task : taskQueue.poll();
+    }
+
+    /**
+     * Interrupts the worker if it is waiting for a task, so that it notices the pool is shutting down.
+     * A worker that is running a task is left alone; it checks the pool state before it waits again.
+     *
+     * @return true if the worker was idle and has been interrupted.
+     */
+    boolean wakeIfIdle() {
+        if (!idleState.compareAndSet(IDLE, WAKING)) return false;
+        try {
+            thread.interrupt();
+        } finally {
+            idleState.set(IDLE);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the worker started its current task, or 0 if it is not running one.
+     * Tasks run while helping a join count as part of the task that joins.
+     */
+    long getTaskStartNanos() {
+        return (long) TASK_START.getAcquire(this);
+    }
+
+    /**
+     * Returns the task the worker is running, or null. Read after getTaskStartNanos(), it is the task that
+     * started then or a later one.
+     */
+    Runnable getCurrentTask() {
+        return currentTask;
+    }
+
+    /**
+     * Returns the pool this worker belongs to.
+     */
+    CustomThreadPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the worker running on the calling thread, or null if the caller is not a worker thread.
+     */
+    static WorkerThread current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the next task, from the local batch if it holds any, otherwise from the queue.
+     *
+     * @return The next task, NO_MORE_TASKS if the worker should exit, or null if a timed wait expired.
+     */
+    private Runnable nextTask() throws InterruptedException {
+        Runnable buffered = batch.poll();
+        if (buffered != null) return buffered;
+
+        Runnable task = takeFromQueue();
+        int extra = pool.getWorkerBatchSize() - 1;
+        if (extra > 0 && task != null && task != NO_MORE_TASKS) {
+            taskQueue.drainTo(batch, extra);
+        }
+        return task;
+    }
+
+    /**
+     * Takes a single task from the queue.
+     * Once the pool is shut down the queue is only polled, so a worker exits as soon as it is empty.
+     */
+    private Runnable takeFromQueue() throws InterruptedException {
+        pool.workerIdle();
+        // Marked idle before the state check, so that either this check sees a shutdown or the shutdown
+        // sees this worker idle and interrupts it
+        idleState.set(IDLE);
+        try {
+            if (pool.isShutdown()) return pollAfterShutdown();
+            if (pool.isIdleTimeoutAllowed()) {
+                return taskQueue.poll(pool.getKeepAliveMillis());
+            }
+            Runnable task = spinForTask();
+            if (task != null) return task;
+            if (pool.isShutdown()) return pollAfterShutdown();
+            // Blocks if the queue is empty
+            return taskQueue.dequeue();
+        } finally {
+            // Let a wake-up interrupt that is being delivered land before the worker moves on, then drop it
+            // unless the pool is stopping, so it cannot hit the next task
+            while (!idleState.compareAndSet(IDLE, BUSY)) {
+                Thread.onSpinWait();
+            }
+            if (!pool.isStopped()) Thread.interrupted();
+            pool.workerBusy();
+        }
+    }
+
+    /**
+     * Polls the queue as directed by the pool's idle strategy, if this worker is allowed to spin.
+     *
+     * @return A task, or null once the strategy gives up, the strategy is changed, or the pool is shut down.
+     */
+    private Runnable spinForTask() {
+        IdleStrategy strategy = pool.getIdleStrategy();
+        if (strategy == IdleStrategies.BLOCKING || !pool.tryStartSpinning()) return null;
+        try {
+            for (int idleCount = 0; ; idleCount++) {
+                Runnable task = taskQueue.poll();
+                if (task != null) return task;
+                if (pool.isShutdown() || pool.getIdleStrategy() != strategy
+                        || Thread.currentThread().isInterrupted() || !strategy.idle(idleCount)) {
+                    return null;
                 }
             }
-        } catch (InterruptedException e) {
-            // Thread was interrupted, exit gracefully
-            Thread.currentThread().interrupt();
+        } finally {
+            pool.stopSpinning();
         }
     }
 
+    /**
+     * Polls the queue of a shut down pool, then the batches shutdown() could not queue, returning NO_MORE_TASKS
+     * once both are empty or the pool is stopped.
+     */
+    private Runnable pollAfterShutdown() {
+        if (pool.isStopped()) return NO_MORE_TASKS;
+        Runnable task = taskQueue.poll();
+        if (task == null) task = pool.pollShutdownOverflow();
+        return task != null ? task : NO_MORE_TASKS;
+    }
+
     /**
      * Stops the worker after completing the current task.
      */
-    public void shutdown() { 
+    public void shutdown() {
         running = false;
     }
 
     /**
-     * Prints the current state of the worker thread and internal task queue.
+     * Returns the thread running this worker.
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Attaches the thread created for this worker by the pool's thread factory.
+     */
+    void setThread(Thread thread) {
+        this.thread = thread;
+    }
+
+    /**
+     * Returns whether the worker was started to fill the pool's core size, rather than for a burst of load.
+     */
+    boolean isCore() {
+        return core;
+    }
+
+    /**
+     * Marks the worker as started to fill the pool's core size. Set by the pool before the thread is created.
      */
-    public void printStats() {
-        System.out.println("Queue size: " + taskQueue.size() +
-                        ", Active workers: " + workerCount.get() +
-                        ", Completed tasks: " + completedTaskCount.get());
+    void setCore(boolean core) {
+        this.core = core;
     }
-    
+
+    /**
+     * Returns the id of this worker, unique within its pool.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the id of this worker, assigned by the pool when the worker is created.
+     */
+    void setId(long id) {
+        this.id = id;
+    }
+
+    private static final VarHandle TASK_START;
+
+    static {
+        try {
+            TASK_START = MethodHandles.lookup().findVarHandle(WorkerThread.class, "taskStartNanos", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
 }
@@ -0,0 +1,228 @@
+package com.brendanddev.threadpool.affinity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pins threads to CPUs and reports which CPU a thread is running on, on Linux.
+ *
+ * The project is compiled for Java 17, which has neither a final foreign function API nor a way to ship JNI
+ * code in this build, so sched_setaffinity is reached through the taskset utility instead: the thread looks up
+ * its kernel thread id in /proc/thread-self, and "taskset -p -c &lt;cpus&gt; &lt;tid&gt;" is run for it. That
+ * costs a short-lived process per pinned thread, so pinInBackground() hands it to a single daemon thread rather
+ * than making a starting worker wait for it. The current CPU is read from /proc/thread-self/stat without
+ * starting a process.
+ *
+ * A thread inherits the CPUs of the thread that created it, so a thread that is not meant to be pinned but is
+ * started by a pinned one must be given all of the process's CPUs back; see releaseInBackground().
+ *
+ * On other operating systems, or when taskset is not installed, pinning does nothing and returns false. The
+ * first time taskset fails, the failure is logged and pinning is disabled for the rest of the run rather than
+ * trying, and failing, again for every thread.
+ */
+public final class CpuAffinity {
+
+    private static final System.Logger LOGGER = System.getLogger(CpuAffinity.class.getName());
+
+    private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+    private static final String TASKSET = findTaskset();
+
+    // The CPUs the process may run on, read once at startup; threads that are released go back to them
+    private static final CpuSet PROCESS_CPUS = readProcessCpus();
+
+    // How long to wait for taskset before giving up on pinning
+    private static final long TASKSET_TIMEOUT_MILLIS = 5_000;
+
+    // Set once taskset has failed, after which no thread is pinned any more
+    private static volatile boolean disabled;
+
+    // Whether the calling thread was pinned by this class, so that the threads it starts need releasing
+    private static final ThreadLocal<Boolean> PINNED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private CpuAffinity() {}
+
+    /**
+     * Returns whether threads can be pinned on this system. Returns false once pinning has failed.
+     */
+    public static boolean isSupported() {
+        return TASKSET != null && !disabled && Files.isDirectory(THREAD_SELF);
+    }
+
+    /**
+     * Restricts the calling thread to the given CPUs, waiting for taskset to finish.
+     *
+     * @param cpus The CPUs the thread may run on.
+     * @return true if the thread was pinned, false if pinning is not supported or failed.
+     */
+    public static boolean pinCurrentThread(CpuSet cpus) {
+        if (!isSupported()) return false;
+        int tid = currentThreadId();
+        if (tid < 0) return false;
+        PINNED.set(Boolean.TRUE);
+        return taskset(cpus, tid);
+    }
+
+    /**
+     * Restricts the calling thread to the given CPUs without waiting: the thread's id is looked up here and
+     * taskset is run by a background daemon thread. The calling thread runs unpinned until then.
+     *
+     * @param cpus The CPUs the thread may run on.
+     * @param onPinned Run by the background thread once the thread has been pinned, not run if pinning failed.
+     * @return false if pinning is not supported, in which case onPinned is never run.
+     */
+    public static boolean pinInBackground(CpuSet cpus, Runnable onPinned) {
+        if (!isSupported()) return false;
+        int tid = currentThreadId();
+        if (tid < 0) return false;
+        PINNED.set(Boolean.TRUE);
+        Pinner.REQUESTS.add(() -> {
+            if (taskset(cpus, tid)) onPinned.run();
+        });
+        return true;
+    }
+
+    /**
+     * Returns whether the calling thread has been pinned through this class.
+     */
+    public static boolean isCurrentThreadPinned() {
+        return PINNED.get();
+    }
+
+    /**
+     * Gives the calling thread all of the process's CPUs back without waiting, undoing the CPUs it inherited
+     * from a pinned thread that created it. taskset is run by the same background thread as for pinning.
+     */
+    public static void releaseInBackground() {
+        if (PROCESS_CPUS == null || !isSupported()) return;
+        int tid = currentThreadId();
+        if (tid < 0) return;
+        Pinner.REQUESTS.add(() -> taskset(PROCESS_CPUS, tid));
+    }
+
+    /**
+     * Runs taskset for a thread. Disables pinning, logging why, the first time it fails.
+     *
+     * @return true if the thread's CPUs were set.
+     */
+    private static boolean taskset(CpuSet cpus, int tid) {
+        if (disabled) return false;
+        String failure;
+        try {
+            Process process = new ProcessBuilder(TASKSET, "-p", "-c", cpus.toString(), Integer.toString(tid))
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(TASKSET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                failure = "timed out after " + TASKSET_TIMEOUT_MILLIS + " ms";
+            } else if (process.exitValue() != 0) {
+                failure = "exited with status " + process.exitValue();
+            } else {
+                return true;
+            }
+        } catch (IOException e) {
+            failure = "could not be started: " + e.getMessage();
+        } catch (InterruptedException e) {
+            // Not taskset's fault, try again for the next thread
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        disabled = true;
+        LOGGER.log(System.Logger.Level.WARNING, "Pinning threads to CPUs is disabled, taskset -p -c " + cpus
+                + " " + tid + " " + failure);
+        return false;
+    }
+
+    /**
+     * Returns the CPU the calling thread last ran on, or -1 if it cannot be determined.
+     * The thread may be moved to another CPU at any time unless it is pinned to a single CPU.
+     */
+    public static int currentCpu() {
+        try {
+            String stat = new String(Files.readAllBytes(THREAD_SELF.resolve("stat")));
+            // The command name in field 2 may contain spaces, so count fields from its closing parenthesis;
+            // the processor is field 39, i.e. the 37th field after it
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Integer.parseInt(fields[36].trim());
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the kernel thread id of the calling thread, or -1 if it cannot be determined.
+     */
+    private static int currentThreadId() {
+        try {
+            // /proc/thread-self is a link to /proc/<pid>/task/<tid>
+            return Integer.parseInt(THREAD_SELF.toRealPath().getFileName().toString());
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the CPUs the process may run on from /proc/self/status, or returns null if they cannot be read.
+     */
+    private static CpuSet readProcessCpus() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("Cpus_allowed_list:")) {
+                    return CpuSet.parse(line.substring(line.indexOf(':') + 1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not Linux, or no procfs
+        }
+        return null;
+    }
+
+    /**
+     * Runs the taskset requests of pinInBackground() and releaseInBackground() one at a time. Started on first
+     * use; the thread is a daemon, so it does not keep the JVM alive.
+     */
+    private static final class Pinner {
+
+        static final LinkedBlockingQueue<Runnable> REQUESTS = new LinkedBlockingQueue<>();
+
+        static {
+            Thread thread = new Thread(Pinner::run, "CpuAffinity-Pinner");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private static void run() {
+            while (true) {
+                try {
+                    REQUESTS.take().run();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // A failing callback must not stop the requests of other threads
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks for the taskset executable on the PATH, returning null on other systems than Linux.
+     */
+    private static String findTaskset() {
+        if (!System.getProperty("os.name", "").toLowerCase().contains("linux")) return null;
+        String path = System.getenv("PATH");
+        if (path == null) path = "/usr/bin:/bin";
+        for (String dir : path.split(File.pathSeparator)) {
+            File candidate = new File(dir, "taskset");
+            if (candidate.canExecute()) return candidate.getPath();
+        }
+        return null;
+    }
+
+}
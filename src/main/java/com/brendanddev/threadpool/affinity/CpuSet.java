@@ -0,0 +1,130 @@
+package com.brendanddev.threadpool.affinity;
+
+import java.util.BitSet;
+
+/**
+ * An immutable set of CPU ids that a thread may be pinned to.
+ *
+ * CpuSets are written and parsed in the Linux cpulist format used by taskset and by
+ * /sys/devices/system/node/node&lt;N&gt;/cpulist, for example "0-3,8-11".
+ */
+public final class CpuSet {
+
+    private final BitSet cpus;
+
+    private CpuSet(BitSet cpus) {
+        if (cpus.isEmpty()) {
+            throw new IllegalArgumentException("A CpuSet must contain at least one CPU");
+        }
+        this.cpus = cpus;
+    }
+
+    /**
+     * Creates a CpuSet containing the given CPU ids.
+     *
+     * @param cpus The CPU ids, each zero or greater.
+     * @return A new CpuSet.
+     */
+    public static CpuSet of(int... cpus) {
+        BitSet bits = new BitSet();
+        for (int cpu : cpus) {
+            if (cpu < 0) throw new IllegalArgumentException("Invalid CPU id: " + cpu);
+            bits.set(cpu);
+        }
+        return new CpuSet(bits);
+    }
+
+    /**
+     * Creates a CpuSet containing the CPU ids from first to last, inclusive.
+     *
+     * @param first The first CPU id.
+     * @param last The last CPU id.
+     * @return A new CpuSet.
+     */
+    public static CpuSet range(int first, int last) {
+        if (first < 0 || last < first) {
+            throw new IllegalArgumentException("Invalid CPU range: " + first + "-" + last);
+        }
+        BitSet bits = new BitSet();
+        bits.set(first, last + 1);
+        return new CpuSet(bits);
+    }
+
+    /**
+     * Parses a CpuSet from the cpulist format, a comma separated list of CPU ids and ranges such as "0-3,8,10-11".
+     *
+     * @param cpulist The list to parse.
+     * @return A new CpuSet.
+     * @throws IllegalArgumentException If the list is empty or malformed.
+     */
+    public static CpuSet parse(String cpulist) {
+        BitSet bits = new BitSet();
+        for (String part : cpulist.trim().split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            try {
+                int dash = part.indexOf('-');
+                if (dash < 0) {
+                    bits.set(Integer.parseInt(part));
+                } else {
+                    int first = Integer.parseInt(part.substring(0, dash));
+                    int last = Integer.parseInt(part.substring(dash + 1));
+                    if (first < 0 || last < first) throw new IllegalArgumentException("Invalid CPU range: " + part);
+                    bits.set(first, last + 1);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cpulist: " + cpulist, e);
+            }
+        }
+        return new CpuSet(bits);
+    }
+
+    /**
+     * Returns whether the set contains the given CPU id.
+     */
+    public boolean contains(int cpu) {
+        return cpu >= 0 && cpus.get(cpu);
+    }
+
+    /**
+     * Returns the number of CPUs in the set.
+     */
+    public int size() {
+        return cpus.cardinality();
+    }
+
+    /**
+     * Returns the CPU ids in the set in ascending order.
+     */
+    public int[] toArray() {
+        return cpus.stream().toArray();
+    }
+
+    /**
+     * Returns the set in the cpulist format, collapsing consecutive ids into ranges.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int first = cpus.nextSetBit(0);
+        while (first >= 0) {
+            int last = cpus.nextClearBit(first) - 1;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(first);
+            if (last > first) sb.append('-').append(last);
+            first = cpus.nextSetBit(last + 1);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CpuSet && ((CpuSet) o).cpus.equals(cpus);
+    }
+
+    @Override
+    public int hashCode() {
+        return cpus.hashCode();
+    }
+
+}
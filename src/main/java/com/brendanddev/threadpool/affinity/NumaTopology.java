@@ -0,0 +1,107 @@
+package com.brendanddev.threadpool.affinity;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes the NUMA nodes of the machine and the CPUs that belong to each of them.
+ *
+ * On Linux the topology is read from /sys/devices/system/node. Elsewhere, or when that directory is missing,
+ * the machine is treated as a single node containing every available processor.
+ */
+public final class NumaTopology {
+
+    private static final Path NODE_DIR = Paths.get("/sys/devices/system/node");
+
+    private final List<CpuSet> nodes;
+
+    /**
+     * Constructs a topology from the CPU sets of its nodes, in node order.
+     *
+     * @param nodes The CPUs of each node.
+     */
+    public NumaTopology(List<CpuSet> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A topology must have at least one node");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+    }
+
+    /**
+     * Reads the topology of the running machine.
+     *
+     * @return The detected topology, or a single node with every available processor if it cannot be read.
+     */
+    public static NumaTopology detect() {
+        List<CpuSet> nodes = new ArrayList<>();
+        if (Files.isDirectory(NODE_DIR)) {
+            List<Integer> ids = new ArrayList<>();
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(NODE_DIR, "node[0-9]*")) {
+                for (Path dir : dirs) {
+                    ids.add(Integer.parseInt(dir.getFileName().toString().substring(4)));
+                }
+                Collections.sort(ids);
+                for (int id : ids) {
+                    String cpulist = new String(Files.readAllBytes(NODE_DIR.resolve("node" + id).resolve("cpulist")));
+                    // Memory-only nodes have no CPUs and cannot run workers
+                    if (!cpulist.trim().isEmpty()) {
+                        nodes.add(CpuSet.parse(cpulist));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                nodes.clear();
+            }
+        }
+        if (nodes.isEmpty()) {
+            return singleNode();
+        }
+        return new NumaTopology(nodes);
+    }
+
+    /**
+     * Returns a topology with one node containing every available processor.
+     */
+    public static NumaTopology singleNode() {
+        return new NumaTopology(List.of(CpuSet.range(0, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the CPUs of the given node.
+     *
+     * @param node The node index, from 0 to getNodeCount() - 1.
+     */
+    public CpuSet getCpus(int node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * Returns the node that contains the given CPU, or -1 if no node does.
+     *
+     * @param cpu The CPU id.
+     */
+    public int nodeOf(int cpu) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i).contains(cpu)) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "NumaTopology" + nodes;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.brendanddev.threadpool.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable copy of a LatencyHistogram at a point in time. All values are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+        this.buckets = buckets;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the recorded values, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value below which the given percentage of recorded values fall, rounded up to the
+     * upper bound of its bucket and capped at the maximum recorded value.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (long b : buckets) total += b;
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns a short summary with the count, mean, p50, p99, p99.9 and max, in microseconds.
+     */
+    @Override
+    public String toString() {
+        return "count=" + count
+                + ", mean=" + micros((long) getMean())
+                + ", p50=" + micros(getValueAtPercentile(50))
+                + ", p99=" + micros(getValueAtPercentile(99))
+                + ", p99.9=" + micros(getValueAtPercentile(99.9))
+                + ", max=" + micros(max);
+    }
+
+    private static String micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.brendanddev.threadpool.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent, fixed-size latency histogram in the style of HdrHistogram.
+ *
+ * Values (in nanoseconds) are counted in log-linear buckets: each power of two is split into eight
+ * sub-buckets, so every reported value is within 12.5% of the recorded one. Values from 0 up to about
+ * 4.8 hours are covered; larger values land in the last bucket.
+ *
+ * All buckets are allocated up front and record() only increments counters, so recording never allocates.
+ * The counters are striped by thread so workers recording at the same time rarely touch the same slot.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below this are counted exactly, one bucket per value
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int MIN_EXPONENT = SUB_BUCKET_BITS + 1;
+    private static final int MAX_EXPONENT = 43;
+
+    static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final int stripeMask;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Constructs a LatencyHistogram with one stripe per available processor, up to 8.
+     */
+    public LatencyHistogram() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = Integer.highestOneBit(Math.max(1, Math.min(8, cpus)));
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKET_COUNT);
+    }
+
+    /**
+     * Records a single value. Negative values are recorded as zero.
+     *
+     * @param nanos The value to record, in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet(stripe * BUCKET_COUNT + bucketIndex(value));
+        totalCount.increment();
+        totalSum.add(value);
+        maxValue.accumulate(value);
+    }
+
+    /**
+     * Returns an immutable copy of the histogram's current state.
+     * Concurrent recordings may or may not be included.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        int stripes = stripeMask + 1;
+        for (int s = 0; s < stripes; s++) {
+            for (int b = 0; b < BUCKET_COUNT; b++) {
+                buckets[b] += counts.get(s * BUCKET_COUNT + b);
+            }
+        }
+        return new HistogramSnapshot(buckets, totalCount.sum(), totalSum.sum(), maxValue.get());
+    }
+
+    /**
+     * Maps a non-negative value to its bucket.
+     */
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+
+        // The SUB_BUCKET_BITS bits below the leading one bit select the sub-bucket
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that maps to the given bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + MIN_EXPONENT;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.brendanddev.threadpool.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-pool counters and latency histograms, updated by submitting threads and workers.
+ *
+ * Every counter is a LongAdder, so concurrent updates land in separate cells instead of contending on one
+ * shared atomic. Reading a counter sums the cells and is only done when a snapshot is taken. Nothing in
+ * this class logs or allocates on the recording path.
+ */
+public final class PoolMetrics {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder activeWorkers = new LongAdder();
+    private final AtomicLong peakQueueDepth = new AtomicLong();
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+
+    /**
+     * Records tasks accepted for execution.
+     *
+     * @param count The number of tasks.
+     */
+    public void recordSubmitted(int count) {
+        submitted.add(count);
+    }
+
+    /**
+     * Records a task passed to the pool's RejectionHandler.
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Records that a worker is about to run a task.
+     *
+     * @param queueWaitNanos How long the task waited in the queue, or a negative value if unknown.
+     */
+    public void recordTaskStarted(long queueWaitNanos) {
+        activeWorkers.increment();
+        if (queueWaitNanos >= 0) {
+            queueWait.record(queueWaitNanos);
+        }
+    }
+
+    /**
+     * Records that a worker finished running a task.
+     *
+     * @param executionNanos How long the task ran.
+     * @param taskFailed Whether the task ended with an exception.
+     */
+    public void recordTaskFinished(long executionNanos, boolean taskFailed) {
+        executionTime.record(executionNanos);
+        if (taskFailed) {
+            failed.increment();
+        }
+        completed.increment();
+        activeWorkers.decrement();
+    }
+
+    /**
+     * Records an observed queue depth, keeping the largest one seen.
+     * Depth is sampled rather than measured on every operation, so the peak is a lower bound.
+     *
+     * @param depth The number of tasks that were waiting in the queue.
+     */
+    public void recordQueueDepth(int depth) {
+        long peak;
+        while (depth > (peak = peakQueueDepth.get())) {
+            if (peakQueueDepth.compareAndSet(peak, depth)) return;
+        }
+    }
+
+    /**
+     * Returns the number of tasks accepted for execution.
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Returns the number of tasks that finished running, normally or with an exception.
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Returns the number of tasks that ended with an exception.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of tasks passed to the RejectionHandler.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of workers currently running a task.
+     */
+    public int getActiveWorkerCount() {
+        return (int) Math.max(0, activeWorkers.sum());
+    }
+
+    /**
+     * Returns the largest sampled queue depth.
+     */
+    public long getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * Returns a snapshot of the time tasks spent waiting in the queue.
+     */
+    public HistogramSnapshot getQueueWaitSnapshot() {
+        return queueWait.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the time tasks spent running.
+     */
+    public HistogramSnapshot getExecutionTimeSnapshot() {
+        return executionTime.snapshot();
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.brendanddev.threadpool.metrics;
+
+import java.util.List;
+
+/**
+ * An immutable snapshot of a pool's counters, sizing and latency histograms, taken by
+ * CustomThreadPool.getStats().
+ */
+public final class PoolStats {
+
+    private final long submittedCount;
+    private final long completedCount;
+    private final long failedCount;
+    private final long rejectedCount;
+    private final int activeWorkerCount;
+    private final int queueSize;
+    private final long peakQueueDepth;
+    private final int poolSize;
+    private final int largestPoolSize;
+    private final long startedWorkerCount;
+    private final long retiredWorkerCount;
+    private final HistogramSnapshot queueWait;
+    private final HistogramSnapshot executionTime;
+    private final List<SizingDecision> sizingDecisions;
+
+    private PoolStats(PoolMetrics metrics, int queueSize, int poolSize, int largestPoolSize,
+                      long startedWorkerCount, long retiredWorkerCount, List<SizingDecision> sizingDecisions) {
+        this.submittedCount = metrics.getSubmittedCount();
+        this.completedCount = metrics.getCompletedCount();
+        this.failedCount = metrics.getFailedCount();
+        this.rejectedCount = metrics.getRejectedCount();
+        this.activeWorkerCount = metrics.getActiveWorkerCount();
+        this.queueSize = queueSize;
+        this.peakQueueDepth = Math.max(metrics.getPeakQueueDepth(), queueSize);
+        this.poolSize = poolSize;
+        this.largestPoolSize = largestPoolSize;
+        this.startedWorkerCount = startedWorkerCount;
+        this.retiredWorkerCount = retiredWorkerCount;
+        this.queueWait = metrics.getQueueWaitSnapshot();
+        this.executionTime = metrics.getExecutionTimeSnapshot();
+        this.sizingDecisions = List.copyOf(sizingDecisions);
+    }
+
+    /**
+     * Takes a snapshot of the given metrics together with the pool's current sizing.
+     *
+     * @param metrics The pool's metrics.
+     * @param queueSize The current number of queued tasks.
+     * @param poolSize The current number of workers.
+     * @param largestPoolSize The largest number of workers alive at the same time.
+     * @param startedWorkerCount The number of workers started so far.
+     * @param retiredWorkerCount The number of workers retired after their keep-alive expired.
+     */
+    public static PoolStats of(PoolMetrics metrics, int queueSize, int poolSize, int largestPoolSize,
+                               long startedWorkerCount, long retiredWorkerCount) {
+        return of(metrics, queueSize, poolSize, largestPoolSize, startedWorkerCount, retiredWorkerCount, List.of());
+    }
+
+    /**
+     * Takes a snapshot of the given metrics together with the pool's current sizing and the recent decisions
+     * of its size controller.
+     *
+     * @param metrics The pool's metrics.
+     * @param queueSize The current number of queued tasks.
+     * @param poolSize The current number of workers.
+     * @param largestPoolSize The largest number of workers alive at the same time.
+     * @param startedWorkerCount The number of workers started so far.
+     * @param retiredWorkerCount The number of workers retired because the pool had more than it needed.
+     * @param sizingDecisions The size controller's recent decisions, oldest first.
+     */
+    public static PoolStats of(PoolMetrics metrics, int queueSize, int poolSize, int largestPoolSize,
+                               long startedWorkerCount, long retiredWorkerCount,
+                               List<SizingDecision> sizingDecisions) {
+        metrics.recordQueueDepth(queueSize);
+        return new PoolStats(metrics, queueSize, poolSize, largestPoolSize, startedWorkerCount, retiredWorkerCount,
+                sizingDecisions);
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public long getCompletedCount() {
+        return completedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public int getActiveWorkerCount() {
+        return activeWorkerCount;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public long getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getLargestPoolSize() {
+        return largestPoolSize;
+    }
+
+    public long getStartedWorkerCount() {
+        return startedWorkerCount;
+    }
+
+    public long getRetiredWorkerCount() {
+        return retiredWorkerCount;
+    }
+
+    /**
+     * Returns the distribution of time tasks spent in the queue before a worker picked them up.
+     */
+    public HistogramSnapshot getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns the distribution of time tasks spent running.
+     */
+    public HistogramSnapshot getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * Returns the recent decisions of the pool's size controller, oldest first, or an empty list if the pool
+     * has no controller.
+     */
+    public List<SizingDecision> getSizingDecisions() {
+        return sizingDecisions;
+    }
+
+    @Override
+    public String toString() {
+        String sizing = sizingDecisions.isEmpty()
+                ? "" : ", lastSizing={" + sizingDecisions.get(sizingDecisions.size() - 1) + "}";
+        return "PoolStats[submitted=" + submittedCount
+                + ", completed=" + completedCount
+                + ", failed=" + failedCount
+                + ", rejected=" + rejectedCount
+                + ", active=" + activeWorkerCount
+                + ", queued=" + queueSize
+                + ", peakQueued=" + peakQueueDepth
+                + ", poolSize=" + poolSize
+                + ", largestPoolSize=" + largestPoolSize
+                + ", workersStarted=" + startedWorkerCount
+                + ", workersRetired=" + retiredWorkerCount
+                + ", queueWait={" + queueWait + "}"
+                + ", execution={" + executionTime + "}"
+                + sizing + "]";
+    }
+
+}
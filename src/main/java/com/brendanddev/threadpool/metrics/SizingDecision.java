@@ -0,0 +1,83 @@
+package com.brendanddev.threadpool.metrics;
+
+/**
+ * A change of pool size made by a HillClimbingController, together with the measurements it was based on.
+ * The most recent decisions are included in PoolStats, so that operators can follow how the controller
+ * converges.
+ */
+public final class SizingDecision {
+
+    /**
+     * Why the controller changed the pool size.
+     */
+    public enum Reason {
+        /** The pool size was outside the controller's bounds. */
+        BOUNDS,
+        /** Tasks were not waiting and some workers were idle, so a worker was removed. */
+        IDLE,
+        /** The throughput at the current size was stable, so a neighbouring size is being tried. */
+        PROBE,
+        /** The last move raised throughput, so the controller kept going in the same direction. */
+        CLIMB,
+        /** The last move lowered throughput, or added workers without raising it, so it was undone. */
+        REVERSE
+    }
+
+    private final long timestampMillis;
+    private final int previousSize;
+    private final int newSize;
+    private final double throughput;
+    private final long meanQueueWaitNanos;
+    private final Reason reason;
+
+    /**
+     * Constructs a SizingDecision.
+     *
+     * @param timestampMillis When the decision was made, as System.currentTimeMillis().
+     * @param previousSize The pool size before the decision.
+     * @param newSize The pool size after the decision.
+     * @param throughput The completed tasks per second measured over the last sample interval.
+     * @param meanQueueWaitNanos The mean queue wait over the last sample interval.
+     * @param reason Why the size was changed.
+     */
+    public SizingDecision(long timestampMillis, int previousSize, int newSize, double throughput,
+                          long meanQueueWaitNanos, Reason reason) {
+        this.timestampMillis = timestampMillis;
+        this.previousSize = previousSize;
+        this.newSize = newSize;
+        this.throughput = throughput;
+        this.meanQueueWaitNanos = meanQueueWaitNanos;
+        this.reason = reason;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public int getPreviousSize() {
+        return previousSize;
+    }
+
+    public int getNewSize() {
+        return newSize;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public long getMeanQueueWaitNanos() {
+        return meanQueueWaitNanos;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return reason + " " + previousSize + "->" + newSize
+                + " (" + Math.round(throughput) + " tasks/s, wait=" + meanQueueWaitNanos / 1_000 + "us)";
+    }
+
+}
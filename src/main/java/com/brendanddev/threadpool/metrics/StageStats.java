@@ -0,0 +1,99 @@
+package com.brendanddev.threadpool.metrics;
+
+/**
+ * An immutable snapshot of one stage of a Pipeline, taken by Pipeline.getStats().
+ */
+public final class StageStats {
+
+    private final String name;
+    private final int workerCount;
+    private final int batchSize;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long processedCount;
+    private final long failedCount;
+    private final long blockedCount;
+    private final HistogramSnapshot queueWait;
+    private final HistogramSnapshot serviceTime;
+
+    /**
+     * Constructs a StageStats.
+     *
+     * @param name The name of the stage.
+     * @param workerCount The number of threads running the stage.
+     * @param batchSize The most items a worker takes from its buffer and passes on at once.
+     * @param queueDepth The number of items waiting in the stage's buffers.
+     * @param queueCapacity The number of items the stage's buffers can hold together.
+     * @param processedCount The number of items the stage has processed, successfully or not.
+     * @param failedCount The number of items for which the stage's function threw.
+     * @param blockedCount How often a producer had to wait for room in the stage's buffers.
+     * @param queueWait How long items waited in the stage's buffers.
+     * @param serviceTime How long the stage's function took per item.
+     */
+    public StageStats(String name, int workerCount, int batchSize, int queueDepth, int queueCapacity,
+                      long processedCount, long failedCount, long blockedCount, HistogramSnapshot queueWait,
+                      HistogramSnapshot serviceTime) {
+        this.name = name;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.processedCount = processedCount;
+        this.failedCount = failedCount;
+        this.blockedCount = blockedCount;
+        this.queueWait = queueWait;
+        this.serviceTime = serviceTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns how often a producer had to wait for room in the stage's buffers. A stage whose count keeps
+     * rising is slower than the stage before it.
+     */
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    public HistogramSnapshot getQueueWait() {
+        return queueWait;
+    }
+
+    public HistogramSnapshot getServiceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public String toString() {
+        return name + "{workers=" + workerCount + ", batch=" + batchSize + ", queue=" + queueDepth + "/"
+                + queueCapacity + ", processed=" + processedCount + ", failed=" + failedCount + ", blocked="
+                + blockedCount + ", queueWait=" + queueWait + ", serviceTime=" + serviceTime + "}";
+    }
+
+}
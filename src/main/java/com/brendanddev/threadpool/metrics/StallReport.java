@@ -0,0 +1,78 @@
+package com.brendanddev.threadpool.metrics;
+
+import java.util.List;
+
+/**
+ * A stall found by a StallWatchdog: either tasks that have run past its threshold, or a pool whose workers are
+ * all stuck while tasks are queued. Reports are passed to the watchdog's listener and kept for getReports().
+ */
+public final class StallReport {
+
+    /**
+     * What the watchdog found.
+     */
+    public enum Kind {
+        /** One or more tasks have been running longer than the threshold. */
+        TASK_STALLED,
+        /** Every worker is busy, tasks are queued and no task has completed since the previous check. */
+        POOL_STALLED
+    }
+
+    private final long timestampMillis;
+    private final Kind kind;
+    private final int queueSize;
+    private final int poolSize;
+    private final int compensatingWorkers;
+    private final List<StalledTask> tasks;
+
+    /**
+     * Constructs a StallReport.
+     *
+     * @param timestampMillis When the stall was found, as System.currentTimeMillis().
+     * @param kind What was found.
+     * @param queueSize The number of queued tasks at the time.
+     * @param poolSize The number of workers at the time.
+     * @param compensatingWorkers The number of workers the pool was allowed above its maximum size at the time.
+     * @param tasks The newly stalled tasks for TASK_STALLED, every running task for POOL_STALLED.
+     */
+    public StallReport(long timestampMillis, Kind kind, int queueSize, int poolSize, int compensatingWorkers,
+                       List<StalledTask> tasks) {
+        this.timestampMillis = timestampMillis;
+        this.kind = kind;
+        this.queueSize = queueSize;
+        this.poolSize = poolSize;
+        this.compensatingWorkers = compensatingWorkers;
+        this.tasks = List.copyOf(tasks);
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getCompensatingWorkers() {
+        return compensatingWorkers;
+    }
+
+    public List<StalledTask> getTasks() {
+        return tasks;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " (queue=" + queueSize + ", workers=" + poolSize + ", compensating=" + compensatingWorkers
+                + ") " + tasks;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.brendanddev.threadpool.metrics;
+
+/**
+ * A running task captured by a StallWatchdog, with the stack of the worker running it at the time it was found.
+ */
+public final class StalledTask {
+
+    private final String workerName;
+    private final long workerId;
+    private final String taskType;
+    private final long runningNanos;
+    private final Thread.State threadState;
+    private final boolean deadlocked;
+    private final StackTraceElement[] stackTrace;
+
+    /**
+     * Constructs a StalledTask.
+     *
+     * @param workerName The name of the worker thread.
+     * @param workerId The id of the worker within its pool.
+     * @param taskType The class name of the code the task runs.
+     * @param runningNanos How long the task had been running.
+     * @param threadState The state of the worker thread, e.g. BLOCKED while it waits for a monitor.
+     * @param deadlocked Whether the worker thread is part of a deadlock found by the JVM.
+     * @param stackTrace The stack of the worker thread.
+     */
+    public StalledTask(String workerName, long workerId, String taskType, long runningNanos, Thread.State threadState,
+                       boolean deadlocked, StackTraceElement[] stackTrace) {
+        this.workerName = workerName;
+        this.workerId = workerId;
+        this.taskType = taskType;
+        this.runningNanos = runningNanos;
+        this.threadState = threadState;
+        this.deadlocked = deadlocked;
+        this.stackTrace = stackTrace;
+    }
+
+    public String getWorkerName() {
+        return workerName;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public String getTaskType() {
+        return taskType;
+    }
+
+    public long getRunningNanos() {
+        return runningNanos;
+    }
+
+    public Thread.State getThreadState() {
+        return threadState;
+    }
+
+    public boolean isDeadlocked() {
+        return deadlocked;
+    }
+
+    /**
+     * Returns the worker's stack when the task was found, innermost frame first.
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace.clone();
+    }
+
+    /**
+     * Returns a summary with the innermost frame of the stack.
+     */
+    @Override
+    public String toString() {
+        return workerName + " running " + taskType + " for " + runningNanos / 1_000_000 + "ms (" + threadState
+                + (deadlocked ? ", deadlocked" : "") + ")" + (stackTrace.length > 0 ? " at " + stackTrace[0] : "");
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.brendanddev.threadpool.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for a task run by a CustomThreadPool, emitted by TaskProfiler for sampled
+ * tasks. The event is committed when the task finishes, on the worker thread that ran it.
+ *
+ * The event is disabled by default. Enable it in the recording, for example with
+ * Recording.enable("com.brendanddev.threadpool.TaskExecution") or in a custom .jfc settings file.
+ */
+@Name("com.brendanddev.threadpool.TaskExecution")
+@Label("Task Execution")
+@Category({"Thread Pool"})
+@Description("A task run by a CustomThreadPool worker")
+@StackTrace(false)
+@Enabled(false)
+public class TaskExecutionEvent extends Event {
+
+    @Label("Pool")
+    String pool;
+
+    @Label("Task Type")
+    @Description("Class of the code the task runs")
+    String taskType;
+
+    @Label("Worker Id")
+    long workerId;
+
+    @Label("Queue Wait")
+    @Description("Time between submission and start, or -1 if not recorded")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executionTime;
+
+    @Label("Failed")
+    boolean failed;
+
+}
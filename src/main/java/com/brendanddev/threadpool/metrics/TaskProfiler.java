@@ -0,0 +1,144 @@
+package com.brendanddev.threadpool.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.brendanddev.threadpool.TaskExecution;
+import com.brendanddev.threadpool.TaskInterceptor;
+
+/**
+ * A TaskInterceptor that samples tasks and aggregates their execution time by task type, to find out which
+ * kinds of task take up a pool's workers. Optionally, every sampled task is also emitted as a
+ * TaskExecutionEvent to Java Flight Recorder.
+ *
+ * Only one in every sampleInterval tasks of each worker is recorded, chosen from the worker's task sequence
+ * number, so sampling needs no shared counter. Each task type gets its own LatencyHistogram; once
+ * maxTaskTypes types have been seen, further types are counted under OTHER_TYPES so that pools running many
+ * distinct lambdas do not grow the profile without bound.
+ *
+ * Install it with CustomThreadPool.addInterceptor() and read it with snapshot().
+ */
+public final class TaskProfiler implements TaskInterceptor {
+
+    /**
+     * The task type under which types beyond maxTaskTypes are counted.
+     */
+    public static final String OTHER_TYPES = "(other)";
+
+    private final String poolName;
+    private final int sampleInterval;
+    private final int maxTaskTypes;
+    private final boolean emitEvents;
+    private final ConcurrentHashMap<String, TypeStats> types = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a TaskProfiler that samples every task of up to 256 task types and does not emit JFR events.
+     *
+     * @param poolName The name reported for the pool in JFR events.
+     */
+    public TaskProfiler(String poolName) {
+        this(poolName, 1, 256, false);
+    }
+
+    /**
+     * Constructs a TaskProfiler.
+     *
+     * @param poolName The name reported for the pool in JFR events.
+     * @param sampleInterval Records one in this many tasks per worker, 1 to record every task.
+     * @param maxTaskTypes The number of task types tracked separately before the rest are counted together.
+     * @param emitEvents Whether sampled tasks are also emitted as JFR TaskExecutionEvents.
+     */
+    public TaskProfiler(String poolName, int sampleInterval, int maxTaskTypes, boolean emitEvents) {
+        if (sampleInterval < 1 || maxTaskTypes < 1) {
+            throw new IllegalArgumentException("Invalid profiler settings: sampleInterval=" + sampleInterval
+                    + ", maxTaskTypes=" + maxTaskTypes);
+        }
+        this.poolName = poolName;
+        this.sampleInterval = sampleInterval;
+        this.maxTaskTypes = maxTaskTypes;
+        this.emitEvents = emitEvents;
+    }
+
+    /**
+     * Records a finished task if it is sampled.
+     */
+    @Override
+    public void afterExecute(TaskExecution execution) {
+        if (execution.getSequence() % sampleInterval != 0) return;
+
+        String type = execution.getTaskType().getName();
+        long executionNanos = execution.getExecutionNanos();
+        boolean failed = execution.isFailed();
+        statsFor(type).record(executionNanos, failed);
+
+        if (emitEvents) {
+            TaskExecutionEvent event = new TaskExecutionEvent();
+            if (event.shouldCommit()) {
+                event.pool = poolName;
+                event.taskType = type;
+                event.workerId = execution.getWorkerId();
+                event.queueWait = execution.getQueueWaitNanos();
+                event.executionTime = executionNanos;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns the profile of every task type seen so far, the type with the most total execution time first.
+     * Counts are of sampled tasks only.
+     */
+    public List<TaskTypeProfile> snapshot() {
+        List<TaskTypeProfile> profiles = new ArrayList<>();
+        types.forEach((type, stats) -> profiles.add(stats.snapshot(type)));
+        profiles.sort(Comparator.comparingLong(TaskTypeProfile::getTotalNanos).reversed());
+        return profiles;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        types.clear();
+    }
+
+    /**
+     * Returns the number of tasks that are skipped for every one recorded, plus one.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Returns the statistics of a task type, creating them if there is still room for another type.
+     */
+    private TypeStats statsFor(String type) {
+        TypeStats stats = types.get(type);
+        if (stats != null) return stats;
+        // Racing threads may briefly exceed the limit by a few types, which is harmless
+        if (types.size() >= maxTaskTypes) type = OTHER_TYPES;
+        return types.computeIfAbsent(type, t -> new TypeStats());
+    }
+
+    /**
+     * Execution statistics of one task type.
+     */
+    private static final class TypeStats {
+        final LatencyHistogram executionTime = new LatencyHistogram();
+        final LongAdder failed = new LongAdder();
+
+        void record(long executionNanos, boolean taskFailed) {
+            executionTime.record(executionNanos);
+            if (taskFailed) failed.increment();
+        }
+
+        TaskTypeProfile snapshot(String type) {
+            return new TaskTypeProfile(type, failed.sum(), executionTime.snapshot());
+        }
+    }
+
+}
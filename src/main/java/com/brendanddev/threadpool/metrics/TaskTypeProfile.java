@@ -0,0 +1,59 @@
+package com.brendanddev.threadpool.metrics;
+
+/**
+ * An immutable summary of the sampled executions of one task type, taken by TaskProfiler.snapshot().
+ */
+public final class TaskTypeProfile {
+
+    private final String taskType;
+    private final long failedCount;
+    private final HistogramSnapshot executionTime;
+
+    TaskTypeProfile(String taskType, long failedCount, HistogramSnapshot executionTime) {
+        this.taskType = taskType;
+        this.failedCount = failedCount;
+        this.executionTime = executionTime;
+    }
+
+    /**
+     * Returns the class name of the task type, or TaskProfiler.OTHER_TYPES.
+     */
+    public String getTaskType() {
+        return taskType;
+    }
+
+    /**
+     * Returns the number of sampled tasks of this type.
+     */
+    public long getCount() {
+        return executionTime.getCount();
+    }
+
+    /**
+     * Returns the number of sampled tasks of this type that failed.
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the total execution time of the sampled tasks, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return executionTime.getSum();
+    }
+
+    /**
+     * Returns the distribution of execution times of the sampled tasks.
+     */
+    public HistogramSnapshot getExecutionTime() {
+        return executionTime;
+    }
+
+    @Override
+    public String toString() {
+        return taskType + "{count=" + getCount() + ", failed=" + failedCount + ", totalMs="
+                + getTotalNanos() / 1_000_000 + ", executionTime=" + executionTime + "}";
+    }
+
+}
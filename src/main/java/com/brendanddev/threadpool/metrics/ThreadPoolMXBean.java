@@ -0,0 +1,39 @@
+package com.brendanddev.threadpool.metrics;
+
+/**
+ * JMX management interface exposing a CustomThreadPool's statistics.
+ * Registered with CustomThreadPool.registerMBean(); latencies are reported in nanoseconds.
+ */
+public interface ThreadPoolMXBean {
+
+    long getSubmittedCount();
+
+    long getCompletedCount();
+
+    long getFailedCount();
+
+    long getRejectedCount();
+
+    int getActiveWorkerCount();
+
+    int getQueueSize();
+
+    long getPeakQueueDepth();
+
+    int getPoolSize();
+
+    int getLargestPoolSize();
+
+    int getCorePoolSize();
+
+    int getMaximumPoolSize();
+
+    long getQueueWaitP50Nanos();
+
+    long getQueueWaitP99Nanos();
+
+    long getExecutionTimeP50Nanos();
+
+    long getExecutionTimeP99Nanos();
+
+}
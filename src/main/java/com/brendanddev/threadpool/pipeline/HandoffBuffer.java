@@ -0,0 +1,209 @@
+package com.brendanddev.threadpool.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+import com.brendanddev.threadpool.queues.PaddedCounter;
+import com.brendanddev.threadpool.queues.ParkingLot;
+
+/**
+ * A bounded, lock-free buffer that hands items from the producers of a pipeline stage to one of its workers.
+ *
+ * The buffer has a single consumer, so only producers can contend: with several producers a slot range is claimed
+ * with one CAS on the padded tail counter, and with a single producer (an upstream stage with one worker) the tail
+ * is simply advanced. As in RingBufferTaskQueue, every slot carries a sequence number that tells the consumer
+ * whether the item at its position has been published. The consumer frees slots by advancing the head counter
+ * only, once per drained batch.
+ *
+ * Producers may publish several items at once. A range of slots is claimed with a single update of the tail and
+ * the consumer is signalled once, which is what micro-batching between stages saves. Each item is stored with the
+ * time it was handed over, from which the consumer measures how long it waited.
+ *
+ * A producer parks in a ParkingLot while the buffer is full, and the consumer while it is empty.
+ */
+final class HandoffBuffer {
+
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Object[] items;
+    private final long[] stamps;
+    private final long[] sequences;
+    private final int mask;
+    private final boolean singleProducer;
+
+    private final PaddedCounter tail = new PaddedCounter(0);
+    private final PaddedCounter head = new PaddedCounter(0);
+
+    // The consumer waiting for items, and producers waiting for free slots
+    private final ParkingLot notEmpty = new ParkingLot();
+    private final ParkingLot notFull = new ParkingLot();
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs a HandoffBuffer that can hold at least the given number of items, rounded up to a power of two.
+     *
+     * @param capacity The minimum number of items the buffer can hold.
+     * @param singleProducer Whether only one thread ever adds items, which saves the CAS on the tail.
+     */
+    HandoffBuffer(int capacity, boolean singleProducer) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.items = new Object[size];
+        this.stamps = new long[size];
+        // The item for position p is published by setting its slot's sequence to p + 1, which no earlier
+        // occupant of the slot has written, so the sequences need no reset when a slot is freed
+        this.sequences = new long[size];
+        this.mask = size - 1;
+        this.singleProducer = singleProducer;
+    }
+
+    /**
+     * Adds as many of the given items as there are free slots for, without waiting.
+     *
+     * @param source The array holding the items.
+     * @param from The index of the first item to add.
+     * @param count The number of items to add.
+     * @param stamp The System.nanoTime() at which the items were handed over.
+     * @return The number of items added, which are the first ones from the given index.
+     */
+    int offer(Object[] source, int from, int count, long stamp) {
+        long position;
+        int claimed;
+        while (true) {
+            position = tail.get();
+            claimed = (int) Math.min(count, items.length - (position - head.get()));
+            if (claimed <= 0) return 0;
+            if (singleProducer) {
+                tail.set(position + claimed);
+                break;
+            }
+            if (tail.compareAndSet(position, position + claimed)) break;
+        }
+        for (int i = 0; i < claimed; i++) {
+            long p = position + i;
+            int slot = (int) p & mask;
+            items[slot] = source[from + i];
+            stamps[slot] = stamp;
+            SEQUENCE.setRelease(sequences, slot, p + 1);
+        }
+        notEmpty.unparkOne();
+        return claimed;
+    }
+
+    /**
+     * Adds as many of the given items as there are free slots for, waiting until at least one slot is free.
+     *
+     * @param timeoutNanos The maximum time to wait, or a negative value to wait indefinitely.
+     * @return The number of items added, 0 if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    int put(Object[] source, int from, int count, long stamp, long timeoutNanos) throws InterruptedException {
+        int added = offer(source, from, count, stamp);
+        if (added > 0) return added;
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread me = Thread.currentThread();
+        while (true) {
+            notFull.register(me);
+            added = offer(source, from, count, stamp);
+            if (added > 0) {
+                notFull.cancel(me);
+                return added;
+            }
+            if (timeoutNanos < 0) {
+                LockSupport.park(this);
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    notFull.cancel(me);
+                    return 0;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            notFull.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Takes up to max published items, in order, without waiting. Must only be called by the consumer.
+     *
+     * @param target The array to move the items into, from index 0.
+     * @param targetStamps The array to receive the times at which the items were handed over.
+     * @param max The maximum number of items to take.
+     * @return The number of items taken.
+     */
+    int drainTo(Object[] target, long[] targetStamps, int max) {
+        long h = head.get();
+        int taken = 0;
+        while (taken < max) {
+            long p = h + taken;
+            int slot = (int) p & mask;
+            if ((long) SEQUENCE.getAcquire(sequences, slot) != p + 1) break;
+            target[taken] = items[slot];
+            targetStamps[taken] = stamps[slot];
+            items[slot] = null;
+            taken++;
+        }
+        if (taken > 0) {
+            head.set(h + taken);
+            notFull.unpark(taken);
+        }
+        return taken;
+    }
+
+    /**
+     * Parks the consumer until an item has been published or the buffer is closed. May return spuriously.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    void awaitItems() throws InterruptedException {
+        Thread me = Thread.currentThread();
+        notEmpty.register(me);
+        if (!hasItem() && !closed) {
+            LockSupport.park(this);
+        }
+        notEmpty.cancel(me);
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+
+    /**
+     * Marks the buffer as receiving no more items and wakes the consumer. Called once all producers are done.
+     */
+    void close() {
+        closed = true;
+        notEmpty.unparkAll();
+    }
+
+    /**
+     * Returns whether close() has been called.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of items in the buffer, including any that are still being published.
+     */
+    int size() {
+        long h = head.get();
+        return (int) Math.max(0, tail.get() - h);
+    }
+
+    /**
+     * Returns the number of items the buffer can hold.
+     */
+    int capacity() {
+        return items.length;
+    }
+
+    private boolean hasItem() {
+        long h = head.get();
+        return (long) SEQUENCE.getAcquire(sequences, (int) h & mask) == h + 1;
+    }
+
+}
@@ -0,0 +1,350 @@
+package com.brendanddev.threadpool.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.brendanddev.threadpool.metrics.StageStats;
+
+/**
+ * A chain of processing stages, such as parse -> enrich -> write, each run by its own worker threads and
+ * connected to the next by bounded buffers.
+ *
+ * A pipeline is defined from the front and then started:
+ * <pre>
+ *   Pipeline&lt;String, Record&gt; parse = Pipeline.of("parse", 2, 1024, Record::parse);
+ *   Pipeline&lt;String, Record&gt; enrich = parse.thenApply("enrich", 4, 1024, 16, this::enrich);
+ *   Pipeline&lt;String, Void&gt; pipeline = enrich.thenAccept("write", 1, 256, 64, store::write);
+ *   pipeline.start();
+ *   pipeline.submit(line);
+ * </pre>
+ * Every Pipeline object returned along the way is a view of the same pipeline that accepts its input type,
+ * so any of them can be used to submit items, read stats or shut it down.
+ *
+ * Each worker of a stage has its own HandoffBuffer, which only it consumes, so hand-offs are single-consumer: a
+ * stage fed by a one-worker stage gets single-producer buffers, and every other stage multi-producer ones. A
+ * stage's capacity is split between its workers. When a stage's buffers are full, the workers of the stage before
+ * it wait, their own buffers fill up, and eventually submit() waits, so a slow stage slows the whole pipeline
+ * down instead of letting items pile up. Nothing is queued outside the buffers, and no stage blocks a thread pool.
+ *
+ * A stage with a batch size above 1 micro-batches: its workers take up to that many waiting items at once and
+ * hand their results to the next stage in one go, claiming the buffer slots with a single update and waking the
+ * consumer once. Items are never held back to fill a batch, so batching adds no latency.
+ *
+ * A function may return null to drop an item. Results of the last stage are discarded, use thenAccept() to consume
+ * them. If a function throws, the item is counted as failed and the exception is reported to the thread's
+ * UncaughtExceptionHandler; the stage carries on with the next item. Items may be reordered when a stage has
+ * more than one worker.
+ *
+ * @param <I> The type of the items submitted to the pipeline.
+ * @param <O> The type of the items produced by the last stage defined so far.
+ */
+public final class Pipeline<I, O> {
+
+    private final Lifecycle lifecycle;
+    private final PipelineStage last;
+
+    private Pipeline(Lifecycle lifecycle, PipelineStage last) {
+        this.lifecycle = lifecycle;
+        this.last = last;
+    }
+
+    /**
+     * Defines a pipeline with its first stage, whose workers take one item at a time.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workers The number of threads running the stage.
+     * @param capacity The number of submitted items that may wait for the stage.
+     * @param function The function applied to each item.
+     * @return The pipeline, not started yet.
+     */
+    public static <I, O> Pipeline<I, O> of(String name, int workers, int capacity,
+                                          Function<? super I, ? extends O> function) {
+        return of(name, workers, capacity, 1, function);
+    }
+
+    /**
+     * Defines a pipeline with its first stage.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workers The number of threads running the stage.
+     * @param capacity The number of submitted items that may wait for the stage.
+     * @param batchSize The most items a worker takes and passes on at once, 1 to not batch.
+     * @param function The function applied to each item.
+     * @return The pipeline, not started yet.
+     */
+    public static <I, O> Pipeline<I, O> of(String name, int workers, int capacity, int batchSize,
+                                          Function<? super I, ? extends O> function) {
+        Lifecycle lifecycle = new Lifecycle();
+        // Items are submitted by any number of threads
+        return new Pipeline<>(lifecycle, lifecycle.addStage(null, name, workers, capacity, batchSize, function));
+    }
+
+    /**
+     * Adds a stage that transforms the results of the last stage, taking one item at a time.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workers The number of threads running the stage.
+     * @param capacity The number of items that may wait for the stage.
+     * @param function The function applied to each item.
+     * @return The pipeline, ending with the new stage.
+     * @throws IllegalStateException If the pipeline has been started, or the last stage already has a successor.
+     */
+    public <R> Pipeline<I, R> thenApply(String name, int workers, int capacity,
+                                        Function<? super O, ? extends R> function) {
+        return thenApply(name, workers, capacity, 1, function);
+    }
+
+    /**
+     * Adds a stage that transforms the results of the last stage.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workers The number of threads running the stage.
+     * @param capacity The number of items that may wait for the stage.
+     * @param batchSize The most items a worker takes and passes on at once, 1 to not batch.
+     * @param function The function applied to each item.
+     * @return The pipeline, ending with the new stage.
+     * @throws IllegalStateException If the pipeline has been started, or the last stage already has a successor.
+     */
+    public <R> Pipeline<I, R> thenApply(String name, int workers, int capacity, int batchSize,
+                                        Function<? super O, ? extends R> function) {
+        return new Pipeline<>(lifecycle, lifecycle.addStage(last, name, workers, capacity, batchSize, function));
+    }
+
+    /**
+     * Adds a final stage that consumes the results of the last stage, taking one item at a time.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workers The number of threads running the stage.
+     * @param capacity The number of items that may wait for the stage.
+     * @param action The action applied to each item.
+     * @return The pipeline, ending with the new stage.
+     * @throws IllegalStateException If the pipeline has been started, or the last stage already has a successor.
+     */
+    public Pipeline<I, Void> thenAccept(String name, int workers, int capacity, Consumer<? super O> action) {
+        return thenAccept(name, workers, capacity, 1, action);
+    }
+
+    /**
+     * Adds a final stage that consumes the results of the last stage.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workers The number of threads running the stage.
+     * @param capacity The number of items that may wait for the stage.
+     * @param batchSize The most items a worker takes at once, 1 to not batch.
+     * @param action The action applied to each item.
+     * @return The pipeline, ending with the new stage.
+     * @throws IllegalStateException If the pipeline has been started, or the last stage already has a successor.
+     */
+    public Pipeline<I, Void> thenAccept(String name, int workers, int capacity, int batchSize,
+                                        Consumer<? super O> action) {
+        if (action == null) throw new NullPointerException();
+        return thenApply(name, workers, capacity, batchSize, item -> {
+            action.accept(item);
+            return null;
+        });
+    }
+
+    /**
+     * Starts the threads of every stage. Stages cannot be added afterwards.
+     *
+     * @throws IllegalStateException If the pipeline has already been started or has been shut down.
+     */
+    public void start() {
+        lifecycle.start();
+    }
+
+    /**
+     * Hands an item to the first stage, waiting while its buffers are full.
+     *
+     * @param item The item to process.
+     * @throws RejectedExecutionException If the pipeline has been shut down.
+     * @throws IllegalStateException If the pipeline has not been started.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void submit(I item) throws InterruptedException {
+        if (!lifecycle.enter(item)) {
+            throw new RejectedExecutionException("Pipeline has been shut down");
+        }
+        try {
+            lifecycle.first.send(new Object[] {item}, 1, ThreadLocalRandom.current().nextInt(), -1);
+        } finally {
+            lifecycle.exit();
+        }
+    }
+
+    /**
+     * Hands an item to the first stage, waiting up to the given time for room in its buffers.
+     *
+     * @param item The item to process.
+     * @param timeoutMillis The maximum time to wait in milliseconds, or 0 to not wait at all.
+     * @return true if the item was accepted, false if the pipeline has been shut down or the buffers were still
+     *         full when the timeout elapsed.
+     * @throws IllegalStateException If the pipeline has not been started.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public boolean offer(I item, long timeoutMillis) throws InterruptedException {
+        if (!lifecycle.enter(item)) return false;
+        try {
+            return lifecycle.first.send(new Object[] {item}, 1, ThreadLocalRandom.current().nextInt(),
+                    TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis)));
+        } finally {
+            lifecycle.exit();
+        }
+    }
+
+    /**
+     * Stops accepting items. Items already submitted flow through the remaining stages, which then stop.
+     */
+    public void shutdown() {
+        lifecycle.shutdown();
+    }
+
+    /**
+     * Returns whether shutdown() has been called.
+     */
+    public boolean isShutdown() {
+        return lifecycle.isShutdown();
+    }
+
+    /**
+     * Blocks until every stage has finished after a shutdown, or the timeout expires.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return true if the pipeline terminated, false if the timeout elapsed first.
+     */
+    public boolean awaitTermination(long timeoutMillis) {
+        try {
+            return lifecycle.termination.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // Preserve interrupt status and exit early if interrupted
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether every stage has finished after a shutdown.
+     */
+    public boolean isTerminated() {
+        return lifecycle.termination.getCount() == 0;
+    }
+
+    /**
+     * Returns a snapshot of every stage's metrics, in pipeline order.
+     */
+    public List<StageStats> getStats() {
+        List<StageStats> stats = new ArrayList<>();
+        for (PipelineStage stage = lifecycle.first; stage != null; stage = stage.getNext()) {
+            stats.add(stage.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * The state shared by all views of one pipeline.
+     */
+    private static final class Lifecycle {
+
+        // Set in the submission state once shutdown() has been called; the lower bits count submissions in progress
+        private static final int SHUT_DOWN = 1 << 30;
+
+        private PipelineStage first;
+        private final AtomicInteger submissions = new AtomicInteger();
+        private final AtomicInteger liveStages = new AtomicInteger();
+        private final CountDownLatch termination = new CountDownLatch(1);
+
+        // Written under this monitor, read by submitters without it
+        private volatile boolean started;
+
+        @SuppressWarnings("unchecked")
+        synchronized PipelineStage addStage(PipelineStage previous, String name, int workers, int capacity,
+                                            int batchSize, Function<?, ?> function) {
+            if (name == null || function == null) throw new NullPointerException();
+            if (started) throw new IllegalStateException("Stages cannot be added to a started pipeline");
+            if (previous != null && previous.getNext() != null) {
+                throw new IllegalStateException("Stage already has a next stage");
+            }
+            boolean singleProducer = previous != null && previous.getWorkerCount() == 1;
+            PipelineStage stage = new PipelineStage(name, workers, capacity, batchSize, singleProducer,
+                    (Function<Object, Object>) function, this::stageTerminated);
+            if (previous == null) {
+                first = stage;
+            } else {
+                previous.setNext(stage);
+            }
+            return stage;
+        }
+
+        synchronized void start() {
+            if (started) throw new IllegalStateException("Pipeline has already been started");
+            if (isShutdown()) throw new IllegalStateException("Pipeline has been shut down");
+            for (PipelineStage stage = first; stage != null; stage = stage.getNext()) {
+                liveStages.incrementAndGet();
+            }
+            started = true;
+            for (PipelineStage stage = first; stage != null; stage = stage.getNext()) {
+                stage.start();
+            }
+        }
+
+        /**
+         * Registers a submission in progress.
+         *
+         * @return false if the pipeline has been shut down.
+         */
+        boolean enter(Object item) {
+            if (item == null) throw new NullPointerException();
+            if (!started) throw new IllegalStateException("Pipeline has not been started");
+            int s;
+            do {
+                s = submissions.get();
+                if ((s & SHUT_DOWN) != 0) return false;
+            } while (!submissions.compareAndSet(s, s + 1));
+            return true;
+        }
+
+        /**
+         * Ends a submission, closing the first stage if it was the last one after a shutdown.
+         */
+        void exit() {
+            if (submissions.decrementAndGet() == SHUT_DOWN) {
+                first.closeInput();
+            }
+        }
+
+        void shutdown() {
+            int s;
+            do {
+                s = submissions.get();
+                if ((s & SHUT_DOWN) != 0) return;
+            } while (!submissions.compareAndSet(s, s | SHUT_DOWN));
+            if (s != 0) return;
+            // No submission in progress, otherwise the last one to finish closes the first stage
+            synchronized (this) {
+                if (started) {
+                    first.closeInput();
+                } else {
+                    termination.countDown();
+                }
+            }
+        }
+
+        boolean isShutdown() {
+            return (submissions.get() & SHUT_DOWN) != 0;
+        }
+
+        private void stageTerminated() {
+            if (liveStages.decrementAndGet() == 0) {
+                termination.countDown();
+            }
+        }
+    }
+
+}
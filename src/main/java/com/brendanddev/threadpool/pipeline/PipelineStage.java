@@ -0,0 +1,215 @@
+package com.brendanddev.threadpool.pipeline;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.metrics.LatencyHistogram;
+import com.brendanddev.threadpool.metrics.StageStats;
+
+/**
+ * One stage of a Pipeline: a function run by a fixed number of worker threads, each consuming its own
+ * HandoffBuffer. Items are typed by Pipeline; the stage itself handles them as Objects.
+ *
+ * Each worker takes up to batchSize items from its buffer at a time, applies the function to each of them, and
+ * hands the results to the next stage together. Producers spread their items over the stage's buffers, starting
+ * at a different buffer each time, and wait when every buffer is full, which propagates backpressure upstream.
+ *
+ * A stage shuts down from the front: once its producers are done, its buffers are closed, and each worker exits
+ * after draining its buffer. The last worker to exit then closes the next stage.
+ */
+final class PipelineStage {
+
+    private final String name;
+    private final int workerCount;
+    private final int batchSize;
+    private final Function<Object, Object> function;
+    private final HandoffBuffer[] buffers;
+    private final Runnable onTerminated;
+    private final Thread[] threads;
+
+    // Set before the stage is started
+    private PipelineStage next;
+
+    private final AtomicInteger liveWorkers;
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    /**
+     * Constructs a PipelineStage.
+     *
+     * @param name The name of the stage, also used for its threads.
+     * @param workerCount The number of worker threads.
+     * @param capacity The number of items that may wait for the stage, split between its workers' buffers.
+     * @param batchSize The most items a worker takes and passes on at once.
+     * @param singleProducer Whether the stage is fed by a single thread.
+     * @param function The function applied to each item.
+     * @param onTerminated Run by the last worker to exit.
+     */
+    PipelineStage(String name, int workerCount, int capacity, int batchSize, boolean singleProducer,
+                  Function<Object, Object> function, Runnable onTerminated) {
+        if (workerCount < 1) throw new IllegalArgumentException("workerCount must be at least 1");
+        if (capacity < workerCount) throw new IllegalArgumentException("capacity must be at least workerCount");
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+        this.name = name;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.function = function;
+        this.onTerminated = onTerminated;
+        this.liveWorkers = new AtomicInteger(workerCount);
+
+        this.buffers = new HandoffBuffer[workerCount];
+        int perWorker = (capacity + workerCount - 1) / workerCount;
+        for (int i = 0; i < workerCount; i++) {
+            buffers[i] = new HandoffBuffer(perWorker, singleProducer);
+        }
+
+        CustomThreadFactory factory = new CustomThreadFactory(name, false, Thread.NORM_PRIORITY);
+        this.threads = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            HandoffBuffer buffer = buffers[i];
+            int index = i;
+            threads[i] = factory.newThread(() -> work(buffer, index));
+        }
+    }
+
+    /**
+     * Connects the stage that receives this stage's results.
+     */
+    void setNext(PipelineStage next) {
+        this.next = next;
+    }
+
+    PipelineStage getNext() {
+        return next;
+    }
+
+    int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * Hands items to the stage, spreading them over its buffers and waiting while they are all full.
+     *
+     * @param items The items, from index 0.
+     * @param count The number of items.
+     * @param start The buffer to try first.
+     * @param timeoutNanos The maximum time to wait, or a negative value to wait indefinitely.
+     * @return false if the timeout elapsed before every item was handed over.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    boolean send(Object[] items, int count, int start, long timeoutNanos) throws InterruptedException {
+        long now = System.nanoTime();
+        int n = buffers.length;
+        int sent = 0;
+        for (int i = 0; i < n && sent < count; i++) {
+            sent += buffers[Math.floorMod(start + i, n)].offer(items, sent, count - sent, now);
+        }
+        if (sent == count) return true;
+
+        blockedCount.increment();
+        long deadline = now + timeoutNanos;
+        HandoffBuffer buffer = buffers[Math.floorMod(start, n)];
+        while (sent < count) {
+            long remaining = timeoutNanos < 0 ? -1 : deadline - System.nanoTime();
+            if (timeoutNanos >= 0 && remaining <= 0) return false;
+            int added = buffer.put(items, sent, count - sent, now, remaining);
+            if (added == 0) return false;
+            sent += added;
+        }
+        return true;
+    }
+
+    /**
+     * Closes the stage's buffers. Must only be called once every producer is done.
+     */
+    void closeInput() {
+        for (HandoffBuffer buffer : buffers) {
+            buffer.close();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the stage's metrics.
+     */
+    StageStats getStats() {
+        int depth = 0;
+        int capacity = 0;
+        for (HandoffBuffer buffer : buffers) {
+            depth += buffer.size();
+            capacity += buffer.capacity();
+        }
+        return new StageStats(name, workerCount, batchSize, depth, capacity, processedCount.sum(),
+                failedCount.sum(), blockedCount.sum(), queueWait.snapshot(), serviceTime.snapshot());
+    }
+
+    /**
+     * The loop of one worker: take a batch from its buffer, process it and pass the results on, until the buffer
+     * has been closed and drained.
+     */
+    private void work(HandoffBuffer buffer, int index) {
+        Object[] batch = new Object[batchSize];
+        long[] stamps = new long[batchSize];
+        Object[] results = new Object[batchSize];
+        int cursor = index;
+        try {
+            while (true) {
+                int taken = buffer.drainTo(batch, stamps, batchSize);
+                if (taken == 0) {
+                    // Closed only after every producer is done, so an empty buffer stays empty
+                    if (buffer.isClosed() && buffer.size() == 0) return;
+                    buffer.awaitItems();
+                    continue;
+                }
+
+                int produced = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < taken; i++) {
+                    queueWait.record(start - stamps[i]);
+                    Object item = batch[i];
+                    batch[i] = null;
+                    try {
+                        Object result = function.apply(item);
+                        if (result != null && next != null) results[produced++] = result;
+                    } catch (Throwable t) {
+                        // Errors included: the stage must keep draining. Report it like a pool worker does
+                        failedCount.increment();
+                        Thread current = Thread.currentThread();
+                        current.getUncaughtExceptionHandler().uncaughtException(current, t);
+                    }
+                    long end = System.nanoTime();
+                    serviceTime.record(end - start);
+                    start = end;
+                }
+                processedCount.add(taken);
+
+                if (produced > 0) {
+                    next.send(results, produced, cursor++, -1);
+                    Arrays.fill(results, 0, produced, null);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Interrupting a stage's thread stops it, abandoning the items in its buffer
+        } finally {
+            if (liveWorkers.decrementAndGet() == 0) {
+                if (next != null) next.closeInput();
+                onTerminated.run();
+            }
+        }
+    }
+
+}
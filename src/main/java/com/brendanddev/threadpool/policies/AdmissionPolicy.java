@@ -0,0 +1,40 @@
+package com.brendanddev.threadpool.policies;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+
+/**
+ * Decides whether a CustomThreadPool accepts a newly submitted task, so that an overloaded pool can shed
+ * work at the door instead of letting its queue and its tail latency grow without bound.
+ *
+ * A task that is not admitted is handed to the pool's RejectionHandler, exactly like a task submitted after
+ * shutdown. Policies are called on every submission and every task start, so implementations must be
+ * thread-safe, must not block and should not log.
+ */
+public interface AdmissionPolicy {
+
+    /**
+     * Decides whether a task may be queued.
+     *
+     * @param task The task being submitted.
+     * @param pool The pool the task is submitted to.
+     * @return true to accept the task, false to reject it.
+     */
+    boolean admit(Runnable task, CustomThreadPool pool);
+
+    /**
+     * Called by a worker when it starts a task whose queue wait is known.
+     *
+     * @param queueWaitNanos How long the task waited in the queue.
+     */
+    default void onTaskStarted(long queueWaitNanos) {
+    }
+
+    /**
+     * Returns whether this policy needs the queue wait of every task. If so, the pool enables queue-wait
+     * tracking for plain Runnables when the policy is installed.
+     */
+    default boolean usesQueueWait() {
+        return false;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.brendanddev.threadpool.policies;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+
+/**
+ * An AdmissionPolicy based on CoDel (Controlled Delay), which sheds load when the queue stops draining.
+ *
+ * A burst that fills the queue for a moment is fine, a queue that never empties is not. CoDel tells the two
+ * apart by the time tasks spend in the queue: as long as some task starts within the target delay, the queue
+ * is draining. Once every task that started during a whole interval waited longer than the target, the pool
+ * is overloaded, and new tasks are rejected until a task starts within the target again. Tasks are still
+ * admitted while the queue is empty, so the policy recovers on its own when load drops.
+ *
+ * Rejecting at submission, rather than dropping tasks that are already queued as network CoDel does, keeps
+ * accepted work intact and makes the caller see the overload right away.
+ */
+public class CoDelAdmissionPolicy implements AdmissionPolicy {
+
+    private final long targetNanos;
+    private final long intervalNanos;
+
+    // Time by which the queue wait must drop below the target, or 0 while it is below the target
+    private final AtomicLong aboveTargetDeadline = new AtomicLong();
+    private volatile boolean shedding = false;
+
+    /**
+     * Constructs a CoDelAdmissionPolicy.
+     *
+     * @param targetMillis The acceptable queue wait in milliseconds, e.g. 5.
+     * @param intervalMillis How long the queue wait must stay above the target before shedding starts,
+     *                       e.g. 100. Should be a few times the typical task duration.
+     */
+    public CoDelAdmissionPolicy(long targetMillis, long intervalMillis) {
+        if (targetMillis <= 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Target and interval must be positive: target=" + targetMillis
+                    + ", interval=" + intervalMillis);
+        }
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    @Override
+    public boolean admit(Runnable task, CustomThreadPool pool) {
+        return !shedding || pool.getQueueSize() == 0;
+    }
+
+    @Override
+    public void onTaskStarted(long queueWaitNanos) {
+        if (queueWaitNanos < targetNanos) {
+            // The queue is draining, stop shedding (plain reads first to avoid writing shared state on every task)
+            if (aboveTargetDeadline.get() != 0) aboveTargetDeadline.set(0);
+            if (shedding) shedding = false;
+            return;
+        }
+
+        long now = System.nanoTime();
+        long deadline = aboveTargetDeadline.get();
+        if (deadline == 0) {
+            // First task above the target, give the queue one interval to drain; 0 is reserved for "below target"
+            aboveTargetDeadline.compareAndSet(0, (now + intervalNanos) | 1);
+        } else if (!shedding && now - deadline >= 0) {
+            shedding = true;
+        }
+    }
+
+    @Override
+    public boolean usesQueueWait() {
+        return true;
+    }
+
+    /**
+     * Returns whether the policy is currently rejecting new tasks.
+     */
+    public boolean isShedding() {
+        return shedding;
+    }
+
+}
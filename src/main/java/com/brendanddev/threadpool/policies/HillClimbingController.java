@@ -0,0 +1,258 @@
+package com.brendanddev.threadpool.policies;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.brendanddev.threadpool.metrics.HistogramSnapshot;
+import com.brendanddev.threadpool.metrics.PoolStats;
+import com.brendanddev.threadpool.metrics.SizingDecision;
+
+/**
+ * Finds the pool size with the best throughput by trying neighbouring sizes, in the spirit of the hill climbing
+ * used by the .NET thread pool.
+ *
+ * The controller is attached with CustomThreadPool.setSizeController(), which calls evaluate() once per sample
+ * interval and resizes the pool to the size it returns. Each call measures the completed tasks per second and
+ * the mean queue wait since the previous call, and then:
+ * - While tasks do not wait (no backlog), the pool has more capacity than it needs, and a worker is removed
+ *   while some are idle, down to the minimum size.
+ * - While tasks are backing up, the controller holds its size and keeps a smoothed throughput for it. Every few
+ *   intervals it probes a neighbouring size, alternately larger and smaller. If the move raised throughput by
+ *   more than the noise threshold it keeps climbing in that direction, in steps that grow with the gain. If
+ *   throughput fell, or more workers brought no gain, the move is undone; fewer workers doing as well as more
+ *   are kept.
+ *
+ * Several things damp the controller so that it settles instead of oscillating:
+ * - The interval after a move is discarded while new workers start and old ones finish.
+ * - Changes within the noise threshold count as no change.
+ * - Steps are capped at maxStep.
+ * - Probes are spaced out by PROBE_AFTER_INTERVALS stable intervals.
+ * - Idle workers are only removed after IDLE_AFTER_INTERVALS quiet intervals, and not again soon after a
+ *   removal had to be undone.
+ *
+ * Queue waits are only measured for futures, or for all tasks with queue-wait tracking enabled. Without them,
+ * a backlog is only recognised from the queue length.
+ */
+public class HillClimbingController {
+
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 500;
+    public static final int DEFAULT_MAX_STEP = 2;
+    public static final double DEFAULT_NOISE_THRESHOLD = 0.05;
+
+    // Mean queue wait above which tasks are considered backed up
+    private static final long BACKLOG_WAIT_NANOS = 1_000_000;
+
+    // Stable intervals with a backlog after which a neighbouring size is probed
+    private static final int PROBE_AFTER_INTERVALS = 8;
+
+    // Intervals without a backlog after which an idle worker is removed
+    private static final int IDLE_AFTER_INTERVALS = 2;
+
+    // Weight of a new sample in the smoothed throughput of a size that is being held
+    private static final double SMOOTHING = 0.5;
+
+    // Number of decisions kept for PoolStats
+    private static final int HISTORY = 32;
+
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long sampleIntervalMillis;
+    private final int maxStep;
+    private final double noiseThreshold;
+
+    // Guarded by this monitor
+    private long lastSampleNanos;
+    private long lastCompletedCount;
+    private long lastWaitCount;
+    private long lastWaitSum;
+    private boolean settling;
+    private double baselineThroughput = -1;
+    private int lastMove;
+    private int stableIntervals = PROBE_AFTER_INTERVALS - 1;
+    private boolean probeUp;
+    private int quietIntervals;
+    private final ArrayDeque<SizingDecision> decisions = new ArrayDeque<>();
+
+    /**
+     * Constructs a HillClimbingController with the default sample interval, step limit and noise threshold.
+     *
+     * @param minPoolSize The smallest size the controller may choose, at least 1.
+     * @param maxPoolSize The largest size the controller may choose.
+     */
+    public HillClimbingController(int minPoolSize, int maxPoolSize) {
+        this(minPoolSize, maxPoolSize, DEFAULT_SAMPLE_INTERVAL_MILLIS, DEFAULT_MAX_STEP, DEFAULT_NOISE_THRESHOLD);
+    }
+
+    /**
+     * Constructs a HillClimbingController.
+     *
+     * @param minPoolSize The smallest size the controller may choose, at least 1.
+     * @param maxPoolSize The largest size the controller may choose.
+     * @param sampleIntervalMillis How often throughput is measured and the size reconsidered. Should be long
+     *                             enough to complete many tasks, e.g. 500.
+     * @param maxStep The largest number of workers added or removed in one move.
+     * @param noiseThreshold The relative change in throughput that is treated as noise, e.g. 0.05 for 5%.
+     */
+    public HillClimbingController(int minPoolSize, int maxPoolSize, long sampleIntervalMillis, int maxStep,
+                                  double noiseThreshold) {
+        if (minPoolSize < 1 || maxPoolSize < minPoolSize || sampleIntervalMillis <= 0 || maxStep < 1
+                || noiseThreshold < 0) {
+            throw new IllegalArgumentException("Invalid controller settings: min=" + minPoolSize
+                    + ", max=" + maxPoolSize + ", interval=" + sampleIntervalMillis + ", maxStep=" + maxStep
+                    + ", noise=" + noiseThreshold);
+        }
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.sampleIntervalMillis = sampleIntervalMillis;
+        this.maxStep = maxStep;
+        this.noiseThreshold = noiseThreshold;
+    }
+
+    /**
+     * Takes a sample and decides on the pool size. Called by the pool once per sample interval.
+     *
+     * @param stats The pool's current stats.
+     * @param currentSize The pool size the controller chose last time, or the pool's size on the first call.
+     * @param nowNanos The current System.nanoTime().
+     * @return The size the pool should have.
+     */
+    public synchronized int evaluate(PoolStats stats, int currentSize, long nowNanos) {
+        long completed = stats.getCompletedCount();
+        HistogramSnapshot queueWait = stats.getQueueWait();
+        if (lastSampleNanos == 0) {
+            remember(nowNanos, completed, queueWait);
+            return moveIntoBounds(currentSize, 0, 0);
+        }
+
+        long elapsed = nowNanos - lastSampleNanos;
+        if (elapsed <= 0) return currentSize;
+        double throughput = (completed - lastCompletedCount) * 1e9 / elapsed;
+        long waits = queueWait.getCount() - lastWaitCount;
+        long meanWait = waits > 0 ? (queueWait.getSum() - lastWaitSum) / waits : 0;
+        remember(nowNanos, completed, queueWait);
+
+        if (bound(currentSize) != currentSize) {
+            return moveIntoBounds(currentSize, throughput, meanWait);
+        }
+        if (settling) {
+            // Workers are still starting or retiring, this interval does not show the new size yet
+            settling = false;
+            return currentSize;
+        }
+
+        boolean backlog = stats.getQueueSize() > currentSize || meanWait > BACKLOG_WAIT_NANOS;
+        if (!backlog) {
+            lastMove = 0;
+            baselineThroughput = throughput;
+            stableIntervals = PROBE_AFTER_INTERVALS - 1;
+            if (++quietIntervals >= IDLE_AFTER_INTERVALS && stats.getActiveWorkerCount() < currentSize) {
+                quietIntervals = 0;
+                return move(currentSize, currentSize - 1, throughput, meanWait, SizingDecision.Reason.IDLE);
+            }
+            return currentSize;
+        }
+        quietIntervals = 0;
+
+        if (lastMove == 0) {
+            // Holding: keep a smoothed throughput for this size and probe a neighbour now and then
+            baselineThroughput = baselineThroughput < 0
+                    ? throughput : baselineThroughput + SMOOTHING * (throughput - baselineThroughput);
+            if (++stableIntervals < PROBE_AFTER_INTERVALS) return currentSize;
+            stableIntervals = 0;
+            probeUp = !probeUp;
+            int target = bound(currentSize + (probeUp ? 1 : -1));
+            if (target == currentSize) target = bound(currentSize + (probeUp ? -1 : 1));
+            return move(currentSize, target, throughput, meanWait, SizingDecision.Reason.PROBE);
+        }
+
+        double change = (throughput - baselineThroughput) / Math.max(baselineThroughput, 1);
+        if (change > noiseThreshold) {
+            // The last move helped, take a larger step the more it helped
+            int step = (int) Math.max(1, Math.min(maxStep, Math.round(change * currentSize)));
+            baselineThroughput = throughput;
+            int target = bound(currentSize + Integer.signum(lastMove) * step);
+            if (target == currentSize) {
+                lastMove = 0;
+                return currentSize;
+            }
+            return move(currentSize, target, throughput, meanWait, SizingDecision.Reason.CLIMB);
+        }
+        if (change < -noiseThreshold || lastMove > 0) {
+            // Worse, or more workers for nothing: go back to the previous size, whose throughput is the baseline
+            int target = move(currentSize, currentSize - lastMove, throughput, meanWait,
+                    SizingDecision.Reason.REVERSE);
+            lastMove = 0;
+            // Do not remove workers again right away if this undid the removal of an idle one
+            quietIntervals = -PROBE_AFTER_INTERVALS;
+            return target;
+        }
+        // Fewer workers did as well, keep the smaller size
+        lastMove = 0;
+        baselineThroughput = throughput;
+        return currentSize;
+    }
+
+    /**
+     * Returns the most recent decisions, oldest first.
+     */
+    public synchronized List<SizingDecision> getDecisions() {
+        return new ArrayList<>(decisions);
+    }
+
+    /**
+     * Returns how often the pool should call evaluate(), in milliseconds.
+     */
+    public long getSampleIntervalMillis() {
+        return sampleIntervalMillis;
+    }
+
+    /**
+     * Returns the smallest size the controller may choose.
+     */
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    /**
+     * Returns the largest size the controller may choose.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    private void remember(long nowNanos, long completed, HistogramSnapshot queueWait) {
+        lastSampleNanos = nowNanos;
+        lastCompletedCount = completed;
+        lastWaitCount = queueWait.getCount();
+        lastWaitSum = queueWait.getSum();
+    }
+
+    private int bound(int size) {
+        return Math.max(minPoolSize, Math.min(maxPoolSize, size));
+    }
+
+    /**
+     * Moves a size that was set outside the bounds back into them, starting over from a held state.
+     */
+    private int moveIntoBounds(int size, double throughput, long meanWait) {
+        int target = move(size, bound(size), throughput, meanWait, SizingDecision.Reason.BOUNDS);
+        lastMove = 0;
+        baselineThroughput = -1;
+        return target;
+    }
+
+    /**
+     * Records a change of size and discards the next interval, returning the new size.
+     */
+    private int move(int from, int to, double throughput, long meanWait, SizingDecision.Reason reason) {
+        to = bound(to);
+        if (to == from) return from;
+        decisions.addLast(new SizingDecision(System.currentTimeMillis(), from, to, throughput, meanWait, reason));
+        if (decisions.size() > HISTORY) decisions.removeFirst();
+        lastMove = to - from;
+        settling = true;
+        return to;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.brendanddev.threadpool.policies;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.brendanddev.threadpool.policies.IdleStrategy;
+
+/**
+ * Provides built-in idle strategies for the workers of a CustomThreadPool.
+ */
+public class IdleStrategies {
+
+    /**
+     * Blocks on the queue as soon as it is empty. Uses no CPU while idle, but every task that arrives at an
+     * idle pool pays for waking a worker. This is the default.
+     */
+    public static final IdleStrategy BLOCKING = idleCount -> false;
+
+    /**
+     * Polls the queue in a tight loop with Thread.onSpinWait() and never blocks. Gives the lowest
+     * submit-to-execute latency, but each spinning worker occupies a full core, so it is best combined with a
+     * limit on the number of hot spinners.
+     */
+    public static final IdleStrategy BUSY_SPIN = idleCount -> {
+        Thread.onSpinWait();
+        return true;
+    };
+
+    /**
+     * Backs off in stages: spins, then yields, then parks for exponentially growing periods up to
+     * maxParkNanos, and finally blocks on the queue. Tasks that arrive shortly after the queue empties are
+     * picked up without a wakeup, while a pool that stays idle stops using CPU.
+     *
+     * @param spins The number of polls separated by Thread.onSpinWait().
+     * @param yields The number of polls separated by Thread.yield() after spinning.
+     * @param maxParkNanos The longest timed park before blocking, or 0 to block right after yielding.
+     * @return A new backoff strategy.
+     */
+    public static IdleStrategy backoff(int spins, int yields, long maxParkNanos) {
+        if (spins < 0 || yields < 0 || maxParkNanos < 0) {
+            throw new IllegalArgumentException("Invalid backoff: spins=" + spins + ", yields=" + yields
+                    + ", maxParkNanos=" + maxParkNanos);
+        }
+        // Timed parks start at 1 microsecond and double until they reach maxParkNanos
+        int rounds = 0;
+        while (rounds < 40 && Math.min(1_000L << rounds, maxParkNanos) < maxParkNanos) {
+            rounds++;
+        }
+        int parks = maxParkNanos == 0 ? 0 : rounds + 1;
+        return idleCount -> {
+            if (idleCount < spins) {
+                Thread.onSpinWait();
+                return true;
+            }
+            if (idleCount < spins + yields) {
+                Thread.yield();
+                return true;
+            }
+            int park = idleCount - spins - yields;
+            if (park < parks) {
+                LockSupport.parkNanos(Math.min(1_000L << park, maxParkNanos));
+                return true;
+            }
+            return false;
+        };
+    }
+
+}
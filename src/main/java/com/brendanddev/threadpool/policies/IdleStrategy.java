@@ -0,0 +1,27 @@
+package com.brendanddev.threadpool.policies;
+
+/**
+ * Decides what a worker does while the TaskQueue is empty, before it falls back to a blocking wait.
+ *
+ * A blocked worker has to be woken by the submitting thread, which costs a futex wakeup and a context switch
+ * on every task that arrives at an idle pool. A worker that keeps polling the queue instead picks the task up
+ * within nanoseconds, at the cost of the CPU it burns while there is nothing to do. An idle strategy chooses
+ * the point on that trade-off.
+ *
+ * Between failed polls the worker calls idle() with the number of polls it has made so far. The strategy
+ * spins, yields or parks for a moment and returns true to poll again, or returns false to let the worker
+ * block on the queue until it is signalled. Strategies are shared by all workers of a pool and must be
+ * stateless or thread-safe.
+ */
+@FunctionalInterface
+public interface IdleStrategy {
+
+    /**
+     * Called after a poll of the empty queue.
+     *
+     * @param idleCount The number of polls since the worker last found a task, starting at 0.
+     * @return true to poll the queue again, false to block until a task is enqueued.
+     */
+    boolean idle(int idleCount);
+
+}
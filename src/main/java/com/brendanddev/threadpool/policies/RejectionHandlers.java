@@ -1,5 +1,8 @@
 package com.brendanddev.threadpool.policies;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
 import com.brendanddev.threadpool.CustomThreadPool;
 import com.brendanddev.threadpool.policies.RejectionHandler;
 
@@ -7,47 +10,49 @@ import com.brendanddev.threadpool.policies.RejectionHandler;
  * Provides built-in implementations of common rejection handling policies.
  * Each constants defines a different strategy for what to do when a task cannot be accepted
  * by the thread pool.
+ *
+ * Rejections happen on the submission path and can come in floods when the pool is overloaded, so none of
+ * the handlers log; rejected tasks are counted in the pool's metrics instead.
  */
 public class RejectionHandlers {
 
     /**
-     * A policy that throws a RuntimeException when a task is rejected.
+     * A policy that throws a RejectedExecutionException when a task is rejected.
      */
     public static final RejectionHandler ABORT_POLICY = (task, pool) -> {
-        throw new RuntimeException("[ABORT] - Task rejected from " + pool);
+        throw new RejectedExecutionException("[ABORT] - Task rejected from " + pool);
     };
 
     /**
-     * A policy that silently (only prints) discards the rejected task.
+     * A policy that silently discards the rejected task.
      */
     public static final RejectionHandler DISCARD_POLICY = (task, pool) -> {
-        System.out.println("[DISCARD] - Task discarded from " + pool);
     };
 
     /**
-     * A policy that runs the rejected task in the caller's thread.
+     * A policy that runs the rejected task in the caller's thread. When the pool is saturated this also slows
+     * the caller down to the rate the pool can keep up with.
      */
     public static final RejectionHandler CALLER_RUNS_POLICY = (task, pool) -> {
-        System.out.println("[CALLER_RUNS] - Running task in caller thread from " + pool);
         task.run();
     };
 
     /**
-     * Discards the oldest queued task to make room for the new task.
+     * Discards the oldest queued task to make room for the new task. A discarded future is cancelled so that
+     * nobody waits for it forever. The pool applies this policy itself to tasks passed to execute() or submit():
+     * it never discards the tasks it uses to run keyed lanes, task groups and batches, queues the new task with
+     * the context it captured, and discards the next oldest task if other producers take the space first.
+     *
+     * The handler itself is only called when no room could be made, e.g. because the pool was shut down or
+     * the queue holds nothing to discard, and for tasks that cannot jump into the queue, such as keyed, grouped,
+     * scheduled or batched tasks, which are only rejected after a shutdown or by the AdmissionPolicy. Like the
+     * JDK's policy it never throws: the new task is dropped, and cancelled if it is a future, just as a
+     * discarded task would be.
      */
     public static final RejectionHandler DISCARD_OLDEST_POLICY = (task, pool) -> {
-        Runnable oldest = pool.getTaskQueue().poll();
-        if (oldest != null) {
-            System.out.println("[DISCARD_OLDEST] - Discarded oldest task from " + pool);
-        }
-        try {
-            pool.getTaskQueue().enqueue(task);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.out.println("[DISCARD_OLDEST] - Interrupted while enqueuing task in " + pool);
+        if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
         }
     };
 
-
-    
 }
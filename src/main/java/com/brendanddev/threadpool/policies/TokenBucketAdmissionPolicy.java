@@ -0,0 +1,51 @@
+package com.brendanddev.threadpool.policies;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+
+/**
+ * An AdmissionPolicy that limits the submission rate with a token bucket.
+ *
+ * The bucket refills at a steady rate and holds up to a burst of tokens; each admitted task takes one, and
+ * a task that finds the bucket empty is rejected. The bucket is kept as a single timestamp, the time at which
+ * it will next be full (the generic cell rate algorithm), so admitting a task is one CAS and there is no
+ * refill thread.
+ */
+public class TokenBucketAdmissionPolicy implements AdmissionPolicy {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+
+    // The time at which the bucket would be full again if no more tasks arrived
+    private final AtomicLong fullAt;
+
+    /**
+     * Constructs a TokenBucketAdmissionPolicy.
+     *
+     * @param tasksPerSecond The sustained number of tasks admitted per second.
+     * @param burst The number of tasks that may be admitted at once after a quiet period.
+     */
+    public TokenBucketAdmissionPolicy(double tasksPerSecond, int burst) {
+        if (tasksPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid token bucket: rate=" + tasksPerSecond + ", burst=" + burst);
+        }
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tasksPerSecond));
+        this.burstNanos = nanosPerToken * burst;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    @Override
+    public boolean admit(Runnable task, CustomThreadPool pool) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            // A bucket that has been full for a while cannot hold more than a burst
+            long next = Math.max(current, now) + nanosPerToken;
+            if (next - now > burstNanos) return false;
+            if (fullAt.compareAndSet(current, next)) return true;
+        }
+    }
+
+}
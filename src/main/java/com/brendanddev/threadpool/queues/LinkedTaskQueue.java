@@ -0,0 +1,277 @@
+package com.brendanddev.threadpool.queues;
+
+import java.util.Collection;
+import java.util.LinkedList;
+
+import com.brendanddev.threadpool.TaskQueue;
+
+/**
+ * A thread-safe FIFO queue for storing Runnable tasks in a custom thread pool.
+ * 
+ * This is the default TaskQueue implementation. All methods are synchronized to ensure that multiple
+ * threads can safely enqueue and dequeue tasks without race conditions.
+ * 
+ * Producers waiting for space and consumers waiting for tasks share the queue's monitor. The queue counts
+ * both kinds of waiters so that, whenever only one kind is waiting, it can wake exactly as many threads as
+ * there is work for with notify() instead of waking every thread with notifyAll().
+ */
+public class LinkedTaskQueue implements TaskQueue {
+
+    private final LinkedList<Runnable> tasks;
+    private final int capacity;
+
+    // Number of threads waiting in dequeue()/poll(timeout) and in enqueue(), guarded by this
+    private int waitingConsumers = 0;
+    private int waitingProducers = 0;
+
+    /**
+     * Constructs a LinkedTaskQueue with 'unlimited' capacity.
+     */
+    public LinkedTaskQueue() {
+        this(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Constructs a LinkedTaskQueue with the specified capacity.
+     */
+    public LinkedTaskQueue(int capacity) {
+        this.capacity = capacity;
+        this.tasks = new LinkedList<>();
+    }
+
+    /**
+     * Enqueue a task into the queue.
+     * This method is synchronized to allow only one thread to modify the internal queue at a time.
+     * 
+     * @param task The Runnable task to be added to the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public synchronized void enqueue(Runnable task) throws InterruptedException {
+        // Wait if the queue is full
+        while (tasks.size() >= capacity) {
+            awaitSpace(0);
+        }
+        
+        // Add task at the end of the queue
+        tasks.addLast(task);
+
+        // Wake up one worker thread waiting in dequeue()
+        signalConsumers(1);
+    }
+
+    /**
+     * Enqueue a task, waiting up to the given time for space if the queue is full.
+     * 
+     * @param task The Runnable task to be added to the queue.
+     * @param timeoutMillis The maximum time to wait for space in milliseconds, or 0 to not wait at all.
+     * @return true if the task was added, false if the queue was still full when the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public synchronized boolean offer(Runnable task, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (tasks.size() >= capacity) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            awaitSpace(remaining);
+        }
+
+        tasks.addLast(task);
+        signalConsumers(1);
+        return true;
+    }
+
+    /**
+     * Enqueue a batch of tasks under a single acquisition of the queue's monitor, blocking only if the
+     * queue fills up part way through.
+     * 
+     * @param batch The Runnable tasks to be added to the queue, in order.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public synchronized void enqueueAll(Collection<? extends Runnable> batch) throws InterruptedException {
+        int added = 0;
+        for (Runnable task : batch) {
+            if (tasks.size() >= capacity) {
+                // Let consumers make room for the rest of the batch
+                signalConsumers(added);
+                added = 0;
+                while (tasks.size() >= capacity) {
+                    awaitSpace(0);
+                }
+            }
+            tasks.addLast(task);
+            added++;
+        }
+
+        // Wake only as many waiting workers as there are new tasks
+        signalConsumers(added);
+    }
+
+    /**
+     * Dequeue a task from the queue.
+     * If the queue is empty, this method blocks until a task becomes available.
+     * 
+     * @return The Runnable task removed from the front of the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to dequeue.
+     */
+    @Override
+    public synchronized Runnable dequeue() throws InterruptedException {
+        // Wait while the queue is empty
+        while (tasks.isEmpty()) {
+            awaitTask(0);
+        }
+
+        // Remove the first task from the queue
+        Runnable task = tasks.removeFirst();
+
+        // Notify a thread waiting in enqueue() that space is available
+        signalProducers(1);
+        return task;
+    }
+
+    /**
+     * Non-blocking poll to retrieve and remove the head of the queue, or returns 
+     * null if the queue is empty.
+     * 
+     * @return The Runnable task at the front of the queue, or null if empty.
+     */
+    @Override
+    public synchronized Runnable poll() { 
+        if (tasks.isEmpty()) return null;
+        Runnable task = tasks.removeFirst();
+        signalProducers(1);
+        return task;
+    }
+
+    /**
+     * Timed poll that waits up to the given time for a task to become available.
+     * 
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return The Runnable task at the front of the queue, or null if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    @Override
+    public synchronized Runnable poll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (tasks.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return null;
+            awaitTask(remaining);
+        }
+
+        Runnable task = tasks.removeFirst();
+        signalProducers(1);
+        return task;
+    }
+
+    /**
+     * Moves up to maxTasks tasks from the head of the queue into the buffer under a single acquisition
+     * of the queue's monitor. Never blocks.
+     * 
+     * @param buffer The collection to add the tasks to.
+     * @param maxTasks The maximum number of tasks to move.
+     * @return The number of tasks moved.
+     */
+    @Override
+    public synchronized int drainTo(Collection<? super Runnable> buffer, int maxTasks) {
+        int drained = 0;
+        while (drained < maxTasks && !tasks.isEmpty()) {
+            buffer.add(tasks.removeFirst());
+            drained++;
+        }
+        signalProducers(drained);
+        return drained;
+    }
+
+    /**
+     * Removes the first occurrence of the given task from the queue.
+     * 
+     * @param task The task to remove.
+     * @return true if the task was found and removed.
+     */
+    @Override
+    public synchronized boolean remove(Runnable task) {
+        boolean removed = tasks.remove(task);
+        if (removed) {
+            // Space has been freed for a thread waiting in enqueue()
+            signalProducers(1);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the current number of tasks in the queue.
+     */
+    @Override
+    public synchronized int size() { 
+        return tasks.size();
+    }
+
+    /**
+     * Returns the maximum number of tasks the queue can hold.
+     */
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Waits for a consumer to free up space. Must be called while holding the monitor.
+     * 
+     * @param timeoutMillis The maximum time to wait, or 0 to wait until notified.
+     */
+    private void awaitSpace(long timeoutMillis) throws InterruptedException {
+        waitingProducers++;
+        try {
+            wait(timeoutMillis); // Releases lock and waits to be notified
+        } finally {
+            waitingProducers--;
+        }
+    }
+
+    /**
+     * Waits for a producer to add a task. Must be called while holding the monitor.
+     * 
+     * @param timeoutMillis The maximum time to wait, or 0 to wait until notified.
+     */
+    private void awaitTask(long timeoutMillis) throws InterruptedException {
+        waitingConsumers++;
+        try {
+            wait(timeoutMillis);
+        } finally {
+            waitingConsumers--;
+        }
+    }
+
+    /**
+     * Wakes up to count consumers after tasks were added. notify() may pick any waiting thread, so it is
+     * only used when no producers are waiting; otherwise everybody is woken to avoid a lost wakeup.
+     */
+    private void signalConsumers(int count) {
+        if (count <= 0 || waitingConsumers == 0) return;
+        if (waitingProducers > 0) {
+            notifyAll();
+            return;
+        }
+        for (int i = Math.min(count, waitingConsumers); i > 0; i--) {
+            notify();
+        }
+    }
+
+    /**
+     * Wakes up to count producers after space was freed, following the same rules as signalConsumers().
+     */
+    private void signalProducers(int count) {
+        if (count <= 0 || waitingProducers == 0) return;
+        if (waitingConsumers > 0) {
+            notifyAll();
+            return;
+        }
+        for (int i = Math.min(count, waitingProducers); i > 0; i--) {
+            notify();
+        }
+    }
+    
+}
@@ -0,0 +1,84 @@
+package com.brendanddev.threadpool.queues;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A volatile long counter surrounded by padding fields so that it occupies its own cache line.
+ *
+ * Lock-free queues keep their producer and consumer positions in separate counters that are written by
+ * different threads. Without padding the JVM may place both counters on the same cache line, and every
+ * write from one side would invalidate the line for the other side (false sharing).
+ */
+public final class PaddedCounter extends PaddedCounterValue {
+
+    // Right-hand padding, keeps the value away from whatever object is allocated next
+    @SuppressWarnings("unused")
+    private long p11, p12, p13, p14, p15, p16, p17;
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(PaddedCounterValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Constructs a PaddedCounter with the given initial value.
+     *
+     * @param initialValue The starting value of the counter.
+     */
+    public PaddedCounter(long initialValue) {
+        this.value = initialValue;
+    }
+
+    /**
+     * Returns the current value with volatile semantics.
+     */
+    public long get() {
+        return value;
+    }
+
+    /**
+     * Sets the value with volatile semantics.
+     */
+    public void set(long newValue) {
+        value = newValue;
+    }
+
+    /**
+     * Atomically sets the value to the given updated value if the current value equals the expected value.
+     *
+     * @return true if successful, false if the current value was not equal to the expected value.
+     */
+    public boolean compareAndSet(long expected, long newValue) {
+        return VALUE.compareAndSet(this, expected, newValue);
+    }
+
+    /**
+     * Atomically adds the given delta and returns the previous value.
+     */
+    public long getAndAdd(long delta) {
+        return (long) VALUE.getAndAdd(this, delta);
+    }
+
+}
+
+/**
+ * Left-hand padding, keeps the value away from the object header and from the previous object.
+ */
+abstract class PaddedCounterPadding {
+    @SuppressWarnings("unused")
+    private long p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * Holds the padded value. Subclassing is used because the JVM may reorder fields within a class but keeps
+ * superclass fields before subclass fields.
+ */
+abstract class PaddedCounterValue extends PaddedCounterPadding {
+    protected volatile long value;
+}
@@ -0,0 +1,91 @@
+package com.brendanddev.threadpool.queues;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps track of threads parked while waiting on a lock-free structure, so that a signalling thread can
+ * wake exactly as many waiters as it has work for instead of waking everybody.
+ *
+ * A waiter must follow the register, re-check, park sequence:
+ * <pre>
+ *   lot.register(me);
+ *   if (conditionNowTrue()) { lot.cancel(me); ... }
+ *   LockSupport.park(this);
+ *   lot.cancel(me);
+ * </pre>
+ * The waiting count is incremented before the re-check, so a signaller that publishes its change and then
+ * reads a count of zero is guaranteed that the waiter's re-check will observe the change.
+ */
+public final class ParkingLot {
+
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Registers a thread as waiting. Must be called before the waiter re-checks its wait condition.
+     *
+     * @param thread The thread about to park.
+     */
+    public void register(Thread thread) {
+        waiting.incrementAndGet();
+        waiters.add(thread);
+    }
+
+    /**
+     * Removes a thread that is no longer waiting, either because its condition became true or because it
+     * was woken. Does nothing if a signaller already removed it.
+     *
+     * @param thread The thread to remove.
+     */
+    public void cancel(Thread thread) {
+        if (waiters.remove(thread)) {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wakes a single waiting thread, if there is one.
+     * This is a single volatile read when nobody is waiting.
+     */
+    public void unparkOne() {
+        if (waiting.get() == 0) return;
+        Thread t = waiters.poll();
+        if (t != null) {
+            waiting.decrementAndGet();
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Wakes up to the given number of waiting threads.
+     *
+     * @param count The maximum number of threads to wake.
+     */
+    public void unpark(int count) {
+        for (int i = 0; i < count && waiting.get() > 0; i++) {
+            unparkOne();
+        }
+    }
+
+    /**
+     * Wakes every waiting thread.
+     */
+    public void unparkAll() {
+        while (waiting.get() > 0) {
+            Thread t = waiters.poll();
+            if (t == null) return;
+            waiting.decrementAndGet();
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Returns the number of threads currently registered as waiting.
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+}
@@ -0,0 +1,430 @@
+package com.brendanddev.threadpool.queues;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.brendanddev.threadpool.Prioritized;
+import com.brendanddev.threadpool.TaskQueue;
+
+/**
+ * A TaskQueue that hands out tasks highest priority first, with aging so that low priority tasks cannot
+ * be starved by a steady stream of urgent ones.
+ *
+ * Each priority level has its own lock-free FIFO lane, so producers at different levels never contend and
+ * there is no shared heap to lock. Tasks that implement Prioritized go to the lane of their priority,
+ * clamped to the configured levels; all other tasks go to the default level in the middle.
+ *
+ * A consumer looks at the head of every lane and takes the one with the highest effective priority. With
+ * aging enabled, a task's effective priority is its level plus one for every aging interval it has waited,
+ * so a waiting task eventually outranks freshly submitted work of any level. Since every lane is FIFO, its
+ * head is its longest-waiting task, and comparing heads is enough to find the best task overall.
+ *
+ * Waiting producers and consumers are parked and woken through ParkingLots, as in RingBufferTaskQueue.
+ */
+public class PriorityTaskQueue implements TaskQueue {
+
+    /**
+     * A queued task together with the time it was enqueued.
+     */
+    private static final class Entry {
+        final Runnable task;
+        final long enqueuedAt;
+
+        Entry(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final int MAX_LEVELS = 256;
+
+    private final ConcurrentLinkedQueue<Entry>[] lanes;
+    private final int defaultPriority;
+    private final long agingNanos;
+    private final int capacity;
+
+    // Number of queued tasks, reserved before a task is added to its lane
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final ParkingLot notEmpty = new ParkingLot();
+    private final ParkingLot notFull = new ParkingLot();
+
+    /**
+     * Constructs an unbounded PriorityTaskQueue.
+     *
+     * @param levels The number of priority levels; priorities range from 0 (lowest) to levels - 1.
+     * @param agingMillis How long a task must wait to gain one level of priority, or 0 to disable aging.
+     */
+    public PriorityTaskQueue(int levels, long agingMillis) {
+        this(levels, agingMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a PriorityTaskQueue that holds at most the given number of tasks.
+     *
+     * @param levels The number of priority levels; priorities range from 0 (lowest) to levels - 1.
+     * @param agingMillis How long a task must wait to gain one level of priority, or 0 to disable aging.
+     * @param capacity The maximum number of queued tasks across all levels.
+     */
+    public PriorityTaskQueue(int levels, long agingMillis, int capacity) {
+        if (levels < 1 || levels > MAX_LEVELS || agingMillis < 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid priority queue: levels=" + levels
+                    + ", agingMillis=" + agingMillis + ", capacity=" + capacity);
+        }
+        this.lanes = newLanes(levels);
+        this.defaultPriority = levels / 2;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Enqueue a task into the lane of its priority, parking the caller while the queue is full.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public void enqueue(Runnable task) throws InterruptedException {
+        if (task == null) throw new NullPointerException();
+        awaitSlot();
+        publish(task);
+        notEmpty.unparkOne();
+    }
+
+    /**
+     * Enqueue a task, parking the caller for up to the given time while the queue is full.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @param timeoutMillis The maximum time to wait for space in milliseconds, or 0 to not wait at all.
+     * @return true if the task was added, false if the queue was still full when the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public boolean offer(Runnable task, long timeoutMillis) throws InterruptedException {
+        if (task == null) throw new NullPointerException();
+        if (!awaitSlot(TimeUnit.MILLISECONDS.toNanos(timeoutMillis))) return false;
+        publish(task);
+        notEmpty.unparkOne();
+        return true;
+    }
+
+    /**
+     * Enqueue a batch of tasks, waking at most one parked consumer per task once the batch is in.
+     *
+     * @param batch The Runnable tasks to be added to the queue, in order.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public void enqueueAll(Collection<? extends Runnable> batch) throws InterruptedException {
+        int published = 0;
+        for (Runnable task : batch) {
+            if (task == null) throw new NullPointerException();
+            if (!tryReserve()) {
+                // Full part way through, let consumers start on what is already published
+                notEmpty.unpark(published);
+                published = 0;
+                awaitSlot();
+            }
+            publish(task);
+            published++;
+        }
+        notEmpty.unpark(published);
+    }
+
+    /**
+     * Dequeue the task with the highest effective priority, parking the caller while the queue is empty.
+     *
+     * @return The Runnable task removed from the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to dequeue.
+     */
+    @Override
+    public Runnable dequeue() throws InterruptedException {
+        Runnable task = poll();
+        if (task != null) return task;
+
+        Thread me = Thread.currentThread();
+        while (true) {
+            notEmpty.register(me);
+            task = poll();
+            if (task != null) {
+                notEmpty.cancel(me);
+                return task;
+            }
+            LockSupport.park(this);
+            notEmpty.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Non-blocking poll to retrieve and remove the task with the highest effective priority, or returns
+     * null if the queue is empty.
+     *
+     * @return The Runnable task, or null if empty.
+     */
+    @Override
+    public Runnable poll() {
+        Runnable task = take();
+        if (task != null) notFull.unparkOne();
+        return task;
+    }
+
+    /**
+     * Timed poll that parks the caller until a task is available or the timeout elapses.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return The Runnable task, or null if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    @Override
+    public Runnable poll(long timeoutMillis) throws InterruptedException {
+        Runnable task = poll();
+        if (task != null) return task;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread me = Thread.currentThread();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return null;
+
+            notEmpty.register(me);
+            task = poll();
+            if (task != null) {
+                notEmpty.cancel(me);
+                return task;
+            }
+            LockSupport.parkNanos(this, remaining);
+            notEmpty.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Moves up to maxTasks tasks into the buffer in priority order, then wakes at most that many parked
+     * producers.
+     *
+     * @param buffer The collection to add the tasks to.
+     * @param maxTasks The maximum number of tasks to move.
+     * @return The number of tasks moved.
+     */
+    @Override
+    public int drainTo(Collection<? super Runnable> buffer, int maxTasks) {
+        int drained = 0;
+        Runnable task;
+        while (drained < maxTasks && (task = take()) != null) {
+            buffer.add(task);
+            drained++;
+        }
+        notFull.unpark(drained);
+        return drained;
+    }
+
+    /**
+     * Removes the given task from its lane if it has not been taken yet.
+     *
+     * @param task The task to remove.
+     * @return true if the task was found and removed.
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        if (task == null) return false;
+        ConcurrentLinkedQueue<Entry> lane = lanes[levelOf(task)];
+        for (Iterator<Entry> it = lane.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            // Entries compare by identity, so only one of several racing removers can succeed
+            if (entry.task == task && lane.remove(entry)) {
+                count.decrementAndGet();
+                notFull.unparkOne();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current number of tasks in the queue.
+     * The value is a snapshot and may be stale by the time it is used.
+     */
+    @Override
+    public int size() {
+        return Math.max(0, count.get());
+    }
+
+    /**
+     * Returns the number of tasks currently queued at the given priority level.
+     *
+     * @param level The priority level, between 0 and getLevels() - 1.
+     */
+    public int size(int level) {
+        return lanes[level].size();
+    }
+
+    /**
+     * Returns the maximum number of tasks the queue can hold.
+     */
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of priority levels.
+     */
+    public int getLevels() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the level used for tasks that do not implement Prioritized.
+     */
+    public int getDefaultPriority() {
+        return defaultPriority;
+    }
+
+    /**
+     * Returns the time a task must wait to gain one level of priority, or 0 if aging is disabled.
+     */
+    public long getAgingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(agingNanos);
+    }
+
+    /**
+     * Reserves room for one task, parking the caller while the queue is full.
+     */
+    private void awaitSlot() throws InterruptedException {
+        awaitSlot(-1);
+    }
+
+    /**
+     * Reserves room for one task, parking the caller for up to the given time while the queue is full.
+     *
+     * @param timeoutNanos The maximum time to wait, or a negative value to wait until room is available.
+     * @return true if room was reserved, false if the timeout elapsed first.
+     */
+    private boolean awaitSlot(long timeoutNanos) throws InterruptedException {
+        if (tryReserve()) return true;
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread me = Thread.currentThread();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (timeoutNanos >= 0 && remaining <= 0) return false;
+
+            notFull.register(me);
+            if (tryReserve()) {
+                notFull.cancel(me);
+                return true;
+            }
+            if (timeoutNanos < 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, remaining);
+            }
+            notFull.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Reserves room for one task without blocking.
+     *
+     * @return true if room was reserved, false if the queue is full.
+     */
+    private boolean tryReserve() {
+        if (capacity == Integer.MAX_VALUE) {
+            count.incrementAndGet();
+            return true;
+        }
+        int n;
+        while ((n = count.get()) < capacity) {
+            if (count.compareAndSet(n, n + 1)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a task whose room has been reserved to the lane of its priority, without waking consumers.
+     */
+    private void publish(Runnable task) {
+        long now = agingNanos > 0 ? System.nanoTime() : 0;
+        lanes[levelOf(task)].offer(new Entry(task, now));
+    }
+
+    /**
+     * Takes the head of the lane with the highest effective priority, without waking producers.
+     *
+     * @return The task, or null if every lane is empty.
+     */
+    private Runnable take() {
+        while (true) {
+            int best = agingNanos > 0 ? agedBestLane() : highestNonEmptyLane();
+            if (best < 0) return null;
+
+            Entry entry = lanes[best].poll();
+            if (entry != null) {
+                count.decrementAndGet();
+                return entry.task;
+            }
+            // Another consumer emptied the lane since it was inspected, look again
+        }
+    }
+
+    /**
+     * Returns the highest level whose lane holds a task, or -1 if all lanes are empty.
+     */
+    private int highestNonEmptyLane() {
+        for (int level = lanes.length - 1; level >= 0; level--) {
+            if (!lanes[level].isEmpty()) return level;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the level whose head task has the highest effective priority after aging, or -1 if all lanes
+     * are empty. Ties go to the higher level, since it is inspected first.
+     */
+    private int agedBestLane() {
+        long now = System.nanoTime();
+        long bestScore = Long.MIN_VALUE;
+        int best = -1;
+        for (int level = lanes.length - 1; level >= 0; level--) {
+            Entry head = lanes[level].peek();
+            if (head == null) continue;
+
+            // Capped so that the score cannot overflow; a task aged by every level already outranks all others
+            long boost = Math.min((now - head.enqueuedAt) / agingNanos, lanes.length);
+            long score = level + boost;
+            if (score > bestScore) {
+                bestScore = score;
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Creates the empty lanes, one per priority level. Arrays of a generic type cannot be created, so the array
+     * is created for lanes of any type; the cast is safe as only Entry lanes are ever stored in it.
+     */
+    @SuppressWarnings("unchecked")
+    private static ConcurrentLinkedQueue<Entry>[] newLanes(int levels) {
+        ConcurrentLinkedQueue<Entry>[] lanes = (ConcurrentLinkedQueue<Entry>[]) new ConcurrentLinkedQueue<?>[levels];
+        for (int i = 0; i < levels; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<>();
+        }
+        return lanes;
+    }
+
+    /**
+     * Returns the lane index for a task's priority, clamped to the configured levels.
+     */
+    private int levelOf(Runnable task) {
+        int priority = Prioritized.priorityOf(task, defaultPriority);
+        return Math.max(0, Math.min(lanes.length - 1, priority));
+    }
+
+}
@@ -0,0 +1,350 @@
+package com.brendanddev.threadpool.queues;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.brendanddev.threadpool.TaskQueue;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer TaskQueue backed by a pre-sized array.
+ *
+ * Based on Dmitry Vyukov's bounded MPMC queue: every slot carries a sequence number that tells producers
+ * and consumers whether the slot is ready to be written or read. A thread claims a slot with a single CAS on
+ * the padded tail (producers) or head (consumers) counter, so there is no shared monitor and no per-task
+ * node allocation.
+ *
+ * Blocking is only used when the queue is full or empty. Waiting threads are parked in a ParkingLot and
+ * each enqueue or dequeue wakes at most one waiter on the other side, instead of waking every thread.
+ */
+public class RingBufferTaskQueue implements TaskQueue {
+
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Runnable[].class);
+
+    private final Runnable[] slots;
+    private final long[] sequences;
+    private final int mask;
+
+    private final PaddedCounter tail = new PaddedCounter(0);
+    private final PaddedCounter head = new PaddedCounter(0);
+
+    // Consumers waiting for a task, and producers waiting for free space
+    private final ParkingLot notEmpty = new ParkingLot();
+    private final ParkingLot notFull = new ParkingLot();
+
+    /**
+     * Constructs a RingBufferTaskQueue that can hold at least the given number of tasks.
+     * The capacity is rounded up to the next power of two so slot indexes can be computed with a mask.
+     *
+     * @param capacity The minimum number of tasks the queue can hold.
+     */
+    public RingBufferTaskQueue(int capacity) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Runnable[size];
+        this.sequences = new long[size];
+        this.mask = size - 1;
+
+        // Slot i is initially free for the producer that claims position i
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+    }
+
+    /**
+     * Enqueue a task into the queue, parking the caller while the queue is full.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public void enqueue(Runnable task) throws InterruptedException {
+        if (task == null) throw new NullPointerException();
+        if (offer(task)) return;
+
+        Thread me = Thread.currentThread();
+        while (true) {
+            notFull.register(me);
+            if (offer(task)) {
+                notFull.cancel(me);
+                return;
+            }
+            LockSupport.park(this);
+            notFull.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Dequeue a task from the queue, parking the caller while the queue is empty.
+     *
+     * @return The Runnable task removed from the front of the queue.
+     * @throws InterruptedException If the thread is interrupted while waiting to dequeue.
+     */
+    @Override
+    public Runnable dequeue() throws InterruptedException {
+        Runnable task = poll();
+        if (task != null) return task;
+
+        Thread me = Thread.currentThread();
+        while (true) {
+            notEmpty.register(me);
+            task = poll();
+            if (task != null) {
+                notEmpty.cancel(me);
+                return task;
+            }
+            LockSupport.park(this);
+            notEmpty.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Attempts to add a task without blocking.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @return true if the task was added, false if the queue is full.
+     */
+    public boolean offer(Runnable task) {
+        if (!publish(task)) return false;
+        notEmpty.unparkOne();
+        return true;
+    }
+
+    /**
+     * Enqueue a task, parking the caller for up to the given time while the queue is full.
+     *
+     * @param task The Runnable task to be added to the queue.
+     * @param timeoutMillis The maximum time to wait for space in milliseconds, or 0 to not wait at all.
+     * @return true if the task was added, false if the queue was still full when the timeout elapsed.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public boolean offer(Runnable task, long timeoutMillis) throws InterruptedException {
+        if (task == null) throw new NullPointerException();
+        if (offer(task)) return true;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread me = Thread.currentThread();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+
+            notFull.register(me);
+            if (offer(task)) {
+                notFull.cancel(me);
+                return true;
+            }
+            LockSupport.parkNanos(this, remaining);
+            notFull.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Enqueue a batch of tasks, waking at most one parked consumer per published task once the batch
+     * (or the part of it that fits) is in, rather than after every task.
+     *
+     * @param batch The Runnable tasks to be added to the queue, in order.
+     * @throws InterruptedException If the thread is interrupted while waiting to enqueue.
+     */
+    @Override
+    public void enqueueAll(Collection<? extends Runnable> batch) throws InterruptedException {
+        int published = 0;
+        for (Runnable task : batch) {
+            if (task == null) throw new NullPointerException();
+            if (publish(task)) {
+                published++;
+                continue;
+            }
+            // Full part way through, let consumers start on what is already published
+            notEmpty.unpark(published);
+            published = 0;
+            enqueue(task);
+        }
+        notEmpty.unpark(published);
+    }
+
+    /**
+     * Claims the next free slot and publishes the task into it, without waking consumers.
+     *
+     * @return true if the task was published, false if the queue is full.
+     */
+    private boolean publish(Runnable task) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long seq = (long) SEQUENCE.getVolatile(sequences, index);
+            long diff = seq - pos;
+
+            if (diff == 0) {
+                // Slot is free for this position, try to claim it
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    SLOT.setRelease(slots, index, task);
+                    // Publish the slot to consumers
+                    SEQUENCE.setVolatile(sequences, index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // Slot still holds a task from the previous lap, queue is full
+                return false;
+            } else {
+                // Another producer claimed this position, reload and retry
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Non-blocking poll to retrieve and remove the head of the queue, or returns
+     * null if the queue is empty.
+     *
+     * @return The Runnable task at the front of the queue, or null if empty.
+     */
+    @Override
+    public Runnable poll() {
+        Runnable task = take();
+        if (task != null) notFull.unparkOne();
+        return task;
+    }
+
+    /**
+     * Moves up to maxTasks tasks into the buffer, then wakes at most that many parked producers.
+     *
+     * @param buffer The collection to add the tasks to.
+     * @param maxTasks The maximum number of tasks to move.
+     * @return The number of tasks moved.
+     */
+    @Override
+    public int drainTo(Collection<? super Runnable> buffer, int maxTasks) {
+        int drained = 0;
+        Runnable task;
+        while (drained < maxTasks && (task = take()) != null) {
+            buffer.add(task);
+            drained++;
+        }
+        notFull.unpark(drained);
+        return drained;
+    }
+
+    /**
+     * Claims the next published slot and takes its task, without waking producers.
+     *
+     * @return The task, or null if the queue is empty.
+     */
+    private Runnable take() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long seq = (long) SEQUENCE.getVolatile(sequences, index);
+            long diff = seq - (pos + 1);
+
+            if (diff == 0) {
+                // Slot has been published for this position, try to claim it
+                if (head.compareAndSet(pos, pos + 1)) {
+                    // Swap the task out so a concurrent remove() cannot also claim it
+                    Runnable task = (Runnable) SLOT.getAndSet(slots, index, null);
+                    // Hand the slot to the producer of the next lap
+                    SEQUENCE.setVolatile(sequences, index, pos + mask + 1);
+                    if (task != null) return task;
+                    // A removed slot still frees space for producers
+                    notFull.unparkOne();
+                    // The task in this slot was removed, move on to the next position
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                // Slot has not been published yet, queue is empty
+                return null;
+            } else {
+                // Another consumer claimed this position, reload and retry
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Timed poll that parks the caller until a task is available or the timeout elapses.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return The Runnable task at the front of the queue, or null if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    @Override
+    public Runnable poll(long timeoutMillis) throws InterruptedException {
+        Runnable task = poll();
+        if (task != null) return task;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread me = Thread.currentThread();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return null;
+
+            notEmpty.register(me);
+            task = poll();
+            if (task != null) {
+                notEmpty.cancel(me);
+                return task;
+            }
+            LockSupport.parkNanos(this, remaining);
+            notEmpty.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Removes a task that has been published but not yet consumed.
+     *
+     * Slots cannot be unlinked from a ring buffer, so the task is swapped out of its slot and the empty slot is
+     * skipped by the next consumer that reaches it. The slot keeps counting towards size() until then.
+     *
+     * @param task The task to remove.
+     * @return true if the task was found and removed.
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        if (task == null) return false;
+        for (long pos = head.get(), end = tail.get(); pos < end; pos++) {
+            int index = (int) pos & mask;
+            // Only look at slots published for this lap and not consumed yet
+            if ((long) SEQUENCE.getVolatile(sequences, index) == pos + 1
+                    && SLOT.compareAndSet(slots, index, task, null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current number of tasks in the queue.
+     * The value is a snapshot and may be stale by the time it is used.
+     */
+    @Override
+    public int size() {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            // Only trust the difference if head did not move while reading tail
+            if (head.get() == h) {
+                long size = t - h;
+                return (int) Math.max(0, Math.min(size, slots.length));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks the queue can hold.
+     */
+    @Override
+    public int capacity() {
+        return slots.length;
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.brendanddev.threadpool.queues;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A Chase-Lev work-stealing deque owned by a single worker thread.
+ *
+ * The owner pushes and pops at the bottom (LIFO), which keeps recently forked work hot in its cache.
+ * Other workers steal from the top (FIFO), taking the oldest and usually largest pieces of work. Only the
+ * last remaining element needs a CAS to settle a race between the owner and a thief.
+ */
+final class WorkStealingDeque {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final VarHandle TOP;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Runnable[].class);
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(WorkStealingDeque.class, "top", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Thread owner;
+    private volatile long top = 0;
+    private volatile long bottom = 0;
+    private volatile Runnable[] array = new Runnable[INITIAL_CAPACITY];
+
+    /**
+     * Constructs a WorkStealingDeque owned by the given thread.
+     *
+     * @param owner The only thread allowed to call push() and pop().
+     */
+    WorkStealingDeque(Thread owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Pushes a task onto the bottom of the deque. Must only be called by the owner.
+     *
+     * @param task The task to push.
+     */
+    void push(Runnable task) {
+        long b = bottom;
+        long t = top;
+        Runnable[] a = array;
+        if (b - t > a.length - 1) {
+            a = grow(a, t, b);
+        }
+        SLOT.setRelease(a, (int) b & (a.length - 1), task);
+        bottom = b + 1;
+    }
+
+    /**
+     * Pops the most recently pushed task. Must only be called by the owner.
+     *
+     * @return The task, or null if the deque is empty or the last task was stolen.
+     */
+    Runnable pop() {
+        long b = bottom - 1;
+        Runnable[] a = array;
+        bottom = b;
+        long t = top;
+
+        if (t > b) {
+            // Deque was already empty
+            bottom = b + 1;
+            return null;
+        }
+
+        int index = (int) b & (a.length - 1);
+        Runnable task = (Runnable) SLOT.getAcquire(a, index);
+        if (t < b) {
+            // More than one element left, no thief can reach this slot
+            SLOT.setRelease(a, index, null);
+            return task;
+        }
+
+        // Last element, race against thieves for it
+        if (!TOP.compareAndSet(this, t, t + 1)) {
+            task = null;
+        } else {
+            SLOT.compareAndSet(a, index, task, null);
+        }
+        bottom = b + 1;
+        return task;
+    }
+
+    /**
+     * Steals the oldest task from the top of the deque. May be called by any thread.
+     *
+     * @return The task, or null if the deque is empty or another thread won the race.
+     */
+    Runnable steal() {
+        long t = top;
+        long b = bottom;
+        if (t >= b) return null;
+
+        Runnable[] a = array;
+        int index = (int) t & (a.length - 1);
+        Runnable task = (Runnable) SLOT.getAcquire(a, index);
+        if (task == null || !TOP.compareAndSet(this, t, t + 1)) {
+            return null;
+        }
+        // Clear the slot unless the owner has already reused it
+        SLOT.compareAndSet(a, index, task, null);
+        return task;
+    }
+
+    /**
+     * Returns an estimate of the number of tasks in the deque.
+     */
+    int size() {
+        long size = bottom - top;
+        return size > 0 ? (int) size : 0;
+    }
+
+    /**
+     * Returns the thread that owns this deque.
+     */
+    Thread getOwner() {
+        return owner;
+    }
+
+    /**
+     * Doubles the backing array, copying the live range. Only called by the owner.
+     */
+    private Runnable[] grow(Runnable[] old, long t, long b) {
+        Runnable[] grown = new Runnable[old.length << 1];
+        for (long i = t; i < b; i++) {
+            grown[(int) i & (grown.length - 1)] = old[(int) i & (old.length - 1)];
+        }
+        array = grown;
+        return grown;
+    }
+
+}
@@ -0,0 +1,252 @@
+package com.brendanddev.threadpool.queues;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.brendanddev.threadpool.TaskQueue;
+
+/**
+ * A TaskQueue that gives every worker thread its own work-stealing deque instead of sharing one queue.
+ *
+ * A thread becomes a worker of this queue the first time it calls dequeue(). From then on:
+ * - Tasks it enqueues (for example subtasks forked by a running task) are pushed onto its own deque.
+ * - It takes work from its own deque first, newest task first (LIFO).
+ * - When its deque is empty it checks the shared injection queue, which holds tasks submitted by
+ *   threads that are not workers.
+ * - When that is empty too it steals the oldest task (FIFO) from randomly chosen victims.
+ *
+ * Workers only contend with each other when they steal, so recursive fan-out workloads scale with the
+ * number of cores instead of being serialized on a single lock.
+ */
+public class WorkStealingTaskQueue implements TaskQueue {
+
+    private static final WorkStealingDeque[] NO_DEQUES = new WorkStealingDeque[0];
+
+    private final ConcurrentLinkedQueue<Runnable> injectionQueue = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<WorkStealingDeque> localDeque = new ThreadLocal<>();
+    private final ParkingLot idleWorkers = new ParkingLot();
+
+    // Copy-on-write array of all registered deques, only changed when workers come and go
+    private volatile WorkStealingDeque[] deques = NO_DEQUES;
+
+    /**
+     * Enqueue a task into the queue. Never blocks.
+     * Worker threads push onto their own deque, other threads use the shared injection queue.
+     *
+     * @param task The Runnable task to be added to the queue.
+     */
+    @Override
+    public void enqueue(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        WorkStealingDeque deque = localDeque.get();
+        if (deque != null) {
+            deque.push(task);
+        } else {
+            injectionQueue.add(task);
+        }
+        // Wake one idle worker so it can take or steal the new task
+        idleWorkers.unparkOne();
+    }
+
+    /**
+     * Enqueue a batch of tasks onto the caller's deque or the injection queue, then wake at most one idle
+     * worker per task.
+     *
+     * @param batch The Runnable tasks to be added to the queue, in order.
+     */
+    @Override
+    public void enqueueAll(Collection<? extends Runnable> batch) {
+        WorkStealingDeque deque = localDeque.get();
+        int added = 0;
+        for (Runnable task : batch) {
+            if (task == null) throw new NullPointerException();
+            if (deque != null) {
+                deque.push(task);
+            } else {
+                injectionQueue.add(task);
+            }
+            added++;
+        }
+        idleWorkers.unpark(added);
+    }
+
+    /**
+     * Dequeue a task, registering the calling thread as a worker on first use.
+     * Checks the local deque, then the injection queue, then steals from other workers, and parks
+     * if no work is found anywhere.
+     *
+     * @return The next Runnable task for the calling worker.
+     * @throws InterruptedException If the thread is interrupted while waiting to dequeue.
+     */
+    @Override
+    public Runnable dequeue() throws InterruptedException {
+        WorkStealingDeque deque = localDeque.get();
+        if (deque == null) {
+            deque = register(Thread.currentThread());
+        }
+
+        Runnable task = find(deque);
+        if (task != null) return task;
+
+        Thread me = Thread.currentThread();
+        while (true) {
+            idleWorkers.register(me);
+            task = find(deque);
+            if (task != null) {
+                idleWorkers.cancel(me);
+                return task;
+            }
+            LockSupport.park(this);
+            idleWorkers.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Non-blocking poll for the next task. Registered workers check their own deque first; any thread
+     * then checks the injection queue and tries to steal.
+     *
+     * @return A Runnable task, or null if no task could be found.
+     */
+    @Override
+    public Runnable poll() {
+        return find(localDeque.get());
+    }
+
+    /**
+     * Timed poll that registers the caller as a worker like dequeue(), and parks until a task is
+     * available or the timeout elapses.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return The Runnable task at the front of the queue, or null if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    @Override
+    public Runnable poll(long timeoutMillis) throws InterruptedException {
+        WorkStealingDeque deque = localDeque.get();
+        if (deque == null) {
+            deque = register(Thread.currentThread());
+        }
+
+        Runnable task = find(deque);
+        if (task != null) return task;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread me = Thread.currentThread();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return null;
+
+            idleWorkers.register(me);
+            task = find(deque);
+            if (task != null) {
+                idleWorkers.cancel(me);
+                return task;
+            }
+            LockSupport.parkNanos(this, remaining);
+            idleWorkers.cancel(me);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Removes a task from the injection queue. Tasks that have already been pushed onto a worker's deque
+     * cannot be removed, and are left for the worker to run or skip.
+     *
+     * @param task The task to remove.
+     * @return true if the task was found in the injection queue and removed.
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        return injectionQueue.remove(task);
+    }
+
+    /**
+     * Returns an estimate of the number of tasks across the injection queue and all deques.
+     */
+    @Override
+    public int size() {
+        long size = injectionQueue.size();
+        for (WorkStealingDeque deque : deques) {
+            size += deque.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of worker threads that have registered a deque with this queue.
+     */
+    public int getWorkerCount() {
+        return deques.length;
+    }
+
+    /**
+     * Looks for work in the order local deque, injection queue, other deques.
+     *
+     * @param own The calling thread's deque, or null if it is not a worker.
+     */
+    private Runnable find(WorkStealingDeque own) {
+        Runnable task;
+        if (own != null && (task = own.pop()) != null) return task;
+        if ((task = injectionQueue.poll()) != null) return task;
+        return steal(own);
+    }
+
+    /**
+     * Tries every other deque once, starting from a random victim so that thieves spread out.
+     */
+    private Runnable steal(WorkStealingDeque own) {
+        WorkStealingDeque[] victims = deques;
+        int n = victims.length;
+        if (n == 0) return null;
+
+        int start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            WorkStealingDeque victim = victims[(start + i) % n];
+            if (victim == own) continue;
+
+            Runnable task = victim.steal();
+            if (task != null) return task;
+
+            // Forget deques of workers that have exited once they have been emptied
+            if (victim.size() == 0 && !victim.getOwner().isAlive()) {
+                unregister(victim);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates and publishes a deque for a new worker thread.
+     */
+    private synchronized WorkStealingDeque register(Thread owner) {
+        WorkStealingDeque deque = new WorkStealingDeque(owner);
+        WorkStealingDeque[] current = deques;
+        WorkStealingDeque[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = deque;
+        deques = updated;
+        localDeque.set(deque);
+        return deque;
+    }
+
+    /**
+     * Removes a deque from the victim list.
+     */
+    private synchronized void unregister(WorkStealingDeque deque) {
+        WorkStealingDeque[] current = deques;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == deque) {
+                WorkStealingDeque[] updated = new WorkStealingDeque[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                deques = updated;
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.brendanddev.threadpool.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.PriorityTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+
+/**
+ * Two producers race for the last free slot of a bounded queue of capacity 2 that already holds a task, with
+ * non-blocking offers. Exactly one of them must win: a queue that accepts both has overrun its capacity, and one
+ * that rejects both reported a free slot as taken.
+ *
+ * Result: the number of offers that succeeded, and the final size.
+ */
+public class BoundedQueueOfferStress {
+
+    /**
+     * The shared body of the tests, run against the queue each of them creates.
+     */
+    static final class Scenario {
+
+        private final TaskQueue queue;
+        private boolean firstAccepted;
+        private boolean secondAccepted;
+
+        Scenario(TaskQueue queue) {
+            this.queue = queue;
+            StressSupport.put(queue, new StressTask());
+        }
+
+        void offerFirst() {
+            firstAccepted = offer();
+        }
+
+        void offerSecond() {
+            secondAccepted = offer();
+        }
+
+        void check(II_Result r) {
+            r.r1 = (firstAccepted ? 1 : 0) + (secondAccepted ? 1 : 0);
+            r.r2 = StressSupport.drain(queue).size();
+        }
+
+        private boolean offer() {
+            try {
+                return queue.offer(new StressTask(), 0);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Interrupted by a non-blocking offer", e);
+            }
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "Exactly one producer took the last slot")
+    @Outcome(expect = FORBIDDEN, desc = "The capacity was overrun, or a free slot was refused")
+    @State
+    public static class Linked {
+
+        private final Scenario scenario = new Scenario(new LinkedTaskQueue(2));
+
+        @Actor
+        public void producer1() {
+            scenario.offerFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.offerSecond();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "Exactly one producer took the last slot")
+    @Outcome(expect = FORBIDDEN, desc = "The capacity was overrun, or a free slot was refused")
+    @State
+    public static class RingBuffer {
+
+        private final Scenario scenario = new Scenario(new RingBufferTaskQueue(2));
+
+        @Actor
+        public void producer1() {
+            scenario.offerFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.offerSecond();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "Exactly one producer took the last slot")
+    @Outcome(expect = FORBIDDEN, desc = "The capacity was overrun, or a free slot was refused")
+    @State
+    public static class Priority {
+
+        private final Scenario scenario = new Scenario(new PriorityTaskQueue(4, 0, 2));
+
+        @Actor
+        public void producer1() {
+            scenario.offerFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.offerSecond();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+}
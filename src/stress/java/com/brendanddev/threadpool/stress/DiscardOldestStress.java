@@ -0,0 +1,168 @@
+package com.brendanddev.threadpool.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.IIII_Result;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+
+/**
+ * Races three submissions handled by DISCARD_OLDEST_POLICY on a full queue of capacity 2, so that each can lose
+ * the slot it freed to another.
+ *
+ * The tasks are futures, so a discarded task is seen to be cancelled, and so is a new task the policy drops because
+ * other submitters kept taking the freed slots. Whatever the interleaving, each of the two old and three new tasks
+ * must end up in exactly one place: still queued, or cancelled. A task that is lost or accounted for twice, or a
+ * submission that throws, is forbidden.
+ *
+ * The pool's only worker is held by a gate task for the whole test, so nothing else takes tasks from the queue.
+ *
+ * Result: how many of the five tasks are queued and cancelled, how many were lost or accounted for more than once,
+ * and how many submissions threw.
+ */
+public class DiscardOldestStress {
+
+    /**
+     * The shared body of the tests, run against the queue each of them creates.
+     */
+    static final class Scenario {
+
+        private final TaskQueue queue;
+        private final CustomThreadPool pool;
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final TaskFuture<?>[] tasks = new TaskFuture<?>[5];
+        private final boolean[] thrown = new boolean[tasks.length];
+
+        Scenario(TaskQueue queue) {
+            this.queue = queue;
+            this.pool = new CustomThreadPool(1, new CustomThreadFactory("DiscardOldestStress", true,
+                    Thread.NORM_PRIORITY), RejectionHandlers.DISCARD_OLDEST_POLICY, queue);
+            pool.setSubmitTimeoutMillis(0);
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new TaskFuture<Object>(() -> null, pool);
+            }
+            pool.execute(this::hold);
+            while (queue.size() != 0) {
+                // Wait for the worker to take the gate task
+                Thread.yield();
+            }
+            pool.execute(tasks[0]);
+            pool.execute(tasks[1]);
+        }
+
+        private void hold() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Submits one of the three new tasks, 2 to 4.
+         */
+        void submit(int index) {
+            try {
+                pool.execute(tasks[index]);
+            } catch (RejectedExecutionException e) {
+                thrown[index] = true;
+            }
+        }
+
+        void check(IIII_Result r) {
+            List<Runnable> remaining = StressSupport.drain(queue);
+            gate.countDown();
+            pool.shutdownNow();
+            for (int i = 0; i < tasks.length; i++) {
+                int queued = StressSupport.occurrences(tasks[i], remaining);
+                int cancelled = tasks[i].isCancelled() ? 1 : 0;
+                r.r1 += queued;
+                r.r2 += cancelled;
+                if (queued + cancelled != 1) r.r3++;
+                if (thrown[i]) r.r4++;
+            }
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "2, 3, 0, 0", expect = ACCEPTABLE,
+            desc = "Every new task was queued, discarding the oldest, or dropped after others took the freed slots")
+    @Outcome(expect = FORBIDDEN,
+            desc = "A task was lost or accounted for twice, a submission threw, or the queue was left with room")
+    @State
+    public static class Linked {
+
+        private final Scenario scenario = new Scenario(new LinkedTaskQueue(2));
+
+        @Actor
+        public void submitter1() {
+            scenario.submit(2);
+        }
+
+        @Actor
+        public void submitter2() {
+            scenario.submit(3);
+        }
+
+        @Actor
+        public void submitter3() {
+            scenario.submit(4);
+        }
+
+        @Arbiter
+        public void arbiter(IIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "2, 3, 0, 0", expect = ACCEPTABLE,
+            desc = "Every new task was queued, discarding the oldest, or dropped after others took the freed slots")
+    @Outcome(expect = FORBIDDEN,
+            desc = "A task was lost or accounted for twice, a submission threw, or the queue was left with room")
+    @State
+    public static class RingBuffer {
+
+        private final Scenario scenario = new Scenario(new RingBufferTaskQueue(2));
+
+        @Actor
+        public void submitter1() {
+            scenario.submit(2);
+        }
+
+        @Actor
+        public void submitter2() {
+            scenario.submit(3);
+        }
+
+        @Actor
+        public void submitter3() {
+            scenario.submit(4);
+        }
+
+        @Arbiter
+        public void arbiter(IIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.brendanddev.threadpool.stress;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records which task ids have been seen, as one bit per id, so a soak test can check that every task it produced
+ * was taken or run exactly once. Marking an id is a single CAS, cheap enough not to dominate the measured
+ * throughput.
+ */
+final class ExactlyOnceTracker {
+
+    private final AtomicLongArray bits;
+    private final int capacity;
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Constructs an ExactlyOnceTracker for the ids from 0 to capacity - 1.
+     */
+    ExactlyOnceTracker(int capacity) {
+        this.capacity = capacity;
+        this.bits = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    /**
+     * Marks the id as seen, counting a duplicate if it already was.
+     */
+    void mark(int id) {
+        int index = id >>> 6;
+        long bit = 1L << (id & 63);
+        long word;
+        do {
+            word = bits.get(index);
+            if ((word & bit) != 0) {
+                duplicates.increment();
+                return;
+            }
+        } while (!bits.compareAndSet(index, word, word | bit));
+    }
+
+    /**
+     * Returns whether the id has been seen.
+     */
+    boolean isMarked(int id) {
+        return (bits.get(id >>> 6) & (1L << (id & 63))) != 0;
+    }
+
+    /**
+     * Counts the ids from first to first + count - 1 that have not been seen.
+     */
+    long countMissing(int first, int count) {
+        long missing = 0;
+        for (int id = first; id < first + count; id++) {
+            if (!isMarked(id)) missing++;
+        }
+        return missing;
+    }
+
+    /**
+     * Returns how often an id was marked again.
+     */
+    long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Returns the number of ids that can be tracked.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+}
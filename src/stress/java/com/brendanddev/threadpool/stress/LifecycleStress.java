@@ -0,0 +1,462 @@
+package com.brendanddev.threadpool.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.IIIII_Result;
+import org.openjdk.jcstress.infra.results.IIII_Result;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import com.brendanddev.threadpool.BatchingExecutor;
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskGroup;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+
+/**
+ * Races task submission against the pool's lifecycle transitions. Whatever the interleaving, a submitted task must
+ * end up in exactly one place, run, rejected or returned by shutdownNow(), and the pool must terminate.
+ *
+ * Every test creates a pool of one worker; the arbiter waits for it to terminate. The tests at the end submit two
+ * tasks at once through executeAll(), a keyed lane, a task group or a BatchingExecutor, each of which queues them
+ * in its own way.
+ */
+public class LifecycleStress {
+
+    // How long the arbiter waits for the pool to terminate before reporting that it did not
+    private static final long TERMINATION_TIMEOUT_MILLIS = 10_000;
+
+    private static CustomThreadPool newPool() {
+        return new CustomThreadPool(1, new CustomThreadFactory("LifecycleStress", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.ABORT_POLICY);
+    }
+
+    private static int flag(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    /**
+     * A task is submitted while the pool is shut down.
+     *
+     * Result: how often the task ran, whether it was rejected, and whether the pool terminated.
+     */
+    @JCStressTest
+    @Outcome(id = "1, 0, 1", expect = ACCEPTABLE, desc = "The task was accepted and ran before the pool terminated")
+    @Outcome(id = "0, 1, 1", expect = ACCEPTABLE, desc = "The task was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "The task was lost or ran twice, or the pool did not terminate")
+    @State
+    public static class ExecuteVsShutdown {
+
+        private final CustomThreadPool pool = newPool();
+        private final StressTask task = new StressTask();
+        private boolean rejected;
+
+        @Actor
+        public void submitter() {
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+            }
+        }
+
+        @Actor
+        public void stopper() {
+            pool.shutdown();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            boolean terminated = pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS);
+            r.r1 = task.getRunCount();
+            r.r2 = flag(rejected);
+            r.r3 = flag(terminated);
+        }
+
+    }
+
+    /**
+     * A task is submitted while the pool is stopped.
+     *
+     * Result: how often the task ran, whether shutdownNow() returned it, whether it was rejected, and whether the
+     * pool terminated.
+     */
+    @JCStressTest
+    @Outcome(id = "1, 0, 0, 1", expect = ACCEPTABLE, desc = "The task ran before the pool stopped")
+    @Outcome(id = "0, 1, 0, 1", expect = ACCEPTABLE, desc = "The task was queued and returned by shutdownNow()")
+    @Outcome(id = "0, 0, 1, 1", expect = ACCEPTABLE, desc = "The task was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "The task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class ExecuteVsShutdownNow {
+
+        private final CustomThreadPool pool = newPool();
+        private final StressTask task = new StressTask();
+        private boolean rejected;
+        private List<Runnable> returned;
+
+        @Actor
+        public void submitter() {
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+            }
+        }
+
+        @Actor
+        public void stopper() {
+            returned = pool.shutdownNow();
+        }
+
+        @Arbiter
+        public void arbiter(IIII_Result r) {
+            boolean terminated = pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS);
+            r.r1 = task.getRunCount();
+            r.r2 = StressSupport.occurrences(task, returned);
+            r.r3 = flag(rejected);
+            r.r4 = flag(terminated);
+        }
+
+    }
+
+    /**
+     * shutdown() and shutdownNow() race while a task that was accepted earlier is queued or running.
+     *
+     * Result: how often the task ran, whether shutdownNow() returned it, and whether the pool terminated.
+     */
+    @JCStressTest
+    @Outcome(id = "1, 0, 1", expect = ACCEPTABLE, desc = "The task ran")
+    @Outcome(id = "0, 1, 1", expect = ACCEPTABLE, desc = "The task was returned by shutdownNow()")
+    @Outcome(expect = FORBIDDEN, desc = "The task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class ShutdownVsShutdownNow {
+
+        private final CustomThreadPool pool = newPool();
+        private final StressTask task = new StressTask();
+        private List<Runnable> returned;
+
+        public ShutdownVsShutdownNow() {
+            pool.execute(task);
+        }
+
+        @Actor
+        public void graceful() {
+            pool.shutdown();
+        }
+
+        @Actor
+        public void abrupt() {
+            returned = pool.shutdownNow();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            boolean terminated = pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS);
+            r.r1 = task.getRunCount();
+            r.r2 = StressSupport.occurrences(task, returned);
+            r.r3 = flag(terminated);
+        }
+
+    }
+
+
+    /**
+     * The ways the tests below submit their two tasks.
+     */
+    enum Submission {
+        EXECUTE_ALL, KEYED, GROUP, BATCHING
+    }
+
+    /**
+     * The shared body of the tests below: two tasks are submitted in one of the ways above while the pool is shut
+     * down. Rejected tasks are recorded rather than thrown, so that a rejection of the first task does not hide
+     * what happens to the second.
+     */
+    static final class Scenario {
+
+        private final Queue<Runnable> rejectedTasks = new ConcurrentLinkedQueue<>();
+        private final CustomThreadPool pool = new CustomThreadPool(1, new CustomThreadFactory("LifecycleStress", true,
+                Thread.NORM_PRIORITY), (task, from) -> rejectedTasks.add(task), new LinkedTaskQueue());
+        private final Submission submission;
+        private final TaskGroup group;
+        private final BatchingExecutor batching;
+        private final StressTask first = new StressTask();
+        private final StressTask second = new StressTask();
+        private List<Runnable> returned = List.of();
+
+        Scenario(Submission submission) {
+            this.submission = submission;
+            this.group = submission == Submission.GROUP ? pool.createTaskGroup("LifecycleStress", 1) : null;
+            this.batching = submission == Submission.BATCHING ? pool.createBatchingExecutor() : null;
+        }
+
+        void submit() {
+            switch (submission) {
+                case EXECUTE_ALL:
+                    pool.executeAll(List.of(first, second));
+                    break;
+                case KEYED:
+                    pool.execute("key", first);
+                    pool.execute("key", second);
+                    break;
+                case GROUP:
+                    group.execute(first);
+                    group.execute(second);
+                    break;
+                case BATCHING:
+                    // Left in the buffer, for the timer or the shutdown to flush
+                    batching.execute(first);
+                    batching.execute(second);
+                    break;
+            }
+        }
+
+        void shutdown() {
+            pool.shutdown();
+        }
+
+        void shutdownNow() {
+            returned = pool.shutdownNow();
+        }
+
+        /**
+         * Result: how many of the tasks ran, were returned by shutdownNow() and were rejected, how many were lost
+         * or accounted for twice, and whether the pool terminated.
+         */
+        void check(IIIII_Result r) {
+            boolean terminated = pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS);
+            List<Runnable> rejected = List.copyOf(rejectedTasks);
+            for (StressTask task : new StressTask[] {first, second}) {
+                int ran = task.getRunCount();
+                int wasReturned = StressSupport.occurrences(task, returned);
+                int wasRejected = StressSupport.occurrences(task, rejected);
+                r.r1 += ran;
+                r.r2 += wasReturned;
+                r.r3 += wasRejected;
+                if (ran + wasReturned + wasRejected != 1) r.r4++;
+            }
+            r.r5 = flag(terminated);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 0, 1, 0, 1", "0, 0, 2, 0, 1"}, expect = ACCEPTABLE,
+            desc = "Each task ran or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class ExecuteAllVsShutdown {
+
+        private final Scenario scenario = new Scenario(Submission.EXECUTE_ALL);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdown();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 1, 0, 0, 1", "1, 0, 1, 0, 1", "0, 2, 0, 0, 1", "0, 1, 1, 0, 1",
+            "0, 0, 2, 0, 1"}, expect = ACCEPTABLE, desc = "Each task ran, was returned or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class ExecuteAllVsShutdownNow {
+
+        private final Scenario scenario = new Scenario(Submission.EXECUTE_ALL);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdownNow();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 0, 1, 0, 1", "0, 0, 2, 0, 1"}, expect = ACCEPTABLE,
+            desc = "Each task ran or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class KeyedVsShutdown {
+
+        private final Scenario scenario = new Scenario(Submission.KEYED);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdown();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 1, 0, 0, 1", "1, 0, 1, 0, 1", "0, 2, 0, 0, 1", "0, 1, 1, 0, 1",
+            "0, 0, 2, 0, 1"}, expect = ACCEPTABLE, desc = "Each task ran, was returned or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class KeyedVsShutdownNow {
+
+        private final Scenario scenario = new Scenario(Submission.KEYED);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdownNow();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 0, 1, 0, 1", "0, 0, 2, 0, 1"}, expect = ACCEPTABLE,
+            desc = "Each task ran or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class GroupVsShutdown {
+
+        private final Scenario scenario = new Scenario(Submission.GROUP);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdown();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 1, 0, 0, 1", "1, 0, 1, 0, 1", "0, 2, 0, 0, 1", "0, 1, 1, 0, 1",
+            "0, 0, 2, 0, 1"}, expect = ACCEPTABLE, desc = "Each task ran, was returned or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class GroupVsShutdownNow {
+
+        private final Scenario scenario = new Scenario(Submission.GROUP);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdownNow();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 0, 1, 0, 1", "0, 0, 2, 0, 1"}, expect = ACCEPTABLE,
+            desc = "Each task ran or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class BatchingVsShutdown {
+
+        private final Scenario scenario = new Scenario(Submission.BATCHING);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdown();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"2, 0, 0, 0, 1", "1, 1, 0, 0, 1", "1, 0, 1, 0, 1", "0, 2, 0, 0, 1", "0, 1, 1, 0, 1",
+            "0, 0, 2, 0, 1"}, expect = ACCEPTABLE, desc = "Each task ran, was returned or was rejected")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or accounted for twice, or the pool did not terminate")
+    @State
+    public static class BatchingVsShutdownNow {
+
+        private final Scenario scenario = new Scenario(Submission.BATCHING);
+
+        @Actor
+        public void submitter() {
+            scenario.submit();
+        }
+
+        @Actor
+        public void stopper() {
+            scenario.shutdownNow();
+        }
+
+        @Arbiter
+        public void arbiter(IIIII_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.brendanddev.threadpool.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.util.List;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.PriorityTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+import com.brendanddev.threadpool.queues.WorkStealingTaskQueue;
+
+/**
+ * Two producers enqueue a task each while two consumers poll, once for every queue implementation.
+ * The arbiter then drains the queue and counts where each task ended up: every task must be taken exactly once,
+ * by a poll or by the drain, and a poll may only come back empty if it lost the race with the producers.
+ *
+ * Result: how often the first task was seen, how often the second was seen, the number of empty polls.
+ */
+public class QueueEnqueuePollStress {
+
+    /**
+     * The shared body of the tests, run against the queue each of them creates.
+     */
+    static final class Scenario {
+
+        private final TaskQueue queue;
+        private final StressTask first = new StressTask();
+        private final StressTask second = new StressTask();
+        private Runnable polledByFirst;
+        private Runnable polledBySecond;
+
+        Scenario(TaskQueue queue) {
+            this.queue = queue;
+        }
+
+        void enqueueFirst() {
+            StressSupport.put(queue, first);
+        }
+
+        void enqueueSecond() {
+            StressSupport.put(queue, second);
+        }
+
+        void pollFirst() {
+            polledByFirst = queue.poll();
+        }
+
+        void pollSecond() {
+            polledBySecond = queue.poll();
+        }
+
+        void check(III_Result r) {
+            List<Runnable> remaining = StressSupport.drain(queue);
+            r.r1 = StressSupport.occurrences(first, remaining)
+                    + StressSupport.occurrences(first, polledByFirst, polledBySecond);
+            r.r2 = StressSupport.occurrences(second, remaining)
+                    + StressSupport.occurrences(second, polledByFirst, polledBySecond);
+            r.r3 = (polledByFirst == null ? 1 : 0) + (polledBySecond == null ? 1 : 0);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 1, 0", expect = ACCEPTABLE, desc = "Both polls took a task")
+    @Outcome(id = "1, 1, 1", expect = ACCEPTABLE, desc = "One poll ran before the task it would take was enqueued")
+    @Outcome(id = "1, 1, 2", expect = ACCEPTABLE, desc = "Both polls ran before the tasks were enqueued")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or taken twice")
+    @State
+    public static class Linked {
+
+        private final Scenario scenario = new Scenario(new LinkedTaskQueue());
+
+        @Actor
+        public void producer1() {
+            scenario.enqueueFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.enqueueSecond();
+        }
+
+        @Actor
+        public void consumer1() {
+            scenario.pollFirst();
+        }
+
+        @Actor
+        public void consumer2() {
+            scenario.pollSecond();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 1, 0", expect = ACCEPTABLE, desc = "Both polls took a task")
+    @Outcome(id = "1, 1, 1", expect = ACCEPTABLE, desc = "One poll ran before the task it would take was enqueued")
+    @Outcome(id = "1, 1, 2", expect = ACCEPTABLE, desc = "Both polls ran before the tasks were enqueued")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or taken twice")
+    @State
+    public static class RingBuffer {
+
+        private final Scenario scenario = new Scenario(new RingBufferTaskQueue(4));
+
+        @Actor
+        public void producer1() {
+            scenario.enqueueFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.enqueueSecond();
+        }
+
+        @Actor
+        public void consumer1() {
+            scenario.pollFirst();
+        }
+
+        @Actor
+        public void consumer2() {
+            scenario.pollSecond();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 1, 0", expect = ACCEPTABLE, desc = "Both polls took a task")
+    @Outcome(id = "1, 1, 1", expect = ACCEPTABLE, desc = "One poll ran before the task it would take was enqueued")
+    @Outcome(id = "1, 1, 2", expect = ACCEPTABLE, desc = "Both polls ran before the tasks were enqueued")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or taken twice")
+    @State
+    public static class Priority {
+
+        private final Scenario scenario = new Scenario(new PriorityTaskQueue(4, 0));
+
+        @Actor
+        public void producer1() {
+            scenario.enqueueFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.enqueueSecond();
+        }
+
+        @Actor
+        public void consumer1() {
+            scenario.pollFirst();
+        }
+
+        @Actor
+        public void consumer2() {
+            scenario.pollSecond();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = "1, 1, 0", expect = ACCEPTABLE, desc = "Both polls took a task")
+    @Outcome(id = "1, 1, 1", expect = ACCEPTABLE, desc = "One poll ran before the task it would take was enqueued")
+    @Outcome(id = "1, 1, 2", expect = ACCEPTABLE, desc = "Both polls ran before the tasks were enqueued")
+    @Outcome(expect = FORBIDDEN, desc = "A task was lost or taken twice")
+    @State
+    public static class WorkStealing {
+
+        private final Scenario scenario = new Scenario(new WorkStealingTaskQueue());
+
+        @Actor
+        public void producer1() {
+            scenario.enqueueFirst();
+        }
+
+        @Actor
+        public void producer2() {
+            scenario.enqueueSecond();
+        }
+
+        @Actor
+        public void consumer1() {
+            scenario.pollFirst();
+        }
+
+        @Actor
+        public void consumer2() {
+            scenario.pollSecond();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.brendanddev.threadpool.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.PriorityTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+
+/**
+ * One producer enqueues two tasks in order while one consumer polls twice, for the queues that promise FIFO order
+ * (within a priority level, for PriorityTaskQueue). The work-stealing queue is left out, as it only orders the
+ * tasks of its injection queue and a worker's own deque is LIFO.
+ *
+ * Result: what each poll returned, 0 for nothing, 1 for the first task and 2 for the second.
+ */
+public class QueueFifoStress {
+
+    /**
+     * The shared body of the tests, run against the queue each of them creates.
+     */
+    static final class Scenario {
+
+        private final TaskQueue queue;
+        private final StressTask first = new StressTask();
+        private final StressTask second = new StressTask();
+        private Runnable polledFirst;
+        private Runnable polledSecond;
+
+        Scenario(TaskQueue queue) {
+            this.queue = queue;
+        }
+
+        void produce() {
+            StressSupport.put(queue, first);
+            StressSupport.put(queue, second);
+        }
+
+        void consume() {
+            polledFirst = queue.poll();
+            polledSecond = queue.poll();
+        }
+
+        void check(II_Result r) {
+            r.r1 = indexOf(polledFirst);
+            r.r2 = indexOf(polledSecond);
+        }
+
+        private int indexOf(Runnable task) {
+            if (task == null) return 0;
+            return task == first ? 1 : 2;
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 0", "0, 1", "1, 0", "1, 2"}, expect = ACCEPTABLE, desc = "Tasks were taken in order")
+    @Outcome(expect = FORBIDDEN, desc = "The second task was taken before the first, or a task was taken twice")
+    @State
+    public static class Linked {
+
+        private final Scenario scenario = new Scenario(new LinkedTaskQueue());
+
+        @Actor
+        public void producer() {
+            scenario.produce();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.consume();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 0", "0, 1", "1, 0", "1, 2"}, expect = ACCEPTABLE, desc = "Tasks were taken in order")
+    @Outcome(expect = FORBIDDEN, desc = "The second task was taken before the first, or a task was taken twice")
+    @State
+    public static class RingBuffer {
+
+        private final Scenario scenario = new Scenario(new RingBufferTaskQueue(4));
+
+        @Actor
+        public void producer() {
+            scenario.produce();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.consume();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 0", "0, 1", "1, 0", "1, 2"}, expect = ACCEPTABLE, desc = "Tasks were taken in order")
+    @Outcome(expect = FORBIDDEN, desc = "The second task was taken before the first, or a task was taken twice")
+    @State
+    public static class Priority {
+
+        private final Scenario scenario = new Scenario(new PriorityTaskQueue(4, 0));
+
+        @Actor
+        public void producer() {
+            scenario.produce();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.consume();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.brendanddev.threadpool.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.PriorityTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+import com.brendanddev.threadpool.queues.WorkStealingTaskQueue;
+
+/**
+ * Checks that size() stays within the bounds set by the operations racing with it. The queue starts with one task,
+ * then one actor enqueues a task, another polls and a third reads the size. Whatever the interleaving, the size
+ * read lies between what the queue could hold at the time, and the final size follows from the poll's result.
+ *
+ * Result: the size read during the race, the final size, and whether the poll took a task.
+ */
+public class QueueSizeStress {
+
+    /**
+     * The shared body of the tests, run against the queue each of them creates.
+     */
+    static final class Scenario {
+
+        private final TaskQueue queue;
+        private final StressTask added = new StressTask();
+        private Runnable polled;
+        private int observedSize;
+
+        Scenario(TaskQueue queue) {
+            this.queue = queue;
+            StressSupport.put(queue, new StressTask());
+        }
+
+        void enqueue() {
+            StressSupport.put(queue, added);
+        }
+
+        void poll() {
+            polled = queue.poll();
+        }
+
+        void size() {
+            observedSize = queue.size();
+        }
+
+        void check(III_Result r) {
+            r.r1 = observedSize;
+            r.r2 = queue.size();
+            r.r3 = polled == null ? 0 : 1;
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 1, 1", "1, 1, 1", "2, 1, 1"}, expect = ACCEPTABLE, desc = "The size was within bounds")
+    @Outcome(expect = FORBIDDEN, desc = "The size was out of bounds, or the poll found the queue empty")
+    @State
+    public static class Linked {
+
+        private final Scenario scenario = new Scenario(new LinkedTaskQueue());
+
+        @Actor
+        public void producer() {
+            scenario.enqueue();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.poll();
+        }
+
+        @Actor
+        public void observer() {
+            scenario.size();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 1, 1", "1, 1, 1", "2, 1, 1"}, expect = ACCEPTABLE, desc = "The size was within bounds")
+    @Outcome(expect = FORBIDDEN, desc = "The size was out of bounds, or the poll found the queue empty")
+    @State
+    public static class RingBuffer {
+
+        private final Scenario scenario = new Scenario(new RingBufferTaskQueue(4));
+
+        @Actor
+        public void producer() {
+            scenario.enqueue();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.poll();
+        }
+
+        @Actor
+        public void observer() {
+            scenario.size();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 1, 1", "1, 1, 1", "2, 1, 1"}, expect = ACCEPTABLE, desc = "The size was within bounds")
+    @Outcome(expect = FORBIDDEN, desc = "The size was out of bounds, or the poll found the queue empty")
+    @State
+    public static class Priority {
+
+        private final Scenario scenario = new Scenario(new PriorityTaskQueue(4, 0));
+
+        @Actor
+        public void producer() {
+            scenario.enqueue();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.poll();
+        }
+
+        @Actor
+        public void observer() {
+            scenario.size();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 1, 1", "1, 1, 1", "2, 1, 1"}, expect = ACCEPTABLE, desc = "The size was within bounds")
+    @Outcome(expect = FORBIDDEN, desc = "The size was out of bounds, or the poll found the queue empty")
+    @State
+    public static class WorkStealing {
+
+        private final Scenario scenario = new Scenario(new WorkStealingTaskQueue());
+
+        @Actor
+        public void producer() {
+            scenario.enqueue();
+        }
+
+        @Actor
+        public void consumer() {
+            scenario.poll();
+        }
+
+        @Actor
+        public void observer() {
+            scenario.size();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            scenario.check(r);
+        }
+
+    }
+
+}
@@ -0,0 +1,546 @@
+package com.brendanddev.threadpool.stress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.TaskQueue;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+import com.brendanddev.threadpool.queues.PriorityTaskQueue;
+import com.brendanddev.threadpool.queues.RingBufferTaskQueue;
+import com.brendanddev.threadpool.queues.WorkStealingTaskQueue;
+
+/**
+ * Long-running soak tests that complement the jcstress tests: where those explore every interleaving of a few
+ * operations, these keep many threads hammering the queues and the pool for minutes, check at the end that no task
+ * was lost or duplicated, and print the throughput once per second so that slowdowns and stalls show up as well.
+ *
+ * The soaks, each run for the given duration:
+ * - Queue: producers enqueue into each TaskQueue while consumers take tasks with poll(), timed poll() and drainTo(),
+ *   checking that size() stays within the capacity.
+ * - Pool: producers submit to a pool built on each TaskQueue, which is then shut down and must run every task.
+ * - Lifecycle: short-lived pools are shut down with shutdown() or shutdownNow() at a random point while producers
+ *   submit; every task must run, be rejected or be returned exactly once, and the pool must terminate.
+ * - Discard oldest: producers overload a small pool using DISCARD_OLDEST_POLICY; every task must either run or be
+ *   cancelled, by a discard or because no room could be made for it, and submitting must never throw.
+ *
+ * Usage: SoakRunner [seconds per soak, default 10] [producers, default 4] [consumers or workers, default 4]
+ * Exits with status 1 if any check failed.
+ */
+public class SoakRunner {
+
+    // Ids available to each producer, which bounds the tasks a producer submits in one soak
+    private static final int IDS_PER_PRODUCER = 1 << 22;
+
+    // The discard-oldest soak keeps every future, so it submits fewer tasks
+    private static final int DISCARD_IDS_PER_PRODUCER = 1 << 18;
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int DISCARD_QUEUE_CAPACITY = 64;
+    private static final int LIFECYCLE_TASKS_PER_PRODUCER = 200;
+    private static final long TERMINATION_TIMEOUT_MILLIS = 60_000;
+
+    // How far producers may run ahead of the consumers in the queue soak, so an unbounded queue stays small
+    private static final int MAX_BACKLOG = 4 * QUEUE_CAPACITY;
+
+    /**
+     * The queues under test.
+     */
+    private enum QueueKind {
+
+        LINKED {
+            @Override
+            TaskQueue create() {
+                return new LinkedTaskQueue(QUEUE_CAPACITY);
+            }
+        },
+
+        RING_BUFFER {
+            @Override
+            TaskQueue create() {
+                return new RingBufferTaskQueue(QUEUE_CAPACITY);
+            }
+        },
+
+        PRIORITY {
+            @Override
+            TaskQueue create() {
+                return new PriorityTaskQueue(4, 1, QUEUE_CAPACITY);
+            }
+        },
+
+        WORK_STEALING {
+            @Override
+            TaskQueue create() {
+                return new WorkStealingTaskQueue();
+            }
+
+            @Override
+            int capacity() {
+                return Integer.MAX_VALUE;
+            }
+        };
+
+        abstract TaskQueue create();
+
+        /**
+         * Returns the capacity of the queues created, Integer.MAX_VALUE if they are unbounded.
+         */
+        int capacity() {
+            return QUEUE_CAPACITY;
+        }
+    }
+
+    /**
+     * A task that marks its id in a tracker when it runs.
+     */
+    private static final class SoakTask implements Runnable {
+
+        final int id;
+        private final ExactlyOnceTracker tracker;
+
+        SoakTask(int id, ExactlyOnceTracker tracker) {
+            this.id = id;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public void run() {
+            tracker.mark(id);
+        }
+    }
+
+    /**
+     * Hands one task to the queue or pool under test.
+     */
+    private interface Submitter {
+        void submit(int producer, int id) throws InterruptedException;
+    }
+
+    /**
+     * Prints the rate of a counter once per second on a daemon thread.
+     */
+    private static final class ThroughputReporter {
+
+        private final Thread thread;
+
+        ThroughputReporter(String label, String unit, LongSupplier counter) {
+            this.thread = new Thread(() -> {
+                long last = counter.getAsLong();
+                int second = 0;
+                try {
+                    while (true) {
+                        Thread.sleep(1000);
+                        long now = counter.getAsLong();
+                        System.out.printf("    %-14s %4ds %,14d %s/s%n", label, ++second, now - last, unit);
+                        last = now;
+                    }
+                } catch (InterruptedException e) {
+                    // Stopped
+                }
+            }, "SoakRunner-reporter");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private final long durationMillis;
+    private final int producers;
+    private final int consumers;
+    private final CustomThreadFactory threadFactory = new CustomThreadFactory("Soak", true, Thread.NORM_PRIORITY);
+    private int failures;
+
+    /**
+     * Constructs a SoakRunner.
+     *
+     * @param durationMillis How long each soak runs.
+     * @param producers The number of producer threads.
+     * @param consumers The number of consumer threads, or of workers for the pool soaks.
+     */
+    public SoakRunner(long durationMillis, int producers, int consumers) {
+        this.durationMillis = durationMillis;
+        this.producers = producers;
+        this.consumers = consumers;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int consumers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        SoakRunner runner = new SoakRunner(TimeUnit.SECONDS.toMillis(seconds), producers, consumers);
+        System.exit(runner.run() ? 0 : 1);
+    }
+
+    /**
+     * Runs every soak.
+     *
+     * @return true if every check passed.
+     * @throws InterruptedException If the thread is interrupted while waiting for a soak.
+     */
+    public boolean run() throws InterruptedException {
+        System.out.printf("Soaking for %ds each with %d producers and %d consumers%n",
+                TimeUnit.MILLISECONDS.toSeconds(durationMillis), producers, consumers);
+        for (QueueKind kind : QueueKind.values()) {
+            soakQueue(kind);
+        }
+        for (QueueKind kind : QueueKind.values()) {
+            soakPool(kind);
+        }
+        soakLifecycle();
+        soakDiscardOldest();
+        System.out.println(failures == 0 ? "All soaks passed" : failures + " check(s) failed");
+        return failures == 0;
+    }
+
+    /**
+     * Producers enqueue into the queue while consumers take tasks with each of the queue's non-blocking and
+     * timed methods, until the duration elapses and the queue has been emptied.
+     */
+    private void soakQueue(QueueKind kind) throws InterruptedException {
+        String label = "queue " + kind;
+        System.out.println(label);
+        TaskQueue queue = kind.create();
+        ExactlyOnceTracker tracker = new ExactlyOnceTracker(producers * IDS_PER_PRODUCER);
+        LongAdder submitted = new LongAdder();
+        LongAdder taken = new LongAdder();
+        LongAdder sizeViolations = new LongAdder();
+        // The number of tasks produced, -1 while the producers are running
+        AtomicLong expected = new AtomicLong(-1);
+        boolean bounded = kind.capacity() != Integer.MAX_VALUE;
+
+        List<Thread> consumerThreads = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            int mode = c % 3;
+            Thread thread = new Thread(() -> {
+                List<Runnable> buffer = new ArrayList<>(16);
+                long visits = 0;
+                try {
+                    while (true) {
+                        int found;
+                        if (mode == 0) {
+                            Runnable task = queue.poll(1);
+                            if (task != null) buffer.add(task);
+                            found = buffer.size();
+                        } else if (mode == 1) {
+                            Runnable task = queue.poll();
+                            if (task != null) buffer.add(task);
+                            found = buffer.size();
+                        } else {
+                            found = queue.drainTo(buffer, 16);
+                        }
+                        for (Runnable task : buffer) {
+                            task.run();
+                        }
+                        buffer.clear();
+                        taken.add(found);
+
+                        // size() of an unbounded queue may walk every task, so only bounded queues are sampled
+                        if (bounded && (++visits & 1023) == 0) {
+                            int size = queue.size();
+                            if (size < 0 || size > kind.capacity()) sizeViolations.increment();
+                        }
+                        if (found == 0) {
+                            long target = expected.get();
+                            if (target >= 0 && taken.sum() >= target) return;
+                            if (mode != 0) Thread.onSpinWait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Stopped by the runner
+                }
+            }, "Soak-consumer-" + c);
+            thread.setDaemon(true);
+            consumerThreads.add(thread);
+            thread.start();
+        }
+
+        ThroughputReporter reporter = new ThroughputReporter(label, "tasks", taken::sum);
+        long start = System.nanoTime();
+        int[] produced = produce(IDS_PER_PRODUCER, (producer, id) -> {
+            if ((id & 63) == 0) {
+                while (submitted.sum() - taken.sum() > MAX_BACKLOG) {
+                    Thread.yield();
+                }
+            }
+            queue.enqueue(new SoakTask(id, tracker));
+            submitted.increment();
+        });
+        expected.set(sum(produced));
+        boolean drained = join(consumerThreads);
+        long elapsedNanos = System.nanoTime() - start;
+        reporter.stop();
+
+        long total = sum(produced);
+        long missing = countMissing(tracker, produced, IDS_PER_PRODUCER);
+        long duplicates = tracker.getDuplicateCount();
+        report(label, total, elapsedNanos);
+        check(label, drained, "consumers did not drain the queue");
+        check(label, missing == 0, missing + " tasks lost");
+        check(label, duplicates == 0, duplicates + " tasks taken twice");
+        check(label, sizeViolations.sum() == 0, "size() out of bounds " + sizeViolations.sum() + " times");
+    }
+
+    /**
+     * Producers submit to a pool built on the queue for the duration, then the pool is shut down and must run
+     * every accepted task exactly once before it terminates.
+     */
+    private void soakPool(QueueKind kind) throws InterruptedException {
+        String label = "pool " + kind;
+        System.out.println(label);
+        ExactlyOnceTracker tracker = new ExactlyOnceTracker(producers * IDS_PER_PRODUCER);
+        CustomThreadPool pool = new CustomThreadPool(consumers, threadFactory, RejectionHandlers.ABORT_POLICY,
+                kind.create());
+
+        ThroughputReporter reporter = new ThroughputReporter(label, "tasks", pool::getCompletedTaskCount);
+        long start = System.nanoTime();
+        int[] produced = produce(IDS_PER_PRODUCER, (producer, id) -> pool.execute(new SoakTask(id, tracker)));
+        pool.shutdown();
+        boolean terminated = pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS);
+        long elapsedNanos = System.nanoTime() - start;
+        reporter.stop();
+
+        long total = sum(produced);
+        long missing = countMissing(tracker, produced, IDS_PER_PRODUCER);
+        long duplicates = tracker.getDuplicateCount();
+        report(label, total, elapsedNanos);
+        check(label, terminated, "pool did not terminate");
+        check(label, missing == 0, missing + " tasks never ran");
+        check(label, duplicates == 0, duplicates + " tasks ran twice");
+        check(label, pool.getCompletedTaskCount() == total,
+                "completed count " + pool.getCompletedTaskCount() + " != " + total + " submitted");
+    }
+
+    /**
+     * Creates, loads and stops short-lived pools for the duration. Each round starts two producers that submit a
+     * fixed number of tasks, and a third thread that stops the pool at a random point with shutdown() or
+     * shutdownNow(). Every task must then have run, been rejected or been returned by shutdownNow(), exactly once.
+     */
+    private void soakLifecycle() throws InterruptedException {
+        String label = "lifecycle";
+        System.out.println(label);
+        LongAdder rounds = new LongAdder();
+        long ran = 0;
+        long rejected = 0;
+        long returned = 0;
+        long violations = 0;
+        long hung = 0;
+
+        ThroughputReporter reporter = new ThroughputReporter(label, "rounds", rounds::sum);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        while (System.nanoTime() < deadline) {
+            int tasks = 2 * LIFECYCLE_TASKS_PER_PRODUCER;
+            ExactlyOnceTracker runs = new ExactlyOnceTracker(tasks);
+            ExactlyOnceTracker returns = new ExactlyOnceTracker(tasks);
+            boolean[] rejections = new boolean[tasks];
+            CustomThreadPool pool = new CustomThreadPool(2, threadFactory, RejectionHandlers.ABORT_POLICY);
+
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < 2; p++) {
+                int first = p * LIFECYCLE_TASKS_PER_PRODUCER;
+                threads.add(new Thread(() -> {
+                    for (int id = first; id < first + LIFECYCLE_TASKS_PER_PRODUCER; id++) {
+                        try {
+                            pool.execute(new SoakTask(id, runs));
+                        } catch (RejectedExecutionException e) {
+                            rejections[id] = true;
+                        }
+                    }
+                }));
+            }
+            boolean abrupt = ThreadLocalRandom.current().nextBoolean();
+            long delayNanos = ThreadLocalRandom.current().nextLong(200_000);
+            threads.add(new Thread(() -> {
+                long until = System.nanoTime() + delayNanos;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+                if (abrupt) {
+                    for (Runnable task : pool.shutdownNow()) {
+                        returns.mark(((SoakTask) task).id);
+                    }
+                } else {
+                    pool.shutdown();
+                }
+            }));
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            join(threads);
+            if (!pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS)) hung++;
+
+            for (int id = 0; id < tasks; id++) {
+                int outcomes = (runs.isMarked(id) ? 1 : 0) + (returns.isMarked(id) ? 1 : 0) + (rejections[id] ? 1 : 0);
+                if (outcomes != 1) violations++;
+                if (runs.isMarked(id)) ran++;
+                if (returns.isMarked(id)) returned++;
+                if (rejections[id]) rejected++;
+            }
+            violations += runs.getDuplicateCount() + returns.getDuplicateCount();
+            rounds.increment();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        reporter.stop();
+
+        System.out.printf("  %-22s %,12d rounds %,10.0f rounds/s  ran=%,d rejected=%,d returned=%,d%n", label,
+                rounds.sum(), rounds.sum() * 1e9 / elapsedNanos, ran, rejected, returned);
+        check(label, hung == 0, hung + " pools did not terminate");
+        check(label, violations == 0, violations + " tasks were lost or accounted for twice");
+    }
+
+    /**
+     * Producers overload a small pool that uses DISCARD_OLDEST_POLICY and never waits for queue space. Every task
+     * must have run or been cancelled by the policy, either as the oldest task or because no room could be made
+     * for it, and not both. The policy must never throw.
+     */
+    private void soakDiscardOldest() throws InterruptedException {
+        String label = "discard oldest";
+        System.out.println(label);
+        ExactlyOnceTracker tracker = new ExactlyOnceTracker(producers * DISCARD_IDS_PER_PRODUCER);
+        List<List<TaskFuture<?>>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            futures.add(new ArrayList<>());
+        }
+        CustomThreadPool pool = new CustomThreadPool(consumers, threadFactory, RejectionHandlers.DISCARD_OLDEST_POLICY,
+                new RingBufferTaskQueue(DISCARD_QUEUE_CAPACITY));
+        pool.setSubmitTimeoutMillis(0);
+
+        ThroughputReporter reporter = new ThroughputReporter(label, "tasks", pool::getCompletedTaskCount);
+        long start = System.nanoTime();
+        int[] produced = produce(DISCARD_IDS_PER_PRODUCER, (producer, id) -> {
+            TaskFuture<?> future;
+            try {
+                future = pool.submit(new SoakTask(id, tracker));
+            } catch (RejectedExecutionException e) {
+                // Recorded as a missing future, which fails the soak
+                future = null;
+            }
+            futures.get(producer).add(future);
+        });
+        pool.shutdown();
+        boolean terminated = pool.awaitTermination(TERMINATION_TIMEOUT_MILLIS);
+        long elapsedNanos = System.nanoTime() - start;
+        reporter.stop();
+
+        long ran = 0;
+        long cancelled = 0;
+        long thrown = 0;
+        long lost = 0;
+        long twice = 0;
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < produced[p]; i++) {
+                TaskFuture<?> future = futures.get(p).get(i);
+                int hasRun = tracker.isMarked(p * DISCARD_IDS_PER_PRODUCER + i) ? 1 : 0;
+                int isCancelled = future != null && future.isCancelled() ? 1 : 0;
+                if (future == null) thrown++;
+                ran += hasRun;
+                cancelled += isCancelled;
+                int outcomes = hasRun + isCancelled;
+                if (outcomes == 0) lost++;
+                if (outcomes > 1) twice++;
+            }
+        }
+        report(label, sum(produced), elapsedNanos);
+        System.out.printf("  %-22s ran=%,d cancelled=%,d%n", "", ran, cancelled);
+        check(label, terminated, "pool did not terminate");
+        check(label, thrown == 0, thrown + " submissions threw a RejectedExecutionException");
+        check(label, lost == 0, lost + " tasks neither ran nor were cancelled");
+        check(label, twice == 0, twice + " tasks were accounted for twice");
+        check(label, tracker.getDuplicateCount() == 0, tracker.getDuplicateCount() + " tasks ran twice");
+    }
+
+    /**
+     * Runs the producers until the duration elapses or they run out of ids.
+     *
+     * @param idsPerProducer The number of ids each producer may use, from producer * idsPerProducer.
+     * @param submitter Hands a task to the queue or pool under test.
+     * @return The number of tasks each producer submitted.
+     */
+    private int[] produce(int idsPerProducer, Submitter submitter) throws InterruptedException {
+        int[] produced = new int[producers];
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                int first = producer * idsPerProducer;
+                int count = 0;
+                try {
+                    // The clock is read once per 64 tasks to keep it off the measured path
+                    while (count < idsPerProducer && ((count & 63) != 0 || System.nanoTime() < deadline)) {
+                        submitter.submit(producer, first + count);
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    produced[producer] = count;
+                }
+            }, "Soak-producer-" + p));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        join(threads);
+        return produced;
+    }
+
+    /**
+     * Waits for the threads to finish, interrupting any that are still running after the termination timeout.
+     *
+     * @return true if every thread finished in time.
+     */
+    private static boolean join(List<Thread> threads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TERMINATION_TIMEOUT_MILLIS;
+        boolean finished = true;
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (thread.isAlive()) {
+                finished = false;
+                thread.interrupt();
+            }
+        }
+        return finished;
+    }
+
+    private static long countMissing(ExactlyOnceTracker tracker, int[] produced, int idsPerProducer) {
+        long missing = 0;
+        for (int p = 0; p < produced.length; p++) {
+            missing += tracker.countMissing(p * idsPerProducer, produced[p]);
+        }
+        return missing;
+    }
+
+    private static long sum(int[] values) {
+        long total = 0;
+        for (int value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static void report(String label, long tasks, long elapsedNanos) {
+        System.out.printf("  %-22s %,12d tasks %,12.0f tasks/s%n", label, tasks, tasks * 1e9 / elapsedNanos);
+    }
+
+    private void check(String label, boolean passed, String failure) {
+        if (passed) return;
+        failures++;
+        System.out.println("  FAILED " + label + ": " + failure);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.brendanddev.threadpool.stress;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.brendanddev.threadpool.TaskQueue;
+
+/**
+ * Helpers shared by the jcstress tests.
+ */
+final class StressSupport {
+
+    private StressSupport() {
+    }
+
+    /**
+     * Enqueues a task into a queue that is known to have room, so enqueue() never waits.
+     */
+    static void put(TaskQueue queue, Runnable task) {
+        try {
+            queue.enqueue(task);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Interrupted while enqueueing into a queue with room", e);
+        }
+    }
+
+    /**
+     * Takes every task left in the queue. Only called by an arbiter, once the actors are done.
+     */
+    static List<Runnable> drain(TaskQueue queue) {
+        List<Runnable> remaining = new ArrayList<>();
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            remaining.add(task);
+        }
+        return remaining;
+    }
+
+    /**
+     * Counts how often the task appears among the given tasks.
+     */
+    static int occurrences(Runnable task, List<Runnable> tasks) {
+        int count = 0;
+        for (Runnable candidate : tasks) {
+            if (candidate == task) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts how often the task appears among the given tasks, which may include nulls for empty polls.
+     */
+    static int occurrences(Runnable task, Runnable... tasks) {
+        int count = 0;
+        for (Runnable candidate : tasks) {
+            if (candidate == task) count++;
+        }
+        return count;
+    }
+
+}
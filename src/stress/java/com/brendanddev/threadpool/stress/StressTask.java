@@ -0,0 +1,25 @@
+package com.brendanddev.threadpool.stress;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task that only counts how often it has run, so a stress test can check that it ran exactly once no matter
+ * which thread ran it or when.
+ */
+final class StressTask implements Runnable {
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Override
+    public void run() {
+        runs.incrementAndGet();
+    }
+
+    /**
+     * Returns how often the task has run.
+     */
+    int getRunCount() {
+        return runs.get();
+    }
+
+}
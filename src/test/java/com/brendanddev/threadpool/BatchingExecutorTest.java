@@ -0,0 +1,102 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.brendanddev.threadpool.BatchingExecutor;
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+
+/**
+ * Tests that a shutdown flushes the tasks a BatchingExecutor is still buffering, without ever waiting for room
+ * in a full queue, and that shutdownNow() returns them instead.
+ */
+public class BatchingExecutorTest extends TestCase {
+
+    public void testShutdownRunsBufferedTasks() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(2);
+        // Neither the size nor the delay would flush these tasks before the shutdown
+        BatchingExecutor batching = pool.createBatchingExecutor(100, 60_000);
+        List<TaskFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(batching.submit(() -> {}));
+        }
+
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2000));
+        for (TaskFuture<?> future : futures) {
+            assertTrue(future.isDone());
+            assertFalse(future.isCancelled());
+        }
+        assertEquals(10, pool.getMetrics().getSubmittedCount());
+    }
+
+    public void testShutdownDoesNotWaitForFullQueue() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(1, new CustomThreadFactory("BatchingExecutorTest", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.ABORT_POLICY, new LinkedTaskQueue(1));
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        pool.execute(() -> {});
+        BatchingExecutor batching = pool.createBatchingExecutor(100, 60_000);
+        TaskFuture<?> buffered = batching.submit(() -> {});
+
+        long start = System.nanoTime();
+        pool.shutdown();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("shutdown took " + elapsedMillis + "ms", elapsedMillis < 1000);
+        assertFalse(buffered.isDone());
+        assertFalse(pool.isTerminated());
+
+        gate.countDown();
+        assertTrue(pool.awaitTermination(2000));
+        assertTrue(buffered.isDone());
+        assertFalse(buffered.isCancelled());
+    }
+
+    public void testShutdownNowReturnsBufferedTasks() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(1);
+        BatchingExecutor batching = pool.createBatchingExecutor(100, 60_000);
+        AtomicInteger ran = new AtomicInteger();
+        List<Runnable> buffered = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Runnable task = ran::incrementAndGet;
+            batching.execute(task);
+            buffered.add(task);
+        }
+
+        List<Runnable> remaining = pool.shutdownNow();
+        assertTrue(pool.awaitTermination(2000));
+        assertEquals(buffered, remaining);
+        assertEquals(0, ran.get());
+    }
+
+    public void testTasksAfterShutdownAreRejected() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(1);
+        BatchingExecutor batching = pool.createBatchingExecutor(100, 60_000);
+        pool.shutdown();
+        try {
+            batching.execute(() -> {});
+            fail("Expected the task to be rejected");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertTrue(pool.awaitTermination(2000));
+    }
+}
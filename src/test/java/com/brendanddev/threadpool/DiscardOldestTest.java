@@ -0,0 +1,92 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+
+/**
+ * Tests DISCARD_OLDEST_POLICY on a full queue: the oldest task is cancelled to make room for the new one,
+ * the mailboxes that run keyed lanes are never discarded, and a task rejected after a shutdown is cancelled
+ * rather than thrown back at the caller.
+ */
+public class DiscardOldestTest extends TestCase {
+
+    private CustomThreadPool pool;
+    private CountDownLatch gate;
+
+    @Override
+    protected void setUp() throws Exception {
+        pool = new CustomThreadPool(1, new CustomThreadFactory("DiscardOldestTest", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.DISCARD_OLDEST_POLICY, new LinkedTaskQueue(2));
+        pool.setSubmitTimeoutMillis(0);
+        gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        gate.countDown();
+        pool.shutdownNow();
+        pool.awaitTermination(2000);
+    }
+
+    public void testOldestTaskIsCancelledForNewTask() throws Exception {
+        TaskFuture<String> first = pool.submit(() -> "first");
+        TaskFuture<String> second = pool.submit(() -> "second");
+        TaskFuture<String> third = pool.submit(() -> "third");
+
+        assertTrue(first.isCancelled());
+        assertEquals(2, pool.getQueueSize());
+        assertEquals(1, pool.getMetrics().getRejectedCount());
+
+        gate.countDown();
+        assertEquals("second", second.get(2, TimeUnit.SECONDS));
+        assertEquals("third", third.get(2, TimeUnit.SECONDS));
+    }
+
+    public void testKeyedMailboxIsNeverDiscarded() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        pool.execute("key", () -> ran.add("keyed"));
+        TaskFuture<String> plain = pool.submit(() -> "plain");
+        TaskFuture<String> newest = pool.submit(() -> "newest");
+
+        assertTrue(plain.isCancelled());
+        gate.countDown();
+        assertEquals("newest", newest.get(2, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2000));
+        assertEquals(List.of("keyed"), ran);
+    }
+
+    public void testTaskAfterShutdownIsCancelledWithoutThrowing() throws Exception {
+        pool.shutdown();
+        TaskFuture<String> plain = pool.submit(() -> "plain");
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        pool.execute("key", () -> ran.add("keyed"));
+
+        assertTrue(plain.isCancelled());
+        assertEquals(2, pool.getMetrics().getRejectedCount());
+        gate.countDown();
+        assertTrue(pool.awaitTermination(2000));
+        assertTrue(ran.isEmpty());
+    }
+}
@@ -0,0 +1,130 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskFuture;
+import com.brendanddev.threadpool.TaskGroup;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+
+/**
+ * Tests that task groups share the workers in proportion to their weights, never run more tasks at once
+ * than their concurrency limit, and count the tasks their DISCARD_OLDEST_POLICY drops.
+ */
+public class FairShareSchedulerTest extends TestCase {
+
+    public void testGroupsShareWorkerByWeight() throws Exception {
+        // Costs are measured, so a worker preempted mid-task skews a round; a real bias fails every attempt
+        int heavyShare = 0;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            heavyShare = heavyShareOfFirstHalf(200);
+            if (heavyShare >= 120 && heavyShare <= 180) return;
+        }
+        fail("heavy ran " + heavyShare + " of the first 200 tasks, expected about 150");
+    }
+
+    public void testGroupRespectsMaxConcurrency() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(4);
+        TaskGroup group = pool.createTaskGroup("limited", 1, 2, Integer.MAX_VALUE, RejectionHandlers.ABORT_POLICY);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 40; i++) {
+            group.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10_000));
+
+        assertEquals(40, group.getCompletedCount());
+        assertTrue("ran " + maxRunning.get() + " at once", maxRunning.get() <= 2);
+    }
+
+    public void testDiscardOldestCountsDroppedTask() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(1);
+        TaskGroup group = pool.createTaskGroup("bounded", 1, 1, 1, RejectionHandlers.DISCARD_OLDEST_POLICY);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        group.execute(() -> {
+            started.countDown();
+            awaitQuietly(gate);
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        TaskFuture<Object> oldest = group.submit(() -> null);
+        TaskFuture<Object> newest = group.submit(() -> "ran");
+        assertTrue(oldest.isCancelled());
+        assertEquals(1, group.getRejectedCount());
+        assertEquals(1, pool.getMetrics().getRejectedCount());
+
+        gate.countDown();
+        assertEquals("ran", newest.get(2, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2000));
+    }
+
+    /**
+     * Queues tasksPerGroup tasks to groups of weight 1 and 3 sharing one worker, and returns how many of the first
+     * tasksPerGroup tasks to complete belonged to the weight 3 group.
+     */
+    private static int heavyShareOfFirstHalf(int tasksPerGroup) throws InterruptedException {
+        CustomThreadPool pool = new CustomThreadPool(1);
+        TaskGroup light = pool.createTaskGroup("light", 1);
+        TaskGroup heavy = pool.createTaskGroup("heavy", 3);
+        CountDownLatch gate = holdWorker(pool);
+
+        List<String> completions = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < tasksPerGroup; i++) {
+            light.execute(() -> spinThenRecord(completions, "light"));
+            heavy.execute(() -> spinThenRecord(completions, "heavy"));
+        }
+        gate.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10_000));
+
+        assertEquals(2 * tasksPerGroup, completions.size());
+        assertEquals(tasksPerGroup, light.getCompletedCount());
+        assertEquals(tasksPerGroup, heavy.getCompletedCount());
+        return Collections.frequency(completions.subList(0, tasksPerGroup), "heavy");
+    }
+
+    private static CountDownLatch holdWorker(CustomThreadPool pool) throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            awaitQuietly(gate);
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        return gate;
+    }
+
+    private static void spinThenRecord(List<String> completions, String group) {
+        long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(200);
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+        completions.add(group);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+
+/**
+ * Tests that tasks submitted with the same key run one at a time in submission order, across more tasks than
+ * a mailbox runs in one turn, and that a worker submitting keyed tasks never blocks on a full queue.
+ */
+public class KeyedLanesTest extends TestCase {
+
+    public void testTasksOfOneKeyRunInSubmissionOrder() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(4);
+        int keys = 8;
+        int tasksPerKey = 500;
+        List<List<Integer>> order = new ArrayList<>();
+        AtomicInteger[] running = new AtomicInteger[keys];
+        AtomicBoolean overlapped = new AtomicBoolean();
+        for (int k = 0; k < keys; k++) {
+            order.add(Collections.synchronizedList(new ArrayList<>()));
+            running[k] = new AtomicInteger();
+        }
+
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                int key = k;
+                int sequence = i;
+                pool.execute("key-" + key, () -> {
+                    if (running[key].incrementAndGet() != 1) overlapped.set(true);
+                    order.get(key).add(sequence);
+                    running[key].decrementAndGet();
+                });
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10_000));
+
+        assertFalse(overlapped.get());
+        for (int k = 0; k < keys; k++) {
+            List<Integer> ran = order.get(k);
+            assertEquals(tasksPerKey, ran.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(Integer.valueOf(i), ran.get(i));
+            }
+        }
+        assertEquals(0, pool.getActiveKeyCount());
+    }
+
+    public void testWorkerSubmittingToFullQueueDoesNotBlock() throws Exception {
+        CustomThreadPool pool = new CustomThreadPool(1, new CustomThreadFactory("KeyedLanesTest", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.ABORT_POLICY, new LinkedTaskQueue(1));
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch submitted = new CountDownLatch(1);
+        pool.execute(() -> {
+            // The only worker fills the queue, then schedules a mailbox it alone could make room for
+            pool.execute(() -> {});
+            for (int i = 0; i < 5; i++) {
+                int sequence = i;
+                pool.execute("key", () -> order.add(sequence));
+            }
+            submitted.countDown();
+        });
+
+        assertTrue(submitted.await(2, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2000));
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+    }
+}
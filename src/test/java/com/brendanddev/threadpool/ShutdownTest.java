@@ -0,0 +1,122 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.TaskGroup;
+import com.brendanddev.threadpool.policies.RejectionHandler;
+
+/**
+ * Tests that a shutdown takes back every task the pool has not run: tasks submitted after it are rejected,
+ * and shutdownNow() returns each queued task exactly once, whether it was submitted directly, with a key
+ * or to a task group.
+ */
+public class ShutdownTest extends TestCase {
+
+    private final List<Runnable> rejected = Collections.synchronizedList(new ArrayList<>());
+    private final RejectionHandler recordingHandler = (task, pool) -> rejected.add(task);
+
+    private CustomThreadPool newPool(int numThreads) {
+        return new CustomThreadPool(numThreads, new CustomThreadFactory("ShutdownTest", true, Thread.NORM_PRIORITY),
+                recordingHandler);
+    }
+
+    public void testTasksSubmittedAfterShutdownAreRejected() throws Exception {
+        CustomThreadPool pool = newPool(1);
+        TaskGroup group = pool.createTaskGroup("group", 1);
+        pool.shutdown();
+
+        Runnable plain = () -> {};
+        Runnable keyed = () -> {};
+        Runnable grouped = () -> {};
+        List<Runnable> batch = Arrays.asList(() -> {}, () -> {}, () -> {});
+        pool.execute(plain);
+        pool.execute("key", keyed);
+        group.execute(grouped);
+        pool.executeAll(batch);
+
+        assertEquals(6, rejected.size());
+        assertTrue(rejected.containsAll(Arrays.asList(plain, keyed, grouped)));
+        assertTrue(rejected.containsAll(batch));
+        assertEquals(0, pool.getMetrics().getSubmittedCount());
+        assertTrue(pool.awaitTermination(2000));
+    }
+
+    public void testShutdownNowReturnsEveryQueuedTaskOnce() throws Exception {
+        CustomThreadPool pool = newPool(1);
+        TaskGroup group = pool.createTaskGroup("group", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger();
+        List<Runnable> submitted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Runnable plain = ran::incrementAndGet;
+            Runnable keyed = ran::incrementAndGet;
+            Runnable grouped = ran::incrementAndGet;
+            pool.execute(plain);
+            pool.execute("key-" + (i % 3), keyed);
+            group.execute(grouped);
+            submitted.addAll(Arrays.asList(plain, keyed, grouped));
+        }
+
+        List<Runnable> remaining = pool.shutdownNow();
+        assertTrue(pool.awaitTermination(2000));
+
+        Map<Runnable, Integer> counts = new IdentityHashMap<>();
+        for (Runnable task : remaining) {
+            counts.merge(task, 1, Integer::sum);
+        }
+        assertEquals(submitted.size(), remaining.size());
+        for (Runnable task : submitted) {
+            assertEquals(Integer.valueOf(1), counts.get(task));
+        }
+        assertEquals(0, ran.get());
+        assertTrue(rejected.isEmpty());
+    }
+
+    public void testRacingShutdownNowNeitherLosesNorDuplicatesTasks() throws Exception {
+        for (int round = 0; round < 100; round++) {
+            rejected.clear();
+            CustomThreadPool pool = newPool(2);
+            TaskGroup group = pool.createTaskGroup("group", 1);
+            AtomicInteger ran = new AtomicInteger();
+            int perKind = 50;
+
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < perKind; i++) {
+                    pool.execute(ran::incrementAndGet);
+                    pool.execute("key-" + (i % 4), ran::incrementAndGet);
+                    group.execute(ran::incrementAndGet);
+                }
+            });
+            submitter.start();
+            Thread.yield();
+            List<Runnable> remaining = pool.shutdownNow();
+            submitter.join();
+            assertTrue(pool.awaitTermination(2000));
+
+            assertEquals("round " + round, 3 * perKind, ran.get() + remaining.size() + rejected.size());
+        }
+    }
+}
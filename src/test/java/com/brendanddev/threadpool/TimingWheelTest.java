@@ -0,0 +1,137 @@
+package com.brendanddev.threadpool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.brendanddev.threadpool.CustomThreadFactory;
+import com.brendanddev.threadpool.CustomThreadPool;
+import com.brendanddev.threadpool.ScheduledTaskFuture;
+import com.brendanddev.threadpool.TimingWheel;
+import com.brendanddev.threadpool.policies.RejectionHandlers;
+import com.brendanddev.threadpool.queues.LinkedTaskQueue;
+
+/**
+ * Tests that timers placed on the higher levels of a TimingWheel cascade down and fire in deadline order, never
+ * before their deadline, that cancelled timers never fire, and that a due timer waits for room in a full queue
+ * without blocking the ticker.
+ */
+public class TimingWheelTest extends TestCase {
+
+    // A 2µs tick puts the delays below on levels 0 to 3 of the wheel
+    private static final long TICK_NANOS = TimeUnit.MICROSECONDS.toNanos(2);
+
+    private CustomThreadPool pool;
+    private TimingWheel wheel;
+    private Thread ticker;
+
+    @Override
+    protected void setUp() {
+        pool = new CustomThreadPool(1, new CustomThreadFactory("TimingWheelTest", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.ABORT_POLICY);
+        wheel = new TimingWheel(pool, TICK_NANOS);
+        ticker = new Thread(wheel, "TimingWheelTest-ticker");
+        ticker.setDaemon(true);
+        wheel.start(ticker);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        wheel.stop();
+        ticker.join(2000);
+        pool.shutdownNow();
+        pool.awaitTermination(2000);
+    }
+
+    public void testTimersCascadeAndFireInDeadlineOrder() throws Exception {
+        long[] delayMicros = { 700_000, 50, 200_000, 1_000, 20_000 };
+        List<Long> fired = Collections.synchronizedList(new ArrayList<>());
+        List<ScheduledTaskFuture<Long>> timers = new ArrayList<>();
+        long now = System.nanoTime();
+        for (long delay : delayMicros) {
+            long triggerNanos = now + TimeUnit.MICROSECONDS.toNanos(delay);
+            ScheduledTaskFuture<Long> timer = new ScheduledTaskFuture<>(() -> {
+                long firedNanos = System.nanoTime();
+                fired.add(delay);
+                return firedNanos;
+            }, pool, wheel, triggerNanos, 0);
+            assertTrue(wheel.schedule(timer));
+            timers.add(timer);
+        }
+
+        for (ScheduledTaskFuture<Long> timer : timers) {
+            long firedNanos = timer.get(5, TimeUnit.SECONDS);
+            assertTrue("fired " + (timer.getTriggerNanos() - firedNanos) + "ns early",
+                    firedNanos >= timer.getTriggerNanos());
+        }
+        assertEquals(List.of(50L, 1_000L, 20_000L, 200_000L, 700_000L), fired);
+    }
+
+    public void testCancelledTimerNeverFires() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        long now = System.nanoTime();
+        ScheduledTaskFuture<Integer> cancelled = new ScheduledTaskFuture<>(runs::incrementAndGet, pool, wheel,
+                now + TimeUnit.MILLISECONDS.toNanos(20), 0);
+        ScheduledTaskFuture<Integer> later = new ScheduledTaskFuture<>(() -> 0, pool, wheel,
+                now + TimeUnit.MILLISECONDS.toNanos(50), 0);
+        wheel.schedule(cancelled);
+        wheel.schedule(later);
+
+        assertTrue(cancelled.cancel(false));
+        later.get(5, TimeUnit.SECONDS);
+        assertEquals(0, runs.get());
+    }
+
+    public void testDueTimerWaitsForRoomInFullQueue() throws Exception {
+        CustomThreadPool bounded = new CustomThreadPool(1, new CustomThreadFactory("TimingWheelTest", true, Thread.NORM_PRIORITY),
+                RejectionHandlers.ABORT_POLICY, new LinkedTaskQueue(1));
+        TimingWheel boundedWheel = new TimingWheel(bounded, TimeUnit.MILLISECONDS.toNanos(1));
+        Thread boundedTicker = new Thread(boundedWheel, "TimingWheelTest-bounded-ticker");
+        boundedTicker.setDaemon(true);
+        boundedWheel.start(boundedTicker);
+        try {
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(1);
+            bounded.execute(() -> {
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            bounded.execute(() -> {});
+
+            long now = System.nanoTime();
+            ScheduledTaskFuture<String> due = new ScheduledTaskFuture<>(() -> "ran", bounded, boundedWheel,
+                    now + TimeUnit.MILLISECONDS.toNanos(1), 0);
+            AtomicInteger cancelledRuns = new AtomicInteger();
+            ScheduledTaskFuture<Integer> cancelled = new ScheduledTaskFuture<>(cancelledRuns::incrementAndGet, bounded,
+                    boundedWheel, now + TimeUnit.MILLISECONDS.toNanos(100), 0);
+            boundedWheel.schedule(due);
+            boundedWheel.schedule(cancelled);
+            Thread.sleep(50);
+
+            // The ticker retries the due timer on later ticks instead of blocking on the full queue
+            assertFalse(due.isDone());
+            assertNotSame(Thread.State.WAITING, boundedTicker.getState());
+            assertTrue(cancelled.cancel(false));
+
+            gate.countDown();
+            assertEquals("ran", due.get(2, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(0, cancelledRuns.get());
+        } finally {
+            boundedWheel.stop();
+            boundedTicker.join(2000);
+            bounded.shutdownNow();
+            bounded.awaitTermination(2000);
+        }
+    }
+}